@@ -34,6 +34,10 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    testOptions {
+        // Storage classes log through android.util.Log; let JVM tests run them without a device.
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -1,12 +1,18 @@
 package naq.sm4;
 
+import android.content.Intent;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.NavController;
+import androidx.navigation.NavDestination;
+import androidx.navigation.NavOptions;
 import androidx.navigation.fragment.NavHostFragment;
 import androidx.navigation.ui.AppBarConfiguration;
 import androidx.navigation.ui.NavigationUI;
@@ -16,12 +22,22 @@ import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 import naq.sm4.R;
 import naq.sm4.databinding.ActivityMainBinding;
+import naq.sm4.ui.home.HomeViewModel;
+import naq.sm4.ui.timer.MeditationTimerFragment;
 
 public class MainActivity extends AppCompatActivity {
 
+    /** Opens the timer screen on the running session; set by the session notification. */
+    public static final String EXTRA_SHOW_SESSION = "naq.sm4.extra.SHOW_SESSION";
+
+    private static final String EXPORT_FILE_NAME = "sm4-configs.json";
+    private static final String JSON_MIME_TYPE = "application/json";
+
     private ActivityMainBinding binding;
     private AppBarConfiguration appBarConfiguration;
     private NavController navController;
+    private ActivityResultLauncher<String> exportConfigsLauncher;
+    private ActivityResultLauncher<String[]> importConfigsLauncher;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -47,6 +63,29 @@ public class MainActivity extends AppCompatActivity {
         NavigationUI.setupActionBarWithNavController(this, navController, appBarConfiguration);
 
         setupBottomNavigation();
+
+        HomeViewModel homeViewModel = new ViewModelProvider(this).get(HomeViewModel.class);
+        exportConfigsLauncher = registerForActivityResult(new ActivityResultContracts.CreateDocument(JSON_MIME_TYPE),
+                uri -> {
+                    if (uri != null) {
+                        homeViewModel.exportConfigs(uri);
+                    }
+                });
+        importConfigsLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), uri -> {
+            if (uri != null) {
+                homeViewModel.importConfigs(uri);
+            }
+        });
+        if (savedInstanceState == null) {
+            showSessionIfRequested(getIntent());
+        }
+    }
+
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        setIntent(intent);
+        showSessionIfRequested(intent);
     }
 
     @Override
@@ -68,10 +107,29 @@ public class MainActivity extends AppCompatActivity {
         } else if (item.getItemId() == R.id.action_settings) {
             navController.navigate(R.id.action_global_settingsFragment);
             return true;
+        } else if (item.getItemId() == R.id.action_export_configs) {
+            exportConfigsLauncher.launch(EXPORT_FILE_NAME);
+            return true;
+        } else if (item.getItemId() == R.id.action_import_configs) {
+            importConfigsLauncher.launch(new String[]{JSON_MIME_TYPE, "text/plain"});
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
+    private void showSessionIfRequested(@NonNull Intent intent) {
+        if (!intent.getBooleanExtra(EXTRA_SHOW_SESSION, false)) {
+            return;
+        }
+        intent.removeExtra(EXTRA_SHOW_SESSION);
+        NavDestination current = navController.getCurrentDestination();
+        if (current != null && current.getId() == R.id.meditationTimerFragment) {
+            return;
+        }
+        navController.navigate(R.id.meditationTimerFragment, MeditationTimerFragment.showRunningSessionArgs(),
+                new NavOptions.Builder().setLaunchSingleTop(true).build());
+    }
+
     private void setupBottomNavigation() {
         BottomNavigationView bottomNavigationView = binding.bottomNavigation;
         if (bottomNavigationView != null) {
@@ -6,6 +6,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 
 import naq.sm4.core.storage.SoundFileRepository;
+import naq.sm4.core.storage.SoundIndex;
 
 /**
  * Custom Application class for initializing app-wide components.
@@ -19,8 +20,11 @@ public class SupportMeditationApp extends Application {
         super.onCreate();
         instance = this;
         
-        // Initialize default sounds in a background thread to avoid ANR
-        new Thread(this::initializeDefaultSounds).start();
+        // Initialize default sounds and the sound index in a background thread to avoid ANR
+        new Thread(() -> {
+            initializeDefaultSounds();
+            SoundIndex.getInstance().start();
+        }).start();
     }
 
     /**
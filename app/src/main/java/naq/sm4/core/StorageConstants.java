@@ -7,7 +7,9 @@ public final class StorageConstants {
 
     public static final String WORKING_DIRECTORY = "/sdcard/Music/SupportMeditation/";
     public static final String DEFAULT_CONFIG_FILE = "configs.json";
-    public static final String CONFIG_FILE_EXTENSION = ".json";
+    public static final String CONFIG_FILE_EXTENSION = ".cfg";
+    public static final String CONFIG_INDEX_FILE = "configs.index";
+    public static final String QUICK_START_PLAN_FILE = "quick_start.plan";
 
     public static final String[] SUPPORTED_AUDIO_EXTENSIONS = {
             ".mp3", ".wav", ".ogg", ".m4a"
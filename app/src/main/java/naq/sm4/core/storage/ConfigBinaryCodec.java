@@ -0,0 +1,365 @@
+package naq.sm4.core.storage;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import naq.sm4.data.BreathingPattern;
+import naq.sm4.data.ConfigSummary;
+import naq.sm4.data.CueVibration;
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+
+/**
+ * Compact binary encoding of config files: lists of configs, used for each config shard, and the
+ * index of {@link ConfigSummary} entries.
+ * Every distinct string, sound file names above all, is stored once in a table at the start of
+ * the body and referenced by index; all numbers are unsigned LEB128 varints. The header carries
+ * the CRC of the body.
+ *
+ * <pre>
+ * header  0 int magic   4 short version   6 short reserved   8 int body length   12 int body crc
+ * body    strings: count, (byte length, UTF-8 bytes)...   records: count, record...
+ * config  name   total minutes   stage count   stage...
+ * stage   name   minutes   repeat minutes   flags   cue vibration   [inhale hold exhale]   sound count   sound...
+ * summary id   name   total minutes   stage count   sound count   sound...
+ * index   strings   summaries: count, summary...   next id
+ * </pre>
+ *
+ * <p>Strings are table indices and {@code flags} bit 0 marks a breathing pacer stage. Decoding
+ * clamps values like the JSON reader does; a file whose checksum does not match, or that was
+ * written by a newer version, is refused as a whole.
+ */
+final class ConfigBinaryCodec {
+
+    static final int HEADER_SIZE = 16;
+    /** Files at least this large are memory-mapped instead of read into a heap buffer. */
+    static final int MAP_THRESHOLD_BYTES = 256 * 1024;
+    private static final int MAGIC = 0x534D3443;
+    private static final int INDEX_MAGIC = 0x534D3449;
+    private static final short VERSION = 1;
+    private static final int FLAG_BREATHING = 1;
+
+    private static final CueVibration[] CUE_VIBRATIONS = CueVibration.values();
+
+    private ConfigBinaryCodec() {
+    }
+
+    /**
+     * @return the encoded file for {@code configs}, header included.
+     */
+    @NonNull
+    static byte[] encode(@NonNull List<MeditationConfig> configs) {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        writeVarint(records, configs.size());
+        for (MeditationConfig config : configs) {
+            writeVarint(records, intern(strings, config.getName()));
+            writeVarint(records, config.getTotalMinutes());
+            writeVarint(records, config.getStageCount());
+            for (MeditationStage stage : config.getStages()) {
+                writeStage(records, strings, stage);
+            }
+        }
+        return seal(MAGIC, strings, records);
+    }
+
+    /**
+     * @return the encoded index listing {@code summaries} in order, header included.
+     * @param nextId id the next saved config gets, kept so that ids of deleted configs are not
+     *               handed out again
+     */
+    @NonNull
+    static byte[] encodeIndex(@NonNull List<ConfigSummary> summaries, int nextId) {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        writeVarint(records, summaries.size());
+        for (ConfigSummary summary : summaries) {
+            writeVarint(records, summary.getId());
+            writeVarint(records, intern(strings, summary.getName()));
+            writeVarint(records, summary.getTotalMinutes());
+            writeVarint(records, summary.getStageCount());
+            writeVarint(records, summary.getSounds().size());
+            for (String sound : summary.getSounds()) {
+                writeVarint(records, intern(strings, sound));
+            }
+        }
+        writeVarint(records, nextId);
+        return seal(INDEX_MAGIC, strings, records);
+    }
+
+    @NonNull
+    private static byte[] seal(int magic, @NonNull Map<String, Integer> strings,
+                               @NonNull ByteArrayOutputStream records) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + records.size() + strings.size() * 16);
+        out.write(new byte[HEADER_SIZE], 0, HEADER_SIZE);
+        writeVarint(out, strings.size());
+        for (String value : strings.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        out.write(records.toByteArray(), 0, records.size());
+
+        byte[] data = out.toByteArray();
+        int bodyLength = data.length - HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(data, HEADER_SIZE, bodyLength);
+        ByteBuffer.wrap(data)
+                .putInt(magic)
+                .putShort(VERSION)
+                .putShort((short) 0)
+                .putInt(bodyLength)
+                .putInt((int) crc.getValue());
+        return data;
+    }
+
+    /**
+     * @return checksum recorded in the header of an encoded file.
+     */
+    static long checksum(@NonNull byte[] encoded) {
+        return ByteBuffer.wrap(encoded).getInt(12) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Reads {@code file} with a single read, or through a memory map once it reaches
+     * {@link #MAP_THRESHOLD_BYTES}, and passes each config to {@code sink} in order.
+     *
+     * @return checksum of the file
+     * @throws IOException when the file is unreadable, damaged or of a newer version; nothing has
+     *                     been passed to {@code sink} in that case
+     */
+    static long read(@NonNull File file, @NonNull Consumer<MeditationConfig> sink) throws IOException {
+        return decode(readFile(file), sink);
+    }
+
+    /**
+     * Reads an index written by {@link #encodeIndex}, the same way {@link #read} reads configs.
+     *
+     * @throws IOException when the file is unreadable, damaged or of a newer version
+     */
+    @NonNull
+    static Index readIndex(@NonNull File file) throws IOException {
+        ByteBuffer body = openBody(readFile(file), INDEX_MAGIC);
+        try {
+            String[] strings = readStrings(body);
+            int count = readCount(body);
+            List<ConfigSummary> summaries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int id = readVarint(body);
+                String name = readString(body, strings);
+                int totalMinutes = ConfigJsonReader.clampTotalMinutes(readVarint(body));
+                int stageCount = readVarint(body);
+                int soundCount = readCount(body);
+                List<String> sounds = new ArrayList<>(soundCount);
+                for (int s = 0; s < soundCount; s++) {
+                    sounds.add(readString(body, strings));
+                }
+                summaries.add(new ConfigSummary(id, name, totalMinutes, stageCount, sounds));
+            }
+            return new Index(summaries, readVarint(body));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Config index truncated", e);
+        }
+    }
+
+    @NonNull
+    private static ByteBuffer readFile(@NonNull File file) throws IOException {
+        try (RandomAccessFile raw = new RandomAccessFile(file, "r"); FileChannel channel = raw.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Config file too large: " + size);
+            }
+            if (size >= MAP_THRESHOLD_BYTES) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            byte[] data = new byte[(int) size];
+            raw.readFully(data);
+            return ByteBuffer.wrap(data);
+        }
+    }
+
+    /**
+     * Decodes an encoded file held in {@code buffer}, verifying the checksum before any config is
+     * passed to {@code sink}.
+     *
+     * @return checksum of the file
+     */
+    static long decode(@NonNull ByteBuffer buffer, @NonNull Consumer<MeditationConfig> sink) throws IOException {
+        ByteBuffer body = openBody(buffer, MAGIC);
+        try {
+            String[] strings = readStrings(body);
+            int configCount = readCount(body);
+            for (int i = 0; i < configCount; i++) {
+                String name = readString(body, strings);
+                int totalMinutes = ConfigJsonReader.clampTotalMinutes(readVarint(body));
+                int stageCount = readCount(body);
+                List<MeditationStage> stages = new ArrayList<>(stageCount);
+                for (int s = 0; s < stageCount; s++) {
+                    stages.add(readStage(body, strings));
+                }
+                sink.accept(new MeditationConfig(name, totalMinutes, stages));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Config snapshot truncated", e);
+        }
+        return buffer.getInt(12) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Verifies the header and checksum of an encoded file.
+     *
+     * @return the body, positioned at its start
+     */
+    @NonNull
+    private static ByteBuffer openBody(@NonNull ByteBuffer buffer, int magic) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != magic) {
+            throw new IOException("Not a config file");
+        }
+        short version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported config file version " + version);
+        }
+        int bodyLength = buffer.getInt(8);
+        if (bodyLength < 0 || bodyLength != buffer.limit() - HEADER_SIZE) {
+            throw new IOException("Config file truncated");
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.position(HEADER_SIZE);
+        crc.update(body);
+        if (crc.getValue() != (buffer.getInt(12) & 0xFFFFFFFFL)) {
+            throw new IOException("Config file checksum mismatch");
+        }
+        body.position(HEADER_SIZE);
+        return body;
+    }
+
+    @NonNull
+    private static String[] readStrings(@NonNull ByteBuffer in) throws IOException {
+        String[] strings = new String[readCount(in)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readCount(in)];
+            in.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static void writeStage(@NonNull ByteArrayOutputStream out, @NonNull Map<String, Integer> strings,
+                                   @NonNull MeditationStage stage) {
+        writeVarint(out, intern(strings, stage.getName()));
+        writeVarint(out, stage.getMinutes());
+        writeVarint(out, stage.getRepeatMinutes());
+        BreathingPattern breathing = stage.getBreathing();
+        out.write(breathing != null ? FLAG_BREATHING : 0);
+        out.write(stage.getCueVibration().ordinal());
+        if (breathing != null) {
+            writeVarint(out, breathing.getInhaleSeconds());
+            writeVarint(out, breathing.getHoldSeconds());
+            writeVarint(out, breathing.getExhaleSeconds());
+        }
+        List<String> sounds = stage.getSounds();
+        writeVarint(out, sounds.size());
+        for (String sound : sounds) {
+            writeVarint(out, intern(strings, sound));
+        }
+    }
+
+    @NonNull
+    private static MeditationStage readStage(@NonNull ByteBuffer in, @NonNull String[] strings) throws IOException {
+        String name = readString(in, strings);
+        int minutes = ConfigJsonReader.clampStageMinutes(readVarint(in));
+        int repeatMinutes = ConfigJsonReader.clampRepeatMinutes(readVarint(in));
+        int flags = in.get() & 0xFF;
+        int vibration = in.get() & 0xFF;
+        BreathingPattern breathing = null;
+        if ((flags & FLAG_BREATHING) != 0) {
+            breathing = new BreathingPattern(readVarint(in), readVarint(in), readVarint(in)).sanitized();
+        }
+        int soundCount = readCount(in);
+        List<String> sounds = soundCount == 0 ? Collections.emptyList() : new ArrayList<>(soundCount);
+        for (int i = 0; i < soundCount; i++) {
+            sounds.add(readString(in, strings));
+        }
+        CueVibration cueVibration = vibration < CUE_VIBRATIONS.length ? CUE_VIBRATIONS[vibration] : null;
+        return new MeditationStage(name, minutes, repeatMinutes, sounds, breathing, cueVibration);
+    }
+
+    private static int intern(@NonNull Map<String, Integer> strings, String value) {
+        String key = value == null ? "" : value;
+        Integer index = strings.get(key);
+        if (index == null) {
+            index = strings.size();
+            strings.put(key, index);
+        }
+        return index;
+    }
+
+    @NonNull
+    private static String readString(@NonNull ByteBuffer in, @NonNull String[] strings) throws IOException {
+        int index = readVarint(in);
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("String index out of range: " + index);
+        }
+        return strings[index];
+    }
+
+    /**
+     * Reads a count or length, which can never exceed the bytes left in the buffer.
+     */
+    private static int readCount(@NonNull ByteBuffer in) throws IOException {
+        int count = readVarint(in);
+        if (count < 0 || count > in.remaining()) {
+            throw new IOException("Count out of range: " + count);
+        }
+        return count;
+    }
+
+    private static void writeVarint(@NonNull ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(@NonNull ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Contents of an index file.
+     */
+    static final class Index {
+        final List<ConfigSummary> summaries;
+        final int nextId;
+
+        Index(@NonNull List<ConfigSummary> summaries, int nextId) {
+            this.summaries = summaries;
+            this.nextId = nextId;
+        }
+    }
+}
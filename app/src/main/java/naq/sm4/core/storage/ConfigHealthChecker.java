@@ -0,0 +1,184 @@
+package naq.sm4.core.storage;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import naq.sm4.data.ConfigHealth;
+import naq.sm4.data.ConfigSummary;
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+
+/**
+ * Process-wide cache of {@link ConfigHealth} for every known config. Each config is resolved
+ * against {@link SoundIndex} once when it becomes known; afterwards a sound appearing or
+ * disappearing only revisits the configs that reference it, through a reverse index from sound
+ * name to configs. Reading a status is a map lookup and never touches the file system. Configs
+ * are tracked by their {@link ConfigSummary}, which lists every sound they reference.
+ */
+public final class ConfigHealthChecker implements SoundIndex.Listener {
+
+    private static ConfigHealthChecker instance;
+
+    private final SoundIndex soundIndex;
+    private final Map<ConfigSummary, Set<String>> missingByConfig = new HashMap<>();
+    private final Map<ConfigSummary, ConfigHealth> healthByConfig = new HashMap<>();
+    private final Map<String, Set<ConfigSummary>> configsBySound = new HashMap<>();
+    private final MutableLiveData<Integer> revision = new MutableLiveData<>(0);
+    private int revisionCounter;
+
+    private ConfigHealthChecker(@NonNull SoundIndex soundIndex) {
+        this.soundIndex = soundIndex;
+        soundIndex.addListener(this);
+    }
+
+    public static synchronized ConfigHealthChecker getInstance() {
+        if (instance == null) {
+            instance = new ConfigHealthChecker(SoundIndex.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * @return counter bumped whenever any cached status changes, so lists can rebind.
+     */
+    @NonNull
+    public LiveData<Integer> getRevision() {
+        return revision;
+    }
+
+    /**
+     * Makes {@code configs} the set of tracked configs. Configs already tracked keep their cached
+     * status; only new ones are resolved, and ones no longer present are dropped.
+     */
+    public synchronized void setConfigs(@NonNull List<ConfigSummary> configs) {
+        Set<ConfigSummary> current = new HashSet<>(configs);
+        boolean changed = false;
+        for (ConfigSummary known : new HashSet<>(healthByConfig.keySet())) {
+            if (!current.contains(known)) {
+                untrack(known);
+                changed = true;
+            }
+        }
+        for (ConfigSummary config : current) {
+            if (!healthByConfig.containsKey(config)) {
+                track(config);
+                changed = true;
+            }
+        }
+        if (changed) {
+            publishRevision();
+        }
+    }
+
+    /**
+     * @return cached status of {@code config}, resolving it on first use.
+     */
+    @NonNull
+    public synchronized ConfigHealth getHealth(@NonNull ConfigSummary config) {
+        ConfigHealth health = healthByConfig.get(config);
+        if (health == null) {
+            health = track(config);
+        }
+        return health;
+    }
+
+    /**
+     * @return status of a loaded config, resolved against the sound index without tracking it.
+     */
+    @NonNull
+    public ConfigHealth getHealth(@NonNull MeditationConfig config) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (MeditationStage stage : config.getStages()) {
+            for (String sound : stage.getSounds()) {
+                if (!soundIndex.contains(sound)) {
+                    missing.add(sound);
+                }
+            }
+        }
+        return ConfigHealth.of(missing);
+    }
+
+    @Override
+    public synchronized void onSoundAdded(@NonNull String fileName) {
+        Set<ConfigSummary> users = configsBySound.get(fileName);
+        if (users == null) {
+            return;
+        }
+        for (ConfigSummary config : users) {
+            Set<String> missing = missingByConfig.get(config);
+            if (missing != null && missing.remove(fileName)) {
+                healthByConfig.put(config, ConfigHealth.of(missing));
+            }
+        }
+        publishRevision();
+    }
+
+    @Override
+    public synchronized void onSoundRemoved(@NonNull String fileName) {
+        Set<ConfigSummary> users = configsBySound.get(fileName);
+        if (users == null) {
+            return;
+        }
+        for (ConfigSummary config : users) {
+            Set<String> missing = missingByConfig.get(config);
+            if (missing != null && !missing.contains(fileName)) {
+                // Re-resolve so the reported list stays in stage order.
+                Set<String> ordered = resolveMissing(config);
+                missingByConfig.put(config, ordered);
+                healthByConfig.put(config, ConfigHealth.of(ordered));
+            }
+        }
+        publishRevision();
+    }
+
+    @NonNull
+    private ConfigHealth track(@NonNull ConfigSummary config) {
+        for (String sound : config.getSounds()) {
+            Set<ConfigSummary> users = configsBySound.get(sound);
+            if (users == null) {
+                users = new HashSet<>();
+                configsBySound.put(sound, users);
+            }
+            users.add(config);
+        }
+        Set<String> missing = resolveMissing(config);
+        ConfigHealth health = ConfigHealth.of(missing);
+        missingByConfig.put(config, missing);
+        healthByConfig.put(config, health);
+        return health;
+    }
+
+    private void untrack(@NonNull ConfigSummary config) {
+        missingByConfig.remove(config);
+        healthByConfig.remove(config);
+        for (String sound : config.getSounds()) {
+            Set<ConfigSummary> users = configsBySound.get(sound);
+            if (users != null && users.remove(config) && users.isEmpty()) {
+                configsBySound.remove(sound);
+            }
+        }
+    }
+
+    @NonNull
+    private Set<String> resolveMissing(@NonNull ConfigSummary config) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String sound : config.getSounds()) {
+            if (!soundIndex.contains(sound)) {
+                missing.add(sound);
+            }
+        }
+        return missing;
+    }
+
+    private void publishRevision() {
+        revision.postValue(++revisionCounter);
+    }
+}
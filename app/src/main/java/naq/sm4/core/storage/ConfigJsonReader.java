@@ -0,0 +1,119 @@
+package naq.sm4.core.storage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import naq.sm4.data.BreathingPattern;
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+
+/**
+ * Single-pass reader for the JSON config format. Each config is built by
+ * {@link ModelTypeAdapters#CONFIG}, which sanitizes while the tokens stream past, and is handed
+ * to the caller as soon as its closing brace has been read. Also owns the value ranges every
+ * config is clamped to.
+ */
+final class ConfigJsonReader {
+
+    static final int MAX_TOTAL_MINUTES = 180;
+    static final int MAX_STAGE_MINUTES = 180;
+    static final int MAX_REPEAT_MINUTES = 60;
+
+    private ConfigJsonReader() {
+    }
+
+    /**
+     * Reads a JSON array of configs, passing each one to {@code sink} in file order.
+     *
+     * @return number of configs read
+     * @throws IOException when the input is not well-formed JSON; configs read before the error
+     *                     have already been delivered
+     */
+    static int readList(@NonNull Reader in, @NonNull Consumer<MeditationConfig> sink) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        reader.setStrictness(Strictness.LENIENT);
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return 0;
+        }
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            MeditationConfig config = readConfig(reader);
+            if (config != null) {
+                sink.accept(config);
+                count++;
+            }
+        }
+        reader.endArray();
+        return count;
+    }
+
+    /**
+     * Reads one config object through {@link ModelTypeAdapters#CONFIG}.
+     *
+     * @return the sanitized config, or {@code null} for a JSON {@code null} or a non-object value
+     */
+    @Nullable
+    static MeditationConfig readConfig(@NonNull JsonReader reader) throws IOException {
+        return ModelTypeAdapters.CONFIG.read(reader);
+    }
+
+    static int clampTotalMinutes(int totalMinutes) {
+        return Math.max(1, Math.min(totalMinutes, MAX_TOTAL_MINUTES));
+    }
+
+    static int clampStageMinutes(int minutes) {
+        return Math.max(1, Math.min(minutes, MAX_STAGE_MINUTES));
+    }
+
+    static int clampRepeatMinutes(int repeat) {
+        return Math.max(0, Math.min(repeat, MAX_REPEAT_MINUTES));
+    }
+
+    /**
+     * Defensive copy of a config from any source, ensuring no {@code null} entries or
+     * out-of-range values leak into the app.
+     */
+    @NonNull
+    static MeditationConfig sanitize(@NonNull MeditationConfig config) {
+        String name = config.getName() == null ? "" : config.getName();
+        int totalMinutes = clampTotalMinutes(config.getTotalMinutes());
+        List<MeditationStage> stages = config.getStages() == null
+                ? Collections.emptyList()
+                : sanitizeStages(config.getStages());
+        return new MeditationConfig(name, totalMinutes, stages);
+    }
+
+    /**
+     * Sanitises child stage definitions, clamping durations and removing {@code null} references.
+     */
+    @NonNull
+    private static List<MeditationStage> sanitizeStages(@NonNull List<MeditationStage> stages) {
+        List<MeditationStage> sanitized = new ArrayList<>();
+        for (MeditationStage stage : stages) {
+            if (stage == null) {
+                continue;
+            }
+            String name = stage.getName() == null ? "" : stage.getName();
+            int minutes = clampStageMinutes(stage.getMinutes());
+            int repeat = clampRepeatMinutes(stage.getRepeatMinutes());
+            List<String> sounds = stage.getSounds() == null ? Collections.emptyList() : stage.getSounds();
+            BreathingPattern breathing = stage.getBreathing() == null ? null : stage.getBreathing().sanitized();
+            sanitized.add(new MeditationStage(name, minutes, repeat, new ArrayList<>(sounds), breathing,
+                    stage.getCueVibration()));
+        }
+        return sanitized;
+    }
+}
@@ -6,133 +6,378 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonSyntaxException;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 
-import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
+import naq.sm4.core.timer.QuickStartPlanStore;
+import naq.sm4.data.ConfigSummary;
 import naq.sm4.data.MeditationConfig;
-import naq.sm4.data.MeditationStage;
 
 /**
- * Repository responsible for persisting {@link MeditationConfig} collections to disk using JSON
- * serialization. Input data is sanitised before being written to prevent corrupt or invalid
- * entries.
+ * Repository responsible for persisting {@link MeditationConfig} collections. Every config is a
+ * shard of its own in the configs directory, and a small index lists the shards in display order
+ * together with the {@link ConfigSummary} a config card shows; {@link ConfigShardStore} owns
+ * those files. Loading the list reads only the index; the stages of a config are read from its
+ * shard when it is edited or started. Saving one config writes its shard under a fresh id and
+ * then the index, so the index always names complete shards, and the shard it replaced is deleted
+ * afterwards. Input data is sanitised before being written to prevent corrupt or invalid entries.
+ *
+ * <p>JSON remains the exchange format: {@link #exportConfigs} and {@link #importConfigs} read and
+ * write it. The {@code configs.json} of earlier versions is migrated the first time the index is
+ * missing.
  */
 public class ConfigRepository {
 
     private static final String TAG = "ConfigRepo";
-    private static final Gson GSON_INSTANCE = new GsonBuilder().setPrettyPrinting().create();
-    private static final Type CONFIG_LIST_TYPE = new TypeToken<List<MeditationConfig>>() {
-    }.getType();
+    private static final Object LOCK = new Object();
+
+    // Guarded by LOCK, as is every call into it but ConfigShardStore#read.
+    private static ConfigShardStore store;
 
     /**
-     * Loads saved configurations from storage, returning an empty list when the file is missing or
-     * parsing fails. Invalid entries are filtered out and normalised.
+     * Loads the summaries of the saved configurations in display order, returning an empty list
+     * when the store cannot be read.
      */
     @NonNull
-    public List<MeditationConfig> loadConfigs(@NonNull Context context) {
-        try {
-            File configFile = StorageHelper.getConfigFile(context);
-            if (!configFile.exists()) {
+    public List<ConfigSummary> loadSummaries(@NonNull Context context) {
+        synchronized (LOCK) {
+            try {
+                return new ArrayList<>(store(context).load());
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to load configs", e);
                 return new ArrayList<>();
             }
-            String json = StorageHelper.readTextFile(configFile);
-            List<MeditationConfig> parsed = GSON_INSTANCE.fromJson(json, CONFIG_LIST_TYPE);
-            if (parsed == null) {
-                return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Reads the full configuration behind {@code summary}.
+     *
+     * @return the config, or {@code null} when its shard cannot be read.
+     */
+    @Nullable
+    public MeditationConfig loadConfig(@NonNull Context context, @NonNull ConfigSummary summary) {
+        try {
+            ConfigShardStore shards;
+            synchronized (LOCK) {
+                shards = store(context);
             }
-            return sanitizeConfigs(parsed);
-        } catch (IOException | JsonSyntaxException e) {
-            Log.e(TAG, "Failed to load configs", e);
-            return new ArrayList<>();
+            // Shards are never rewritten in place, so no lock is needed to read one.
+            return shards.read(summary.getId());
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to load config " + summary.getId(), e);
+            return null;
         }
     }
 
     /**
-     * Serialises the provided configuration list to disk, replacing any previous content.
+     * Loads every saved configuration with its stages. This reads all shards; screens that list
+     * configs should use {@link #loadSummaries} instead.
+     */
+    @NonNull
+    public List<MeditationConfig> loadConfigs(@NonNull Context context) {
+        List<MeditationConfig> configs = new ArrayList<>();
+        for (ConfigSummary summary : loadSummaries(context)) {
+            MeditationConfig config = loadConfig(context, summary);
+            if (config != null) {
+                configs.add(config);
+            }
+        }
+        return configs;
+    }
+
+    /**
+     * Replaces the whole configuration list.
      *
      * @return {@code true} when the write succeeds.
      */
     public boolean saveConfigs(@NonNull Context context, @NonNull List<MeditationConfig> configs) {
+        List<MeditationConfig> saved = sanitizeConfigs(configs);
+        synchronized (LOCK) {
+            ConfigShardStore shards;
+            List<ConfigSummary> previous;
+            List<ConfigSummary> summaries = new ArrayList<>(saved.size());
+            try {
+                shards = store(context);
+                previous = shards.load();
+                for (MeditationConfig config : saved) {
+                    summaries.add(shards.write(config));
+                }
+                shards.writeIndex(summaries);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to save configs", e);
+                return false;
+            }
+            for (ConfigSummary summary : previous) {
+                shards.delete(summary);
+            }
+            refreshQuickStartPlan(context, summaries, saved);
+        }
+        return true;
+    }
+
+    /**
+     * Stores {@code config} as the first entry.
+     *
+     * @return the summaries in display order after the insert, or {@code null} when the config
+     * could not be stored.
+     */
+    @Nullable
+    public List<ConfigSummary> addConfig(@NonNull Context context, @NonNull MeditationConfig config) {
+        MeditationConfig sanitized = ConfigJsonReader.sanitize(config);
+        synchronized (LOCK) {
+            try {
+                ConfigShardStore shards = store(context);
+                List<ConfigSummary> summaries = new ArrayList<>(shards.load());
+                summaries.add(0, shards.write(sanitized));
+                shards.writeIndex(summaries);
+                return new ArrayList<>(summaries);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to add config", e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Stores {@code configs} after the existing entries, writing the index once.
+     *
+     * @return the summaries in display order after the insert, or {@code null} when the configs
+     * could not be stored.
+     */
+    @Nullable
+    public List<ConfigSummary> appendConfigs(@NonNull Context context, @NonNull List<MeditationConfig> configs) {
+        List<MeditationConfig> sanitized = sanitizeConfigs(configs);
+        synchronized (LOCK) {
+            ConfigShardStore shards = null;
+            List<ConfigSummary> written = new ArrayList<>(sanitized.size());
+            try {
+                shards = store(context);
+                List<ConfigSummary> summaries = new ArrayList<>(shards.load());
+                for (MeditationConfig config : sanitized) {
+                    written.add(shards.write(config));
+                }
+                summaries.addAll(written);
+                shards.writeIndex(summaries);
+                return new ArrayList<>(summaries);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to append configs", e);
+                for (ConfigSummary summary : written) {
+                    shards.delete(summary);
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Replaces the config {@code original} summarises, writing its shard and the index only. The
+     * entry is looked up by id, so it is found wherever other changes have moved it.
+     *
+     * @return the summaries in display order after the update, or {@code null} when the config
+     * could not be stored or no longer exists.
+     */
+    @Nullable
+    public List<ConfigSummary> updateConfig(@NonNull Context context, @NonNull ConfigSummary original,
+                                            @NonNull MeditationConfig config) {
+        MeditationConfig sanitized = ConfigJsonReader.sanitize(config);
+        synchronized (LOCK) {
+            ConfigShardStore shards;
+            List<ConfigSummary> summaries;
+            ConfigSummary replaced;
+            ConfigSummary saved;
+            try {
+                shards = store(context);
+                summaries = new ArrayList<>(shards.load());
+                int index = indexOf(summaries, original);
+                if (index < 0) {
+                    Log.w(TAG, "Rejected update of missing config " + original.getId());
+                    return null;
+                }
+                saved = shards.write(sanitized);
+                replaced = summaries.set(index, saved);
+                shards.writeIndex(summaries);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to update config", e);
+                return null;
+            }
+            shards.delete(replaced);
+            // Under the lock, so that consecutive edits reach the cache in the order of their ids.
+            try {
+                quickStartStore(context).replace(replaced.getId(), saved.getId(), sanitized);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to refresh quick-start plan", e);
+            }
+            return new ArrayList<>(summaries);
+        }
+    }
+
+    /**
+     * Removes the config {@code summary} describes. Removing a config that is already gone
+     * succeeds without writing anything.
+     *
+     * @return the summaries in display order after the removal, or {@code null} when the change
+     * could not be stored.
+     */
+    @Nullable
+    public List<ConfigSummary> deleteConfig(@NonNull Context context, @NonNull ConfigSummary summary) {
+        synchronized (LOCK) {
+            ConfigShardStore shards;
+            List<ConfigSummary> summaries;
+            ConfigSummary removed;
+            try {
+                shards = store(context);
+                summaries = new ArrayList<>(shards.load());
+                int index = indexOf(summaries, summary);
+                if (index < 0) {
+                    return summaries;
+                }
+                removed = summaries.remove(index);
+                shards.writeIndex(summaries);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to delete config", e);
+                return null;
+            }
+            shards.delete(removed);
+            try {
+                quickStartStore(context).remove(removed.getId());
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to refresh quick-start plan", e);
+            }
+            return new ArrayList<>(summaries);
+        }
+    }
+
+    /**
+     * Moves the config {@code summary} describes to position {@code to} of the display order,
+     * clamped to the list. Only the index is written.
+     *
+     * @return the summaries in display order after the move, or {@code null} when the change
+     * could not be stored.
+     */
+    @Nullable
+    public List<ConfigSummary> moveConfig(@NonNull Context context, @NonNull ConfigSummary summary, int to) {
+        synchronized (LOCK) {
+            try {
+                ConfigShardStore shards = store(context);
+                List<ConfigSummary> summaries = new ArrayList<>(shards.load());
+                int from = indexOf(summaries, summary);
+                int target = Math.max(0, Math.min(to, summaries.size() - 1));
+                if (from < 0 || from == target) {
+                    return summaries;
+                }
+                summaries.add(target, summaries.remove(from));
+                shards.writeIndex(summaries);
+                return new ArrayList<>(summaries);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to move config", e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Writes the current configuration list to {@code out} as JSON, the format shared with other
+     * installs and earlier versions. The stream is left open.
+     *
+     * @return {@code true} when the export succeeds.
+     */
+    public boolean exportConfigs(@NonNull Context context, @NonNull OutputStream out) {
+        List<MeditationConfig> configs = loadConfigs(context);
         try {
-            File configFile = StorageHelper.getConfigFile(context);
-            String serialized = GSON_INSTANCE.toJson(configs, CONFIG_LIST_TYPE);
-            StorageHelper.writeTextFile(configFile, serialized);
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.setIndent("  ");
+            ModelTypeAdapters.writeConfigs(writer, configs);
+            writer.flush();
             return true;
         } catch (IOException e) {
-            Log.e(TAG, "Failed to save configs", e);
+            Log.e(TAG, "Failed to export configs", e);
             return false;
         }
     }
 
     /**
-     * Defensive copy ensuring no {@code null} entries or out-of-range values leak into the app.
+     * Reads a JSON configuration list such as one written by {@link #exportConfigs}. Nothing is
+     * stored; pass the result to {@link #appendConfigs} or {@link #saveConfigs} to keep it.
+     *
+     * @return the sanitised configs, or an empty list when the input is not a readable list.
      */
     @NonNull
-    private List<MeditationConfig> sanitizeConfigs(@Nullable List<MeditationConfig> configs) {
-        if (configs == null) {
+    public List<MeditationConfig> importConfigs(@NonNull InputStream in) {
+        List<MeditationConfig> configs = new ArrayList<>();
+        try {
+            ConfigJsonReader.readList(new InputStreamReader(in, StandardCharsets.UTF_8), configs::add);
+            return configs;
+        } catch (IOException | IllegalStateException e) {
+            Log.e(TAG, "Failed to import configs", e);
             return new ArrayList<>();
         }
-        List<MeditationConfig> sanitized = new ArrayList<>();
-        for (MeditationConfig config : configs) {
-            if (config == null) {
-                continue;
-            }
-            String name = config.getName() == null ? "" : config.getName();
-            int totalMinutes = clampTotalMinutes(config.getTotalMinutes());
-            List<MeditationStage> stages = config.getStages() == null
-                    ? Collections.emptyList()
-                    : sanitizeStages(config.getStages());
-            sanitized.add(new MeditationConfig(name, totalMinutes, stages));
-        }
-        return sanitized;
     }
 
     /**
-     * Sanitises child stage definitions, clamping durations and removing {@code null} references.
+     * Opens the shard store on first use. Must be called with {@link #LOCK} held.
      */
     @NonNull
-    private List<MeditationStage> sanitizeStages(@NonNull List<MeditationStage> stages) {
-        List<MeditationStage> sanitized = new ArrayList<>();
-        for (MeditationStage stage : stages) {
-            if (stage == null) {
-                continue;
-            }
-            String name = stage.getName() == null ? "" : stage.getName();
-            int minutes = clampStageMinutes(stage.getMinutes());
-            int repeat = clampRepeatMinutes(stage.getRepeatMinutes());
-            List<String> sounds = stage.getSounds() == null ? Collections.emptyList() : stage.getSounds();
-            sanitized.add(new MeditationStage(name, minutes, repeat, new ArrayList<>(sounds)));
+    private static ConfigShardStore store(@NonNull Context context) throws IOException {
+        if (store == null) {
+            store = new ConfigShardStore(StorageHelper.ensureConfigDirectory(context));
         }
-        return sanitized;
+        return store;
     }
 
-    private int clampTotalMinutes(int totalMinutes) {
-        if (totalMinutes < 1) {
-            return 1;
+    private static int indexOf(@NonNull List<ConfigSummary> summaries, @NonNull ConfigSummary summary) {
+        for (int i = 0; i < summaries.size(); i++) {
+            if (summaries.get(i).getId() == summary.getId()) {
+                return i;
+            }
         }
-        return Math.min(totalMinutes, 180);
+        return -1;
     }
 
-    private int clampStageMinutes(int minutes) {
-        if (minutes < 1) {
-            return 1;
+    /**
+     * Keeps the cached quick-start plan in step with a configuration list stored under new ids.
+     */
+    private static void refreshQuickStartPlan(@NonNull Context context, @NonNull List<ConfigSummary> summaries,
+                                              @NonNull List<MeditationConfig> configs) {
+        List<Integer> ids = new ArrayList<>(summaries.size());
+        for (ConfigSummary summary : summaries) {
+            ids.add(summary.getId());
         }
-        return Math.min(minutes, 180);
+        try {
+            quickStartStore(context).refresh(ids, configs);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to refresh quick-start plan", e);
+        }
+    }
+
+    @NonNull
+    private static QuickStartPlanStore quickStartStore(@NonNull Context context) {
+        return new QuickStartPlanStore(StorageHelper.getQuickStartPlanFile(context));
     }
 
-    private int clampRepeatMinutes(int repeat) {
-        if (repeat < 0) {
-            return 0;
+    /**
+     * Defensive copy ensuring no {@code null} entries or out-of-range values leak into the app.
+     */
+    @NonNull
+    private static List<MeditationConfig> sanitizeConfigs(@Nullable List<MeditationConfig> configs) {
+        if (configs == null) {
+            return new ArrayList<>();
+        }
+        List<MeditationConfig> sanitized = new ArrayList<>();
+        for (MeditationConfig config : configs) {
+            if (config == null) {
+                continue;
+            }
+            sanitized.add(ConfigJsonReader.sanitize(config));
         }
-        return Math.min(repeat, 60);
+        return sanitized;
     }
 }
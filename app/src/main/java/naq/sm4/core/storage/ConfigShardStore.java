@@ -0,0 +1,205 @@
+package naq.sm4.core.storage;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import naq.sm4.core.StorageConstants;
+import naq.sm4.data.ConfigSummary;
+import naq.sm4.data.MeditationConfig;
+
+/**
+ * The files behind {@link ConfigRepository}: one shard per config, named by its id, and an index
+ * listing the shards in display order together with their {@link ConfigSummary}. The index also
+ * records the id the next shard gets, so the id of a deleted config is never handed out again.
+ *
+ * <p>{@link #load()} reads the index on first use. A damaged index is rebuilt from the shards in
+ * the order they were first saved, a missing one is created by migrating the {@code configs.json}
+ * of earlier versions, if any, and shards the index does not name, left by an interrupted save, are
+ * deleted.
+ *
+ * <p>Not thread-safe: the repository calls every method but {@link #read} under its lock.
+ * Shards are never rewritten in place, so reading one needs no lock.
+ */
+final class ConfigShardStore {
+
+    private static final String TAG = "ConfigShardStore";
+
+    private final File directory;
+    private final File indexFile;
+
+    // The index once loaded, and the id the next saved shard gets.
+    private List<ConfigSummary> current;
+    private int nextId;
+
+    ConfigShardStore(@NonNull File directory) {
+        this.directory = directory;
+        this.indexFile = new File(directory, StorageConstants.CONFIG_INDEX_FILE);
+    }
+
+    /**
+     * @return the summaries in display order; the list must not be modified.
+     */
+    @NonNull
+    List<ConfigSummary> load() throws IOException {
+        if (current != null) {
+            return current;
+        }
+        List<ConfigSummary> summaries;
+        if (indexFile.exists()) {
+            try {
+                ConfigBinaryCodec.Index index = ConfigBinaryCodec.readIndex(indexFile);
+                summaries = index.summaries;
+                nextId = Math.max(index.nextId, nextIdAfter(summaries));
+            } catch (IOException e) {
+                Log.e(TAG, "Config index is damaged, rebuilding it from the shards", e);
+                summaries = rebuildIndex();
+            }
+        } else {
+            summaries = migrate();
+        }
+        removeOrphanShards(summaries);
+        current = summaries;
+        return current;
+    }
+
+    /**
+     * Stores {@code config} in a new shard, which no index names until {@link #writeIndex}.
+     */
+    @NonNull
+    ConfigSummary write(@NonNull MeditationConfig config) throws IOException {
+        int id = nextId++;
+        byte[] data = ConfigBinaryCodec.encode(Collections.singletonList(config));
+        StorageHelper.writeFileAtomically(shardFile(id), data);
+        return ConfigSummary.of(id, config);
+    }
+
+    /**
+     * @return the config stored under {@code id}.
+     */
+    @NonNull
+    MeditationConfig read(int id) throws IOException {
+        List<MeditationConfig> configs = new ArrayList<>(1);
+        ConfigBinaryCodec.read(shardFile(id), configs::add);
+        if (configs.size() != 1) {
+            throw new IOException("Config shard " + id + " holds " + configs.size() + " configs");
+        }
+        return configs.get(0);
+    }
+
+    /**
+     * Replaces the index with {@code summaries}, which {@link #load()} returns from now on.
+     */
+    void writeIndex(@NonNull List<ConfigSummary> summaries) throws IOException {
+        StorageHelper.writeFileAtomically(indexFile, ConfigBinaryCodec.encodeIndex(summaries, nextId));
+        current = summaries;
+    }
+
+    /**
+     * Deletes the shard of a config the index no longer names. A shard left behind is removed on
+     * the next first load.
+     */
+    void delete(@NonNull ConfigSummary summary) {
+        File file = shardFile(summary.getId());
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Unable to delete config shard " + file.getName());
+        }
+    }
+
+    /**
+     * Moves the configs of the earlier {@code configs.json}, if any, into shards.
+     */
+    @NonNull
+    private List<ConfigSummary> migrate() throws IOException {
+        List<MeditationConfig> configs = LegacyConfigStore.load(directory);
+        nextId = 0;
+        List<ConfigSummary> summaries = new ArrayList<>(configs.size());
+        for (MeditationConfig config : configs) {
+            summaries.add(write(ConfigJsonReader.sanitize(config)));
+        }
+        writeIndex(summaries);
+        LegacyConfigStore.delete(directory);
+        return summaries;
+    }
+
+    /**
+     * Lists every readable shard in the order it was first saved, which is the best order left
+     * once the index is lost.
+     */
+    @NonNull
+    private List<ConfigSummary> rebuildIndex() throws IOException {
+        List<ConfigSummary> summaries = new ArrayList<>();
+        TreeMap<Integer, File> shards = listShards();
+        for (Map.Entry<Integer, File> shard : shards.entrySet()) {
+            try {
+                summaries.add(ConfigSummary.of(shard.getKey(), read(shard.getKey())));
+            } catch (IOException e) {
+                Log.w(TAG, "Dropping unreadable config shard " + shard.getValue().getName(), e);
+            }
+        }
+        // Unreadable shards count too: they are about to be deleted, and their ids stay spent.
+        nextId = shards.isEmpty() ? 0 : shards.lastKey() + 1;
+        writeIndex(summaries);
+        return summaries;
+    }
+
+    private void removeOrphanShards(@NonNull List<ConfigSummary> summaries) {
+        Set<Integer> listed = new HashSet<>();
+        for (ConfigSummary summary : summaries) {
+            listed.add(summary.getId());
+        }
+        for (Map.Entry<Integer, File> shard : listShards().entrySet()) {
+            if (!listed.contains(shard.getKey()) && !shard.getValue().delete()) {
+                Log.w(TAG, "Unable to delete orphan config shard " + shard.getValue().getName());
+            }
+        }
+    }
+
+    /**
+     * @return shard files in the directory, by id.
+     */
+    @NonNull
+    private TreeMap<Integer, File> listShards() {
+        TreeMap<Integer, File> shards = new TreeMap<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return shards;
+        }
+        String extension = StorageConstants.CONFIG_FILE_EXTENSION;
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(extension)) {
+                continue;
+            }
+            try {
+                shards.put(Integer.parseInt(name.substring(0, name.length() - extension.length())), file);
+            } catch (NumberFormatException e) {
+                // Not a shard.
+            }
+        }
+        return shards;
+    }
+
+    @NonNull
+    private File shardFile(int id) {
+        return new File(directory, id + StorageConstants.CONFIG_FILE_EXTENSION);
+    }
+
+    private static int nextIdAfter(@NonNull List<ConfigSummary> summaries) {
+        int next = 0;
+        for (ConfigSummary summary : summaries) {
+            next = Math.max(next, summary.getId() + 1);
+        }
+        return next;
+    }
+}
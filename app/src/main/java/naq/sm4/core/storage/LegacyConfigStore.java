@@ -0,0 +1,74 @@
+package naq.sm4.core.storage;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import naq.sm4.core.StorageConstants;
+import naq.sm4.data.MeditationConfig;
+
+/**
+ * Reader for {@code configs.json}, the single-file config store of earlier versions, kept so that
+ * it can be migrated. A damaged file is kept next to the store with a {@code .corrupt} suffix.
+ */
+final class LegacyConfigStore {
+
+    private static final String TAG = "LegacyConfigStore";
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private LegacyConfigStore() {
+    }
+
+    /**
+     * Reads the earlier store in {@code directory}, if any. A damaged file yields the configs that
+     * could be read before the damage.
+     */
+    @NonNull
+    static List<MeditationConfig> load(@NonNull File directory) throws IOException {
+        File file = file(directory);
+        List<MeditationConfig> configs = new ArrayList<>();
+        if (!file.exists()) {
+            return configs;
+        }
+        boolean damaged = false;
+        try (Reader reader = new InputStreamReader(
+                new BufferedInputStream(new FileInputStream(file), READ_BUFFER_SIZE), StandardCharsets.UTF_8)) {
+            ConfigJsonReader.readList(reader, configs::add);
+        } catch (MalformedJsonException | EOFException | IllegalStateException e) {
+            Log.e(TAG, "Config file is damaged after " + configs.size() + " configs, keeping a copy", e);
+            damaged = true;
+        }
+        if (damaged && !file.renameTo(new File(file.getPath() + ".corrupt"))) {
+            Log.w(TAG, "Unable to move damaged config file aside");
+        }
+        return configs;
+    }
+
+    /**
+     * Removes the earlier store in {@code directory} once its configs live elsewhere.
+     */
+    static void delete(@NonNull File directory) {
+        File file = file(directory);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Unable to delete migrated " + file.getName());
+        }
+    }
+
+    @NonNull
+    private static File file(@NonNull File directory) {
+        return new File(directory, StorageConstants.DEFAULT_CONFIG_FILE);
+    }
+}
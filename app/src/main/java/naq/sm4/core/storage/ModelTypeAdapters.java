@@ -0,0 +1,360 @@
+package naq.sm4.core.storage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import naq.sm4.data.BreathingPattern;
+import naq.sm4.data.CueVibration;
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+import naq.sm4.data.SettingsState;
+
+/**
+ * Hand-written Gson adapters for the persisted data model. Fields are read and written through
+ * the public constructors and getters, so no reflection is involved and nothing breaks when R8
+ * renames or strips the model's private fields. Every persistence path goes through these
+ * adapters: config import and export, the legacy config file and anything serialising
+ * {@link SettingsState}.
+ *
+ * <p>Configs and settings carry a {@code version} field. Files written before the field existed
+ * read as version 0 and are laid out exactly like version 1; a newer version is read for the
+ * fields this build knows, the rest being skipped like any unknown field. Reading sanitises as
+ * it goes: values are clamped, {@code null} entries dropped, and a field of the wrong type falls
+ * back to its default.
+ */
+public final class ModelTypeAdapters {
+
+    /** Version written with every config and settings object. */
+    static final int FORMAT_VERSION = 1;
+
+    public static final TypeAdapter<MeditationConfig> CONFIG = new ConfigAdapter();
+    public static final TypeAdapter<MeditationStage> STAGE = new StageAdapter();
+    public static final TypeAdapter<SettingsState> SETTINGS = new SettingsAdapter();
+
+    private static final CueVibration[] CUE_VIBRATIONS = CueVibration.values();
+
+    private ModelTypeAdapters() {
+    }
+
+    /**
+     * Registers the adapters on {@code builder}, so a {@link com.google.gson.Gson} built from it
+     * never falls back to reflection for the data model.
+     */
+    @NonNull
+    public static GsonBuilder register(@NonNull GsonBuilder builder) {
+        return builder.registerTypeAdapter(MeditationConfig.class, CONFIG)
+                .registerTypeAdapter(MeditationStage.class, STAGE)
+                .registerTypeAdapter(SettingsState.class, SETTINGS);
+    }
+
+    /**
+     * Writes {@code configs} as a JSON array.
+     */
+    static void writeConfigs(@NonNull JsonWriter writer, @NonNull List<MeditationConfig> configs) throws IOException {
+        writer.beginArray();
+        for (MeditationConfig config : configs) {
+            CONFIG.write(writer, config);
+        }
+        writer.endArray();
+    }
+
+    private static final class ConfigAdapter extends TypeAdapter<MeditationConfig> {
+
+        @Override
+        public void write(JsonWriter out, MeditationConfig config) throws IOException {
+            if (config == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("version").value(FORMAT_VERSION);
+            out.name("name").value(config.getName());
+            out.name("totalMinutes").value(config.getTotalMinutes());
+            out.name("stages").beginArray();
+            for (MeditationStage stage : config.getStages()) {
+                STAGE.write(out, stage);
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public MeditationConfig read(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                return null;
+            }
+            String name = "";
+            int totalMinutes = 0;
+            List<MeditationStage> stages = Collections.emptyList();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name":
+                        name = readString(in, "");
+                        break;
+                    case "totalMinutes":
+                        totalMinutes = readInt(in, 0);
+                        break;
+                    case "stages":
+                        stages = readStages(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return new MeditationConfig(name, ConfigJsonReader.clampTotalMinutes(totalMinutes), stages);
+        }
+    }
+
+    private static final class StageAdapter extends TypeAdapter<MeditationStage> {
+
+        @Override
+        public void write(JsonWriter out, MeditationStage stage) throws IOException {
+            if (stage == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("name").value(stage.getName());
+            out.name("minutes").value(stage.getMinutes());
+            out.name("repeatMinutes").value(stage.getRepeatMinutes());
+            out.name("sounds").beginArray();
+            for (String sound : stage.getSounds()) {
+                out.value(sound);
+            }
+            out.endArray();
+            BreathingPattern breathing = stage.getBreathing();
+            if (breathing != null) {
+                out.name("breathing").beginObject()
+                        .name("inhaleSeconds").value(breathing.getInhaleSeconds())
+                        .name("holdSeconds").value(breathing.getHoldSeconds())
+                        .name("exhaleSeconds").value(breathing.getExhaleSeconds())
+                        .endObject();
+            }
+            out.name("cueVibration").value(stage.getCueVibration().name());
+            out.endObject();
+        }
+
+        @Override
+        public MeditationStage read(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                return null;
+            }
+            String name = "";
+            int minutes = 0;
+            int repeatMinutes = 0;
+            List<String> sounds = Collections.emptyList();
+            BreathingPattern breathing = null;
+            CueVibration cueVibration = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name":
+                        name = readString(in, "");
+                        break;
+                    case "minutes":
+                        minutes = readInt(in, 0);
+                        break;
+                    case "repeatMinutes":
+                        repeatMinutes = readInt(in, 0);
+                        break;
+                    case "sounds":
+                        sounds = readSounds(in);
+                        break;
+                    case "breathing":
+                        breathing = readBreathing(in);
+                        break;
+                    case "cueVibration":
+                        cueVibration = readCueVibration(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return new MeditationStage(name, ConfigJsonReader.clampStageMinutes(minutes),
+                    ConfigJsonReader.clampRepeatMinutes(repeatMinutes), sounds, breathing, cueVibration);
+        }
+    }
+
+    private static final class SettingsAdapter extends TypeAdapter<SettingsState> {
+
+        @Override
+        public void write(JsonWriter out, SettingsState settings) throws IOException {
+            if (settings == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("version").value(FORMAT_VERSION);
+            out.name("vibrationStrengthPercent").value(settings.getVibrationStrengthPercent());
+            out.name("soundEnabled").value(settings.isSoundEnabled());
+            out.name("screenBrightnessPercent").value(settings.getScreenBrightnessPercent());
+            out.name("screenDimmingEnabled").value(settings.isScreenDimmingEnabled());
+            out.endObject();
+        }
+
+        @Override
+        public SettingsState read(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                return null;
+            }
+            SettingsState defaults = SettingsState.defaults();
+            int vibrationStrength = defaults.getVibrationStrengthPercent();
+            boolean soundEnabled = defaults.isSoundEnabled();
+            int screenBrightness = defaults.getScreenBrightnessPercent();
+            boolean screenDimming = defaults.isScreenDimmingEnabled();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "vibrationStrengthPercent":
+                        vibrationStrength = readInt(in, vibrationStrength);
+                        break;
+                    case "soundEnabled":
+                        soundEnabled = readBoolean(in, soundEnabled);
+                        break;
+                    case "screenBrightnessPercent":
+                        screenBrightness = readInt(in, screenBrightness);
+                        break;
+                    case "screenDimmingEnabled":
+                        screenDimming = readBoolean(in, screenDimming);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return new SettingsState(vibrationStrength, soundEnabled, screenBrightness, screenDimming);
+        }
+    }
+
+    @NonNull
+    private static List<MeditationStage> readStages(@NonNull JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return Collections.emptyList();
+        }
+        List<MeditationStage> stages = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            MeditationStage stage = STAGE.read(in);
+            if (stage != null) {
+                stages.add(stage);
+            }
+        }
+        in.endArray();
+        return stages;
+    }
+
+    @NonNull
+    private static List<String> readSounds(@NonNull JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return Collections.emptyList();
+        }
+        List<String> sounds = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            String sound = readString(in, null);
+            if (sound != null) {
+                sounds.add(sound);
+            }
+        }
+        in.endArray();
+        return sounds;
+    }
+
+    @Nullable
+    private static BreathingPattern readBreathing(@NonNull JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return null;
+        }
+        int inhale = 0;
+        int hold = 0;
+        int exhale = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "inhaleSeconds":
+                    inhale = readInt(in, 0);
+                    break;
+                case "holdSeconds":
+                    hold = readInt(in, 0);
+                    break;
+                case "exhaleSeconds":
+                    exhale = readInt(in, 0);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new BreathingPattern(inhale, hold, exhale).sanitized();
+    }
+
+    @Nullable
+    private static CueVibration readCueVibration(@NonNull JsonReader in) throws IOException {
+        String value = readString(in, null);
+        if (value == null) {
+            return null;
+        }
+        for (CueVibration vibration : CUE_VIBRATIONS) {
+            if (vibration.name().equals(value)) {
+                return vibration;
+            }
+        }
+        return null;
+    }
+
+    private static int readInt(@NonNull JsonReader in, int fallback) throws IOException {
+        JsonToken token = in.peek();
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING) {
+            in.skipValue();
+            return fallback;
+        }
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            in.skipValue();
+            return fallback;
+        }
+    }
+
+    private static boolean readBoolean(@NonNull JsonReader in, boolean fallback) throws IOException {
+        if (in.peek() != JsonToken.BOOLEAN) {
+            in.skipValue();
+            return fallback;
+        }
+        return in.nextBoolean();
+    }
+
+    @Nullable
+    private static String readString(@NonNull JsonReader in, @Nullable String fallback) throws IOException {
+        JsonToken token = in.peek();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            in.skipValue();
+            return fallback;
+        }
+        return in.nextString();
+    }
+}
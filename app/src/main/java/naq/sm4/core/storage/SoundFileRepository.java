@@ -41,11 +41,14 @@ public class SoundFileRepository {
     }
 
     /**
-     * @return sorted list of available audio file names in the working directory.
+     * @return sorted list of available audio file names in the working directory. The listing also
+     * refreshes {@link SoundIndex}.
      */
     public List<String> loadSoundFiles() {
         try {
-            return StorageHelper.listAudioFileNamesSorted();
+            List<String> names = StorageHelper.listAudioFileNamesSorted();
+            SoundIndex.getInstance().replaceAll(names);
+            return names;
         } catch (IOException e) {
             Log.e(TAG, "Failed to list audio files", e);
             return Collections.emptyList();
@@ -57,7 +60,9 @@ public class SoundFileRepository {
      */
     public String importSound(@NonNull Context context, @NonNull Uri sourceUri, @NonNull String desiredName) {
         try {
-            return StorageHelper.copyToWorkingDirectory(context, sourceUri, desiredName);
+            String fileName = StorageHelper.copyToWorkingDirectory(context, sourceUri, desiredName);
+            SoundIndex.getInstance().add(fileName);
+            return fileName;
         } catch (IOException e) {
             Log.e(TAG, "Failed to copy sound file", e);
             return "";
@@ -69,7 +74,11 @@ public class SoundFileRepository {
      */
     public boolean deleteSound(@NonNull String fileName) {
         try {
-            return StorageHelper.deleteSound(fileName);
+            boolean deleted = StorageHelper.deleteSound(fileName);
+            if (deleted) {
+                SoundIndex.getInstance().remove(fileName);
+            }
+            return deleted;
         } catch (IOException e) {
             Log.e(TAG, "Failed to delete sound" + fileName, e);
             return false;
@@ -0,0 +1,180 @@
+package naq.sm4.core.storage;
+
+import android.os.FileObserver;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide, in-memory index of the audio files present in the working directory. It is
+ * filled by one directory scan and then kept current by a {@link FileObserver} plus explicit
+ * updates from {@link SoundFileRepository}, so "does this sound exist?" is a hash lookup that
+ * never touches the file system. Registered {@link Listener}s hear about every name that appears
+ * or disappears.
+ */
+public final class SoundIndex {
+
+    private static final String TAG = "SoundIndex";
+    private static final int OBSERVED_EVENTS = FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO
+            | FileObserver.DELETE | FileObserver.MOVED_FROM | FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+
+    /**
+     * Notified, on the thread that made the change, whenever a name enters or leaves the index.
+     */
+    public interface Listener {
+        void onSoundAdded(@NonNull String fileName);
+
+        void onSoundRemoved(@NonNull String fileName);
+    }
+
+    private static SoundIndex instance;
+
+    private final Set<String> names = ConcurrentHashMap.newKeySet();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean loaded;
+    private FileObserver observer;
+
+    private SoundIndex() {
+    }
+
+    public static synchronized SoundIndex getInstance() {
+        if (instance == null) {
+            instance = new SoundIndex();
+        }
+        return instance;
+    }
+
+    /**
+     * Scans the working directory once and starts watching it for changes. Safe to call again;
+     * later calls only rescan.
+     */
+    @WorkerThread
+    public void start() {
+        rescan();
+        synchronized (this) {
+            if (observer != null) {
+                return;
+            }
+            try {
+                File directory = StorageHelper.ensureWorkingDirectory();
+                observer = createObserver(directory);
+                observer.startWatching();
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to watch working directory", e);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} when an audio file with this exact name is present.
+     */
+    public boolean contains(@Nullable String fileName) {
+        if (fileName == null) {
+            return false;
+        }
+        ensureLoaded();
+        return names.contains(fileName);
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Records a file the app has just written into the working directory.
+     */
+    public void add(@NonNull String fileName) {
+        if (StorageHelper.isSupportedAudioFile(fileName) && names.add(fileName)) {
+            for (Listener listener : listeners) {
+                listener.onSoundAdded(fileName);
+            }
+        }
+    }
+
+    /**
+     * Records a file the app has just removed from the working directory.
+     */
+    public void remove(@NonNull String fileName) {
+        if (names.remove(fileName)) {
+            for (Listener listener : listeners) {
+                listener.onSoundRemoved(fileName);
+            }
+        }
+    }
+
+    /**
+     * Replaces the whole index with the result of a fresh directory listing.
+     */
+    public void replaceAll(@NonNull Collection<String> fileNames) {
+        Set<String> fresh = new HashSet<>(fileNames);
+        for (String name : names) {
+            if (!fresh.contains(name)) {
+                remove(name);
+            }
+        }
+        for (String name : fresh) {
+            add(name);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Falls back to a synchronous scan when a lookup arrives before {@link #start()} finished.
+     * Overlapping scans are harmless and no lock is held while listeners run.
+     */
+    private void ensureLoaded() {
+        if (!loaded) {
+            rescan();
+        }
+    }
+
+    private void rescan() {
+        try {
+            replaceAll(StorageHelper.listAudioFileNamesSorted());
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to list working directory", e);
+        }
+    }
+
+    @NonNull
+    @SuppressWarnings("deprecation")
+    private FileObserver createObserver(@NonNull File directory) {
+        // The path based constructor is the only one available below API 29.
+        return new FileObserver(directory.getAbsolutePath(), OBSERVED_EVENTS) {
+            @Override
+            public void onEvent(int event, @Nullable String path) {
+                int type = event & FileObserver.ALL_EVENTS;
+                if (type == FileObserver.DELETE_SELF || type == FileObserver.MOVE_SELF) {
+                    for (String name : names) {
+                        remove(name);
+                    }
+                    loaded = false;
+                    return;
+                }
+                if (path == null) {
+                    return;
+                }
+                if (type == FileObserver.CLOSE_WRITE || type == FileObserver.MOVED_TO) {
+                    add(path);
+                } else if (type == FileObserver.DELETE || type == FileObserver.MOVED_FROM) {
+                    remove(path);
+                }
+            }
+        };
+    }
+}
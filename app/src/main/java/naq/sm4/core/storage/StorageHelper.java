@@ -52,7 +52,7 @@ public final class StorageHelper {
     }
 
     /**
-     * Ensures an internal directory dedicated to storing JSON configuration files exists.
+     * Ensures an internal directory dedicated to storing configuration files exists.
      */
     @NonNull
     public static File ensureConfigDirectory(@NonNull Context context) throws IOException {
@@ -64,7 +64,8 @@ public final class StorageHelper {
     }
 
     /**
-     * @return handle to the main configuration file stored within the configs directory.
+     * @return handle to the JSON configuration file stored within the configs directory, which
+     * earlier versions used as the main store.
      */
     @NonNull
     public static File getConfigFile(@NonNull Context context) throws IOException {
@@ -72,6 +73,15 @@ public final class StorageHelper {
         return new File(dir, StorageConstants.DEFAULT_CONFIG_FILE);
     }
 
+    /**
+     * @return handle to the cached quick-start plan, which lives next to, not inside, the configs
+     * directory so that launching it does not create any directory.
+     */
+    @NonNull
+    public static File getQuickStartPlanFile(@NonNull Context context) {
+        return new File(context.getFilesDir(), StorageConstants.QUICK_START_PLAN_FILE);
+    }
+
     /**
      * Lists all supported audio files present in the working directory.
      */
@@ -204,6 +214,22 @@ public final class StorageHelper {
         }
     }
 
+    /**
+     * Replaces the file with {@code content} through a synced temporary file and a rename, so
+     * readers see either the old or the new content in full.
+     */
+    public static void writeFileAtomically(@NonNull File file, @NonNull byte[] content) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream outputStream = new FileOutputStream(temp, false)) {
+            outputStream.write(content);
+            outputStream.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to replace " + file.getAbsolutePath());
+        }
+    }
+
     /**
      * Copies data from an input stream into the target file.
      */
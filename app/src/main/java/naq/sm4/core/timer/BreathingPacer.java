@@ -0,0 +1,139 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+
+import naq.sm4.data.BreathingPattern;
+
+/**
+ * Breath cycle of a breathing pacer stage, precompiled to milliseconds. Every query is a pure
+ * function of the time elapsed since the stage started, so the guide is re-derived from the session
+ * clock on every frame and cannot drift against the stage countdown. Queries do not allocate.
+ */
+public final class BreathingPacer {
+
+    public static final int PHASE_INHALE = 0;
+    public static final int PHASE_HOLD = 1;
+    public static final int PHASE_EXHALE = 2;
+
+    /** Length of one amplitude step in the breath vibration waveform. */
+    static final long WAVEFORM_STEP_MS = 250L;
+    /** Softest amplitude of the ramp, as a share of the strongest one. */
+    private static final float WAVEFORM_FLOOR = 0.2f;
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    private final long inhaleMs;
+    private final long holdMs;
+    private final long exhaleMs;
+    private final long cycleMs;
+
+    public BreathingPacer(@NonNull BreathingPattern pattern) {
+        BreathingPattern sane = pattern.sanitized();
+        inhaleMs = sane.getInhaleSeconds() * MILLIS_PER_SECOND;
+        holdMs = sane.getHoldSeconds() * MILLIS_PER_SECOND;
+        exhaleMs = sane.getExhaleSeconds() * MILLIS_PER_SECOND;
+        cycleMs = inhaleMs + holdMs + exhaleMs;
+    }
+
+    /**
+     * @return length of one breath in milliseconds.
+     */
+    public long getCycleMs() {
+        return cycleMs;
+    }
+
+    /**
+     * @return number of the breath running at {@code stageElapsedMs}, counting from zero.
+     */
+    public long getBreathIndex(long stageElapsedMs) {
+        return Math.floorDiv(stageElapsedMs, cycleMs);
+    }
+
+    /**
+     * @return stage offset at which breath {@code breathIndex} starts.
+     */
+    public long getBreathStartMs(long breathIndex) {
+        return breathIndex * cycleMs;
+    }
+
+    /**
+     * @return one of {@link #PHASE_INHALE}, {@link #PHASE_HOLD} or {@link #PHASE_EXHALE}.
+     */
+    public int getPhase(long stageElapsedMs) {
+        long inCycle = Math.floorMod(stageElapsedMs, cycleMs);
+        if (inCycle < inhaleMs) {
+            return PHASE_INHALE;
+        }
+        return inCycle < inhaleMs + holdMs ? PHASE_HOLD : PHASE_EXHALE;
+    }
+
+    /**
+     * @return how full the lungs are meant to be, from 0 (empty) to 1 (full), eased so the guide
+     * slows down towards each turning point.
+     */
+    public float getExpansion(long stageElapsedMs) {
+        long inCycle = Math.floorMod(stageElapsedMs, cycleMs);
+        if (inCycle < inhaleMs) {
+            return ease((float) inCycle / inhaleMs);
+        }
+        if (inCycle < inhaleMs + holdMs) {
+            return 1f;
+        }
+        return 1f - ease((float) (inCycle - inhaleMs - holdMs) / exhaleMs);
+    }
+
+    /**
+     * Compiles one breath into a vibration waveform: the amplitude swells over the inhale, rests
+     * during the hold and fades over the exhale, in steps of {@value #WAVEFORM_STEP_MS} ms. Meant to
+     * be built once per stage and replayed at the start of every breath.
+     *
+     * @param maxAmplitude strongest amplitude, between 1 and 255
+     */
+    @NonNull
+    public HapticWaveform compileWaveform(int maxAmplitude) {
+        int inhaleSteps = steps(inhaleMs);
+        int exhaleSteps = steps(exhaleMs);
+        int count = inhaleSteps + (holdMs > 0L ? 1 : 0) + exhaleSteps;
+        long[] timings = new long[count];
+        int[] amplitudes = new int[count];
+        int cursor = 0;
+        for (int i = 0; i < inhaleSteps; i++, cursor++) {
+            timings[cursor] = stepLength(inhaleMs, inhaleSteps, i);
+            amplitudes[cursor] = amplitude(maxAmplitude, (i + 1f) / inhaleSteps);
+        }
+        if (holdMs > 0L) {
+            timings[cursor] = holdMs;
+            amplitudes[cursor] = 0;
+            cursor++;
+        }
+        for (int i = 0; i < exhaleSteps; i++, cursor++) {
+            timings[cursor] = stepLength(exhaleMs, exhaleSteps, i);
+            amplitudes[cursor] = amplitude(maxAmplitude, (float) (exhaleSteps - i) / exhaleSteps);
+        }
+        return new HapticWaveform(timings, amplitudes);
+    }
+
+    private static int steps(long phaseMs) {
+        return (int) Math.max(1L, phaseMs / WAVEFORM_STEP_MS);
+    }
+
+    /**
+     * Spreads any remainder over the first steps so the segments add up to the phase exactly.
+     */
+    private static long stepLength(long phaseMs, int steps, int index) {
+        long base = phaseMs / steps;
+        return base + (index < phaseMs % steps ? 1L : 0L);
+    }
+
+    private static int amplitude(int maxAmplitude, float level) {
+        float eased = WAVEFORM_FLOOR + (1f - WAVEFORM_FLOOR) * ease(level);
+        return Math.max(1, Math.min(255, Math.round(maxAmplitude * eased)));
+    }
+
+    /**
+     * Smoothstep: zero slope at both ends.
+     */
+    private static float ease(float t) {
+        float clamped = Math.max(0f, Math.min(1f, t));
+        return clamped * clamped * (3f - 2f * clamped);
+    }
+}
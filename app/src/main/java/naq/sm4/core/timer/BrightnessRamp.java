@@ -0,0 +1,148 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Screen brightness schedule along the session timeline. The screen dims from the user's level to
+ * {@link #MIN_BRIGHTNESS} over the first {@link #DIM_MS} of the session, stays there, and comes back
+ * over {@link #BRIGHTEN_MS} once the last stage starts. A session with a single stage brightens
+ * over its final {@link #BRIGHTEN_MS} instead.
+ *
+ * <p>Levels are quantized on a perceptual scale, so two offsets only map to different values when
+ * the difference is visible. The owner writes the window only when {@link #getBrightness(long)}
+ * changes and learns from {@link #getNextChangeMs(long)} when that happens next, instead of
+ * polling per frame or per tick.
+ */
+public final class BrightnessRamp {
+
+    /** Window brightness the screen dims to; also used for a brightness setting of zero. */
+    public static final float MIN_BRIGHTNESS = 0.05f;
+    static final long DIM_MS = 2 * 60_000L;
+    static final long BRIGHTEN_MS = 30_000L;
+    /**
+     * Quantization steps between black and full brightness on the square-root scale, which is
+     * close to how the eye and the platform brightness slider space levels.
+     */
+    static final int PERCEPTUAL_LEVELS = 24;
+
+    private final float baseBrightness;
+    private final float minBrightness;
+    private final long dimEndMs;
+    private final long brightenStartMs;
+    private final long brightenEndMs;
+
+    private BrightnessRamp(float baseBrightness, float minBrightness, long dimEndMs, long brightenStartMs,
+                           long brightenEndMs) {
+        this.baseBrightness = baseBrightness;
+        this.minBrightness = minBrightness;
+        this.dimEndMs = dimEndMs;
+        this.brightenStartMs = brightenStartMs;
+        this.brightenEndMs = brightenEndMs;
+    }
+
+    /**
+     * @return schedule that keeps the user's level for the whole session.
+     */
+    @NonNull
+    public static BrightnessRamp constant(int basePercent) {
+        float base = toBrightness(basePercent);
+        return new BrightnessRamp(base, base, 0L, 0L, 0L);
+    }
+
+    /**
+     * @param basePercent      brightness setting to dim from and return to (0 - 100)
+     * @param totalMs          length of the session
+     * @param lastStageStartMs offset at which the last stage starts
+     */
+    @NonNull
+    public static BrightnessRamp forSession(int basePercent, long totalMs, long lastStageStartMs) {
+        float base = toBrightness(basePercent);
+        if (base <= MIN_BRIGHTNESS || totalMs <= 0L) {
+            return constant(basePercent);
+        }
+        long dimEnd = Math.min(DIM_MS, totalMs);
+        long brightenStart = lastStageStartMs >= dimEnd ? lastStageStartMs : Math.max(dimEnd, totalMs - BRIGHTEN_MS);
+        long brightenEnd = Math.min(totalMs, brightenStart + BRIGHTEN_MS);
+        return new BrightnessRamp(base, MIN_BRIGHTNESS, dimEnd, brightenStart, brightenEnd);
+    }
+
+    /**
+     * @return window brightness (0 - 1) outside a running session.
+     */
+    public float getBaseBrightness() {
+        return baseBrightness;
+    }
+
+    /**
+     * @return quantized window brightness (0 - 1) at {@code offsetMs} into the session.
+     */
+    public float getBrightness(long offsetMs) {
+        if (minBrightness >= baseBrightness) {
+            return baseBrightness;
+        }
+        float raw;
+        if (offsetMs < dimEndMs) {
+            raw = interpolate(baseBrightness, minBrightness, (float) Math.max(0L, offsetMs) / dimEndMs);
+        } else if (offsetMs < brightenStartMs) {
+            raw = minBrightness;
+        } else if (offsetMs < brightenEndMs) {
+            raw = interpolate(minBrightness, baseBrightness,
+                    (float) (offsetMs - brightenStartMs) / (brightenEndMs - brightenStartMs));
+        } else {
+            raw = baseBrightness;
+        }
+        return quantize(raw);
+    }
+
+    /**
+     * @return first offset after {@code offsetMs} at which {@link #getBrightness(long)} returns a
+     * different value, or {@code -1} when the level stays as it is for the rest of the session.
+     */
+    public long getNextChangeMs(long offsetMs) {
+        if (minBrightness >= baseBrightness) {
+            return -1L;
+        }
+        float current = getBrightness(offsetMs);
+        long from = offsetMs;
+        // The level is monotonic between these bounds, so a change inside one is found by bisection.
+        long[] bounds = {dimEndMs, brightenStartMs, brightenEndMs};
+        for (long segmentEnd : bounds) {
+            if (segmentEnd <= from) {
+                continue;
+            }
+            if (getBrightness(segmentEnd) != current) {
+                long low = from + 1L;
+                long high = segmentEnd;
+                while (low < high) {
+                    long mid = (low + high) >>> 1;
+                    if (getBrightness(mid) != current) {
+                        high = mid;
+                    } else {
+                        low = mid + 1L;
+                    }
+                }
+                return low;
+            }
+            from = segmentEnd;
+        }
+        return -1L;
+    }
+
+    private float quantize(float brightness) {
+        // The end points are exact so the session starts and ends on the user's own level.
+        if (brightness >= baseBrightness || brightness <= minBrightness) {
+            return Math.max(minBrightness, Math.min(baseBrightness, brightness));
+        }
+        float level = Math.round((float) Math.sqrt(brightness) * PERCEPTUAL_LEVELS) / (float) PERCEPTUAL_LEVELS;
+        return Math.max(minBrightness, Math.min(baseBrightness, level * level));
+    }
+
+    private static float interpolate(float from, float to, float fraction) {
+        return from + (to - from) * Math.max(0f, Math.min(1f, fraction));
+    }
+
+    private static float toBrightness(int percent) {
+        int clamped = Math.max(0, Math.min(100, percent));
+        return clamped <= 0 ? MIN_BRIGHTNESS : clamped / 100f;
+    }
+}
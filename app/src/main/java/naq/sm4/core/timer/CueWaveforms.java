@@ -0,0 +1,74 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+
+import naq.sm4.data.CueVibration;
+
+/**
+ * Compiles the vibration that accompanies a sound cue. The engine builds one waveform per stage
+ * when a session is loaded and again only when the cue lead changes, so a cue merely replays what
+ * was prepared.
+ */
+public final class CueWaveforms {
+
+    static final long MIN_PULSE_MS = 40L;
+    static final long TAP_MS = 45L;
+    static final long TAP_GAP_MS = 110L;
+    static final int RAMP_STEPS = 8;
+    static final long RAMP_STEP_MS = 40L;
+    /** Softest amplitude of the ramp, as a share of the strongest one. */
+    private static final float RAMP_FLOOR = 0.15f;
+
+    private CueWaveforms() {
+    }
+
+    /**
+     * @return vibrator amplitude, between 1 and 255, for a strength in percent.
+     */
+    public static int amplitudeFor(int strengthPercent) {
+        return Math.max(1, Math.min(255, Math.round((strengthPercent / 100f) * 255f)));
+    }
+
+    /**
+     * @param strengthPercent vibration strength from the settings (0 - 100)
+     * @param leadInMs        silence before the vibration starts, so that it meets a sound that
+     *                        was issued early to cover the output latency
+     */
+    @NonNull
+    public static HapticWaveform compile(@NonNull CueVibration pattern, int strengthPercent, long leadInMs) {
+        int amplitude = amplitudeFor(strengthPercent);
+        int start = leadInMs > 0L ? 1 : 0;
+        long[] timings;
+        int[] amplitudes;
+        switch (pattern) {
+            case DOUBLE_TAP:
+                timings = new long[start + 3];
+                amplitudes = new int[start + 3];
+                timings[start] = TAP_MS;
+                amplitudes[start] = amplitude;
+                timings[start + 1] = TAP_GAP_MS;
+                timings[start + 2] = TAP_MS;
+                amplitudes[start + 2] = amplitude;
+                break;
+            case RAMP:
+                timings = new long[start + RAMP_STEPS];
+                amplitudes = new int[start + RAMP_STEPS];
+                for (int i = 0; i < RAMP_STEPS; i++) {
+                    float level = RAMP_FLOOR + (1f - RAMP_FLOOR) * (i + 1f) / RAMP_STEPS;
+                    timings[start + i] = RAMP_STEP_MS;
+                    amplitudes[start + i] = Math.max(1, Math.round(amplitude * level));
+                }
+                break;
+            default:
+                timings = new long[start + 1];
+                amplitudes = new int[start + 1];
+                timings[start] = Math.max(MIN_PULSE_MS, 80L + strengthPercent);
+                amplitudes[start] = amplitude;
+                break;
+        }
+        if (start > 0) {
+            timings[0] = leadInMs;
+        }
+        return new HapticWaveform(timings, amplitudes);
+    }
+}
@@ -0,0 +1,81 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats durations as {@code mm:ss}, or {@code h:mm:ss} from one hour upwards, using the digits
+ * of the supplied locale. All two-digit groups come from a table built once in the constructor and
+ * {@link #format(long, char[])} writes into a caller-owned buffer, so the per-tick path allocates
+ * nothing.
+ */
+public final class DurationFormatter {
+
+    /** Longest output: four hour digits, two separators and two two-digit groups. */
+    public static final int MAX_LENGTH = 10;
+
+    private static final int MAX_HOURS = 9999;
+    private static final char SEPARATOR = ':';
+
+    private final char zeroDigit;
+    private final char[] pairs = new char[200];
+
+    public DurationFormatter(@NonNull Locale locale) {
+        this(DecimalFormatSymbols.getInstance(locale).getZeroDigit());
+    }
+
+    public DurationFormatter(char zeroDigit) {
+        this.zeroDigit = zeroDigit;
+        for (int i = 0; i < 100; i++) {
+            pairs[i * 2] = (char) (zeroDigit + i / 10);
+            pairs[i * 2 + 1] = (char) (zeroDigit + i % 10);
+        }
+    }
+
+    /**
+     * Writes {@code totalSeconds} into {@code out} without allocating.
+     *
+     * @param out buffer of at least {@link #MAX_LENGTH} characters
+     * @return number of characters written
+     */
+    public int format(long totalSeconds, @NonNull char[] out) {
+        long clamped = Math.max(0L, totalSeconds);
+        int hours = (int) Math.min(clamped / 3600L, MAX_HOURS);
+        int minutes = (int) (clamped / 60L % 60L);
+        int seconds = (int) (clamped % 60L);
+        int position = 0;
+        if (hours > 0) {
+            position = writeNumber(hours, out, position);
+            out[position++] = SEPARATOR;
+        }
+        position = writePair(minutes, out, position);
+        out[position++] = SEPARATOR;
+        return writePair(seconds, out, position);
+    }
+
+    /**
+     * Convenience for non-hot paths such as session summaries.
+     */
+    @NonNull
+    public String format(long totalSeconds) {
+        char[] buffer = new char[MAX_LENGTH];
+        return new String(buffer, 0, format(totalSeconds, buffer));
+    }
+
+    private int writePair(int value, char[] out, int position) {
+        out[position] = pairs[value * 2];
+        out[position + 1] = pairs[value * 2 + 1];
+        return position + 2;
+    }
+
+    private int writeNumber(int value, char[] out, int position) {
+        int digits = value >= 1000 ? 4 : value >= 100 ? 3 : value >= 10 ? 2 : 1;
+        for (int i = position + digits - 1; i >= position; i--) {
+            out[i] = (char) (zeroDigit + value % 10);
+            value /= 10;
+        }
+        return position + digits;
+    }
+}
@@ -0,0 +1,50 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Segment lengths and amplitudes of a vibration, in the shape {@code VibrationEffect} takes. A
+ * zero amplitude is a pause.
+ */
+public final class HapticWaveform {
+
+    private final long[] timings;
+    private final int[] amplitudes;
+
+    HapticWaveform(@NonNull long[] timings, @NonNull int[] amplitudes) {
+        this.timings = timings;
+        this.amplitudes = amplitudes;
+    }
+
+    @NonNull
+    public long[] getTimings() {
+        return timings;
+    }
+
+    @NonNull
+    public int[] getAmplitudes() {
+        return amplitudes;
+    }
+
+    /**
+     * @return time before the first segment that vibrates.
+     */
+    public long getLeadInMs() {
+        long lead = 0L;
+        for (int i = 0; i < timings.length && amplitudes[i] == 0; i++) {
+            lead += timings[i];
+        }
+        return lead;
+    }
+
+    /**
+     * @return length of the whole waveform.
+     */
+    public long getDurationMs() {
+        long duration = 0L;
+        for (long timing : timings) {
+            duration += timing;
+        }
+        return duration;
+    }
+}
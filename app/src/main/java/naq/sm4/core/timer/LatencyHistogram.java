@@ -0,0 +1,102 @@
+package naq.sm4.core.timer;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-memory latency recorder in the style of HdrHistogram. Values up to {@value #SUB_BUCKETS}
+ * are counted exactly; above that every power-of-two range is split into
+ * {@value #HALF_SUB_BUCKETS} linear buckets, which keeps the relative error of any reported value
+ * below 1/{@value #HALF_SUB_BUCKETS}. All storage is allocated up front, so {@link #record(long)}
+ * never allocates and costs a few shifts and one array increment.
+ *
+ * <p>Values are unit-less; callers in this package record microseconds.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKETS = 128;
+    static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    /** Largest value kept apart; anything above is clamped into the top bucket. */
+    public static final long MAX_VALUE = (1L << 32) - 1;
+
+    private static final int SUB_BUCKET_BITS = 7;
+
+    private final int[] counts = new int[indexOf(MAX_VALUE) + 1];
+    private long totalCount;
+    private long maxValue;
+
+    /**
+     * Counts one occurrence of {@code value}. Negative values count as zero.
+     */
+    public void record(long value) {
+        long clamped = Math.max(0L, Math.min(value, MAX_VALUE));
+        counts[indexOf(clamped)]++;
+        totalCount++;
+        if (clamped > maxValue) {
+            maxValue = clamped;
+        }
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0L;
+        maxValue = 0L;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return exact largest recorded value, or {@code 0} when nothing was recorded.
+     */
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return value at or below which {@code percentile} of the recorded values fall, reported as
+     * the upper end of its bucket and never above {@link #getMaxValue()}
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0L) {
+            return 0L;
+        }
+        double clamped = Math.max(0d, Math.min(percentile, 100d));
+        long target = Math.max(1L, (long) Math.ceil(clamped / 100d * totalCount));
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (subBucket - HALF_SUB_BUCKETS);
+    }
+
+    static long lowestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return subBucket << shift;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        return lowestEquivalentValue(index) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,292 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import naq.sm4.data.MeditationConfig;
+
+/**
+ * Binary cache of the config a quick start launches: the one pinned by the user or, when nothing
+ * is pinned, the one started last. The plan holds the config, encoded like the session snapshot,
+ * followed by its compiled {@link SessionTimeline}, so reading it back needs neither the config
+ * store nor Gson nor a compile step. It is keyed by the id of the stored config, which names one
+ * config whatever its display name, together with the CRC of the plan, and the file is only
+ * rewritten when either changes. Writes go to a temporary file that replaces the cache in one
+ * rename.
+ *
+ * <pre>
+ *  0 int   magic             8 long  fingerprint
+ *  4 short version          16 int   config id
+ *  6 byte  flags            20 int   plan length
+ *  7 byte  reserved         24 ..    plan
+ * </pre>
+ *
+ * <p>All instances in a process share one lock, so the service, the config store and the UI may
+ * each open their own.
+ */
+public final class QuickStartPlanStore {
+
+    /** Returned by {@link #getPinnedId()} when nothing is pinned. */
+    public static final int NO_CONFIG_ID = -1;
+
+    static final int HEADER_SIZE = 24;
+    /** Room for a config as the session snapshot stores it plus its compiled timeline. */
+    static final int PLAN_CAPACITY = 2 * SessionSnapshotStore.PLAN_CAPACITY;
+
+    private static final int MAGIC = 0x534D3451;
+    private static final short VERSION = 3;
+    private static final byte FLAG_PINNED = 1;
+    private static final Object LOCK = new Object();
+
+    private final File file;
+
+    public QuickStartPlanStore(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return {@code true} when a plan has been cached; cheap enough for the launch path.
+     */
+    public boolean exists() {
+        return file.isFile();
+    }
+
+    /**
+     * @return the cached plan with its stored timeline, or {@code null} when there is none or the
+     * file is damaged
+     */
+    @Nullable
+    public SessionPlan read() throws IOException {
+        synchronized (LOCK) {
+            Entry entry = readEntry();
+            return entry == null ? null : new SessionPlan(entry.config, entry.timeline, entry.fingerprint);
+        }
+    }
+
+    /**
+     * @return id of the pinned config, or {@link #NO_CONFIG_ID} when the cache follows the last
+     * session
+     */
+    public int getPinnedId() throws IOException {
+        synchronized (LOCK) {
+            Entry entry = readEntry();
+            return entry != null && entry.pinned ? entry.configId : NO_CONFIG_ID;
+        }
+    }
+
+    /**
+     * Caches the config stored under {@code configId} as the last one started, unless a different
+     * config is pinned.
+     *
+     * @return {@code false} when the config does not fit the cache
+     */
+    public boolean recordStarted(int configId, @NonNull MeditationConfig config) throws IOException {
+        synchronized (LOCK) {
+            Entry entry = readEntry();
+            if (entry != null && entry.pinned && entry.configId != configId) {
+                return true;
+            }
+            return write(configId, config, entry != null && entry.pinned, entry);
+        }
+    }
+
+    /**
+     * Makes the config stored under {@code configId} the one every quick start launches until
+     * {@link #unpin()}.
+     *
+     * @return {@code false} when the config does not fit the cache
+     */
+    public boolean pin(int configId, @NonNull MeditationConfig config) throws IOException {
+        synchronized (LOCK) {
+            return write(configId, config, true, readEntry());
+        }
+    }
+
+    /**
+     * Goes back to launching the last config started; the cached plan stays until then.
+     */
+    public void unpin() throws IOException {
+        synchronized (LOCK) {
+            Entry entry = readEntry();
+            if (entry != null && entry.pinned) {
+                write(entry.configId, entry.config, false, entry);
+            }
+        }
+    }
+
+    /**
+     * Follows an edit: when the cached config is the one stored under {@code oldId}, the cache now
+     * holds {@code config} under {@code newId}, pinned as before. Other configs are ignored,
+     * whatever their names.
+     */
+    public void replace(int oldId, int newId, @NonNull MeditationConfig config) throws IOException {
+        synchronized (LOCK) {
+            Entry entry = readEntry();
+            if (entry != null && entry.configId == oldId && !write(newId, config, entry.pinned, entry)) {
+                delete();
+            }
+        }
+    }
+
+    /**
+     * Drops the cache when it holds the config stored under {@code configId}, which was deleted.
+     */
+    public void remove(int configId) throws IOException {
+        synchronized (LOCK) {
+            Entry entry = readEntry();
+            if (entry != null && entry.configId == configId) {
+                delete();
+            }
+        }
+    }
+
+    /**
+     * Brings the cache in line with a config list saved under new ids: the cached config follows
+     * the config with the same content, and is dropped when there is none.
+     *
+     * @param configIds ids the {@code configs} were stored under, in the same order
+     */
+    public void refresh(@NonNull List<Integer> configIds, @NonNull List<MeditationConfig> configs) throws IOException {
+        synchronized (LOCK) {
+            Entry entry = readEntry();
+            if (entry == null) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(PLAN_CAPACITY);
+            for (int i = 0; i < configs.size(); i++) {
+                buffer.clear();
+                try {
+                    encodePlan(configs.get(i), buffer);
+                } catch (BufferOverflowException | IllegalArgumentException e) {
+                    continue;
+                }
+                if (SessionPlanCodec.fingerprint(buffer.array(), 0, buffer.position()) == entry.fingerprint) {
+                    write(configIds.get(i), entry.config, entry.pinned, entry);
+                    return;
+                }
+            }
+            delete();
+        }
+    }
+
+    private boolean write(int configId, @NonNull MeditationConfig config, boolean pinned, @Nullable Entry current)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + PLAN_CAPACITY);
+        buffer.position(HEADER_SIZE);
+        try {
+            encodePlan(config, buffer);
+        } catch (BufferOverflowException | IllegalArgumentException e) {
+            return false;
+        }
+        int length = buffer.position() - HEADER_SIZE;
+        long fingerprint = SessionPlanCodec.fingerprint(buffer.array(), HEADER_SIZE, length);
+        if (current != null && current.fingerprint == fingerprint && current.pinned == pinned
+                && current.configId == configId) {
+            return true;
+        }
+        buffer.putInt(0, MAGIC)
+                .putShort(4, VERSION)
+                .put(6, pinned ? FLAG_PINNED : 0)
+                .put(7, (byte) 0)
+                .putLong(8, fingerprint)
+                .putInt(16, configId)
+                .putInt(20, length);
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(buffer.array(), 0, HEADER_SIZE + length);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to replace " + file);
+        }
+        return true;
+    }
+
+    private void delete() throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete " + file);
+        }
+    }
+
+    @Nullable
+    private Entry readEntry() throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        long size = file.length();
+        if (size < HEADER_SIZE || size > HEADER_SIZE + PLAN_CAPACITY) {
+            return null;
+        }
+        byte[] data = new byte[(int) size];
+        int read = 0;
+        try (FileInputStream in = new FileInputStream(file)) {
+            while (read < data.length) {
+                int count = in.read(data, read, data.length - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, read);
+        if (read < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+            return null;
+        }
+        long fingerprint = buffer.getLong(8);
+        int configId = buffer.getInt(16);
+        int length = buffer.getInt(20);
+        if (length <= 0 || HEADER_SIZE + length > read
+                || SessionPlanCodec.fingerprint(data, HEADER_SIZE, length) != fingerprint) {
+            return null;
+        }
+        try {
+            ByteBuffer plan = ByteBuffer.wrap(data, HEADER_SIZE, length);
+            MeditationConfig config = SessionPlanCodec.decode(plan);
+            SessionTimeline timeline = SessionTimeline.readFrom(plan);
+            if (timeline.getStageCount() != config.getStages().size()) {
+                return null;
+            }
+            return new Entry(configId, config, timeline, fingerprint, (buffer.get(6) & FLAG_PINNED) != 0);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Encodes {@code config} followed by its compiled timeline.
+     *
+     * @throws BufferOverflowException  when the plan does not fit
+     * @throws IllegalArgumentException when a string is too long to encode
+     */
+    private static void encodePlan(@NonNull MeditationConfig config, @NonNull ByteBuffer target) {
+        SessionPlanCodec.encode(config, target);
+        SessionTimeline.compile(config.getStages()).writeTo(target);
+    }
+
+    private static final class Entry {
+        final int configId;
+        final MeditationConfig config;
+        final SessionTimeline timeline;
+        final long fingerprint;
+        final boolean pinned;
+
+        Entry(int configId, @NonNull MeditationConfig config, @NonNull SessionTimeline timeline, long fingerprint,
+              boolean pinned) {
+            this.configId = configId;
+            this.config = config;
+            this.timeline = timeline;
+            this.fingerprint = fingerprint;
+            this.pinned = pinned;
+        }
+    }
+}
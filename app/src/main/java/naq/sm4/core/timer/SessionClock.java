@@ -0,0 +1,14 @@
+package naq.sm4.core.timer;
+
+/**
+ * Monotonic time source used by the session timer. Production code wraps
+ * {@code SystemClock.elapsedRealtime()} while JVM tests supply a controllable fake.
+ */
+public interface SessionClock {
+
+    /**
+     * @return milliseconds since an arbitrary fixed origin, never moving backwards and including
+     * time spent in deep sleep.
+     */
+    long elapsedRealtime();
+}
@@ -0,0 +1,661 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import naq.sm4.data.MeditationStage;
+
+/**
+ * Platform-free meditation session. It drives a {@link SessionScheduler} and turns the cues that
+ * fall due into sound, vibration and wake-lock requests on pluggable ports, so the whole session
+ * can run on the JVM against a virtual {@link SessionClock}. The engine is not thread safe; every
+ * call, including {@link #onDeadline()}, has to come from the single thread that owns it.
+ *
+ * <p>The owner arms a wakeup wherever {@link Alarm#schedule(long)} asks for one and calls
+ * {@link #onDeadline()} when it fires. A wakeup is either a cue or the prefetch point a configurable
+ * lead time ahead of a cue whose stage audio is not {@link Audio#isRetained(int) retained} yet.
+ *
+ * <p>Every session records how late each cue was dispatched and, as reported back through
+ * {@link #recordAudioStartLatency(long)}, how long its audio took to start. Both go into
+ * preallocated {@link LatencyHistogram}s and are summarised once the session ends.
+ *
+ * <p>While sound is on, cues are dispatched {@link Audio#getOutputLatencyMs() one output latency}
+ * early so the audible onset lands on the cue, and the vibration is delayed by the same amount so
+ * it lines up with the sound. Each stage's {@link CueWaveforms cue vibration} is compiled with that
+ * delay when the session is loaded and recompiled only when the lead changes, so a cue hands a
+ * prepared waveform to the {@link Haptics} port and nothing else.
+ *
+ * <p>Breathing pacer stages additionally wake the owner at the start of every breath, derived from
+ * the stage start like any cue, and replay that stage's breath waveform, which the
+ * {@link Haptics} port precompiles once per session from {@link BreathingPacer#compileWaveform(int)}.
+ */
+public final class SessionEngine {
+
+    /** Long enough to cover the short clips the audio port plays without a wake lock of its own. */
+    static final long CUE_WAKE_LOCK_MS = 6_000L;
+    /** Upper bound for the latency compensation; anything above is a bogus measurement. */
+    static final long MAX_OUTPUT_LATENCY_MS = 500L;
+    /** A breath whose wakeup came later than this is skipped rather than played out of step. */
+    static final long MAX_BREATH_LATENESS_MS = 250L;
+
+    /**
+     * Plays stage audio. Implementations keep a window of stages resident.
+     */
+    public interface Audio {
+        void setStages(@NonNull List<MeditationStage> stages);
+
+        boolean isRetained(int stageIndex);
+
+        /**
+         * @param upcomingStage stage to warm ahead of its cue, or {@code -1} for none
+         */
+        void retain(int currentStage, int upcomingStage);
+
+        /**
+         * @return {@code false} when the sound is missing or could not be loaded
+         */
+        boolean play(@NonNull String sound);
+
+        /**
+         * @return time from {@link #play(String)} until the sound is audible on the current
+         * route, or {@code 0} when unknown
+         */
+        long getOutputLatencyMs();
+
+        void stop();
+
+        void release();
+    }
+
+    /**
+     * Vibrates the device for single cues and guides breathing pacer stages. Waveforms are handed
+     * over ahead of time so implementations can turn them into platform effects once.
+     */
+    public interface Haptics {
+        /**
+         * Prepares the cue vibration of every stage up front. Called again whenever the cue lead
+         * changes.
+         *
+         * @param waveforms one entry per stage
+         */
+        void setCueWaveforms(@NonNull HapticWaveform[] waveforms);
+
+        /**
+         * Plays the cue vibration of {@code stageIndex} as prepared by {@link #setCueWaveforms}.
+         */
+        void cue(int stageIndex);
+
+        /**
+         * Prepares the breath waveform of every stage up front.
+         *
+         * @param waveforms one entry per stage, {@code null} for stages without a breathing pacer
+         */
+        void setBreathWaveforms(@NonNull HapticWaveform[] waveforms);
+
+        /**
+         * Plays one breath of {@code stageIndex} as prepared by {@link #setBreathWaveforms}.
+         */
+        void breathe(int stageIndex);
+
+        /**
+         * Stops whatever is vibrating.
+         */
+        void cancel();
+    }
+
+    /**
+     * Keeps the CPU awake for a bounded time while a cue plays.
+     */
+    public interface WakeLock {
+        void acquire(long timeoutMs);
+    }
+
+    /**
+     * Wakes the owner at an absolute {@link SessionClock} time. A new schedule replaces the
+     * pending one.
+     */
+    public interface Alarm {
+        void schedule(long elapsedRealtimeMs);
+
+        void cancel();
+    }
+
+    /**
+     * Observes the session on the engine's thread.
+     */
+    public interface Listener {
+        void onStateChanged(@NonNull TimerState state);
+
+        void onStageChanged(int stageIndex);
+
+        void onSoundUnavailable(@NonNull String sound);
+    }
+
+    private static final Listener NO_LISTENER = new Listener() {
+        @Override
+        public void onStateChanged(@NonNull TimerState state) {
+        }
+
+        @Override
+        public void onStageChanged(int stageIndex) {
+        }
+
+        @Override
+        public void onSoundUnavailable(@NonNull String sound) {
+        }
+    };
+
+    private final SessionClock clock;
+    private final SessionScheduler scheduler;
+    private final Audio audio;
+    private final Haptics haptics;
+    private final WakeLock wakeLock;
+    private final Alarm alarm;
+    private final Random random;
+    private final long prefetchLeadMs;
+    private final SessionScheduler.Listener dispatchListener = new SessionScheduler.Listener() {
+        @Override
+        public void onStageCue(int stageIndex) {
+            recordCueLateness();
+            // Normally warmed ahead of its cue already; a late wakeup may have skipped the prefetch.
+            if (!audio.isRetained(stageIndex)) {
+                audio.retain(currentStageIndex, stageIndex);
+            }
+            playStageCue(stageIndex);
+        }
+
+        @Override
+        public void onRepeatCue(int stageIndex) {
+            recordCueLateness();
+            playStageCue(stageIndex);
+        }
+
+        @Override
+        public void onStageStarted(int stageIndex) {
+            currentStageIndex = stageIndex;
+            // The finished stage's audio is no longer needed.
+            audio.retain(stageIndex, -1);
+            listener.onStageChanged(stageIndex);
+        }
+
+        @Override
+        public void onSessionCompleted() {
+            currentStageIndex = stages.size();
+            finish(TimerState.COMPLETED);
+        }
+    };
+
+    private final LatencyHistogram cueLateness = new LatencyHistogram();
+    private final LatencyHistogram audioStartLatency = new LatencyHistogram();
+
+    private Listener listener = NO_LISTENER;
+    private TimingSummary timingSummary = TimingSummary.EMPTY;
+    private TimerState state = TimerState.IDLE;
+    private List<MeditationStage> stages = Collections.emptyList();
+    private int currentStageIndex;
+    private boolean soundEnabled = true;
+    private boolean vibrationEnabled = true;
+    private int vibrationStrengthPercent;
+    private long cueLeadMs;
+    /** Lead the cue waveforms were last compiled with, {@code -1} before the first load. */
+    private long cueWaveformLeadMs = -1L;
+    private BreathingPacer[] pacers = new BreathingPacer[0];
+    private int guidedStage = -1;
+    private long guidedBreath = -1L;
+
+    public SessionEngine(@NonNull SessionClock clock, @NonNull Audio audio, @NonNull Haptics haptics,
+                         @NonNull WakeLock wakeLock, @NonNull Alarm alarm, @NonNull Random random,
+                         long prefetchLeadMs) {
+        this.clock = clock;
+        this.scheduler = new SessionScheduler(clock);
+        this.audio = audio;
+        this.haptics = haptics;
+        this.wakeLock = wakeLock;
+        this.alarm = alarm;
+        this.random = random;
+        this.prefetchLeadMs = prefetchLeadMs;
+    }
+
+    public void setListener(@NonNull Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Compiles {@code stages} into a fresh session that waits for {@link #start()}. A session
+     * without stages completes straight away.
+     */
+    public void load(@NonNull List<MeditationStage> stages, boolean soundEnabled, int vibrationStrengthPercent) {
+        List<MeditationStage> copy = Collections.unmodifiableList(new ArrayList<>(stages));
+        load(copy, SessionTimeline.compile(copy), soundEnabled, vibrationStrengthPercent);
+    }
+
+    /**
+     * Loads a plan whose timeline was compiled ahead of time, e.g. one read back from a
+     * {@link QuickStartPlanStore}.
+     */
+    public void load(@NonNull SessionPlan plan, boolean soundEnabled, int vibrationStrengthPercent) {
+        load(plan.getStages(), plan.getTimeline(), soundEnabled, vibrationStrengthPercent);
+    }
+
+    private void load(@NonNull List<MeditationStage> stages, @NonNull SessionTimeline timeline,
+                      boolean soundEnabled, int vibrationStrengthPercent) {
+        alarm.cancel();
+        audio.stop();
+        resetTiming();
+        this.stages = stages;
+        audio.setStages(this.stages);
+        audio.retain(0, -1);
+        scheduler.load(timeline);
+        applySettings(soundEnabled, vibrationStrengthPercent);
+        prepareHaptics();
+        currentStageIndex = 0;
+        listener.onStageChanged(0);
+        setState(this.stages.isEmpty() ? TimerState.COMPLETED : TimerState.IDLE);
+    }
+
+    /**
+     * Continues the session recorded in {@code snapshot}. A running session is carried forward by
+     * the time that passed since the snapshot was written; cues that fell into that gap are not
+     * replayed.
+     *
+     * @return {@code false} when the recorded session is empty or would already have ended
+     */
+    public boolean restore(@NonNull SessionSnapshot snapshot, long wallClockMs, int vibrationStrengthPercent) {
+        List<MeditationStage> restored = snapshot.getConfig().getStages();
+        SessionTimeline timeline = SessionTimeline.compile(restored);
+        long offsetMs = snapshot.resolveOffsetMs(clock.elapsedRealtime(), wallClockMs);
+        if (timeline.getStageCount() == 0 || offsetMs >= timeline.getTotalMs()) {
+            return false;
+        }
+        alarm.cancel();
+        audio.stop();
+        resetTiming();
+        stages = Collections.unmodifiableList(new ArrayList<>(restored));
+        audio.setStages(stages);
+        scheduler.load(timeline);
+        scheduler.seekTo(offsetMs);
+        audio.retain(scheduler.getStageIndex(), -1);
+        applySettings(snapshot.isSoundEnabled(), vibrationStrengthPercent);
+        vibrationEnabled = snapshot.isVibrationEnabled() && vibrationStrengthPercent > 0;
+        prepareHaptics();
+        currentStageIndex = scheduler.getStageIndex();
+        listener.onStageChanged(currentStageIndex);
+        if (snapshot.isRunning()) {
+            start();
+        } else {
+            setState(TimerState.PAUSED);
+        }
+        return true;
+    }
+
+    /**
+     * Starts the session if not already running and at least one stage is available.
+     */
+    public void start() {
+        if (state == TimerState.RUNNING || stages.isEmpty() || scheduler.isCompleted()) {
+            return;
+        }
+        scheduler.start();
+        setState(TimerState.RUNNING);
+        onDeadline();
+    }
+
+    public void pause() {
+        if (state != TimerState.RUNNING) {
+            return;
+        }
+        scheduler.pause();
+        alarm.cancel();
+        haptics.cancel();
+        setState(TimerState.PAUSED);
+    }
+
+    public void resume() {
+        if (state != TimerState.PAUSED) {
+            return;
+        }
+        scheduler.resume();
+        setState(TimerState.RUNNING);
+        scheduleNextDeadline();
+    }
+
+    public void stop() {
+        if (state == TimerState.COMPLETED || state == TimerState.STOPPED) {
+            return;
+        }
+        scheduler.stop();
+        finish(TimerState.STOPPED);
+    }
+
+    /**
+     * Jumps to the start of the next stage without replaying skipped cues.
+     */
+    public void skipToNextStage() {
+        if (canSeek()) {
+            scheduler.skipToNextStage();
+            onSeekCompleted();
+        }
+    }
+
+    /**
+     * Jumps back to the start of the previous stage, or restarts the first stage.
+     */
+    public void skipToPreviousStage() {
+        if (canSeek()) {
+            scheduler.skipToPreviousStage();
+            onSeekCompleted();
+        }
+    }
+
+    /**
+     * Moves the session to an absolute offset from its start without replaying skipped cues.
+     */
+    public void seekTo(long offsetMs) {
+        if (canSeek()) {
+            scheduler.seekTo(offsetMs);
+            onSeekCompleted();
+        }
+    }
+
+    public void setSoundEnabled(boolean enabled) {
+        soundEnabled = enabled;
+        if (!enabled) {
+            audio.stop();
+        }
+        if (state == TimerState.RUNNING) {
+            scheduleNextDeadline();
+        }
+    }
+
+    public void setVibrationEnabled(boolean enabled) {
+        vibrationEnabled = enabled && vibrationStrengthPercent > 0;
+        if (!vibrationEnabled) {
+            haptics.cancel();
+        }
+    }
+
+    /**
+     * Handles a wakeup requested through {@link Alarm#schedule(long)}: dispatches every cue that
+     * became due, guides the breath that started, warms the upcoming stage once its cue is within
+     * the prefetch lead, and asks for the next wakeup. Spurious or duplicate calls are harmless.
+     */
+    public void onDeadline() {
+        if (state != TimerState.RUNNING) {
+            return;
+        }
+        updateCueLead();
+        scheduler.dispatchDue(dispatchListener);
+        if (state == TimerState.RUNNING) {
+            guideBreath();
+            prefetchUpcomingStage();
+            scheduleNextDeadline();
+        }
+    }
+
+    /**
+     * Records how long the audio of the last cue took to start after its dispatch.
+     */
+    public void recordAudioStartLatency(long latencyMicros) {
+        audioStartLatency.record(latencyMicros);
+    }
+
+    /**
+     * @return timing accuracy of the last finished session, or of the running one so far.
+     */
+    @NonNull
+    public TimingSummary getTimingSummary() {
+        if (state == TimerState.COMPLETED || state == TimerState.STOPPED) {
+            return timingSummary;
+        }
+        return summarizeTiming();
+    }
+
+    @NonNull
+    public TimerState getState() {
+        return state;
+    }
+
+    @NonNull
+    public List<MeditationStage> getStages() {
+        return stages;
+    }
+
+    /**
+     * @return index of the stage currently running.
+     */
+    public int getStageIndex() {
+        return currentStageIndex;
+    }
+
+    /**
+     * @return number of stages finished before the session ended.
+     */
+    public int getCompletedStageCount() {
+        return Math.min(currentStageIndex, stages.size());
+    }
+
+    /**
+     * @return elapsed session time in milliseconds.
+     */
+    public long getOffsetMs() {
+        return scheduler.getOffsetMs();
+    }
+
+    /**
+     * @return reading of the current position that other threads can sample.
+     */
+    @NonNull
+    public SessionProgress captureProgress() {
+        return scheduler.captureProgress();
+    }
+
+    public boolean isSoundEnabled() {
+        return soundEnabled;
+    }
+
+    public boolean isVibrationEnabled() {
+        return vibrationEnabled;
+    }
+
+    private void applySettings(boolean soundEnabled, int vibrationStrengthPercent) {
+        this.soundEnabled = soundEnabled;
+        this.vibrationStrengthPercent = vibrationStrengthPercent;
+        this.vibrationEnabled = vibrationStrengthPercent > 0;
+    }
+
+    private boolean canSeek() {
+        return !stages.isEmpty() && (state == TimerState.RUNNING || state == TimerState.PAUSED || state == TimerState.IDLE);
+    }
+
+    /**
+     * Publishes the landing stage after a seek and lets a running session dispatch the cue sitting
+     * on the landing position straight away.
+     */
+    private void onSeekCompleted() {
+        haptics.cancel();
+        guidedBreath = -1L;
+        currentStageIndex = scheduler.getStageIndex();
+        audio.retain(currentStageIndex, -1);
+        listener.onStageChanged(currentStageIndex);
+        if (state == TimerState.RUNNING) {
+            audio.stop();
+            onDeadline();
+        }
+    }
+
+    /**
+     * Warms the audio of the stage the next cue belongs to once that cue is within the prefetch
+     * lead time.
+     */
+    private void prefetchUpcomingStage() {
+        int upcoming = scheduler.getNextCueStage();
+        if (upcoming < 0 || audio.isRetained(upcoming)) {
+            return;
+        }
+        if (scheduler.getNextDeadline() - clock.elapsedRealtime() <= prefetchLeadMs) {
+            audio.retain(currentStageIndex, upcoming);
+        }
+    }
+
+    /**
+     * Requests a wakeup for the next pending cue, moved to the prefetch point ahead of it when the
+     * cue belongs to a stage whose audio is not warm yet.
+     */
+    private void scheduleNextDeadline() {
+        updateCueLead();
+        long deadline = scheduler.getNextDeadline();
+        if (deadline < 0) {
+            alarm.cancel();
+            return;
+        }
+        int upcoming = scheduler.getNextCueStage();
+        if (upcoming >= 0 && !audio.isRetained(upcoming)) {
+            deadline = Math.max(clock.elapsedRealtime(), deadline - prefetchLeadMs);
+        }
+        long breath = getNextBreathDeadline();
+        alarm.schedule(breath >= 0L ? Math.min(deadline, breath) : deadline);
+    }
+
+    /**
+     * Compiles the cue vibration and breathing pacer of every stage and hands the waveforms to the
+     * haptics port, so nothing is built per cue or per breath.
+     */
+    private void prepareHaptics() {
+        compileCueWaveforms();
+        pacers = new BreathingPacer[stages.size()];
+        HapticWaveform[] waveforms = new HapticWaveform[stages.size()];
+        int amplitude = CueWaveforms.amplitudeFor(vibrationStrengthPercent);
+        for (int i = 0; i < pacers.length; i++) {
+            if (stages.get(i).isBreathingPacer()) {
+                pacers[i] = new BreathingPacer(stages.get(i).getBreathing());
+                waveforms[i] = pacers[i].compileWaveform(amplitude);
+            }
+        }
+        haptics.setBreathWaveforms(waveforms);
+        guidedStage = -1;
+        guidedBreath = -1L;
+    }
+
+    private void compileCueWaveforms() {
+        HapticWaveform[] waveforms = new HapticWaveform[stages.size()];
+        for (int i = 0; i < waveforms.length; i++) {
+            waveforms[i] = CueWaveforms.compile(stages.get(i).getCueVibration(), vibrationStrengthPercent, cueLeadMs);
+        }
+        haptics.setCueWaveforms(waveforms);
+        cueWaveformLeadMs = cueLeadMs;
+    }
+
+    /**
+     * Plays the breath that has started in a breathing pacer stage, once per breath.
+     */
+    private void guideBreath() {
+        BreathingPacer pacer = currentPacer();
+        if (pacer == null) {
+            return;
+        }
+        long elapsed = scheduler.getOffsetMs() - scheduler.getStageStartMs();
+        long breath = pacer.getBreathIndex(elapsed);
+        if (guidedStage == currentStageIndex && breath <= guidedBreath) {
+            return;
+        }
+        guidedStage = currentStageIndex;
+        guidedBreath = breath;
+        if (vibrationEnabled && elapsed - pacer.getBreathStartMs(breath) <= MAX_BREATH_LATENESS_MS) {
+            haptics.breathe(currentStageIndex);
+        }
+    }
+
+    /**
+     * @return clock time at which the next breath of the running pacer stage starts, or {@code -1}
+     * when the stage has no pacer or no further breath before it ends.
+     */
+    private long getNextBreathDeadline() {
+        BreathingPacer pacer = currentPacer();
+        if (pacer == null) {
+            return -1L;
+        }
+        long stageStart = scheduler.getStageStartMs();
+        long elapsed = scheduler.getOffsetMs() - stageStart;
+        long next = pacer.getBreathStartMs(pacer.getBreathIndex(elapsed) + 1);
+        if (stageStart + next >= scheduler.getStageEndMs()) {
+            return -1L;
+        }
+        return clock.elapsedRealtime() + next - elapsed;
+    }
+
+    @Nullable
+    private BreathingPacer currentPacer() {
+        return currentStageIndex < pacers.length ? pacers[currentStageIndex] : null;
+    }
+
+    /**
+     * Follows the output latency of the current audio route. Silent sessions need no lead.
+     */
+    private void updateCueLead() {
+        long latency = soundEnabled ? audio.getOutputLatencyMs() : 0L;
+        cueLeadMs = Math.max(0L, Math.min(latency, MAX_OUTPUT_LATENCY_MS));
+        scheduler.setDispatchLeadMs(cueLeadMs);
+        if (cueLeadMs != cueWaveformLeadMs) {
+            // Route changes are rare; the cues in between reuse the compiled waveforms.
+            compileCueWaveforms();
+        }
+    }
+
+    private void finish(@NonNull TimerState terminalState) {
+        alarm.cancel();
+        haptics.cancel();
+        audio.release();
+        timingSummary = summarizeTiming();
+        setState(terminalState);
+    }
+
+    private void recordCueLateness() {
+        cueLateness.record(scheduler.getDispatchLatenessMs() * 1000L);
+    }
+
+    private void resetTiming() {
+        cueLateness.reset();
+        audioStartLatency.reset();
+        timingSummary = TimingSummary.EMPTY;
+    }
+
+    @NonNull
+    private TimingSummary summarizeTiming() {
+        return new TimingSummary(TimingSummary.Distribution.of(cueLateness),
+                TimingSummary.Distribution.of(audioStartLatency));
+    }
+
+    private void setState(@NonNull TimerState newState) {
+        state = newState;
+        listener.onStateChanged(newState);
+    }
+
+    /**
+     * Triggers the cue of {@code stageIndex}, combining vibration feedback and audio playback. The
+     * cue lead may sound it before that stage has started.
+     */
+    private void playStageCue(int stageIndex) {
+        wakeLock.acquire(CUE_WAKE_LOCK_MS);
+        if (vibrationEnabled && vibrationStrengthPercent > 0) {
+            // The waveform opens with the cue lead as silence, so the buzz meets the sound.
+            haptics.cue(stageIndex);
+        }
+        if (!soundEnabled || stageIndex >= stages.size()) {
+            return;
+        }
+        List<String> sounds = stages.get(stageIndex).getSounds();
+        if (sounds.isEmpty()) {
+            return;
+        }
+        // A random pick adds variation between repeats.
+        String sound = sounds.size() == 1 ? sounds.get(0) : sounds.get(random.nextInt(sounds.size()));
+        if (!audio.play(sound)) {
+            listener.onSoundUnavailable(sound);
+        }
+    }
+}
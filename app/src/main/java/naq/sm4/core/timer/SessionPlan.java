@@ -0,0 +1,52 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+
+/**
+ * A config together with its compiled {@link SessionTimeline}, ready for
+ * {@link SessionEngine#load(SessionPlan, boolean, int)} without any further parsing or
+ * compilation. The fingerprint is the CRC of the encoded plan and identifies its exact content.
+ */
+public final class SessionPlan {
+
+    private final MeditationConfig config;
+    private final List<MeditationStage> stages;
+    private final SessionTimeline timeline;
+    private final long fingerprint;
+
+    SessionPlan(@NonNull MeditationConfig config, @NonNull SessionTimeline timeline, long fingerprint) {
+        this.config = config;
+        this.stages = Collections.unmodifiableList(new ArrayList<>(config.getStages()));
+        this.timeline = timeline;
+        this.fingerprint = fingerprint;
+    }
+
+    @NonNull
+    public MeditationConfig getConfig() {
+        return config;
+    }
+
+    @NonNull
+    public List<MeditationStage> getStages() {
+        return stages;
+    }
+
+    @NonNull
+    public SessionTimeline getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * @return checksum of the encoded plan, identifying its exact content.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+}
@@ -0,0 +1,127 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import naq.sm4.data.BreathingPattern;
+import naq.sm4.data.CueVibration;
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+
+/**
+ * Binary encoding of a {@link MeditationConfig} shared by the session snapshot and the quick-start
+ * plan. The CRC of the encoded bytes doubles as the content hash of the config.
+ */
+final class SessionPlanCodec {
+
+    private static final CueVibration[] CUE_VIBRATIONS = CueVibration.values();
+
+    private SessionPlanCodec() {
+    }
+
+    /**
+     * Encodes {@code config} at the position of {@code target}.
+     *
+     * @throws BufferOverflowException  when the config does not fit
+     * @throws IllegalArgumentException when a string is too long to encode
+     */
+    static void encode(@NonNull MeditationConfig config, @NonNull ByteBuffer target) {
+        putString(target, config.getName());
+        target.putInt(config.getTotalMinutes());
+        List<MeditationStage> stages = config.getStages();
+        target.putInt(stages.size());
+        for (MeditationStage stage : stages) {
+            putString(target, stage.getName());
+            target.putInt(stage.getMinutes());
+            target.putInt(stage.getRepeatMinutes());
+            List<String> sounds = stage.getSounds();
+            target.putShort((short) sounds.size());
+            for (String sound : sounds) {
+                putString(target, sound);
+            }
+            BreathingPattern breathing = stage.getBreathing();
+            target.put((byte) (breathing == null ? 0 : 1));
+            if (breathing != null) {
+                target.put((byte) breathing.getInhaleSeconds());
+                target.put((byte) breathing.getHoldSeconds());
+                target.put((byte) breathing.getExhaleSeconds());
+            }
+            target.put((byte) stage.getCueVibration().ordinal());
+        }
+    }
+
+    /**
+     * Decodes a config written by {@link #encode} from a heap buffer.
+     *
+     * @throws BufferUnderflowException when the data is truncated
+     * @throws IllegalArgumentException when the data is not a valid plan
+     */
+    @NonNull
+    static MeditationConfig decode(@NonNull ByteBuffer source) {
+        String name = getString(source);
+        int totalMinutes = source.getInt();
+        int stageCount = source.getInt();
+        if (stageCount < 0) {
+            throw new IllegalArgumentException("Negative stage count");
+        }
+        List<MeditationStage> stages = new ArrayList<>(Math.min(stageCount, 256));
+        for (int i = 0; i < stageCount; i++) {
+            String stageName = getString(source);
+            int minutes = source.getInt();
+            int repeatMinutes = source.getInt();
+            int soundCount = source.getShort() & 0xFFFF;
+            List<String> sounds = new ArrayList<>(soundCount);
+            for (int j = 0; j < soundCount; j++) {
+                sounds.add(getString(source));
+            }
+            BreathingPattern breathing = null;
+            if (source.get() != 0) {
+                breathing = new BreathingPattern(source.get(), source.get(), source.get());
+            }
+            int vibration = source.get();
+            if (vibration < 0 || vibration >= CUE_VIBRATIONS.length) {
+                throw new IllegalArgumentException("Unknown cue vibration " + vibration);
+            }
+            stages.add(new MeditationStage(stageName, minutes, repeatMinutes, sounds, breathing,
+                    CUE_VIBRATIONS[vibration]));
+        }
+        return new MeditationConfig(name, totalMinutes, stages);
+    }
+
+    /**
+     * @return CRC32 of {@code length} bytes of {@code data} starting at {@code offset}
+     */
+    static long fingerprint(@NonNull byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return crc.getValue();
+    }
+
+    private static void putString(@NonNull ByteBuffer target, @Nullable String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long for session plan");
+        }
+        target.putShort((short) bytes.length);
+        target.put(bytes);
+    }
+
+    @NonNull
+    private static String getString(@NonNull ByteBuffer source) {
+        int length = source.getShort() & 0xFFFF;
+        if (length > source.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(source.array(), source.arrayOffset() + source.position(), length, StandardCharsets.UTF_8);
+        source.position(source.position() + length);
+        return value;
+    }
+}
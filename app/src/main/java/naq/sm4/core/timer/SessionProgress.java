@@ -0,0 +1,91 @@
+package naq.sm4.core.timer;
+
+/**
+ * Immutable reading of a {@link SessionScheduler} taken on the thread that owns it, so that other
+ * threads can render the session without touching the scheduler. A running session is carried
+ * forward by the clock until the next capture; like the scheduler itself, the stage only changes
+ * when the owner dispatches the stage boundary and captures again.
+ */
+public final class SessionProgress {
+
+    public static final SessionProgress NONE = new SessionProgress(false, 0, 0L, 0L, 0L, 0L, 0L);
+
+    private final boolean running;
+    private final int stageIndex;
+    private final long offsetMs;
+    private final long stageStartMs;
+    private final long stageEndMs;
+    private final long totalMs;
+    private final long capturedAtMs;
+
+    SessionProgress(boolean running, int stageIndex, long offsetMs, long stageStartMs, long stageEndMs,
+                    long totalMs, long capturedAtMs) {
+        this.running = running;
+        this.stageIndex = stageIndex;
+        this.offsetMs = offsetMs;
+        this.stageStartMs = stageStartMs;
+        this.stageEndMs = stageEndMs;
+        this.totalMs = totalMs;
+        this.capturedAtMs = capturedAtMs;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return index of the stage the scheduler had settled on at capture time.
+     */
+    public int getStageIndex() {
+        return stageIndex;
+    }
+
+    /**
+     * @return offset at which the captured stage starts.
+     */
+    public long getStageStartMs() {
+        return stageStartMs;
+    }
+
+    /**
+     * @param nowElapsedMs current reading of the clock the scheduler runs on
+     * @return elapsed session time in milliseconds, clamped to the session length.
+     */
+    public long getOffsetMs(long nowElapsedMs) {
+        if (!running) {
+            return offsetMs;
+        }
+        return Math.max(0L, Math.min(offsetMs + nowElapsedMs - capturedAtMs, totalMs));
+    }
+
+    /**
+     * @param nowElapsedMs current reading of the clock the scheduler runs on
+     * @return milliseconds left in the captured stage.
+     */
+    public long getStageRemainingMs(long nowElapsedMs) {
+        return Math.max(0L, stageEndMs - getOffsetMs(nowElapsedMs));
+    }
+
+    /**
+     * @param nowElapsedMs current reading of the clock the scheduler runs on
+     * @return share of the captured stage that has elapsed, between 0 and 1.
+     */
+    public float getStageFraction(long nowElapsedMs) {
+        return fraction(getOffsetMs(nowElapsedMs) - stageStartMs, stageEndMs - stageStartMs);
+    }
+
+    /**
+     * @param nowElapsedMs current reading of the clock the scheduler runs on
+     * @return share of the whole session that has elapsed, between 0 and 1.
+     */
+    public float getSessionFraction(long nowElapsedMs) {
+        return fraction(getOffsetMs(nowElapsedMs), totalMs);
+    }
+
+    private static float fraction(long part, long whole) {
+        if (whole <= 0L) {
+            return 0f;
+        }
+        return Math.max(0f, Math.min(1f, (float) part / whole));
+    }
+}
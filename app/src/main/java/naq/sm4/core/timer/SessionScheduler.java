@@ -0,0 +1,340 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+
+/**
+ * Deadline based scheduler for a meditation session. The session is driven by a precompiled
+ * {@link SessionTimeline}: every cue is an absolute offset from a monotonic anchor, so the
+ * remaining time is always derived from the {@link SessionClock} instead of being counted tick by
+ * tick, and advancing through the session is a single cursor bump per cue. Late wakeups simply
+ * dispatch every cue that became due in the meantime, in order.
+ *
+ * <p>Cues that make a sound can be dispatched a fixed lead ahead of their offset, see
+ * {@link #setDispatchLeadMs(long)}, so that audio issued at dispatch becomes audible on time. Only
+ * the sound moves: the timeline is walked by two cursors, one for the sounding cues and one for
+ * the stage boundaries and session end, which stay on their exact offsets, so the current stage
+ * and its remaining time never run ahead of the clock.
+ */
+public class SessionScheduler {
+
+    /**
+     * Receives the events that became due during {@link #dispatchDue(Listener)}.
+     */
+    public interface Listener {
+        /** The cue opening {@code stageIndex} is due to sound; the stage has not started yet. */
+        void onStageCue(int stageIndex);
+
+        void onRepeatCue(int stageIndex);
+
+        /** The session has reached the start of {@code stageIndex}. */
+        void onStageStarted(int stageIndex);
+
+        void onSessionCompleted();
+    }
+
+    private final SessionClock clock;
+
+    private SessionTimeline timeline = SessionTimeline.compile(Collections.emptyList());
+    /** Next stage start or session end, dispatched on its offset. */
+    private int cursor;
+    /** Next stage start or repeat cue, dispatched {@link #dispatchLeadMs} ahead of its offset. */
+    private int cueCursor;
+
+    private long anchorMs;
+    private long pausedOffsetMs;
+    private boolean running;
+    private boolean completed;
+    private int stageIndex;
+    private long dispatchLatenessMs;
+    private long dispatchLeadMs;
+    /** Offset the session was loaded or last seeked to; cues cannot be dispatched before it. */
+    private long reachableFromMs;
+
+    public SessionScheduler(@NonNull SessionClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Installs a compiled timeline and rewinds to the session start. The first stage's start cue
+     * is dispatched by the first {@link #dispatchDue(Listener)} call after {@link #start()}.
+     */
+    public void load(@NonNull SessionTimeline timeline) {
+        this.timeline = timeline;
+        moveCursorsTo(0);
+        running = false;
+        completed = false;
+        stageIndex = 0;
+        pausedOffsetMs = 0L;
+        reachableFromMs = 0L;
+    }
+
+    /**
+     * Anchors the session offset at the current clock reading and starts running.
+     */
+    public void start() {
+        if (running || completed || getStageCount() == 0) {
+            return;
+        }
+        anchorMs = clock.elapsedRealtime() - pausedOffsetMs;
+        running = true;
+    }
+
+    /**
+     * Freezes the session offset with millisecond precision.
+     */
+    public void pause() {
+        if (!running) {
+            return;
+        }
+        pausedOffsetMs = currentOffset();
+        running = false;
+    }
+
+    /**
+     * Re-anchors the session so that it continues exactly where {@link #pause()} left it.
+     */
+    public void resume() {
+        start();
+    }
+
+    /**
+     * Marks the session finished without dispatching any further events.
+     */
+    public void stop() {
+        pause();
+        completed = true;
+    }
+
+    /**
+     * Moves the session to {@code offsetMs} without dispatching the cues that were jumped over.
+     * A cue sitting exactly on the target offset is dispatched by the next
+     * {@link #dispatchDue(Listener)} call. Costs two binary searches.
+     */
+    public void seekTo(long offsetMs) {
+        if (completed || getStageCount() == 0) {
+            return;
+        }
+        long target = Math.max(0L, Math.min(offsetMs, getTotalMs()));
+        moveCursorsTo(timeline.findFirstCueAtOrAfter(target));
+        stageIndex = timeline.findStageAt(target);
+        reachableFromMs = target;
+        if (running) {
+            anchorMs = clock.elapsedRealtime() - target;
+        } else {
+            pausedOffsetMs = target;
+        }
+    }
+
+    /**
+     * Jumps to the start of the following stage, or to the session end from the last stage.
+     */
+    public void skipToNextStage() {
+        seekTo(timeline.getStageEndMs(stageIndex));
+    }
+
+    /**
+     * Jumps back to the start of the previous stage, or restarts the first stage.
+     */
+    public void skipToPreviousStage() {
+        seekTo(timeline.getStageStartMs(Math.max(0, stageIndex - 1)));
+    }
+
+    /**
+     * Dispatches stage and repeat cues {@code leadMs} ahead of their offset from now on. The
+     * lead compensates the output latency of the audio route, so it is expected to stay well
+     * below a second. Stage starts themselves are not moved.
+     */
+    public void setDispatchLeadMs(long leadMs) {
+        dispatchLeadMs = Math.max(0L, leadMs);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return number of stages in the loaded timeline.
+     */
+    public int getStageCount() {
+        return timeline.getStageCount();
+    }
+
+    /**
+     * @return index of the stage the last dispatch or seek settled on.
+     */
+    public int getStageIndex() {
+        return stageIndex;
+    }
+
+    /**
+     * @return offset at which the stage the last dispatch or seek settled on starts.
+     */
+    public long getStageStartMs() {
+        return getStageCount() == 0 ? 0L : timeline.getStageStartMs(stageIndex);
+    }
+
+    /**
+     * @return offset at which the stage the last dispatch or seek settled on ends.
+     */
+    public long getStageEndMs() {
+        return getStageCount() == 0 ? 0L : timeline.getStageEndMs(stageIndex);
+    }
+
+    /**
+     * @return total length of the session in milliseconds.
+     */
+    public long getTotalMs() {
+        return timeline.getTotalMs();
+    }
+
+    /**
+     * @return elapsed session time in milliseconds, clamped to the session length.
+     */
+    public long getOffsetMs() {
+        return Math.max(0L, Math.min(currentOffset(), getTotalMs()));
+    }
+
+    /**
+     * @return milliseconds left in the current stage, derived from the clock.
+     */
+    public long getStageRemainingMs() {
+        if (getStageCount() == 0) {
+            return 0L;
+        }
+        return Math.max(0L, timeline.getStageEndMs(stageIndex) - getOffsetMs());
+    }
+
+    /**
+     * @return reading of the current position that other threads can sample without touching
+     * this scheduler.
+     */
+    @NonNull
+    public SessionProgress captureProgress() {
+        if (getStageCount() == 0) {
+            return SessionProgress.NONE;
+        }
+        long now = clock.elapsedRealtime();
+        long offset = running ? now - anchorMs : pausedOffsetMs;
+        offset = Math.max(0L, Math.min(offset, getTotalMs()));
+        return new SessionProgress(running && !completed, stageIndex, offset,
+                timeline.getStageStartMs(stageIndex), timeline.getStageEndMs(stageIndex), getTotalMs(), now);
+    }
+
+    /**
+     * @return {@code SystemClock.elapsedRealtime()} based deadline of the next pending cue, or
+     * {@code -1} when nothing is pending.
+     */
+    public long getNextDeadline() {
+        if (!running || completed) {
+            return -1L;
+        }
+        return anchorMs + Math.min(nextCueTriggerMs(), nextBoundaryMs());
+    }
+
+    /**
+     * @return stage whose audio the next pending cue plays, or {@code -1} when no cue is left
+     * before the session end.
+     */
+    public int getNextCueStage() {
+        if (completed || cueCursor >= timeline.getCueCount()) {
+            return -1;
+        }
+        return timeline.getCueStage(cueCursor);
+    }
+
+    /**
+     * Dispatches, in timeline order, every cue and stage boundary whose deadline has passed. A
+     * single late wakeup therefore catches up on everything it missed. A stage's cue is always
+     * dispatched before the stage itself starts.
+     */
+    public void dispatchDue(@NonNull Listener listener) {
+        if (!running || completed) {
+            return;
+        }
+        long offset = currentOffset();
+        while (true) {
+            long cueAt = nextCueTriggerMs();
+            long boundaryAt = nextBoundaryMs();
+            if (cueAt <= offset && cueAt <= boundaryAt) {
+                int cue = cueCursor++;
+                skipToSoundingCue();
+                dispatchLatenessMs = offset - Math.max(cueAt, reachableFromMs);
+                if (timeline.getCueType(cue) == SessionTimeline.CUE_STAGE_START) {
+                    listener.onStageCue(timeline.getCueStage(cue));
+                } else {
+                    listener.onRepeatCue(timeline.getCueStage(cue));
+                }
+            } else if (boundaryAt <= offset) {
+                int cue = cursor++;
+                skipToBoundary();
+                if (timeline.getCueType(cue) == SessionTimeline.CUE_STAGE_START) {
+                    stageIndex = timeline.getCueStage(cue);
+                    listener.onStageStarted(stageIndex);
+                } else {
+                    pausedOffsetMs = getTotalMs();
+                    running = false;
+                    completed = true;
+                    listener.onSessionCompleted();
+                    return;
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return how far past its (lead-adjusted) deadline the cue being dispatched is, valid inside
+     * {@link Listener#onStageCue} and {@link Listener#onRepeatCue}.
+     */
+    public long getDispatchLatenessMs() {
+        return dispatchLatenessMs;
+    }
+
+    private void moveCursorsTo(int cue) {
+        cursor = cue;
+        cueCursor = cue;
+        skipToBoundary();
+        skipToSoundingCue();
+    }
+
+    private void skipToBoundary() {
+        while (cursor < timeline.getCueCount() && timeline.getCueType(cursor) == SessionTimeline.CUE_REPEAT) {
+            cursor++;
+        }
+    }
+
+    private void skipToSoundingCue() {
+        while (cueCursor < timeline.getCueCount()
+                && timeline.getCueType(cueCursor) == SessionTimeline.CUE_SESSION_END) {
+            cueCursor++;
+        }
+    }
+
+    /**
+     * @return lead-adjusted offset of the next sounding cue, {@code Long.MAX_VALUE} when none is left.
+     */
+    private long nextCueTriggerMs() {
+        if (cueCursor >= timeline.getCueCount()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0L, timeline.getCueOffsetMs(cueCursor) - dispatchLeadMs);
+    }
+
+    /**
+     * @return offset of the next stage start or session end, {@code Long.MAX_VALUE} when none is left.
+     */
+    private long nextBoundaryMs() {
+        return cursor < timeline.getCueCount() ? timeline.getCueOffsetMs(cursor) : Long.MAX_VALUE;
+    }
+
+    private long currentOffset() {
+        return running ? clock.elapsedRealtime() - anchorMs : pausedOffsetMs;
+    }
+}
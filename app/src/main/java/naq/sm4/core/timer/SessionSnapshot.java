@@ -0,0 +1,101 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+
+import naq.sm4.data.MeditationConfig;
+
+/**
+ * Session position read back from a {@link SessionSnapshotStore}: the config that was running,
+ * where on its timeline the session stood, and the monotonic and wall-clock readings taken at the
+ * same moment so the position can be carried forward across process death.
+ */
+public final class SessionSnapshot {
+
+    private final MeditationConfig config;
+    private final long fingerprint;
+    private final boolean running;
+    private final int stageIndex;
+    private final long offsetMs;
+    private final long elapsedRealtimeMs;
+    private final long wallClockMs;
+    private final boolean soundEnabled;
+    private final boolean vibrationEnabled;
+
+    SessionSnapshot(@NonNull MeditationConfig config, long fingerprint, boolean running, int stageIndex,
+                    long offsetMs, long elapsedRealtimeMs, long wallClockMs,
+                    boolean soundEnabled, boolean vibrationEnabled) {
+        this.config = config;
+        this.fingerprint = fingerprint;
+        this.running = running;
+        this.stageIndex = stageIndex;
+        this.offsetMs = offsetMs;
+        this.elapsedRealtimeMs = elapsedRealtimeMs;
+        this.wallClockMs = wallClockMs;
+        this.soundEnabled = soundEnabled;
+        this.vibrationEnabled = vibrationEnabled;
+    }
+
+    /**
+     * @return config the session was compiled from, decoded from the snapshot itself.
+     */
+    @NonNull
+    public MeditationConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return checksum of the encoded config, identifying its exact content.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return {@code true} when the session was running, {@code false} when it was paused.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getStageIndex() {
+        return stageIndex;
+    }
+
+    /**
+     * @return session offset at the moment the snapshot was written.
+     */
+    public long getOffsetMs() {
+        return offsetMs;
+    }
+
+    public long getElapsedRealtimeMs() {
+        return elapsedRealtimeMs;
+    }
+
+    public long getWallClockMs() {
+        return wallClockMs;
+    }
+
+    public boolean isSoundEnabled() {
+        return soundEnabled;
+    }
+
+    public boolean isVibrationEnabled() {
+        return vibrationEnabled;
+    }
+
+    /**
+     * Carries the stored position forward to now. A running session advances by the monotonic
+     * clock; when that clock is behind the stored anchor the device has rebooted, and the wall
+     * clock is used instead. A paused session stays where it was.
+     */
+    public long resolveOffsetMs(long nowElapsedRealtimeMs, long nowWallClockMs) {
+        if (!running) {
+            return offsetMs;
+        }
+        if (nowElapsedRealtimeMs >= elapsedRealtimeMs) {
+            return offsetMs + (nowElapsedRealtimeMs - elapsedRealtimeMs);
+        }
+        return offsetMs + Math.max(0L, nowWallClockMs - wallClockMs);
+    }
+}
@@ -0,0 +1,183 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import naq.sm4.data.MeditationConfig;
+
+/**
+ * Fixed-layout binary snapshot of the running session, kept in a preallocated file so that a
+ * session survives process death without touching the JSON config store.
+ *
+ * <p>The file starts with a {@value #HEADER_SIZE}-byte header holding the session position, which
+ * is rewritten on every state transition with a single positional write. The config itself is
+ * encoded once per session into the plan region that follows, and the header carries its CRC as
+ * the config fingerprint, so a torn plan write is rejected on read.
+ *
+ * <pre>
+ *  0 int   magic            20 int   reserved
+ *  4 short version          24 long  offset ms
+ *  6 byte  state            32 long  elapsedRealtime at write
+ *  7 byte  flags            40 long  wall clock at write
+ *  8 long  fingerprint      48 int   stage index
+ * 16 int   plan length      52 ..    reserved
+ * </pre>
+ */
+public final class SessionSnapshotStore implements Closeable {
+
+    static final int HEADER_SIZE = 64;
+    static final int PLAN_CAPACITY = 16 * 1024;
+    static final int FILE_SIZE = HEADER_SIZE + PLAN_CAPACITY;
+
+    private static final int MAGIC = 0x534D3453;
+    private static final short VERSION = 3;
+    private static final byte STATE_NONE = 0;
+    private static final byte STATE_RUNNING = 1;
+    private static final byte STATE_PAUSED = 2;
+    private static final byte FLAG_SOUND = 1;
+    private static final byte FLAG_VIBRATION = 1 << 1;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE);
+    private final ByteBuffer plan = ByteBuffer.allocate(PLAN_CAPACITY);
+
+    private long fingerprint;
+    private int planLength;
+
+    /**
+     * Opens the snapshot file, preallocating it to its full size on first use.
+     */
+    public SessionSnapshotStore(@NonNull File target) throws IOException {
+        file = new RandomAccessFile(target, "rw");
+        if (file.length() != FILE_SIZE) {
+            file.setLength(FILE_SIZE);
+        }
+        channel = file.getChannel();
+    }
+
+    /**
+     * Encodes the config of a new session into the plan region. The position written afterwards
+     * refers to this plan.
+     *
+     * @return {@code false} when the config does not fit, in which case the session is not
+     * restorable
+     */
+    public boolean writePlan(@NonNull MeditationConfig config) throws IOException {
+        plan.clear();
+        try {
+            SessionPlanCodec.encode(config, plan);
+        } catch (BufferOverflowException | IllegalArgumentException e) {
+            fingerprint = 0L;
+            planLength = 0;
+            return false;
+        }
+        planLength = plan.position();
+        fingerprint = SessionPlanCodec.fingerprint(plan.array(), 0, planLength);
+        plan.flip();
+        writeFully(plan, HEADER_SIZE);
+        return true;
+    }
+
+    /**
+     * Records the current position of the session described by the last {@link #writePlan}.
+     */
+    public void writePosition(boolean running, int stageIndex, long offsetMs, long elapsedRealtimeMs,
+                              long wallClockMs, boolean soundEnabled, boolean vibrationEnabled) throws IOException {
+        byte flags = 0;
+        if (soundEnabled) {
+            flags |= FLAG_SOUND;
+        }
+        if (vibrationEnabled) {
+            flags |= FLAG_VIBRATION;
+        }
+        writeHeader(planLength == 0 ? STATE_NONE : running ? STATE_RUNNING : STATE_PAUSED, flags,
+                stageIndex, offsetMs, elapsedRealtimeMs, wallClockMs);
+    }
+
+    /**
+     * Marks the snapshot empty once the session has ended.
+     */
+    public void clear() throws IOException {
+        writeHeader(STATE_NONE, (byte) 0, 0, 0L, 0L, 0L);
+    }
+
+    /**
+     * Reads the file back in a single read.
+     *
+     * @return the stored session, or {@code null} when there is none or the file is damaged
+     */
+    @Nullable
+    public SessionSnapshot read() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+            return null;
+        }
+        byte state = buffer.get(6);
+        byte flags = buffer.get(7);
+        long storedFingerprint = buffer.getLong(8);
+        int length = buffer.getInt(16);
+        if (state == STATE_NONE || length <= 0 || length > PLAN_CAPACITY || HEADER_SIZE + length > buffer.limit()) {
+            return null;
+        }
+        if (SessionPlanCodec.fingerprint(buffer.array(), HEADER_SIZE, length) != storedFingerprint) {
+            return null;
+        }
+        MeditationConfig config;
+        try {
+            ByteBuffer planView = ByteBuffer.wrap(buffer.array(), HEADER_SIZE, length);
+            config = SessionPlanCodec.decode(planView);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+        fingerprint = storedFingerprint;
+        planLength = length;
+        return new SessionSnapshot(config, storedFingerprint, state == STATE_RUNNING, buffer.getInt(48),
+                buffer.getLong(24), buffer.getLong(32), buffer.getLong(40),
+                (flags & FLAG_SOUND) != 0, (flags & FLAG_VIBRATION) != 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void writeHeader(byte state, byte flags, int stageIndex, long offsetMs,
+                             long elapsedRealtimeMs, long wallClockMs) throws IOException {
+        header.clear();
+        header.putInt(MAGIC)
+                .putShort(VERSION)
+                .put(state)
+                .put(flags)
+                .putLong(fingerprint)
+                .putInt(planLength)
+                .putInt(0)
+                .putLong(offsetMs)
+                .putLong(elapsedRealtimeMs)
+                .putLong(wallClockMs)
+                .putInt(stageIndex);
+        header.clear();
+        writeFully(header, 0L);
+    }
+
+    private void writeFully(@NonNull ByteBuffer source, long position) throws IOException {
+        while (source.hasRemaining()) {
+            position += channel.write(source, position);
+        }
+    }
+}
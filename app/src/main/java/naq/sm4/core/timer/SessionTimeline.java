@@ -0,0 +1,218 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import naq.sm4.data.MeditationStage;
+
+/**
+ * Flat, precompiled cue timeline for a meditation session. Every stage start, repeat cue and the
+ * session end is stored once, in order, as an absolute offset in primitive arrays so that the
+ * running session only ever advances an index and any position is located by binary search.
+ */
+public final class SessionTimeline {
+
+    public static final byte CUE_STAGE_START = 0;
+    public static final byte CUE_REPEAT = 1;
+    public static final byte CUE_SESSION_END = 2;
+
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+
+    private final long[] cueOffsetMs;
+    private final int[] cueStage;
+    private final byte[] cueType;
+    /** Start offset of every stage plus a trailing entry holding the session length. */
+    private final long[] stageStartMs;
+
+    private SessionTimeline(long[] cueOffsetMs, int[] cueStage, byte[] cueType, long[] stageStartMs) {
+        this.cueOffsetMs = cueOffsetMs;
+        this.cueStage = cueStage;
+        this.cueType = cueType;
+        this.stageStartMs = stageStartMs;
+    }
+
+    /**
+     * Compiles the supplied stages into a timeline. Repeat cues follow the original semantics:
+     * they fire every {@code repeatMinutes} after the stage start while the stage is still running.
+     */
+    @NonNull
+    public static SessionTimeline compile(@NonNull List<MeditationStage> stages) {
+        int stageCount = stages.size();
+        long[] stageStart = new long[stageCount + 1];
+        int cueCount = 1;
+        long offset = 0L;
+        for (int i = 0; i < stageCount; i++) {
+            MeditationStage stage = stages.get(i);
+            long length = Math.max(0, stage.getMinutes()) * MILLIS_PER_MINUTE;
+            stageStart[i] = offset;
+            cueCount += 1 + repeatCount(length, repeatInterval(stage));
+            offset += length;
+        }
+        stageStart[stageCount] = offset;
+
+        long[] offsets = new long[cueCount];
+        int[] owners = new int[cueCount];
+        byte[] types = new byte[cueCount];
+        int cursor = 0;
+        for (int i = 0; i < stageCount; i++) {
+            long start = stageStart[i];
+            long interval = repeatInterval(stages.get(i));
+            int repeats = repeatCount(stageStart[i + 1] - start, interval);
+            offsets[cursor] = start;
+            owners[cursor] = i;
+            types[cursor] = CUE_STAGE_START;
+            cursor++;
+            for (int k = 1; k <= repeats; k++) {
+                offsets[cursor] = start + k * interval;
+                owners[cursor] = i;
+                types[cursor] = CUE_REPEAT;
+                cursor++;
+            }
+        }
+        offsets[cursor] = offset;
+        owners[cursor] = Math.max(0, stageCount - 1);
+        types[cursor] = CUE_SESSION_END;
+        return new SessionTimeline(offsets, owners, types, stageStart);
+    }
+
+    public int getCueCount() {
+        return cueOffsetMs.length;
+    }
+
+    public long getCueOffsetMs(int cueIndex) {
+        return cueOffsetMs[cueIndex];
+    }
+
+    public int getCueStage(int cueIndex) {
+        return cueStage[cueIndex];
+    }
+
+    public byte getCueType(int cueIndex) {
+        return cueType[cueIndex];
+    }
+
+    public int getStageCount() {
+        return stageStartMs.length - 1;
+    }
+
+    public long getStageStartMs(int stageIndex) {
+        return stageStartMs[stageIndex];
+    }
+
+    public long getStageEndMs(int stageIndex) {
+        return stageStartMs[stageIndex + 1];
+    }
+
+    public long getTotalMs() {
+        return stageStartMs[getStageCount()];
+    }
+
+    /**
+     * @return index of the stage running at {@code offsetMs}, clamped to the last stage.
+     */
+    public int findStageAt(long offsetMs) {
+        int count = getStageCount();
+        if (count == 0) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(stageStartMs, 0, count, offsetMs);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // Skip over zero-length stages that share the same start offset.
+            while (index + 1 < count && stageStartMs[index + 1] == offsetMs) {
+                index++;
+            }
+        }
+        return Math.max(0, Math.min(index, count - 1));
+    }
+
+    /**
+     * @return index of the first cue whose offset is at or after {@code offsetMs}.
+     */
+    public int findFirstCueAtOrAfter(long offsetMs) {
+        int low = 0;
+        int high = cueOffsetMs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cueOffsetMs[mid] < offsetMs) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Writes the compiled arrays at the position of {@code target}, so that a cached plan can be
+     * loaded without compiling it again.
+     *
+     * @throws BufferOverflowException when the timeline does not fit
+     */
+    void writeTo(@NonNull ByteBuffer target) {
+        target.putInt(cueOffsetMs.length);
+        target.putInt(getStageCount());
+        for (int i = 0; i < cueOffsetMs.length; i++) {
+            target.putLong(cueOffsetMs[i]);
+            target.putInt(cueStage[i]);
+            target.put(cueType[i]);
+        }
+        for (long start : stageStartMs) {
+            target.putLong(start);
+        }
+    }
+
+    /**
+     * Reads a timeline written by {@link #writeTo}.
+     *
+     * @throws BufferUnderflowException when the data is truncated
+     * @throws IllegalArgumentException when the data is not a valid timeline
+     */
+    @NonNull
+    static SessionTimeline readFrom(@NonNull ByteBuffer source) {
+        int cueCount = source.getInt();
+        int stageCount = source.getInt();
+        // Each cue takes 13 bytes and each stage start 8, so larger counts cannot be real.
+        if (cueCount < 1 || stageCount < 0 || cueCount > source.remaining() / 13
+                || stageCount > source.remaining() / 8) {
+            throw new IllegalArgumentException("Invalid timeline size");
+        }
+        long[] offsets = new long[cueCount];
+        int[] owners = new int[cueCount];
+        byte[] types = new byte[cueCount];
+        for (int i = 0; i < cueCount; i++) {
+            offsets[i] = source.getLong();
+            owners[i] = source.getInt();
+            types[i] = source.get();
+            if ((i > 0 && offsets[i] < offsets[i - 1]) || owners[i] < 0 || owners[i] >= Math.max(1, stageCount)
+                    || types[i] < CUE_STAGE_START || types[i] > CUE_SESSION_END) {
+                throw new IllegalArgumentException("Invalid cue " + i);
+            }
+        }
+        long[] stageStart = new long[stageCount + 1];
+        for (int i = 0; i <= stageCount; i++) {
+            stageStart[i] = source.getLong();
+            if (i > 0 && stageStart[i] < stageStart[i - 1]) {
+                throw new IllegalArgumentException("Invalid stage start " + i);
+            }
+        }
+        return new SessionTimeline(offsets, owners, types, stageStart);
+    }
+
+    private static long repeatInterval(@NonNull MeditationStage stage) {
+        return stage.getRepeatMinutes() > 0 ? stage.getRepeatMinutes() * MILLIS_PER_MINUTE : 0L;
+    }
+
+    private static int repeatCount(long stageLength, long interval) {
+        if (interval <= 0L || stageLength <= interval) {
+            return 0;
+        }
+        return (int) ((stageLength - 1) / interval);
+    }
+}
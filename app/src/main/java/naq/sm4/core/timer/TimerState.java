@@ -0,0 +1,12 @@
+package naq.sm4.core.timer;
+
+/**
+ * High level lifecycle states for the session timer, used to drive UI controls and behavior.
+ */
+public enum TimerState {
+    IDLE,
+    RUNNING,
+    PAUSED,
+    COMPLETED,
+    STOPPED
+}
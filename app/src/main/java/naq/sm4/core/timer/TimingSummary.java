@@ -0,0 +1,116 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Timing accuracy of one finished session: how late each cue was dispatched relative to its
+ * deadline, and how long audio took to start after the dispatch, in microseconds; and how long
+ * the first cue took to sound after the session was asked for, in milliseconds.
+ */
+public final class TimingSummary {
+
+    /** First-cue time of a session whose first cue was not timed. */
+    public static final long NOT_MEASURED = -1L;
+
+    public static final TimingSummary EMPTY = new TimingSummary(Distribution.EMPTY, Distribution.EMPTY);
+
+    /**
+     * p50, p99 and maximum of one recorded distribution.
+     */
+    public static final class Distribution {
+
+        static final Distribution EMPTY = new Distribution(0L, 0L, 0L, 0L);
+
+        private final long count;
+        private final long p50;
+        private final long p99;
+        private final long max;
+
+        Distribution(long count, long p50, long p99, long max) {
+            this.count = count;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        @NonNull
+        static Distribution of(@NonNull LatencyHistogram histogram) {
+            return new Distribution(histogram.getTotalCount(), histogram.getValueAtPercentile(50d),
+                    histogram.getValueAtPercentile(99d), histogram.getMaxValue());
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getP50Micros() {
+            return p50;
+        }
+
+        public long getP99Micros() {
+            return p99;
+        }
+
+        public long getMaxMicros() {
+            return max;
+        }
+    }
+
+    private final Distribution cueLateness;
+    private final Distribution audioStartLatency;
+    private final long firstCueMs;
+    private final long firstCueSinceProcessStartMs;
+
+    TimingSummary(@NonNull Distribution cueLateness, @NonNull Distribution audioStartLatency) {
+        this(cueLateness, audioStartLatency, NOT_MEASURED, NOT_MEASURED);
+    }
+
+    private TimingSummary(@NonNull Distribution cueLateness, @NonNull Distribution audioStartLatency,
+                          long firstCueMs, long firstCueSinceProcessStartMs) {
+        this.cueLateness = cueLateness;
+        this.audioStartLatency = audioStartLatency;
+        this.firstCueMs = firstCueMs;
+        this.firstCueSinceProcessStartMs = firstCueSinceProcessStartMs;
+    }
+
+    /**
+     * @return a copy that also records when the first cue's audio started, measured from the
+     * session request and from the start of the process.
+     */
+    @NonNull
+    public TimingSummary withFirstCue(long firstCueMs, long firstCueSinceProcessStartMs) {
+        return new TimingSummary(cueLateness, audioStartLatency, firstCueMs, firstCueSinceProcessStartMs);
+    }
+
+    /**
+     * @return delay between each cue's deadline and its dispatch.
+     */
+    @NonNull
+    public Distribution getCueLateness() {
+        return cueLateness;
+    }
+
+    /**
+     * @return delay between a cue's dispatch and the start of its audio.
+     */
+    @NonNull
+    public Distribution getAudioStartLatency() {
+        return audioStartLatency;
+    }
+
+    /**
+     * @return milliseconds from the session request to the start of the first cue's audio, or
+     * {@link #NOT_MEASURED}.
+     */
+    public long getFirstCueMs() {
+        return firstCueMs;
+    }
+
+    /**
+     * @return milliseconds from the start of the process to the start of the first cue's audio,
+     * or {@link #NOT_MEASURED}; only meaningful for a cold start.
+     */
+    public long getFirstCueSinceProcessStartMs() {
+        return firstCueSinceProcessStartMs;
+    }
+}
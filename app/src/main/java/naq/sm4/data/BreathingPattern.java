@@ -0,0 +1,71 @@
+package naq.sm4.data;
+
+import java.util.Objects;
+
+/**
+ * Immutable breath cycle followed by a breathing pacer stage: inhale, hold with full lungs, then
+ * exhale, repeated for the whole stage.
+ */
+public class BreathingPattern {
+
+    public static final int MIN_PHASE_SECONDS = 1;
+    public static final int MAX_PHASE_SECONDS = 30;
+
+    private final int inhaleSeconds;
+    private final int holdSeconds;
+    private final int exhaleSeconds;
+
+    /**
+     * @param inhaleSeconds length of the inhale phase
+     * @param holdSeconds   length of the pause after inhaling (0 = no hold)
+     * @param exhaleSeconds length of the exhale phase
+     */
+    public BreathingPattern(int inhaleSeconds, int holdSeconds, int exhaleSeconds) {
+        this.inhaleSeconds = inhaleSeconds;
+        this.holdSeconds = holdSeconds;
+        this.exhaleSeconds = exhaleSeconds;
+    }
+
+    public int getInhaleSeconds() {
+        return inhaleSeconds;
+    }
+
+    public int getHoldSeconds() {
+        return holdSeconds;
+    }
+
+    public int getExhaleSeconds() {
+        return exhaleSeconds;
+    }
+
+    /**
+     * @return copy with every phase clamped to the supported range; only the hold may be zero.
+     */
+    public BreathingPattern sanitized() {
+        return new BreathingPattern(clamp(inhaleSeconds, MIN_PHASE_SECONDS), clamp(holdSeconds, 0),
+                clamp(exhaleSeconds, MIN_PHASE_SECONDS));
+    }
+
+    private static int clamp(int seconds, int min) {
+        return Math.max(min, Math.min(seconds, MAX_PHASE_SECONDS));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BreathingPattern)) {
+            return false;
+        }
+        BreathingPattern that = (BreathingPattern) o;
+        return inhaleSeconds == that.inhaleSeconds
+                && holdSeconds == that.holdSeconds
+                && exhaleSeconds == that.exhaleSeconds;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(inhaleSeconds, holdSeconds, exhaleSeconds);
+    }
+}
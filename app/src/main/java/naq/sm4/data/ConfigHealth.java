@@ -0,0 +1,49 @@
+package naq.sm4.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable result of resolving every sound referenced by a {@link MeditationConfig} against the
+ * sound library: either all present, or the list of missing file names.
+ */
+public final class ConfigHealth {
+
+    public static final ConfigHealth HEALTHY = new ConfigHealth(Collections.emptyList());
+
+    private final List<String> missingSounds;
+
+    private ConfigHealth(@NonNull List<String> missingSounds) {
+        this.missingSounds = missingSounds;
+    }
+
+    /**
+     * @return health for the given missing sounds, reusing {@link #HEALTHY} when there are none.
+     */
+    @NonNull
+    public static ConfigHealth of(@NonNull Collection<String> missingSounds) {
+        if (missingSounds.isEmpty()) {
+            return HEALTHY;
+        }
+        return new ConfigHealth(Collections.unmodifiableList(new ArrayList<>(missingSounds)));
+    }
+
+    /**
+     * @return {@code true} when every referenced sound is present.
+     */
+    public boolean isHealthy() {
+        return missingSounds.isEmpty();
+    }
+
+    /**
+     * @return missing sound file names in stage order.
+     */
+    @NonNull
+    public List<String> getMissingSounds() {
+        return missingSounds;
+    }
+}
@@ -0,0 +1,106 @@
+package naq.sm4.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable summary of a stored {@link MeditationConfig}: everything a config card shows,
+ * without the stages. The sounds are the distinct file names the stages reference, in stage
+ * order, so that missing sounds can be reported without loading the config itself. The id names
+ * the stored config and changes every time the config is saved.
+ */
+public class ConfigSummary {
+
+    private final int id;
+    private final String name;
+    private final int totalMinutes;
+    private final int stageCount;
+    private final List<String> sounds;
+
+    /**
+     * @param id           identifier of the stored config
+     * @param name         user facing name of the configuration
+     * @param totalMinutes total duration in minutes across all stages
+     * @param stageCount   number of stages in the configuration
+     * @param sounds       distinct sound file names referenced by the stages
+     */
+    public ConfigSummary(int id, String name, int totalMinutes, int stageCount, List<String> sounds) {
+        this.id = id;
+        this.name = name;
+        this.totalMinutes = totalMinutes;
+        this.stageCount = stageCount;
+        this.sounds = sounds == null ? Collections.emptyList() : Collections.unmodifiableList(sounds);
+    }
+
+    /**
+     * @return summary of {@code config} stored under {@code id}.
+     */
+    public static ConfigSummary of(int id, MeditationConfig config) {
+        Set<String> sounds = new LinkedHashSet<>();
+        for (MeditationStage stage : config.getStages()) {
+            sounds.addAll(stage.getSounds());
+        }
+        return new ConfigSummary(id, config.getName(), config.getTotalMinutes(), config.getStageCount(),
+                new ArrayList<>(sounds));
+    }
+
+    /**
+     * @return identifier of the stored config.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return display name chosen by the user.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return total duration in minutes, cached when the config was saved.
+     */
+    public int getTotalMinutes() {
+        return totalMinutes;
+    }
+
+    /**
+     * @return number of stages contained within the configuration.
+     */
+    public int getStageCount() {
+        return stageCount;
+    }
+
+    /**
+     * @return immutable list of the distinct sound file names the stages reference.
+     */
+    public List<String> getSounds() {
+        return sounds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConfigSummary)) {
+            return false;
+        }
+        ConfigSummary that = (ConfigSummary) o;
+        return id == that.id
+                && totalMinutes == that.totalMinutes
+                && stageCount == that.stageCount
+                && Objects.equals(name, that.name)
+                && Objects.equals(sounds, that.sounds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, totalMinutes, stageCount, sounds);
+    }
+}
@@ -0,0 +1,13 @@
+package naq.sm4.data;
+
+/**
+ * Vibration pattern a stage plays together with each of its sound cues.
+ */
+public enum CueVibration {
+    /** One buzz whose length follows the vibration strength. */
+    PULSE,
+    /** Two short taps. */
+    DOUBLE_TAP,
+    /** A buzz that swells up to the vibration strength. */
+    RAMP
+}
@@ -6,7 +6,9 @@ import java.util.Objects;
 
 /**
  * Immutable description for a single stage within a meditation configuration. A stage controls
- * timing, repetition cadence, and the list of audio cues played during the stage.
+ * timing, repetition cadence, and the list of audio cues played during the stage. A stage with a
+ * {@link BreathingPattern} is a breathing pacer stage that additionally guides every breath.
+ * Every cue vibrates in the stage's {@link CueVibration} pattern.
  */
 public class MeditationStage {
 
@@ -14,6 +16,8 @@ public class MeditationStage {
     private final int minutes;
     private final int repeatMinutes;
     private final List<String> sounds;
+    private final BreathingPattern breathing;
+    private final CueVibration cueVibration;
 
     /**
      * Builds a stage definition.
@@ -24,10 +28,33 @@ public class MeditationStage {
      * @param sounds        audio file names to play when the stage begins or repeats
      */
     public MeditationStage(String name, int minutes, int repeatMinutes, List<String> sounds) {
+        this(name, minutes, repeatMinutes, sounds, null);
+    }
+
+    /**
+     * Builds a stage definition that may run a breathing pacer.
+     *
+     * @param breathing breath cycle to pace, or {@code null} for a plain stage
+     */
+    public MeditationStage(String name, int minutes, int repeatMinutes, List<String> sounds,
+                           BreathingPattern breathing) {
+        this(name, minutes, repeatMinutes, sounds, breathing, CueVibration.PULSE);
+    }
+
+    /**
+     * Builds a stage definition with an explicit cue vibration.
+     *
+     * @param breathing    breath cycle to pace, or {@code null} for a plain stage
+     * @param cueVibration vibration played with each cue, {@code null} for the default pulse
+     */
+    public MeditationStage(String name, int minutes, int repeatMinutes, List<String> sounds,
+                           BreathingPattern breathing, CueVibration cueVibration) {
         this.name = name;
         this.minutes = minutes;
         this.repeatMinutes = repeatMinutes;
         this.sounds = sounds == null ? Collections.emptyList() : Collections.unmodifiableList(sounds);
+        this.breathing = breathing;
+        this.cueVibration = cueVibration;
     }
 
     /**
@@ -58,6 +85,28 @@ public class MeditationStage {
         return sounds;
     }
 
+    /**
+     * @return breath cycle of a breathing pacer stage, or {@code null} for a plain stage.
+     */
+    public BreathingPattern getBreathing() {
+        return breathing;
+    }
+
+    /**
+     * @return vibration played with each cue; configs stored before the choice existed get the
+     * single pulse.
+     */
+    public CueVibration getCueVibration() {
+        return cueVibration == null ? CueVibration.PULSE : cueVibration;
+    }
+
+    /**
+     * @return {@code true} if this stage runs a breathing pacer.
+     */
+    public boolean isBreathingPacer() {
+        return breathing != null;
+    }
+
     /**
      * @return {@code true} if a repeat interval greater than zero has been set.
      */
@@ -87,11 +136,13 @@ public class MeditationStage {
         return minutes == that.minutes
                 && repeatMinutes == that.repeatMinutes
                 && Objects.equals(name, that.name)
-                && Objects.equals(sounds, that.sounds);
+                && Objects.equals(sounds, that.sounds)
+                && Objects.equals(breathing, that.breathing)
+                && getCueVibration() == that.getCueVibration();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, minutes, repeatMinutes, sounds);
+        return Objects.hash(name, minutes, repeatMinutes, sounds, breathing, getCueVibration());
     }
 }
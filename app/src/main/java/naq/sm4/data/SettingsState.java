@@ -6,9 +6,12 @@ package naq.sm4.data;
  */
 public class SettingsState {
 
+    private static final SettingsState DEFAULTS = new SettingsState(50, true, 30, true);
+
     private final int vibrationStrengthPercent;
     private final boolean soundEnabled;
     private final int screenBrightnessPercent;
+    private final boolean screenDimmingEnabled;
 
     /**
      * Constructs a new settings snapshot clamping numeric values to the valid range.
@@ -16,11 +19,21 @@ public class SettingsState {
      * @param vibrationStrengthPercent vibration amplitude in percent (0 - 100)
      * @param soundEnabled             {@code true} if stage cues should play audio
      * @param screenBrightnessPercent  screen brightness in percent (0 - 100)
+     * @param screenDimmingEnabled     {@code true} if the screen should dim while a session runs
      */
-    public SettingsState(int vibrationStrengthPercent, boolean soundEnabled, int screenBrightnessPercent) {
+    public SettingsState(int vibrationStrengthPercent, boolean soundEnabled, int screenBrightnessPercent,
+                         boolean screenDimmingEnabled) {
         this.vibrationStrengthPercent = clampPercent(vibrationStrengthPercent);
         this.soundEnabled = soundEnabled;
         this.screenBrightnessPercent = clampPercent(screenBrightnessPercent);
+        this.screenDimmingEnabled = screenDimmingEnabled;
+    }
+
+    /**
+     * @return settings used before the user has changed anything.
+     */
+    public static SettingsState defaults() {
+        return DEFAULTS;
     }
 
     /**
@@ -44,25 +57,39 @@ public class SettingsState {
         return screenBrightnessPercent;
     }
 
+    /**
+     * @return {@code true} when the screen dims along the session and brightens for the last stage.
+     */
+    public boolean isScreenDimmingEnabled() {
+        return screenDimmingEnabled;
+    }
+
     /**
      * @return a copy with updated vibration strength.
      */
     public SettingsState withVibrationStrength(int percent) {
-        return new SettingsState(percent, soundEnabled, screenBrightnessPercent);
+        return new SettingsState(percent, soundEnabled, screenBrightnessPercent, screenDimmingEnabled);
     }
 
     /**
      * @return a copy with updated sound toggle.
      */
     public SettingsState withSoundEnabled(boolean enabled) {
-        return new SettingsState(vibrationStrengthPercent, enabled, screenBrightnessPercent);
+        return new SettingsState(vibrationStrengthPercent, enabled, screenBrightnessPercent, screenDimmingEnabled);
     }
 
     /**
      * @return a copy with updated brightness level.
      */
     public SettingsState withScreenBrightnessPercent(int percent) {
-        return new SettingsState(vibrationStrengthPercent, soundEnabled, percent);
+        return new SettingsState(vibrationStrengthPercent, soundEnabled, percent, screenDimmingEnabled);
+    }
+
+    /**
+     * @return a copy with updated screen dimming toggle.
+     */
+    public SettingsState withScreenDimmingEnabled(boolean enabled) {
+        return new SettingsState(vibrationStrengthPercent, soundEnabled, screenBrightnessPercent, enabled);
     }
 
     private int clampPercent(int value) {
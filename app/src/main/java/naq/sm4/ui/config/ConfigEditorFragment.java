@@ -20,6 +20,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import naq.sm4.R;
+import naq.sm4.data.BreathingPattern;
+import naq.sm4.data.ConfigSummary;
+import naq.sm4.data.CueVibration;
 import naq.sm4.data.MeditationConfig;
 import naq.sm4.data.MeditationStage;
 import naq.sm4.databinding.FragmentConfigEditorBinding;
@@ -33,6 +36,7 @@ public class ConfigEditorFragment extends Fragment implements StageListAdapter.S
     private final List<MeditationStage> stages = new ArrayList<>();
     private HomeViewModel homeViewModel;
     private MeditationConfig originalConfig;
+    private ConfigSummary originalSummary;
     private boolean initialised;
     private String configNameCache = "";
 
@@ -77,7 +81,7 @@ public class ConfigEditorFragment extends Fragment implements StageListAdapter.S
             @Override
             public void handleOnBackPressed() {
                 if (homeViewModel != null) {
-                    homeViewModel.setPendingEdit(null);
+                    homeViewModel.clearPendingEdit();
                 }
                 setEnabled(false);
                 NavHostFragment.findNavController(ConfigEditorFragment.this).popBackStack();
@@ -86,6 +90,7 @@ public class ConfigEditorFragment extends Fragment implements StageListAdapter.S
 
         if (!initialised) {
             originalConfig = homeViewModel.getPendingEdit();
+            originalSummary = homeViewModel.getPendingEditSummary();
             stages.clear();
             if (originalConfig != null) {
                 configNameCache = originalConfig.getName();
@@ -103,8 +108,19 @@ public class ConfigEditorFragment extends Fragment implements StageListAdapter.S
             int repeat = bundleResult.getInt(StageEditorFragment.RESULT_STAGE_REPEAT, 0);
             ArrayList<String> sounds = bundleResult.getStringArrayList(StageEditorFragment.RESULT_STAGE_SOUNDS);
             int index = bundleResult.getInt(StageEditorFragment.RESULT_STAGE_INDEX, -1);
+            int[] breathing = bundleResult.getIntArray(StageEditorFragment.RESULT_STAGE_BREATHING);
+            BreathingPattern pattern = breathing == null || breathing.length != 3
+                    ? null
+                    : new BreathingPattern(breathing[0], breathing[1], breathing[2]).sanitized();
+
+            CueVibration cueVibration = CueVibration.PULSE;
+            String vibrationName = bundleResult.getString(StageEditorFragment.RESULT_STAGE_CUE_VIBRATION);
+            if (vibrationName != null) {
+                cueVibration = CueVibration.valueOf(vibrationName);
+            }
 
-            MeditationStage updatedStage = new MeditationStage(stageName, minutes, repeat, sounds == null ? new ArrayList<>() : new ArrayList<>(sounds));
+            MeditationStage updatedStage = new MeditationStage(stageName, minutes, repeat,
+                    sounds == null ? new ArrayList<>() : new ArrayList<>(sounds), pattern, cueVibration);
             if (index >= 0 && index < stages.size()) {
                 stages.set(index, updatedStage);
             } else {
@@ -119,7 +135,7 @@ public class ConfigEditorFragment extends Fragment implements StageListAdapter.S
     public void onDestroyView() {
         super.onDestroyView();
         if (homeViewModel != null) {
-            homeViewModel.setPendingEdit(null);
+            homeViewModel.clearPendingEdit();
         }
         binding = null;
     }
@@ -161,6 +177,12 @@ public class ConfigEditorFragment extends Fragment implements StageListAdapter.S
             args.putInt(StageEditorFragment.ARG_STAGE_REPEAT, stage.getRepeatMinutes());
             args.putStringArrayList(StageEditorFragment.ARG_STAGE_SOUNDS, new ArrayList<>(stage.getSounds()));
             args.putInt(StageEditorFragment.ARG_STAGE_INDEX, index);
+            args.putString(StageEditorFragment.ARG_STAGE_CUE_VIBRATION, stage.getCueVibration().name());
+            BreathingPattern breathing = stage.getBreathing();
+            if (breathing != null) {
+                args.putIntArray(StageEditorFragment.ARG_STAGE_BREATHING, new int[]{
+                        breathing.getInhaleSeconds(), breathing.getHoldSeconds(), breathing.getExhaleSeconds()});
+            }
         }
         NavHostFragment.findNavController(this)
                 .navigate(R.id.action_configEditorFragment_to_stageEditorFragment, args);
@@ -201,8 +223,8 @@ public class ConfigEditorFragment extends Fragment implements StageListAdapter.S
             total += stage.getMinutes();
         }
         MeditationConfig updated = new MeditationConfig(name, total, new ArrayList<>(copy));
-        homeViewModel.saveConfig(updated, originalConfig);
-        homeViewModel.setPendingEdit(null);
+        homeViewModel.saveConfig(updated, originalSummary);
+        homeViewModel.clearPendingEdit();
         NavHostFragment.findNavController(this).popBackStack();
     }
 }
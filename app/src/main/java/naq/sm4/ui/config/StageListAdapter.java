@@ -49,7 +49,13 @@ class StageListAdapter extends RecyclerView.Adapter<StageListAdapter.StageViewHo
         String repeatInfo = stage.hasRepeat()
                 ? stage.getRepeatDescription()
                 : binding.getRoot().getResources().getString(naq.sm4.R.string.label_stage_repeat_single);
-        binding.stageDurationText.setText(timeInfo + " · " + repeatInfo);
+        String durationText = timeInfo + " · " + repeatInfo;
+        if (stage.isBreathingPacer()) {
+            durationText += " · " + binding.getRoot().getResources().getString(naq.sm4.R.string.label_stage_breathing,
+                    stage.getBreathing().getInhaleSeconds(), stage.getBreathing().getHoldSeconds(),
+                    stage.getBreathing().getExhaleSeconds());
+        }
+        binding.stageDurationText.setText(durationText);
 
         binding.stageSoundsText.setText(binding.getRoot().getResources()
                 .getString(naq.sm4.R.string.label_sound_count, stage.getSounds().size()));
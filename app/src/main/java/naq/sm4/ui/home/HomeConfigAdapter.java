@@ -1,6 +1,8 @@
 package naq.sm4.ui.home;
 
+import android.text.TextUtils;
 import android.view.LayoutInflater;
+import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
@@ -10,32 +12,59 @@ import java.util.ArrayList;
 import java.util.List;
 
 import naq.sm4.R;
-import naq.sm4.data.MeditationConfig;
+import naq.sm4.core.storage.ConfigHealthChecker;
+import naq.sm4.data.ConfigHealth;
+import naq.sm4.data.ConfigSummary;
 import naq.sm4.databinding.ItemConfigCardBinding;
 
 public class HomeConfigAdapter extends RecyclerView.Adapter<HomeConfigAdapter.ConfigViewHolder> {
 
     public interface ConfigCardListener {
-        void onStartClicked(@NonNull MeditationConfig config);
+        void onStartClicked(@NonNull ConfigSummary config);
 
-        void onEditClicked(@NonNull MeditationConfig config);
+        void onStartLongClicked(@NonNull ConfigSummary config);
 
-        void onDeleteClicked(@NonNull MeditationConfig config);
+        void onEditClicked(@NonNull ConfigSummary config);
+
+        void onDeleteClicked(@NonNull ConfigSummary config);
+
+        void onDragRequested(@NonNull RecyclerView.ViewHolder holder);
     }
 
-    private final List<MeditationConfig> configs = new ArrayList<>();
+    private final List<ConfigSummary> configs = new ArrayList<>();
     private final ConfigCardListener listener;
+    private final ConfigHealthChecker healthChecker = ConfigHealthChecker.getInstance();
 
     public HomeConfigAdapter(@NonNull ConfigCardListener listener) {
         this.listener = listener;
     }
 
-    public void updateConfigs(@NonNull List<MeditationConfig> newConfigs) {
+    public void updateConfigs(@NonNull List<ConfigSummary> newConfigs) {
         configs.clear();
         configs.addAll(newConfigs);
         notifyDataSetChanged();
     }
 
+    /**
+     * Moves a card while it is being dragged; the new order is stored once the drag ends.
+     */
+    public void moveItem(int from, int to) {
+        configs.add(to, configs.remove(from));
+        notifyItemMoved(from, to);
+    }
+
+    @NonNull
+    public ConfigSummary getConfig(int position) {
+        return configs.get(position);
+    }
+
+    /**
+     * Rebinds the cards after the cached sound health of any config changed.
+     */
+    public void refreshHealth() {
+        notifyItemRangeChanged(0, configs.size());
+    }
+
     @NonNull
     @Override
     public ConfigViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -46,7 +75,7 @@ public class HomeConfigAdapter extends RecyclerView.Adapter<HomeConfigAdapter.Co
 
     @Override
     public void onBindViewHolder(@NonNull ConfigViewHolder holder, int position) {
-        MeditationConfig config = configs.get(position);
+        ConfigSummary config = configs.get(position);
         ItemConfigCardBinding binding = holder.binding;
         binding.configNameText.setText(config.getName());
 
@@ -56,9 +85,27 @@ public class HomeConfigAdapter extends RecyclerView.Adapter<HomeConfigAdapter.Co
                 .getString(R.string.label_stage_count, config.getStageCount());
         binding.configSummaryText.setText(minutesText + " · " + stagesText);
 
+        ConfigHealth health = healthChecker.getHealth(config);
+        if (health.isHealthy()) {
+            binding.configHealthText.setVisibility(View.GONE);
+        } else {
+            List<String> missing = health.getMissingSounds();
+            binding.configHealthText.setText(binding.getRoot().getResources().getString(
+                    R.string.home_config_missing_sounds, missing.size(), TextUtils.join(", ", missing)));
+            binding.configHealthText.setVisibility(View.VISIBLE);
+        }
+
         binding.startButton.setOnClickListener(v -> listener.onStartClicked(config));
+        binding.startButton.setOnLongClickListener(v -> {
+            listener.onStartLongClicked(config);
+            return true;
+        });
         binding.editButton.setOnClickListener(v -> listener.onEditClicked(config));
         binding.deleteButton.setOnClickListener(v -> listener.onDeleteClicked(config));
+        binding.getRoot().setOnLongClickListener(v -> {
+            listener.onDragRequested(holder);
+            return true;
+        });
 
     }
 
@@ -1,5 +1,8 @@
 package naq.sm4.ui.home;
 
+import android.Manifest;
+import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.text.InputType;
 import android.text.TextUtils;
@@ -8,20 +11,26 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.EditText;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
+import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.navigation.NavDestination;
 import androidx.navigation.fragment.NavHostFragment;
+import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.snackbar.Snackbar;
 
 import java.util.List;
 
 import naq.sm4.R;
-import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.ConfigSummary;
 import naq.sm4.databinding.FragmentHomeBinding;
 
 public class HomeFragment extends Fragment implements HomeConfigAdapter.ConfigCardListener {
@@ -29,6 +38,25 @@ public class HomeFragment extends Fragment implements HomeConfigAdapter.ConfigCa
     private FragmentHomeBinding binding;
     private HomeConfigAdapter configAdapter;
     private HomeViewModel viewModel;
+    private ItemTouchHelper reorderHelper;
+    private ActivityResultLauncher<String> notificationPermissionLauncher;
+    @Nullable
+    private ConfigSummary startAfterPermission;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        // The session starts whatever the answer; without the permission it only runs without
+        // its notification.
+        notificationPermissionLauncher = registerForActivityResult(new ActivityResultContracts.RequestPermission(),
+                granted -> {
+                    ConfigSummary config = startAfterPermission;
+                    startAfterPermission = null;
+                    if (config != null) {
+                        startSession(config);
+                    }
+                });
+    }
 
     @Nullable
     @Override
@@ -46,11 +74,14 @@ public class HomeFragment extends Fragment implements HomeConfigAdapter.ConfigCa
 
         binding.configRecyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
         binding.configRecyclerView.setAdapter(configAdapter);
+        reorderHelper = new ItemTouchHelper(new ReorderCallback());
+        reorderHelper.attachToRecyclerView(binding.configRecyclerView);
 
         viewModel.getConfigs().observe(getViewLifecycleOwner(), this::renderConfigs);
         viewModel.isLoading().observe(getViewLifecycleOwner(), this::renderLoading);
         viewModel.getMessages().observe(getViewLifecycleOwner(), this::renderMessage);
         viewModel.getErrors().observe(getViewLifecycleOwner(), this::renderError);
+        viewModel.getHealthRevision().observe(getViewLifecycleOwner(), revision -> configAdapter.refreshHealth());
 
         binding.addConfigFab.setOnClickListener(v -> showAddConfigDialog());
     }
@@ -62,25 +93,68 @@ public class HomeFragment extends Fragment implements HomeConfigAdapter.ConfigCa
     }
 
     @Override
-    public void onStartClicked(@NonNull MeditationConfig config) {
-        viewModel.setActiveSession(config);
-        NavHostFragment.findNavController(this)
-                .navigate(R.id.action_homeFragment_to_meditationTimerFragment);
+    public void onStartClicked(@NonNull ConfigSummary config) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(requireContext(), Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            startAfterPermission = config;
+            notificationPermissionLauncher.launch(Manifest.permission.POST_NOTIFICATIONS);
+            return;
+        }
+        startSession(config);
+    }
+
+    private void startSession(@NonNull ConfigSummary config) {
+        viewModel.openConfig(config, loaded -> {
+            if (!isShownForNavigation()) {
+                return;
+            }
+            viewModel.setActiveSession(config, loaded);
+            NavHostFragment.findNavController(this)
+                    .navigate(R.id.action_homeFragment_to_meditationTimerFragment);
+        });
     }
 
     @Override
-    public void onEditClicked(@NonNull MeditationConfig config) {
-        viewModel.setPendingEdit(config);
-        NavHostFragment.findNavController(this)
-                .navigate(R.id.action_homeFragment_to_configEditorFragment);
+    public void onStartLongClicked(@NonNull ConfigSummary config) {
+        viewModel.toggleQuickStartPin(config);
     }
 
     @Override
-    public void onDeleteClicked(@NonNull MeditationConfig config) {
+    public void onEditClicked(@NonNull ConfigSummary config) {
+        viewModel.openConfig(config, loaded -> {
+            if (!isShownForNavigation()) {
+                return;
+            }
+            viewModel.setPendingEdit(config, loaded);
+            NavHostFragment.findNavController(this)
+                    .navigate(R.id.action_homeFragment_to_configEditorFragment);
+        });
+    }
+
+    @Override
+    public void onDeleteClicked(@NonNull ConfigSummary config) {
         confirmDeleteConfig(config);
     }
 
-    private void renderConfigs(List<MeditationConfig> configs) {
+    @Override
+    public void onDragRequested(@NonNull RecyclerView.ViewHolder holder) {
+        reorderHelper.startDrag(holder);
+    }
+
+    /**
+     * @return {@code true} while this screen is still the one shown, so a config that finished
+     * loading after the user navigated away does not trigger a second navigation.
+     */
+    private boolean isShownForNavigation() {
+        if (binding == null) {
+            return false;
+        }
+        NavDestination destination = NavHostFragment.findNavController(this).getCurrentDestination();
+        return destination != null && destination.getId() == R.id.homeFragment;
+    }
+
+    private void renderConfigs(List<ConfigSummary> configs) {
         configAdapter.updateConfigs(configs);
         if (binding != null) {
             binding.emptyMessage.setVisibility(configs.isEmpty() ? View.VISIBLE : View.GONE);
@@ -133,14 +207,14 @@ public class HomeFragment extends Fragment implements HomeConfigAdapter.ConfigCa
         dialog.setOnShowListener(dlg -> dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(btn -> {
             String name = input.getText() == null ? "" : input.getText().toString();
             viewModel.addConfig(name);
-            viewModel.setPendingEdit(null);
+            viewModel.clearPendingEdit();
             dialog.dismiss();
         }));
 
         dialog.show();
     }
 
-    private void confirmDeleteConfig(@NonNull MeditationConfig config) {
+    private void confirmDeleteConfig(@NonNull ConfigSummary config) {
         new AlertDialog.Builder(requireContext())
                 .setTitle(R.string.home_delete_title)
                 .setMessage(getString(R.string.home_delete_message, config.getName()))
@@ -150,4 +224,57 @@ public class HomeFragment extends Fragment implements HomeConfigAdapter.ConfigCa
                 })
                 .show();
     }
+
+    /**
+     * Moves cards while a long-pressed card is dragged and stores the order once it is dropped.
+     */
+    private class ReorderCallback extends ItemTouchHelper.SimpleCallback {
+
+        private int dragFrom = RecyclerView.NO_POSITION;
+
+        ReorderCallback() {
+            super(ItemTouchHelper.UP | ItemTouchHelper.DOWN, 0);
+        }
+
+        @Override
+        public boolean isLongPressDragEnabled() {
+            // Drags start from the card's own long press, leaving the start button's to pinning.
+            return false;
+        }
+
+        @Override
+        public void onSelectedChanged(@Nullable RecyclerView.ViewHolder viewHolder, int actionState) {
+            super.onSelectedChanged(viewHolder, actionState);
+            if (actionState == ItemTouchHelper.ACTION_STATE_DRAG && viewHolder != null) {
+                dragFrom = viewHolder.getBindingAdapterPosition();
+            }
+        }
+
+        @Override
+        public boolean onMove(@NonNull RecyclerView recyclerView, @NonNull RecyclerView.ViewHolder viewHolder,
+                              @NonNull RecyclerView.ViewHolder target) {
+            int from = viewHolder.getBindingAdapterPosition();
+            int to = target.getBindingAdapterPosition();
+            if (from == RecyclerView.NO_POSITION || to == RecyclerView.NO_POSITION) {
+                return false;
+            }
+            configAdapter.moveItem(from, to);
+            return true;
+        }
+
+        @Override
+        public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
+            // Swiping is not enabled.
+        }
+
+        @Override
+        public void clearView(@NonNull RecyclerView recyclerView, @NonNull RecyclerView.ViewHolder viewHolder) {
+            super.clearView(recyclerView, viewHolder);
+            int to = viewHolder.getBindingAdapterPosition();
+            if (dragFrom != RecyclerView.NO_POSITION && to != RecyclerView.NO_POSITION && to != dragFrom) {
+                viewModel.moveConfig(configAdapter.getConfig(to), to);
+            }
+            dragFrom = RecyclerView.NO_POSITION;
+        }
+    }
 }
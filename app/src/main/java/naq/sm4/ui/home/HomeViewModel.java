@@ -1,6 +1,10 @@
 package naq.sm4.ui.home;
 
 import android.app.Application;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
@@ -9,38 +13,52 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import naq.sm4.R;
+import naq.sm4.core.storage.ConfigHealthChecker;
 import naq.sm4.core.storage.ConfigRepository;
+import naq.sm4.core.storage.StorageHelper;
+import naq.sm4.core.timer.QuickStartPlanStore;
+import naq.sm4.data.ConfigSummary;
 import naq.sm4.data.MeditationConfig;
 import naq.sm4.data.MeditationStage;
 
 public class HomeViewModel extends AndroidViewModel {
 
-    private final MutableLiveData<List<MeditationConfig>> configsLiveData = new MutableLiveData<>(Collections.emptyList());
+    private static final String TAG = "HomeViewModel";
+
+    private final MutableLiveData<List<ConfigSummary>> configsLiveData = new MutableLiveData<>(Collections.emptyList());
     private final MutableLiveData<Boolean> loadingLiveData = new MutableLiveData<>(false);
     private final MutableLiveData<String> messageLiveData = new MutableLiveData<>(null);
     private final MutableLiveData<String> errorLiveData = new MutableLiveData<>(null);
 
     private final ConfigRepository configRepository = new ConfigRepository();
+    private final ConfigHealthChecker healthChecker = ConfigHealthChecker.getInstance();
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
     private final AtomicBoolean initialized = new AtomicBoolean(false);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
+    private ConfigSummary pendingEditSummary;
     private MeditationConfig pendingEdit;
     private MeditationConfig activeSession;
+    private int activeSessionId = QuickStartPlanStore.NO_CONFIG_ID;
 
     public HomeViewModel(@NonNull Application application) {
         super(application);
         loadConfigs();
     }
 
-    public LiveData<List<MeditationConfig>> getConfigs() {
+    public LiveData<List<ConfigSummary>> getConfigs() {
         return configsLiveData;
     }
 
@@ -56,6 +74,13 @@ public class HomeViewModel extends AndroidViewModel {
         return errorLiveData;
     }
 
+    /**
+     * @return counter that changes whenever the cached sound health of any config changes.
+     */
+    public LiveData<Integer> getHealthRevision() {
+        return healthChecker.getRevision();
+    }
+
     public void clearMessage() {
         messageLiveData.setValue(null);
     }
@@ -70,12 +95,14 @@ public class HomeViewModel extends AndroidViewModel {
             loadingLiveData.setValue(true);
         }
         executor.execute(() -> {
-            List<MeditationConfig> configs = configRepository.loadConfigs(getApplication());
+            List<ConfigSummary> configs = configRepository.loadSummaries(getApplication());
             if (configs.isEmpty()) {
                 MeditationConfig defaultConfig = buildDefaultConfig(getApplication().getString(R.string.label_config_name));
-                configs.add(defaultConfig);
-                configRepository.saveConfigs(getApplication(), configs);
+                if (configRepository.saveConfigs(getApplication(), Collections.singletonList(defaultConfig))) {
+                    configs = configRepository.loadSummaries(getApplication());
+                }
             }
+            healthChecker.setConfigs(configs);
             configsLiveData.postValue(new ArrayList<>(configs));
             loadingLiveData.postValue(false);
         });
@@ -88,35 +115,142 @@ public class HomeViewModel extends AndroidViewModel {
             trimmed = getApplication().getString(R.string.label_config_name);
         }
         MeditationConfig newConfig = new MeditationConfig(trimmed, 0, Collections.emptyList());
-        persistAndUpdate(list -> {
-            list.add(0, newConfig);
-            messageLiveData.postValue(getApplication().getString(R.string.home_config_added, newConfig.getName()));
+        persistAndUpdate(() -> {
+            List<ConfigSummary> configs = configRepository.addConfig(getApplication(), newConfig);
+            if (configs != null) {
+                messageLiveData.postValue(getApplication().getString(R.string.home_config_added, newConfig.getName()));
+            }
+            return configs;
         });
     }
 
     @MainThread
-    public void deleteConfig(@NonNull MeditationConfig config) {
-        persistAndUpdate(list -> {
-            if (list.remove(config)) {
+    public void deleteConfig(@NonNull ConfigSummary config) {
+        persistAndUpdate(() -> {
+            List<ConfigSummary> configs = configRepository.deleteConfig(getApplication(), config);
+            if (configs != null) {
                 messageLiveData.postValue(getApplication().getString(R.string.home_config_deleted, config.getName()));
             }
+            return configs;
+        });
+    }
+
+    /**
+     * Writes every config as JSON to the document at {@code uri}.
+     */
+    @MainThread
+    public void exportConfigs(@NonNull Uri uri) {
+        executor.execute(() -> {
+            boolean exported = false;
+            try (OutputStream out = getApplication().getContentResolver().openOutputStream(uri)) {
+                exported = out != null && configRepository.exportConfigs(getApplication(), out);
+            } catch (IOException | SecurityException e) {
+                Log.w(TAG, "Unable to export configs", e);
+            }
+            if (exported) {
+                messageLiveData.postValue(getApplication().getString(R.string.home_configs_exported));
+            } else {
+                errorLiveData.postValue(getApplication().getString(R.string.error_export_configs));
+            }
+        });
+    }
+
+    /**
+     * Reads the JSON document at {@code uri} and stores its configs after the existing ones.
+     */
+    @MainThread
+    public void importConfigs(@NonNull Uri uri) {
+        loadingLiveData.setValue(true);
+        executor.execute(() -> {
+            List<MeditationConfig> imported = Collections.emptyList();
+            try (InputStream in = getApplication().getContentResolver().openInputStream(uri)) {
+                if (in != null) {
+                    imported = configRepository.importConfigs(in);
+                }
+            } catch (IOException | SecurityException e) {
+                Log.w(TAG, "Unable to import configs", e);
+            }
+            if (imported.isEmpty()) {
+                loadingLiveData.postValue(false);
+                errorLiveData.postValue(getApplication().getString(R.string.error_import_configs));
+                return;
+            }
+            List<ConfigSummary> configs = configRepository.appendConfigs(getApplication(), imported);
+            loadingLiveData.postValue(false);
+            if (configs == null) {
+                errorLiveData.postValue(getApplication().getString(R.string.error_save_config));
+                return;
+            }
+            healthChecker.setConfigs(configs);
+            configsLiveData.postValue(configs);
+            messageLiveData.postValue(getApplication().getString(R.string.home_configs_imported, imported.size()));
+        });
+    }
+
+    /**
+     * Moves {@code config} to {@code position} of the list, where the user dropped it.
+     */
+    @MainThread
+    public void moveConfig(@NonNull ConfigSummary config, int position) {
+        persistAndUpdate(() -> configRepository.moveConfig(getApplication(), config, position));
+    }
+
+    /**
+     * Reads the stages behind {@code summary} off the main thread and hands the config to
+     * {@code onLoaded} on the main thread. Nothing is delivered when the config cannot be read;
+     * an error is posted instead.
+     */
+    @MainThread
+    public void openConfig(@NonNull ConfigSummary summary, @NonNull Consumer<MeditationConfig> onLoaded) {
+        executor.execute(() -> {
+            MeditationConfig config = configRepository.loadConfig(getApplication(), summary);
+            if (config == null) {
+                errorLiveData.postValue(getApplication().getString(R.string.error_load_config));
+                return;
+            }
+            mainHandler.post(() -> onLoaded.accept(config));
         });
     }
 
-    public void setPendingEdit(@Nullable MeditationConfig config) {
+    /**
+     * Remembers the config the editor opens next, with the summary it was loaded from so that
+     * saving replaces that entry.
+     */
+    public void setPendingEdit(@NonNull ConfigSummary summary, @NonNull MeditationConfig config) {
+        pendingEditSummary = summary;
         pendingEdit = config;
     }
 
+    public void clearPendingEdit() {
+        pendingEditSummary = null;
+        pendingEdit = null;
+    }
+
     @Nullable
     public MeditationConfig getPendingEdit() {
         return pendingEdit;
     }
 
+    @Nullable
+    public ConfigSummary getPendingEditSummary() {
+        return pendingEditSummary;
+    }
+
     /**
-     * Marks the provided config as the next session to start when the timer screen opens.
+     * Marks the provided config, loaded from {@code summary}, as the next session to start when the
+     * timer screen opens.
      */
-    public void setActiveSession(@NonNull MeditationConfig config) {
+    public void setActiveSession(@NonNull ConfigSummary summary, @NonNull MeditationConfig config) {
         activeSession = config;
+        activeSessionId = summary.getId();
+    }
+
+    /**
+     * @return id of the stored config {@link #consumeActiveSession()} returns next, or
+     * {@link QuickStartPlanStore#NO_CONFIG_ID}; read it before consuming the session.
+     */
+    public int getActiveSessionId() {
+        return activeSessionId;
     }
 
     /**
@@ -126,39 +260,67 @@ public class HomeViewModel extends AndroidViewModel {
     public MeditationConfig consumeActiveSession() {
         MeditationConfig session = activeSession;
         activeSession = null;
+        activeSessionId = QuickStartPlanStore.NO_CONFIG_ID;
         return session;
     }
 
+    /**
+     * Pins {@code summary} as the one the quick-start shortcut and tile launch, or unpins it when it
+     * already is. Pinning reads the config's stages to compile its plan.
+     */
+    @MainThread
+    public void toggleQuickStartPin(@NonNull ConfigSummary summary) {
+        executor.execute(() -> {
+            QuickStartPlanStore store = new QuickStartPlanStore(StorageHelper.getQuickStartPlanFile(getApplication()));
+            try {
+                if (store.getPinnedId() == summary.getId()) {
+                    store.unpin();
+                    messageLiveData.postValue(getApplication().getString(R.string.home_quick_start_unpinned, summary.getName()));
+                    return;
+                }
+                MeditationConfig config = configRepository.loadConfig(getApplication(), summary);
+                if (config == null) {
+                    errorLiveData.postValue(getApplication().getString(R.string.error_load_config));
+                } else if (store.pin(summary.getId(), config)) {
+                    messageLiveData.postValue(getApplication().getString(R.string.home_quick_start_pinned, config.getName()));
+                } else {
+                    errorLiveData.postValue(getApplication().getString(R.string.error_quick_start_pin));
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to pin quick-start config", e);
+                errorLiveData.postValue(getApplication().getString(R.string.error_quick_start_pin));
+            }
+        });
+    }
+
     @NonNull
     public MeditationConfig buildDefaultConfig(@NonNull String name) {
         return new MeditationConfig(name, 0, Collections.emptyList());
     }
 
-    public void saveConfig(@NonNull MeditationConfig updatedConfig, @Nullable MeditationConfig original) {
-        persistAndUpdate(list -> {
-            if (original != null) {
-                int index = list.indexOf(original);
-                if (index >= 0) {
-                    list.set(index, updatedConfig);
-                } else {
-                    list.add(0, updatedConfig);
-                }
-            } else {
-                list.add(0, updatedConfig);
+    /**
+     * Stores {@code updatedConfig} in place of the entry {@code original} summarises, or as a new
+     * first entry when there is none. Saving fails when the original has been deleted meanwhile.
+     */
+    public void saveConfig(@NonNull MeditationConfig updatedConfig, @Nullable ConfigSummary original) {
+        persistAndUpdate(() -> {
+            List<ConfigSummary> configs = original != null
+                    ? configRepository.updateConfig(getApplication(), original, updatedConfig)
+                    : configRepository.addConfig(getApplication(), updatedConfig);
+            if (configs != null) {
+                messageLiveData.postValue(getApplication().getString(R.string.action_save));
             }
-            messageLiveData.postValue(getApplication().getString(R.string.action_save));
+            return configs;
         });
     }
 
     private void persistAndUpdate(@NonNull ListUpdateAction action) {
         loadingLiveData.setValue(true);
         executor.execute(() -> {
-            List<MeditationConfig> current = new ArrayList<>(configsLiveData.getValue() == null
-                    ? Collections.emptyList() : configsLiveData.getValue());
-            action.update(current);
-            boolean saved = configRepository.saveConfigs(getApplication(), current);
-            if (saved) {
-                configsLiveData.postValue(new ArrayList<>(current));
+            List<ConfigSummary> updated = action.update();
+            if (updated != null) {
+                healthChecker.setConfigs(updated);
+                configsLiveData.postValue(updated);
                 loadingLiveData.postValue(false);
             } else {
                 loadingLiveData.postValue(false);
@@ -179,9 +341,17 @@ public class HomeViewModel extends AndroidViewModel {
     protected void onCleared() {
         super.onCleared();
         executor.shutdownNow();
+        mainHandler.removeCallbacksAndMessages(null);
     }
 
     private interface ListUpdateAction {
-        void update(@NonNull List<MeditationConfig> configs);
+        /**
+         * Stores one change through the repository, which resolves the configs it touches by id.
+         *
+         * @return the stored list in display order, or {@code null} when the change could not be
+         * persisted
+         */
+        @Nullable
+        List<ConfigSummary> update();
     }
 }
\ No newline at end of file
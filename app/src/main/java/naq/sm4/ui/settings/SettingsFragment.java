@@ -106,6 +106,14 @@ public class SettingsFragment extends Fragment {
                 }
             }
         });
+
+        binding.screenDimmingToggle.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (updatingUi) {
+                return;
+            }
+            viewModel.updateScreenDimming(isChecked);
+            showSavedMessage();
+        });
     }
 
     private void renderSettings(SettingsState state) {
@@ -124,6 +132,7 @@ public class SettingsFragment extends Fragment {
             binding.screenBrightnessSlider.setValue(brightnessPercent);
         }
         binding.screenBrightnessValueText.setText(getString(R.string.settings_screen_brightness_value, brightnessPercent));
+        binding.screenDimmingToggle.setChecked(state.isScreenDimmingEnabled());
         updatingUi = false;
     }
 
@@ -17,6 +17,7 @@ public final class SettingsManager {
     private static final String KEY_SOUND = "sound_enabled";
     private static final String KEY_VIBRATION_STRENGTH = "vibration_strength_percent";
     private static final String KEY_SCREEN_BRIGHTNESS = "screen_brightness_percent";
+    private static final String KEY_SCREEN_DIMMING = "screen_dimming_enabled";
 
     private static SettingsManager instance;
     private SettingsState cachedState;
@@ -64,13 +65,23 @@ public final class SettingsManager {
         return cachedState;
     }
 
+    @NonNull
+    public synchronized SettingsState updateScreenDimming(@NonNull Context context, boolean enabled) {
+        SettingsState current = getSettings(context);
+        cachedState = current.withScreenDimmingEnabled(enabled);
+        persist(context.getApplicationContext(), cachedState);
+        return cachedState;
+    }
+
     @NonNull
     private SettingsState load(@NonNull Context context) {
         SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        boolean soundEnabled = prefs.getBoolean(KEY_SOUND, true);
-        int vibrationStrength = prefs.getInt(KEY_VIBRATION_STRENGTH, 50);
-        int screenBrightness = prefs.getInt(KEY_SCREEN_BRIGHTNESS, 30);
-        return new SettingsState(vibrationStrength, soundEnabled, screenBrightness);
+        SettingsState defaults = SettingsState.defaults();
+        boolean soundEnabled = prefs.getBoolean(KEY_SOUND, defaults.isSoundEnabled());
+        int vibrationStrength = prefs.getInt(KEY_VIBRATION_STRENGTH, defaults.getVibrationStrengthPercent());
+        int screenBrightness = prefs.getInt(KEY_SCREEN_BRIGHTNESS, defaults.getScreenBrightnessPercent());
+        boolean screenDimming = prefs.getBoolean(KEY_SCREEN_DIMMING, defaults.isScreenDimmingEnabled());
+        return new SettingsState(vibrationStrength, soundEnabled, screenBrightness, screenDimming);
     }
 
     private void persist(@NonNull Context context, @NonNull SettingsState state) {
@@ -79,6 +90,7 @@ public final class SettingsManager {
                 .putBoolean(KEY_SOUND, state.isSoundEnabled())
                 .putInt(KEY_VIBRATION_STRENGTH, state.getVibrationStrengthPercent())
                 .putInt(KEY_SCREEN_BRIGHTNESS, state.getScreenBrightnessPercent())
+                .putBoolean(KEY_SCREEN_DIMMING, state.isScreenDimmingEnabled())
                 .apply();
     }
 }
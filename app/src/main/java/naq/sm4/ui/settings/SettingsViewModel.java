@@ -38,4 +38,9 @@ public class SettingsViewModel extends AndroidViewModel {
         SettingsState updated = settingsManager.updateScreenBrightness(getApplication(), percent);
         settingsLiveData.setValue(updated);
     }
+
+    public void updateScreenDimming(boolean enabled) {
+        SettingsState updated = settingsManager.updateScreenDimming(getApplication(), enabled);
+        settingsLiveData.setValue(updated);
+    }
 }
@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Set;
 
 import naq.sm4.R;
+import naq.sm4.core.storage.SoundIndex;
 import naq.sm4.core.storage.StorageHelper;
 import naq.sm4.ui.sound.SoundLibraryViewModel;
 import android.media.MediaPlayer;
@@ -43,6 +44,7 @@ public class SelectSoundDialogFragment extends DialogFragment {
     private SoundLibraryViewModel viewModel;
     private ArrayAdapter<String> adapter;
     private final Set<String> selected = new HashSet<>();
+    private final SoundIndex soundIndex = SoundIndex.getInstance();
     private MaterialButton previewButton;
     private String lastHighlightedSound;
     private MediaPlayer mediaPlayer;
@@ -84,8 +86,8 @@ public class SelectSoundDialogFragment extends DialogFragment {
             adapter.clear();
             adapter.addAll(sounds);
             adapter.notifyDataSetChanged();
-            selected.retainAll(sounds);
-            if (lastHighlightedSound != null && !sounds.contains(lastHighlightedSound)) {
+            selected.removeIf(sound -> !soundIndex.contains(sound));
+            if (lastHighlightedSound != null && !soundIndex.contains(lastHighlightedSound)) {
                 lastHighlightedSound = selected.isEmpty() ? null : selected.iterator().next();
             }
             updateSelections(listView, sounds);
@@ -158,18 +160,17 @@ public class SelectSoundDialogFragment extends DialogFragment {
         if (context == null) {
             return;
         }
-        File workingDir;
+        if (!soundIndex.contains(target)) {
+            Toast.makeText(context, getString(R.string.timer_missing_sound, target), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        File targetFile;
         try {
-            workingDir = StorageHelper.ensureWorkingDirectory();
+            targetFile = new File(StorageHelper.ensureWorkingDirectory(), target);
         } catch (IOException e) {
             Toast.makeText(context, R.string.library_import_error, Toast.LENGTH_SHORT).show();
             return;
         }
-        File targetFile = new File(workingDir, target);
-        if (!targetFile.exists()) {
-            Toast.makeText(context, getString(R.string.timer_missing_sound, target), Toast.LENGTH_SHORT).show();
-            return;
-        }
 
         releasePlayer();
         Uri uri = Uri.fromFile(targetFile);
@@ -23,8 +23,7 @@ import naq.sm4.R;
 import naq.sm4.core.storage.ConfigRepository;
 import naq.sm4.core.storage.SoundFileRepository;
 import naq.sm4.core.storage.StorageHelper;
-import naq.sm4.data.MeditationConfig;
-import naq.sm4.data.MeditationStage;
+import naq.sm4.data.ConfigSummary;
 
 public class SoundLibraryViewModel extends AndroidViewModel {
 
@@ -182,14 +181,10 @@ public class SoundLibraryViewModel extends AndroidViewModel {
         }
         Set<String> targets = new HashSet<>(files);
         Set<String> inUse = new LinkedHashSet<>();
-        List<MeditationConfig> configs = configRepository.loadConfigs(getApplication());
-        for (MeditationConfig config : configs) {
-            List<MeditationStage> stages = config.getStages();
-            for (MeditationStage stage : stages) {
-                for (String sound : stage.getSounds()) {
-                    if (targets.contains(sound)) {
-                        inUse.add(sound);
-                    }
+        for (ConfigSummary config : configRepository.loadSummaries(getApplication())) {
+            for (String sound : config.getSounds()) {
+                if (targets.contains(sound)) {
+                    inUse.add(sound);
                 }
             }
         }
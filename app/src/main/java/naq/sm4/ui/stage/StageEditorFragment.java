@@ -19,12 +19,16 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.fragment.NavHostFragment;
 
 import com.google.android.material.chip.Chip;
+import com.google.android.material.textfield.TextInputLayout;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 import naq.sm4.R;
+import naq.sm4.core.storage.SoundIndex;
+import naq.sm4.data.BreathingPattern;
+import naq.sm4.data.CueVibration;
 import naq.sm4.data.MeditationStage;
 import naq.sm4.databinding.FragmentStageEditorBinding;
 import naq.sm4.ui.sound.SelectSoundDialogFragment;
@@ -32,7 +36,8 @@ import naq.sm4.ui.sound.SoundLibraryViewModel;
 
 /**
  * Fragment that allows the user to create or edit a meditation stage, including
- * configuring duration, repeat interval, and associated sound assets.
+ * configuring duration, repeat interval, associated sound assets, the cue vibration and an optional
+ * breathing pacer.
  */
 public class StageEditorFragment extends DialogFragment {
 
@@ -41,6 +46,10 @@ public class StageEditorFragment extends DialogFragment {
     public static final String ARG_STAGE_REPEAT = "arg_stage_repeat";
     public static final String ARG_STAGE_SOUNDS = "arg_stage_sounds";
     public static final String ARG_STAGE_INDEX = "arg_stage_index";
+    /** Inhale, hold and exhale seconds of a breathing pacer stage; absent for a plain stage. */
+    public static final String ARG_STAGE_BREATHING = "arg_stage_breathing";
+    /** {@link CueVibration} name; absent means the default pulse. */
+    public static final String ARG_STAGE_CUE_VIBRATION = "arg_stage_cue_vibration";
 
     public static final String RESULT_KEY_STAGE = "stage_editor_result";
     public static final String RESULT_STAGE_NAME = "result_stage_name";
@@ -48,15 +57,19 @@ public class StageEditorFragment extends DialogFragment {
     public static final String RESULT_STAGE_REPEAT = "result_stage_repeat";
     public static final String RESULT_STAGE_SOUNDS = "result_stage_sounds";
     public static final String RESULT_STAGE_INDEX = "result_stage_index";
+    public static final String RESULT_STAGE_BREATHING = "result_stage_breathing";
+    public static final String RESULT_STAGE_CUE_VIBRATION = "result_stage_cue_vibration";
 
     private static final int MIN_MINUTES = 1;
     private static final int MAX_MINUTES = 180;
     private static final int MAX_REPEAT = 60;
+    private static final int[] DEFAULT_BREATHING = {4, 2, 6};
 
     private FragmentStageEditorBinding binding;
     private final Set<String> selectedSounds = new LinkedHashSet<>();
     private int editingIndex = -1;
     private SoundLibraryViewModel soundLibraryViewModel;
+    private final SoundIndex soundIndex = SoundIndex.getInstance();
 
     @NonNull
     @Override
@@ -115,6 +128,17 @@ public class StageEditorFragment extends DialogFragment {
             binding.repeatMinutesInputLayout.setError(null);
         }
 
+        int[] breathing = null;
+        if (binding.breathingPacerSwitch.isChecked()) {
+            breathing = new int[]{
+                    validateBreathPhase(binding.breathInhaleInputLayout, binding.breathInhaleInput.getText(), BreathingPattern.MIN_PHASE_SECONDS),
+                    validateBreathPhase(binding.breathHoldInputLayout, binding.breathHoldInput.getText(), 0),
+                    validateBreathPhase(binding.breathExhaleInputLayout, binding.breathExhaleInput.getText(), BreathingPattern.MIN_PHASE_SECONDS)};
+            for (int seconds : breathing) {
+                valid &= seconds >= 0;
+            }
+        }
+
         if (!valid) {
             return;
         }
@@ -127,10 +151,28 @@ public class StageEditorFragment extends DialogFragment {
         result.putInt(RESULT_STAGE_REPEAT, repeat);
         result.putStringArrayList(RESULT_STAGE_SOUNDS, sounds);
         result.putInt(RESULT_STAGE_INDEX, editingIndex);
+        if (breathing != null) {
+            result.putIntArray(RESULT_STAGE_BREATHING, breathing);
+        }
+        result.putString(RESULT_STAGE_CUE_VIBRATION, getSelectedCueVibration().name());
         getParentFragmentManager().setFragmentResult(RESULT_KEY_STAGE, result);
         NavHostFragment.findNavController(this).popBackStack();
     }
 
+    /**
+     * @return the entered phase length, or {@code -1} after flagging the field when it is out of
+     * range.
+     */
+    private int validateBreathPhase(@NonNull TextInputLayout layout, @Nullable CharSequence text, int min) {
+        Integer seconds = parseInteger(text);
+        if (seconds == null || seconds < min || seconds > BreathingPattern.MAX_PHASE_SECONDS) {
+            layout.setError(getString(R.string.error_breath_phase, min, BreathingPattern.MAX_PHASE_SECONDS));
+            return -1;
+        }
+        layout.setError(null);
+        return seconds;
+    }
+
     /**
      * Safely parses an integer value from the provided character sequence.
      *
@@ -199,6 +241,9 @@ public class StageEditorFragment extends DialogFragment {
     private void initialiseFromArguments(@Nullable Bundle args) {
         selectedSounds.clear();
         editingIndex = -1;
+        int[] breathing = args == null ? null : args.getIntArray(ARG_STAGE_BREATHING);
+        showBreathing(breathing != null && breathing.length == 3 ? breathing : null);
+        showCueVibration(args == null ? null : args.getString(ARG_STAGE_CUE_VIBRATION));
 
         if (args == null) {
             binding.stageNameInput.setText("");
@@ -226,7 +271,53 @@ public class StageEditorFragment extends DialogFragment {
         }
     }
 
+    /**
+     * Fills the breathing pacer inputs, showing them only when {@code breathing} is set.
+     */
+    private void showBreathing(@Nullable int[] breathing) {
+        int[] values = breathing == null ? DEFAULT_BREATHING : breathing;
+        binding.breathInhaleInput.setText(String.valueOf(values[0]));
+        binding.breathHoldInput.setText(String.valueOf(values[1]));
+        binding.breathExhaleInput.setText(String.valueOf(values[2]));
+        binding.breathingPacerSwitch.setChecked(breathing != null);
+        binding.breathingInputs.setVisibility(breathing != null ? View.VISIBLE : View.GONE);
+    }
+
+    private void showCueVibration(@Nullable String name) {
+        CueVibration vibration = CueVibration.PULSE;
+        if (name != null) {
+            try {
+                vibration = CueVibration.valueOf(name);
+            } catch (IllegalArgumentException ignored) {
+                // Unknown pattern; keep the pulse.
+            }
+        }
+        switch (vibration) {
+            case DOUBLE_TAP:
+                binding.cueVibrationChipGroup.check(R.id.cueVibrationDoubleTapChip);
+                break;
+            case RAMP:
+                binding.cueVibrationChipGroup.check(R.id.cueVibrationRampChip);
+                break;
+            default:
+                binding.cueVibrationChipGroup.check(R.id.cueVibrationPulseChip);
+                break;
+        }
+    }
+
+    @NonNull
+    private CueVibration getSelectedCueVibration() {
+        int checked = binding.cueVibrationChipGroup.getCheckedChipId();
+        if (checked == R.id.cueVibrationDoubleTapChip) {
+            return CueVibration.DOUBLE_TAP;
+        }
+        return checked == R.id.cueVibrationRampChip ? CueVibration.RAMP : CueVibration.PULSE;
+    }
+
     private void configureButtons() {
+        binding.breathingPacerSwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
+                binding.breathingInputs.setVisibility(isChecked ? View.VISIBLE : View.GONE));
+
         binding.selectSoundButton.setOnClickListener(v -> {
             Bundle dialogArgs = new Bundle();
             dialogArgs.putStringArrayList(SelectSoundDialogFragment.ARG_SELECTED, new ArrayList<>(selectedSounds));
@@ -251,8 +342,9 @@ public class StageEditorFragment extends DialogFragment {
             if (selectedSounds.isEmpty()) {
                 return;
             }
-            selectedSounds.retainAll(sounds);
-            renderSelectedChips();
+            if (selectedSounds.removeIf(sound -> !soundIndex.contains(sound))) {
+                renderSelectedChips();
+            }
         });
     }
 
@@ -0,0 +1,102 @@
+package naq.sm4.ui.timer;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+
+import naq.sm4.core.timer.DurationFormatter;
+
+/**
+ * Countdown text that is only produced while someone is actually looking at it. The session
+ * keeps time on its own; this LiveData samples it when it becomes active, then re-samples exactly
+ * when the displayed value changes at the requested resolution, and goes completely quiet while it
+ * has no active observers. Nothing is queued up or replayed while inactive. Values are written into
+ * a single reusable {@link CountdownText}, so a tick allocates no strings.
+ */
+class CountdownLiveData extends LiveData<CountdownText> {
+
+    /**
+     * Time source the countdown is derived from.
+     */
+    interface Source {
+        long getStageRemainingMs();
+
+        boolean isCountingDown();
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable tickRunnable = this::publish;
+    private final long resolutionMs;
+    private final DurationFormatter formatter;
+    private final CountdownText text;
+    private long publishedSeconds;
+
+    @Nullable
+    private Source source;
+
+    /**
+     * @param resolutionMs smallest change the visible surface can show, e.g. 1000 for mm:ss
+     */
+    CountdownLiveData(long resolutionMs, @NonNull DurationFormatter formatter) {
+        this(resolutionMs, formatter, new CountdownText());
+    }
+
+    private CountdownLiveData(long resolutionMs, @NonNull DurationFormatter formatter, @NonNull CountdownText text) {
+        super(text);
+        this.resolutionMs = resolutionMs;
+        this.formatter = formatter;
+        this.text = text;
+        text.update(formatter, 0L);
+    }
+
+    /**
+     * Switches to a new time source, or to none when the session detaches.
+     */
+    void setSource(@Nullable Source source) {
+        this.source = source;
+        refresh();
+    }
+
+    /**
+     * Re-samples the source after a state or stage change, but only while observed.
+     */
+    void refresh() {
+        handler.removeCallbacks(tickRunnable);
+        if (hasActiveObservers()) {
+            publish();
+        }
+    }
+
+    @Override
+    protected void onActive() {
+        publish();
+    }
+
+    @Override
+    protected void onInactive() {
+        handler.removeCallbacks(tickRunnable);
+    }
+
+    private void publish() {
+        handler.removeCallbacks(tickRunnable);
+        Source current = source;
+        if (current == null) {
+            return;
+        }
+        long remaining = Math.max(0L, current.getStageRemainingMs());
+        // Round up so that zero is only shown once the stage boundary has actually been reached.
+        long seconds = (remaining + resolutionMs - 1) / resolutionMs * resolutionMs / 1000L;
+        if (seconds != publishedSeconds) {
+            publishedSeconds = seconds;
+            text.update(formatter, seconds);
+            setValue(text);
+        }
+        if (current.isCountingDown() && remaining > 0L) {
+            long untilChange = remaining % resolutionMs;
+            handler.postDelayed(tickRunnable, untilChange == 0L ? resolutionMs : untilChange);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package naq.sm4.ui.timer;
+
+import androidx.annotation.NonNull;
+
+import naq.sm4.core.timer.DurationFormatter;
+
+/**
+ * Reusable character buffer holding the current countdown. The same instance is republished on
+ * every change, and views copy or render its characters directly, see
+ * {@link SessionProgressView#setCountdown(CountdownText)}, so updating the countdown never creates
+ * a {@link String}.
+ */
+public final class CountdownText {
+
+    private final char[] chars = new char[DurationFormatter.MAX_LENGTH];
+    private int length;
+
+    /**
+     * @return backing characters; only the first {@link #getLength()} are meaningful.
+     */
+    @NonNull
+    public char[] getChars() {
+        return chars;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    void update(@NonNull DurationFormatter formatter, long seconds) {
+        length = formatter.format(seconds, chars);
+    }
+}
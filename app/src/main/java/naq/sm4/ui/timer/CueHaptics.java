@@ -0,0 +1,109 @@
+package naq.sm4.ui.timer;
+
+import android.content.Context;
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import naq.sm4.core.timer.HapticWaveform;
+import naq.sm4.core.timer.SessionEngine;
+
+/**
+ * Vibrator port of the session engine. Cue and breath waveforms are turned into
+ * {@link VibrationEffect}s when the engine hands them over, so a cue or a breath only passes a
+ * prepared effect to the one {@link Vibrator} held for the whole session. Devices without amplitude
+ * control play the cue segments at full strength and get a single pulse at the start of every
+ * inhale and exhale instead of the breath swell.
+ */
+class CueHaptics implements SessionEngine.Haptics {
+
+    private static final long FALLBACK_PULSE_MS = 60L;
+
+    @Nullable
+    private final Vibrator vibrator;
+    private VibrationEffect[] cues = new VibrationEffect[0];
+    private VibrationEffect[] breaths = new VibrationEffect[0];
+
+    CueHaptics(@NonNull Context context) {
+        Vibrator service = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
+        vibrator = service != null && service.hasVibrator() ? service : null;
+    }
+
+    @Override
+    public void setCueWaveforms(@NonNull HapticWaveform[] waveforms) {
+        cues = new VibrationEffect[waveforms.length];
+        if (vibrator == null) {
+            return;
+        }
+        for (int i = 0; i < waveforms.length; i++) {
+            // A silent lead-in segment lets the vibrator service do the waiting, so the buzz meets
+            // the sound without another wakeup on the timer thread.
+            cues[i] = VibrationEffect.createWaveform(waveforms[i].getTimings(), waveforms[i].getAmplitudes(), -1);
+        }
+    }
+
+    @Override
+    public void cue(int stageIndex) {
+        if (vibrator != null && stageIndex >= 0 && stageIndex < cues.length) {
+            vibrator.vibrate(cues[stageIndex]);
+        }
+    }
+
+    @Override
+    public void setBreathWaveforms(@NonNull HapticWaveform[] waveforms) {
+        breaths = new VibrationEffect[waveforms.length];
+        if (vibrator == null) {
+            return;
+        }
+        boolean amplitudeControl = vibrator.hasAmplitudeControl();
+        for (int i = 0; i < waveforms.length; i++) {
+            if (waveforms[i] != null) {
+                breaths[i] = amplitudeControl ? createSwell(waveforms[i]) : createPulses(waveforms[i]);
+            }
+        }
+    }
+
+    @Override
+    public void breathe(int stageIndex) {
+        if (vibrator != null && stageIndex >= 0 && stageIndex < breaths.length && breaths[stageIndex] != null) {
+            vibrator.vibrate(breaths[stageIndex]);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        if (vibrator != null) {
+            vibrator.cancel();
+        }
+    }
+
+    @NonNull
+    private static VibrationEffect createSwell(@NonNull HapticWaveform waveform) {
+        return VibrationEffect.createWaveform(waveform.getTimings(), waveform.getAmplitudes(), -1);
+    }
+
+    /**
+     * Marks the turning points only: a pulse where the inhale starts and one after the first
+     * silent segment, which is where the exhale starts.
+     */
+    @NonNull
+    private static VibrationEffect createPulses(@NonNull HapticWaveform waveform) {
+        long[] timings = waveform.getTimings();
+        int[] amplitudes = waveform.getAmplitudes();
+        long exhaleAt = 0L;
+        long elapsed = 0L;
+        for (int i = 0; i < timings.length; i++) {
+            if (amplitudes[i] == 0) {
+                exhaleAt = elapsed + timings[i];
+                break;
+            }
+            elapsed += timings[i];
+        }
+        if (exhaleAt <= FALLBACK_PULSE_MS) {
+            return VibrationEffect.createOneShot(FALLBACK_PULSE_MS, VibrationEffect.DEFAULT_AMPLITUDE);
+        }
+        return VibrationEffect.createWaveform(new long[]{0L, FALLBACK_PULSE_MS, exhaleAt - FALLBACK_PULSE_MS, FALLBACK_PULSE_MS}, -1);
+    }
+}
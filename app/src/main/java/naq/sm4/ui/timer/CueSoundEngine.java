@@ -0,0 +1,428 @@
+package naq.sm4.ui.timer;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.MediaMetadataRetriever;
+import android.media.MediaPlayer;
+import android.media.SoundPool;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import naq.sm4.core.storage.SoundIndex;
+import naq.sm4.core.storage.StorageHelper;
+import naq.sm4.core.timer.SessionEngine;
+import naq.sm4.data.MeditationStage;
+
+/**
+ * Plays stage cues from audio that is already resident. Audio is held for a sliding window of at
+ * most two stages, the running one and the one whose cue comes up next, chosen through
+ * {@link #retain(int, int)}: every candidate sound of those stages is decoded ahead of time, short
+ * clips into a {@link SoundPool} and longer ones into their own prepared {@link MediaPlayer}, and
+ * sounds of every other stage are evicted. Triggering a cue afterwards only starts playback. File
+ * probing and player preparation run on a background thread; all other state, including the sound
+ * pool's load callbacks, is confined to the thread of the looper passed in, which is the session's
+ * timer thread.
+ *
+ * <p>For every cue the engine reports how long it took from the request until the pool or player
+ * accepted the start, which includes any wait for a sound that was still loading. Neither API
+ * reports when the first frame reaches the output, so this is the closest observable point. The
+ * time from there to the speaker is estimated separately per output route by an
+ * {@link OutputLatencyProbe} and handed to the engine through {@link #getOutputLatencyMs()}.
+ */
+class CueSoundEngine implements SessionEngine.Audio {
+
+    private static final String TAG = "CueSoundEngine";
+    /** Clips up to this length are decoded into the sound pool. */
+    private static final long SHORT_CLIP_MAX_MS = 5_000L;
+    private static final int MAX_STREAMS = 2;
+
+    /**
+     * Hears, on the engine's thread, how long each cue took to start.
+     */
+    interface StartListener {
+        void onCueStarted(long latencyMicros);
+    }
+
+    private final Context context;
+    private final Handler handler;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private final AudioAttributes attributes = new AudioAttributes.Builder()
+            .setUsage(AudioAttributes.USAGE_MEDIA)
+            .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+            .build();
+
+    private final OutputLatencyProbe latencyProbe;
+
+    private final Map<String, Integer> sampleIds = new HashMap<>();
+    private final Map<Integer, String> sampleNames = new HashMap<>();
+    private final Set<Integer> loadedSamples = new HashSet<>();
+    private final Map<String, MediaPlayer> players = new HashMap<>();
+    private final Set<String> loading = new HashSet<>();
+
+    private List<MeditationStage> stages = Collections.emptyList();
+    private int retainedStage = -1;
+    private int retainedUpcomingStage = -1;
+
+    @Nullable
+    private SoundPool soundPool;
+    @Nullable
+    private StartListener startListener;
+    @Nullable
+    private String pendingCue;
+    private long pendingCueRequestedNanos;
+    private int activeStreamId;
+    @Nullable
+    private MediaPlayer activePlayer;
+
+    CueSoundEngine(@NonNull Context context, @NonNull Looper looper) {
+        this.context = context.getApplicationContext();
+        this.handler = new Handler(looper);
+        this.latencyProbe = new OutputLatencyProbe(this.context, attributes, handler);
+    }
+
+    void setStartListener(@Nullable StartListener listener) {
+        startListener = listener;
+    }
+
+    /**
+     * Switches to the stages of a new session. Nothing is loaded until {@link #retain(int, int)}.
+     */
+    @Override
+    public void setStages(@NonNull List<MeditationStage> stages) {
+        latencyProbe.start();
+        this.stages = stages;
+        retainedStage = -1;
+        retainedUpcomingStage = -1;
+    }
+
+    /**
+     * @return {@code true} when the sounds of {@code stageIndex} are resident or being loaded.
+     */
+    @Override
+    public boolean isRetained(int stageIndex) {
+        return stageIndex == retainedStage || stageIndex == retainedUpcomingStage;
+    }
+
+    /**
+     * Holds every candidate sound of the running stage and of the stage whose cue comes up next,
+     * loading whatever is missing in the background and evicting the sounds of all other stages.
+     * Sounds shared between stages are kept as they are.
+     *
+     * @param upcomingStage stage to warm ahead of its cue, or {@code -1} for none
+     */
+    @Override
+    public void retain(int currentStage, int upcomingStage) {
+        if (currentStage == retainedStage && upcomingStage == retainedUpcomingStage) {
+            return;
+        }
+        retainedStage = currentStage;
+        retainedUpcomingStage = upcomingStage;
+        Set<String> needed = new HashSet<>();
+        addStageSounds(needed, currentStage);
+        addStageSounds(needed, upcomingStage);
+        unloadAllExcept(needed);
+        for (String name : needed) {
+            if (sampleIds.containsKey(name) || players.containsKey(name) || !loading.add(name)) {
+                continue;
+            }
+            loader.execute(() -> loadInBackground(name));
+        }
+    }
+
+    /**
+     * Starts the cue for {@code name}, cutting off whatever cue is still playing. A sound that is
+     * still being decoded plays as soon as it becomes resident.
+     *
+     * @return {@code false} when the sound is missing, not retained or failed to load
+     */
+    @Override
+    public boolean play(@NonNull String name) {
+        long requestedNanos = SystemClock.elapsedRealtimeNanos();
+        stop();
+        if (!SoundIndex.getInstance().contains(name)) {
+            return false;
+        }
+        return startPlayback(name, requestedNanos);
+    }
+
+    /**
+     * @return output latency estimated for the current route, {@code 0} until the first
+     * estimate after {@link #setStages(List)} completes.
+     */
+    @Override
+    public long getOutputLatencyMs() {
+        return latencyProbe.getLatencyMs();
+    }
+
+    /**
+     * Silences the current cue while keeping every sound resident.
+     */
+    @Override
+    public void stop() {
+        pendingCue = null;
+        if (activeStreamId != 0 && soundPool != null) {
+            soundPool.stop(activeStreamId);
+        }
+        activeStreamId = 0;
+        if (activePlayer != null) {
+            if (activePlayer.isPlaying()) {
+                activePlayer.pause();
+            }
+            activePlayer.seekTo(0);
+            activePlayer = null;
+        }
+    }
+
+    /**
+     * Releases every decoded sample and prepared player. The engine can be used again after the
+     * next {@link #setStages(List)}.
+     */
+    @Override
+    public void release() {
+        stop();
+        stages = Collections.emptyList();
+        retainedStage = -1;
+        retainedUpcomingStage = -1;
+        unloadAllExcept(new HashSet<>());
+        loading.clear();
+        if (soundPool != null) {
+            soundPool.release();
+            soundPool = null;
+        }
+    }
+
+    /**
+     * Releases everything and stops the loader thread; the engine cannot be used afterwards.
+     */
+    void shutdown() {
+        release();
+        latencyProbe.stop();
+        loader.shutdownNow();
+    }
+
+    private boolean startPlayback(@NonNull String name, long requestedNanos) {
+        Integer sampleId = sampleIds.get(name);
+        if (sampleId != null && loadedSamples.contains(sampleId) && soundPool != null) {
+            activeStreamId = soundPool.play(sampleId, 1f, 1f, 1, 0, 1f);
+            if (activeStreamId == 0) {
+                return false;
+            }
+            reportStarted(requestedNanos);
+            return true;
+        }
+        MediaPlayer player = players.get(name);
+        if (player != null) {
+            player.seekTo(0);
+            player.start();
+            activePlayer = player;
+            reportStarted(requestedNanos);
+            return true;
+        }
+        if (loading.contains(name)) {
+            pendingCue = name;
+            pendingCueRequestedNanos = requestedNanos;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Plays the cue that was requested while its sound was still loading.
+     */
+    private void playPendingCue(@NonNull String name) {
+        long requestedNanos = pendingCueRequestedNanos;
+        pendingCue = null;
+        startPlayback(name, requestedNanos);
+    }
+
+    private void reportStarted(long requestedNanos) {
+        if (startListener != null) {
+            startListener.onCueStarted((SystemClock.elapsedRealtimeNanos() - requestedNanos) / 1000L);
+        }
+    }
+
+    private void addStageSounds(@NonNull Set<String> target, int stageIndex) {
+        if (stageIndex >= 0 && stageIndex < stages.size()) {
+            target.addAll(stages.get(stageIndex).getSounds());
+        }
+    }
+
+    private void unloadAllExcept(@NonNull Set<String> keep) {
+        Iterator<Map.Entry<String, Integer>> samples = sampleIds.entrySet().iterator();
+        while (samples.hasNext()) {
+            Map.Entry<String, Integer> entry = samples.next();
+            if (!keep.contains(entry.getKey())) {
+                int sampleId = entry.getValue();
+                if (soundPool != null) {
+                    soundPool.unload(sampleId);
+                }
+                sampleNames.remove(sampleId);
+                loadedSamples.remove(sampleId);
+                samples.remove();
+            }
+        }
+        Iterator<Map.Entry<String, MediaPlayer>> pooled = players.entrySet().iterator();
+        while (pooled.hasNext()) {
+            Map.Entry<String, MediaPlayer> entry = pooled.next();
+            if (!keep.contains(entry.getKey())) {
+                if (entry.getValue() == activePlayer) {
+                    activePlayer = null;
+                }
+                entry.getValue().release();
+                pooled.remove();
+            }
+        }
+        loading.retainAll(keep);
+    }
+
+    @WorkerThread
+    private void loadInBackground(@NonNull String name) {
+        File target;
+        try {
+            target = new File(StorageHelper.ensureWorkingDirectory(), name);
+        } catch (IOException e) {
+            Log.w(TAG, "Working directory unavailable", e);
+            handler.post(() -> onLoadFailed(name));
+            return;
+        }
+        if (!target.isFile()) {
+            handler.post(() -> onLoadFailed(name));
+            return;
+        }
+        long durationMs = probeDurationMs(target);
+        if (durationMs > 0L && durationMs <= SHORT_CLIP_MAX_MS) {
+            handler.post(() -> loadSample(name, target));
+            return;
+        }
+        MediaPlayer player = new MediaPlayer();
+        try {
+            player.setAudioAttributes(attributes);
+            player.setDataSource(target.getAbsolutePath());
+            // Keep the CPU awake for the length of the cue; the session itself holds no wake lock.
+            player.setWakeMode(context, PowerManager.PARTIAL_WAKE_LOCK);
+            player.prepare();
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Unable to prepare " + name, e);
+            player.release();
+            handler.post(() -> onLoadFailed(name));
+            return;
+        }
+        handler.post(() -> onPlayerPrepared(name, player));
+    }
+
+    @WorkerThread
+    private static long probeDurationMs(@NonNull File file) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(file.getAbsolutePath());
+            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return duration == null ? -1L : Long.parseLong(duration);
+        } catch (RuntimeException e) {
+            return -1L;
+        } finally {
+            try {
+                retriever.release();
+            } catch (IOException ignored) {
+                // Nothing left to clean up.
+            }
+        }
+    }
+
+    private void loadSample(@NonNull String name, @NonNull File target) {
+        if (!loading.contains(name)) {
+            return;
+        }
+        int sampleId = ensureSoundPool().load(target.getAbsolutePath(), 1);
+        sampleIds.put(name, sampleId);
+        sampleNames.put(sampleId, name);
+    }
+
+    private void onSampleLoaded(int sampleId, int status) {
+        String name = sampleNames.get(sampleId);
+        if (name == null) {
+            return;
+        }
+        loading.remove(name);
+        if (status != 0) {
+            Log.w(TAG, "Unable to decode " + name);
+            sampleIds.remove(name);
+            sampleNames.remove(sampleId);
+            onLoadFailed(name);
+            return;
+        }
+        loadedSamples.add(sampleId);
+        if (name.equals(pendingCue)) {
+            playPendingCue(name);
+        }
+    }
+
+    private void onPlayerPrepared(@NonNull String name, @NonNull MediaPlayer player) {
+        if (!loading.remove(name) || players.containsKey(name)) {
+            player.release();
+            return;
+        }
+        // The player was created on the loader thread, so its callbacks arrive on the main looper.
+        player.setOnErrorListener((mp, what, extra) -> {
+            Log.w(TAG, "Playback error " + what + " for " + name);
+            handler.post(() -> onPlayerError(name, mp));
+            return true;
+        });
+        players.put(name, player);
+        if (name.equals(pendingCue)) {
+            playPendingCue(name);
+        }
+    }
+
+    private void onPlayerError(@NonNull String name, @NonNull MediaPlayer player) {
+        if (players.get(name) != player) {
+            return;
+        }
+        players.remove(name);
+        if (activePlayer == player) {
+            activePlayer = null;
+        }
+        player.release();
+    }
+
+    private void onLoadFailed(@NonNull String name) {
+        loading.remove(name);
+        if (name.equals(pendingCue)) {
+            pendingCue = null;
+        }
+    }
+
+    /**
+     * Creates the pool on first use. It is always created on the engine's thread, which makes the
+     * pool deliver its load callbacks there as well.
+     */
+    @NonNull
+    private SoundPool ensureSoundPool() {
+        if (soundPool == null) {
+            soundPool = new SoundPool.Builder()
+                    .setMaxStreams(MAX_STREAMS)
+                    .setAudioAttributes(attributes)
+                    .build();
+            soundPool.setOnLoadCompleteListener((pool, sampleId, status) -> onSampleLoaded(sampleId, status));
+        }
+        return soundPool;
+    }
+}
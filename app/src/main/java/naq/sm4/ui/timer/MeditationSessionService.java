@@ -0,0 +1,773 @@
+package naq.sm4.ui.timer;
+
+import android.app.AlarmManager;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import naq.sm4.MainActivity;
+import naq.sm4.R;
+import naq.sm4.core.storage.ConfigHealthChecker;
+import naq.sm4.core.storage.StorageHelper;
+import naq.sm4.core.timer.QuickStartPlanStore;
+import naq.sm4.core.timer.SessionEngine;
+import naq.sm4.core.timer.SessionPlan;
+import naq.sm4.core.timer.SessionProgress;
+import naq.sm4.core.timer.SessionSnapshot;
+import naq.sm4.core.timer.SessionSnapshotStore;
+import naq.sm4.core.timer.TimerState;
+import naq.sm4.core.timer.TimingSummary;
+import naq.sm4.data.ConfigHealth;
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+import naq.sm4.data.SettingsState;
+import naq.sm4.ui.settings.SettingsManager;
+
+/**
+ * Foreground service that hosts a running meditation session. The session itself is a
+ * platform-free {@link SessionEngine}; this class plugs Android into its ports and mirrors its
+ * state to the UI. The CPU is only woken for cue and stage-boundary deadlines through exact
+ * alarms; between them the notification shows a system chronometer counting down the current
+ * stage, so no per-second work happens while the screen is off. Tapping the notification opens the
+ * timer screen, and its pause, resume and stop actions come back through {@link #onStartCommand}
+ * onto the timer thread like any other control. Cue audio is held by a
+ * {@link CueSoundEngine} for the running stage and, shortly before its cue, the next one.
+ * {@link MeditationTimerFragment} binds to the service and reads the live state back as soon as it
+ * reattaches. Every state transition is mirrored into a {@link SessionSnapshotStore}, so a session
+ * whose process was killed can be picked up again by {@link #restoreSnapshot(Consumer)}.
+ *
+ * <p>{@link #ACTION_QUICK_START} launches the plan cached in a {@link QuickStartPlanStore} without
+ * any UI or JSON parsing: the precompiled plan is decoded on the timer thread, which starts loading
+ * the first stage's audio right away. Both this path and {@link #startSession} log the time to the
+ * first cue.
+ *
+ * <p>The engine, its ports and the snapshot file live on a dedicated high-priority timer thread,
+ * so a busy main thread cannot delay a cue. Control methods may be called from any thread and are
+ * queued onto it; the state it produces crosses back to the main thread only as LiveData updates
+ * and as an immutable {@link SessionProgress} that the countdown samples.
+ */
+public class MeditationSessionService extends Service implements SessionEngine.Listener {
+
+    private static final String TAG = "MeditationSession";
+    private static final String CHANNEL_ID = "meditation_session";
+    private static final int NOTIFICATION_ID = 1001;
+    private static final String ACTION_DEADLINE = "naq.sm4.action.SESSION_DEADLINE";
+    private static final String SNAPSHOT_FILE = "session.snapshot";
+
+    /** Starts the cached quick-start plan straight away; sent by {@link QuickStartActivity}. */
+    static final String ACTION_QUICK_START = "naq.sm4.action.QUICK_START";
+    /** {@code SystemClock.elapsedRealtime()} at which the user asked for the quick start. */
+    static final String EXTRA_REQUESTED_AT = "naq.sm4.extra.REQUESTED_AT";
+    /** Notification actions, forwarded to {@link #pause()}, {@link #resume()} and {@link #stop()}. */
+    private static final String ACTION_PAUSE = "naq.sm4.action.SESSION_PAUSE";
+    private static final String ACTION_RESUME = "naq.sm4.action.SESSION_RESUME";
+    private static final String ACTION_STOP = "naq.sm4.action.SESSION_STOP";
+
+    /**
+     * Binder handed to clients in the same process.
+     */
+    public class LocalBinder extends Binder {
+        @NonNull
+        public MeditationSessionService getService() {
+            return MeditationSessionService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final MutableLiveData<TimerState> stateLiveData = new MutableLiveData<>(TimerState.IDLE);
+    private final MutableLiveData<Integer> stageIndexLiveData = new MutableLiveData<>(0);
+    private final MutableLiveData<OneShotEvent<String>> errorEvents = new MutableLiveData<>();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable deadlineRunnable = () -> engine.onDeadline();
+    private final BroadcastReceiver alarmReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            engine.onDeadline();
+        }
+    };
+
+    private HandlerThread timerThread;
+    private Handler timerHandler;
+    private AlarmManager alarmManager;
+    private PendingIntent alarmIntent;
+    private PowerManager.WakeLock cueWakeLock;
+    private SessionSnapshotStore snapshotStore;
+    private QuickStartPlanStore quickStartStore;
+    private CueSoundEngine cueEngine;
+    private SessionEngine engine;
+    private boolean foreground;
+    // Timer thread only: when the session whose first cue is being timed was asked for, and the
+    // resulting times once its audio started.
+    private long firstCueRequestedAtMs = -1L;
+    private String firstCueSource;
+    private long firstCueMs = TimingSummary.NOT_MEASURED;
+    private long firstCueSinceProcessStartMs = TimingSummary.NOT_MEASURED;
+
+    // Copied from the engine on the timer thread; volatile so the main thread can read them.
+    private volatile TimerState state = TimerState.IDLE;
+    private volatile SessionProgress progress = SessionProgress.NONE;
+    private volatile MeditationConfig activeConfig;
+    private volatile List<MeditationStage> stages = Collections.emptyList();
+    private volatile int currentStageIndex = 0;
+    private volatile int completedStageCount = 0;
+    private volatile boolean soundEnabled = true;
+    private volatile boolean vibrationEnabled = true;
+    private volatile TimingSummary timingSummary = TimingSummary.EMPTY;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        timerThread = new HandlerThread("SessionTimer", Process.THREAD_PRIORITY_AUDIO);
+        timerThread.start();
+        timerHandler = new Handler(timerThread.getLooper());
+        alarmManager = (AlarmManager) getSystemService(Context.ALARM_SERVICE);
+        Intent deadlineIntent = new Intent(ACTION_DEADLINE).setPackage(getPackageName());
+        alarmIntent = PendingIntent.getBroadcast(this, 0, deadlineIntent,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        cueWakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "sm4:cue");
+        cueWakeLock.setReferenceCounted(false);
+        createNotificationChannel();
+        cueEngine = new CueSoundEngine(this, timerThread.getLooper());
+        long prefetchLeadMs = getResources().getInteger(R.integer.cue_prefetch_lead_seconds) * 1000L;
+        engine = new SessionEngine(SystemClock::elapsedRealtime, cueEngine, new CueHaptics(this),
+                cueWakeLock::acquire, new DeadlineAlarm(), new Random(), prefetchLeadMs);
+        engine.setListener(this);
+        cueEngine.setStartListener(this::onCueStarted);
+        quickStartStore = new QuickStartPlanStore(StorageHelper.getQuickStartPlanFile(this));
+        ContextCompat.registerReceiver(this, alarmReceiver, new IntentFilter(ACTION_DEADLINE), null,
+                timerHandler, ContextCompat.RECEIVER_NOT_EXPORTED);
+        timerHandler.post(() -> {
+            try {
+                snapshotStore = new SessionSnapshotStore(new File(getFilesDir(), SNAPSHOT_FILE));
+            } catch (IOException e) {
+                Log.w(TAG, "Session snapshots unavailable", e);
+            }
+        });
+    }
+
+    @Override
+    public int onStartCommand(@Nullable Intent intent, int flags, int startId) {
+        // Every start comes through startForegroundService, so the service is promoted before
+        // anything else, even when the session it was started for has already ended by now;
+        // skipping the call would crash the app with ForegroundServiceDidNotStartInTimeException.
+        ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(),
+                ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PLAYBACK);
+        String action = intent != null ? intent.getAction() : null;
+        if (ACTION_QUICK_START.equals(action)) {
+            long requestedAtMs = intent.getLongExtra(EXTRA_REQUESTED_AT, SystemClock.elapsedRealtime());
+            foreground = true;
+            timerHandler.post(() -> quickStartOnTimerThread(requestedAtMs));
+        } else if (hasActiveSession()) {
+            if (ACTION_PAUSE.equals(action)) {
+                pause();
+            } else if (ACTION_RESUME.equals(action)) {
+                resume();
+            } else if (ACTION_STOP.equals(action)) {
+                stop();
+            }
+        } else {
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            stopSelf(startId);
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        unregisterReceiver(alarmReceiver);
+        timerHandler.post(() -> {
+            cancelDeadline();
+            cueEngine.shutdown();
+            if (cueWakeLock.isHeld()) {
+                cueWakeLock.release();
+            }
+            if (snapshotStore != null) {
+                try {
+                    snapshotStore.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to close session snapshot", e);
+                }
+                snapshotStore = null;
+            }
+        });
+        timerThread.quitSafely();
+        super.onDestroy();
+    }
+
+    /**
+     * @return current lifecycle state of the owned session.
+     */
+    public LiveData<TimerState> getState() {
+        return stateLiveData;
+    }
+
+    /**
+     * @return index of the stage currently running.
+     */
+    public LiveData<Integer> getStageIndex() {
+        return stageIndexLiveData;
+    }
+
+    /**
+     * @return one-shot error messages emitted when sounds fail to load or similar issues occur.
+     */
+    public LiveData<OneShotEvent<String>> getErrors() {
+        return errorEvents;
+    }
+
+    /**
+     * @return {@code true} while a session is running or paused.
+     */
+    public boolean hasActiveSession() {
+        TimerState state = this.state;
+        return state == TimerState.RUNNING || state == TimerState.PAUSED;
+    }
+
+    @NonNull
+    public List<MeditationStage> getStages() {
+        return stages;
+    }
+
+    /**
+     * @return milliseconds left in the current stage, derived from the session clock.
+     */
+    public long getStageRemainingMs() {
+        return progress.getStageRemainingMs(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @return latest position reading, carried forward by {@code SystemClock.elapsedRealtime()}.
+     */
+    @NonNull
+    public SessionProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return elapsed session time in milliseconds.
+     */
+    public long getSessionElapsedMs() {
+        return progress.getOffsetMs(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @return number of stages finished before the session ended.
+     */
+    public int getCompletedStageCount() {
+        return completedStageCount;
+    }
+
+    public boolean isSoundEnabled() {
+        return soundEnabled;
+    }
+
+    public boolean isVibrationEnabled() {
+        return vibrationEnabled;
+    }
+
+    /**
+     * @return cue timing accuracy of the last finished session, published together with its
+     * terminal state.
+     */
+    @NonNull
+    public TimingSummary getTimingSummary() {
+        return timingSummary;
+    }
+
+    /**
+     * Compiles the supplied {@link MeditationConfig} into a fresh session and optionally starts it
+     * immediately. {@code configId} names the stored config for the quick-start cache.
+     */
+    @AnyThread
+    public void startSession(int configId, @NonNull MeditationConfig config, boolean startImmediately) {
+        long requestedAtMs = SystemClock.elapsedRealtime();
+        timerHandler.post(() -> {
+            activeConfig = config;
+            reportMissingSounds(config);
+            writeSnapshotPlan(config);
+            SettingsState settings = SettingsManager.getInstance().getSettings(this);
+            engine.load(config.getStages(), settings.isSoundEnabled(), settings.getVibrationStrengthPercent());
+            if (startImmediately) {
+                timeFirstCue("session", requestedAtMs);
+                engine.start();
+            }
+            recordQuickStartPlan(configId, config);
+        });
+    }
+
+    /**
+     * Loads and starts the cached quick-start plan, unless a session is already active. Leaves
+     * the foreground again when there is no usable plan.
+     */
+    private void quickStartOnTimerThread(long requestedAtMs) {
+        if (hasActiveSession()) {
+            return;
+        }
+        SessionPlan plan = null;
+        try {
+            plan = quickStartStore.read();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read quick-start plan", e);
+        }
+        if (plan == null) {
+            Log.w(TAG, "No quick-start plan to launch");
+            if (foreground) {
+                foreground = false;
+                ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+                stopSelf();
+            }
+            return;
+        }
+        activeConfig = plan.getConfig();
+        writeSnapshotPlan(plan.getConfig());
+        SettingsState settings = SettingsManager.getInstance().getSettings(this);
+        engine.load(plan, settings.isSoundEnabled(), settings.getVibrationStrengthPercent());
+        timeFirstCue("quick start", requestedAtMs);
+        engine.start();
+    }
+
+    /**
+     * Picks up the session recorded in the snapshot file after the process was killed. The config
+     * is decoded from the snapshot itself, and a running session is carried forward by the time
+     * that passed in between; cues that fell into that gap are not replayed. The snapshot is read
+     * on the timer thread, and {@code onResult} receives {@code true} on the main thread when a
+     * session was restored.
+     */
+    @AnyThread
+    public void restoreSnapshot(@NonNull Consumer<Boolean> onResult) {
+        timerHandler.post(() -> {
+            boolean restored;
+            try {
+                restored = restoreOnTimerThread();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Unable to restore session", e);
+                restored = false;
+            }
+            boolean result = restored;
+            mainHandler.post(() -> onResult.accept(result));
+        });
+    }
+
+    private boolean restoreOnTimerThread() {
+        if (hasActiveSession() || snapshotStore == null) {
+            return false;
+        }
+        SessionSnapshot snapshot;
+        try {
+            snapshot = snapshotStore.read();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read session snapshot", e);
+            return false;
+        }
+        if (snapshot == null) {
+            return false;
+        }
+        activeConfig = snapshot.getConfig();
+        int vibrationStrength = SettingsManager.getInstance().getSettings(this).getVibrationStrengthPercent();
+        if (!engine.restore(snapshot, System.currentTimeMillis(), vibrationStrength)) {
+            clearSnapshot();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts the session if not already running and at least one stage is available.
+     */
+    @AnyThread
+    public void start() {
+        timerHandler.post(() -> engine.start());
+    }
+
+    /**
+     * Pauses the session, allowing the user to resume later without losing progress.
+     */
+    @AnyThread
+    public void pause() {
+        timerHandler.post(() -> engine.pause());
+    }
+
+    /**
+     * Resumes a previously paused session.
+     */
+    @AnyThread
+    public void resume() {
+        timerHandler.post(() -> engine.resume());
+    }
+
+    /**
+     * Stops the session and leaves the foreground state.
+     */
+    @AnyThread
+    public void stop() {
+        timerHandler.post(() -> engine.stop());
+    }
+
+    /**
+     * Jumps to the start of the next stage without replaying skipped cues.
+     */
+    @AnyThread
+    public void skipToNextStage() {
+        timerHandler.post(() -> engine.skipToNextStage());
+    }
+
+    /**
+     * Jumps back to the start of the previous stage, or restarts the first stage.
+     */
+    @AnyThread
+    public void skipToPreviousStage() {
+        timerHandler.post(() -> engine.skipToPreviousStage());
+    }
+
+    /**
+     * Moves the session to an absolute offset from its start without replaying skipped cues.
+     */
+    @AnyThread
+    public void seekTo(long offsetMs) {
+        timerHandler.post(() -> engine.seekTo(offsetMs));
+    }
+
+    /**
+     * Enables or disables sound playback for subsequent cues.
+     */
+    @AnyThread
+    public void setSoundEnabled(boolean enabled) {
+        soundEnabled = enabled;
+        timerHandler.post(() -> {
+            engine.setSoundEnabled(enabled);
+            mirrorEngine();
+            persistSnapshot();
+        });
+    }
+
+    /**
+     * Enables or disables vibration feedback for subsequent cues.
+     */
+    @AnyThread
+    public void setVibrationEnabled(boolean enabled) {
+        timerHandler.post(() -> {
+            engine.setVibrationEnabled(enabled);
+            mirrorEngine();
+            persistSnapshot();
+        });
+    }
+
+    @Override
+    public void onStateChanged(@NonNull TimerState newState) {
+        mirrorEngine();
+        boolean terminal = newState == TimerState.COMPLETED || newState == TimerState.STOPPED;
+        if (terminal) {
+            timingSummary = engine.getTimingSummary().withFirstCue(firstCueMs, firstCueSinceProcessStartMs);
+            logTimingSummary(timingSummary);
+        }
+        mainHandler.post(() -> stateLiveData.setValue(newState));
+        if (terminal) {
+            clearSnapshot();
+            if (foreground) {
+                foreground = false;
+                ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+                stopSelf();
+            }
+            return;
+        }
+        if (hasActiveSession() && !foreground) {
+            foreground = true;
+            ContextCompat.startForegroundService(this, new Intent(this, MeditationSessionService.class));
+        }
+        persistSnapshot();
+        updateNotification();
+    }
+
+    /**
+     * Measures the time to the first cue of the session about to start, logged once its audio
+     * actually starts and reported with the session's {@link TimingSummary}.
+     */
+    private void timeFirstCue(@NonNull String source, long requestedAtMs) {
+        firstCueSource = source;
+        firstCueRequestedAtMs = requestedAtMs;
+        firstCueMs = TimingSummary.NOT_MEASURED;
+        firstCueSinceProcessStartMs = TimingSummary.NOT_MEASURED;
+    }
+
+    private void onCueStarted(long latencyMicros) {
+        engine.recordAudioStartLatency(latencyMicros);
+        if (firstCueRequestedAtMs < 0L) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        firstCueMs = now - firstCueRequestedAtMs;
+        firstCueSinceProcessStartMs = now - Process.getStartElapsedRealtime();
+        Log.i(TAG, "Time to first cue (" + firstCueSource + "): " + firstCueMs
+                + " ms from request, " + firstCueSinceProcessStartMs + " ms from process start");
+        firstCueRequestedAtMs = -1L;
+    }
+
+    @Override
+    public void onStageChanged(int stageIndex) {
+        mirrorEngine();
+        mainHandler.post(() -> stageIndexLiveData.setValue(stageIndex));
+        persistSnapshot();
+        updateNotification();
+    }
+
+    @Override
+    public void onSoundUnavailable(@NonNull String sound) {
+        reportError(getString(R.string.timer_missing_sound, sound));
+    }
+
+    /**
+     * Copies the engine state the main thread reads. The progress reading is refreshed before any
+     * LiveData update is posted, so observers woken by it already see the matching position.
+     */
+    private void mirrorEngine() {
+        state = engine.getState();
+        progress = engine.captureProgress();
+        stages = engine.getStages();
+        currentStageIndex = engine.getStageIndex();
+        completedStageCount = engine.getCompletedStageCount();
+        soundEnabled = engine.isSoundEnabled();
+        vibrationEnabled = engine.isVibrationEnabled();
+    }
+
+    private static void logTimingSummary(@NonNull TimingSummary summary) {
+        TimingSummary.Distribution cues = summary.getCueLateness();
+        TimingSummary.Distribution audio = summary.getAudioStartLatency();
+        Log.i(TAG, "Cue lateness us: n=" + cues.getCount() + " p50=" + cues.getP50Micros()
+                + " p99=" + cues.getP99Micros() + " max=" + cues.getMaxMicros()
+                + "; audio start us: n=" + audio.getCount() + " p50=" + audio.getP50Micros()
+                + " p99=" + audio.getP99Micros() + " max=" + audio.getMaxMicros()
+                + "; first cue ms: " + summary.getFirstCueMs());
+    }
+
+    /**
+     * Arms both an exact wakeup alarm and an in-process callback, whichever fires first drives
+     * the engine. The callback alone stalls while the CPU is suspended, so the alarm has to be
+     * exact: from Android 13 the app holds {@code USE_EXACT_ALARM}, which is granted on install,
+     * and only on Android 12, where the user can revoke {@code SCHEDULE_EXACT_ALARM}, can it fall
+     * back to an inexact one.
+     */
+    private final class DeadlineAlarm implements SessionEngine.Alarm {
+        @Override
+        public void schedule(long elapsedRealtimeMs) {
+            cancelDeadline();
+            timerHandler.postDelayed(deadlineRunnable, Math.max(0L, elapsedRealtimeMs - SystemClock.elapsedRealtime()));
+            if (alarmManager == null) {
+                return;
+            }
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, elapsedRealtimeMs, alarmIntent);
+            } else {
+                alarmManager.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, elapsedRealtimeMs, alarmIntent);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelDeadline();
+        }
+    }
+
+    private void cancelDeadline() {
+        timerHandler.removeCallbacks(deadlineRunnable);
+        if (alarmManager != null && alarmIntent != null) {
+            alarmManager.cancel(alarmIntent);
+        }
+    }
+
+    /**
+     * Warns up front about sounds the session will not be able to play, using the cached health
+     * status so that starting a session does no I/O.
+     */
+    private void reportMissingSounds(@NonNull MeditationConfig config) {
+        ConfigHealth health = ConfigHealthChecker.getInstance().getHealth(config);
+        if (!health.isHealthy()) {
+            reportError(getString(R.string.timer_missing_sounds, TextUtils.join(", ", health.getMissingSounds())));
+        }
+    }
+
+    private void reportError(@NonNull String message) {
+        OneShotEvent<String> event = new OneShotEvent<>(message);
+        mainHandler.post(() -> errorEvents.setValue(event));
+    }
+
+    /**
+     * Encodes the config of a freshly started session into the snapshot file.
+     */
+    private void writeSnapshotPlan(@NonNull MeditationConfig config) {
+        if (snapshotStore == null) {
+            return;
+        }
+        try {
+            if (!snapshotStore.writePlan(config)) {
+                Log.w(TAG, "Config too large for a session snapshot: " + config.getName());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write session snapshot", e);
+        }
+    }
+
+    /**
+     * Caches the config of a started session for the next quick start, unless another one is
+     * pinned. Only rewrites the cache when the config's content hash changed.
+     */
+    private void recordQuickStartPlan(int configId, @NonNull MeditationConfig config) {
+        try {
+            if (!quickStartStore.recordStarted(configId, config)) {
+                Log.w(TAG, "Config too large for a quick-start plan: " + config.getName());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write quick-start plan", e);
+        }
+    }
+
+    /**
+     * Records the current session position with a single positional write, or clears the
+     * snapshot when no session is active.
+     */
+    private void persistSnapshot() {
+        if (snapshotStore == null) {
+            return;
+        }
+        if (!hasActiveSession()) {
+            clearSnapshot();
+            return;
+        }
+        try {
+            snapshotStore.writePosition(engine.getState() == TimerState.RUNNING, engine.getStageIndex(),
+                    engine.getOffsetMs(), SystemClock.elapsedRealtime(), System.currentTimeMillis(),
+                    engine.isSoundEnabled(), engine.isVibrationEnabled());
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write session snapshot", e);
+        }
+    }
+
+    private void clearSnapshot() {
+        if (snapshotStore == null) {
+            return;
+        }
+        try {
+            snapshotStore.clear();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to clear session snapshot", e);
+        }
+    }
+
+    private void createNotificationChannel() {
+        NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                getString(R.string.session_notification_channel), NotificationManager.IMPORTANCE_LOW);
+        channel.setShowBadge(false);
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager != null) {
+            manager.createNotificationChannel(channel);
+        }
+    }
+
+    private void updateNotification() {
+        if (!hasActiveSession()) {
+            return;
+        }
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager != null) {
+            manager.notify(NOTIFICATION_ID, buildNotification());
+        }
+    }
+
+    /**
+     * Builds the ongoing notification. While running, the stage countdown is rendered by the
+     * system chronometer from a wall-clock end time, so the app does no work between cues. Reads
+     * only the mirrored session state, so it can be built on either thread.
+     */
+    @NonNull
+    private Notification buildNotification() {
+        Intent openIntent = new Intent(this, MainActivity.class)
+                .setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP)
+                .putExtra(MainActivity.EXTRA_SHOW_SESSION, true);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0, openIntent, PendingIntent.FLAG_IMMUTABLE);
+        MeditationConfig config = activeConfig;
+        String title = config != null ? config.getName() : getString(R.string.title_meditation_timer);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_library_music)
+                .setContentTitle(title)
+                .setContentIntent(contentIntent)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setSilent(true)
+                .setCategory(NotificationCompat.CATEGORY_STOPWATCH);
+        List<MeditationStage> sessionStages = stages;
+        int stageIndex = currentStageIndex;
+        if (!sessionStages.isEmpty() && stageIndex < sessionStages.size()) {
+            builder.setSubText(getString(R.string.timer_stage_counter, stageIndex + 1, sessionStages.size()));
+            builder.setContentText(sessionStages.get(stageIndex).getName());
+        }
+        if (state == TimerState.RUNNING) {
+            builder.setShowWhen(true)
+                    .setUsesChronometer(true)
+                    .setChronometerCountDown(true)
+                    .setWhen(System.currentTimeMillis() + getStageRemainingMs())
+                    .addAction(R.drawable.ic_pause, getString(R.string.timer_pause), actionIntent(ACTION_PAUSE));
+        } else {
+            builder.setShowWhen(false)
+                    .setUsesChronometer(false)
+                    .setContentText(getString(R.string.session_notification_paused));
+            if (state == TimerState.PAUSED) {
+                builder.addAction(R.drawable.ic_play, getString(R.string.timer_resume), actionIntent(ACTION_RESUME));
+            }
+        }
+        if (hasActiveSession()) {
+            builder.addAction(R.drawable.ic_stop, getString(R.string.timer_stop), actionIntent(ACTION_STOP));
+        }
+        return builder.build();
+    }
+
+    /**
+     * The intent goes through {@code startForegroundService} like every other start, so a tap
+     * still reaches {@link #onStartCommand} while the app is in the background.
+     */
+    @NonNull
+    private PendingIntent actionIntent(@NonNull String action) {
+        Intent intent = new Intent(this, MeditationSessionService.class).setAction(action);
+        return PendingIntent.getForegroundService(this, 0, intent, PendingIntent.FLAG_IMMUTABLE);
+    }
+}
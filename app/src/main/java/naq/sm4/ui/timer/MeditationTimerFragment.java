@@ -1,11 +1,14 @@
 package naq.sm4.ui.timer;
 
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.os.Bundle;
+import android.os.IBinder;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.Window;
-import android.view.WindowManager;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -16,19 +19,47 @@ import androidx.navigation.fragment.NavHostFragment;
 import com.google.android.material.snackbar.Snackbar;
 
 import naq.sm4.R;
+import naq.sm4.core.timer.QuickStartPlanStore;
+import naq.sm4.core.timer.TimerState;
+import naq.sm4.data.ConfigSummary;
 import naq.sm4.data.MeditationConfig;
 import naq.sm4.databinding.FragmentMeditationTimerBinding;
 import naq.sm4.ui.home.HomeViewModel;
 
 /**
- * Fragment responsible for binding the timer UI to {@link MeditationTimerViewModel} state.
+ * Fragment responsible for binding the timer UI to {@link MeditationTimerViewModel} state. While
+ * started it binds to {@link MeditationSessionService}, which owns the running session.
  */
 public class MeditationTimerFragment extends Fragment {
 
+    private static final String ARG_SHOW_RUNNING_SESSION = "showRunningSession";
+
     private FragmentMeditationTimerBinding binding;
     private MeditationTimerViewModel timerViewModel;
     private HomeViewModel homeViewModel;
-    private Float originalBrightness;
+    private ScreenDimmer screenDimmer;
+    private MeditationConfig pendingSession;
+    private int pendingSessionId = QuickStartPlanStore.NO_CONFIG_ID;
+    private boolean fallbackToFirstConfig;
+    private boolean bound;
+    @Nullable
+    private TimerUiState renderedState;
+    private boolean timingDiagnosticsRevealed;
+
+    private final ServiceConnection sessionConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            MeditationSessionService sessionService = ((MeditationSessionService.LocalBinder) service).getService();
+            timerViewModel.attachSession(sessionService);
+            syncToggles();
+            startPendingSessionIfNeeded();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            timerViewModel.detachSession();
+        }
+    };
 
     @Nullable
     @Override
@@ -45,105 +76,207 @@ public class MeditationTimerFragment extends Fragment {
         timerViewModel = new ViewModelProvider(requireActivity()).get(MeditationTimerViewModel.class);
         homeViewModel = new ViewModelProvider(requireActivity()).get(HomeViewModel.class);
 
-        storeOriginalBrightness();
+        screenDimmer = new ScreenDimmer(requireActivity().getWindow(), timerViewModel);
         observeViewModel();
         setupControls();
-        initialiseTimerIfNeeded();
+        if (savedInstanceState == null) {
+            pendingSessionId = homeViewModel.getActiveSessionId();
+            pendingSession = homeViewModel.consumeActiveSession();
+            Bundle args = getArguments();
+            fallbackToFirstConfig = pendingSession == null
+                    && (args == null || !args.getBoolean(ARG_SHOW_RUNNING_SESSION));
+        }
+    }
+
+    /**
+     * @return arguments that open the screen on the running or interrupted session only, never
+     * starting a new one when there is none.
+     */
+    @NonNull
+    public static Bundle showRunningSessionArgs() {
+        Bundle args = new Bundle();
+        args.putBoolean(ARG_SHOW_RUNNING_SESSION, true);
+        return args;
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        Context context = requireContext();
+        bound = context.bindService(new Intent(context, MeditationSessionService.class), sessionConnection, Context.BIND_AUTO_CREATE);
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        if (bound) {
+            requireContext().unbindService(sessionConnection);
+            bound = false;
+        }
+        timerViewModel.detachSession();
     }
 
     private void observeViewModel() {
-        timerViewModel.getCountdownText().observe(getViewLifecycleOwner(), binding.countdownText::setText);
-        timerViewModel.getStageTitle().observe(getViewLifecycleOwner(), title -> binding.currentStageText.setText(getString(R.string.timer_stage_label, title)));
-        timerViewModel.getStageCounter().observe(getViewLifecycleOwner(), binding.stageCounterText::setText);
-        timerViewModel.getNextStageTitle().observe(getViewLifecycleOwner(), next -> {
-            binding.nextStageText.setVisibility(next == null || next.isEmpty() ? View.GONE : View.VISIBLE);
-            binding.nextStageText.setText(next);
-        });
-        timerViewModel.getSessionSummary().observe(getViewLifecycleOwner(), summary -> {
-            binding.sessionSummary.setVisibility(summary == null || summary.isEmpty() ? View.GONE : View.VISIBLE);
-            if (summary != null) {
-                binding.sessionSummary.setText(summary);
-            }
-        });
-        timerViewModel.getSessionTotal().observe(getViewLifecycleOwner(), total -> {
-            binding.sessionTotal.setVisibility(total == null || total.isEmpty() ? View.GONE : View.VISIBLE);
-            if (total != null) {
-                binding.sessionTotal.setText(getString(R.string.timer_total_elapsed, total));
-            }
-        });
-        timerViewModel.getErrorMessage().observe(getViewLifecycleOwner(), message -> {
+        binding.sessionProgress.setSource(timerViewModel);
+        timerViewModel.getCountdownText().observe(getViewLifecycleOwner(), binding.sessionProgress::setCountdown);
+        timerViewModel.getUiState().observe(getViewLifecycleOwner(), this::render);
+        timerViewModel.getErrors().observe(getViewLifecycleOwner(), event -> {
+            String message = event == null ? null : event.consume();
             if (message != null && binding != null) {
                 Snackbar.make(binding.timerRoot, message, Snackbar.LENGTH_LONG).show();
             }
         });
-        timerViewModel.getState().observe(getViewLifecycleOwner(), state -> {
-            if (binding == null) {
-                return;
+        timerViewModel.getBrightnessRamp().observe(getViewLifecycleOwner(), screenDimmer::setRamp);
+    }
+
+    /**
+     * Applies {@code state} in one pass, touching only the views whose inputs changed since the
+     * previously rendered state.
+     */
+    private void render(@NonNull TimerUiState state) {
+        if (binding == null) {
+            return;
+        }
+        TimerUiState previous = renderedState;
+        renderedState = state;
+        if (previous == null || !previous.getStageTitle().equals(state.getStageTitle())) {
+            binding.currentStageText.setText(getString(R.string.timer_stage_label, state.getStageTitle()));
+        }
+        if (previous == null || !previous.getStageCounter().equals(state.getStageCounter())) {
+            binding.stageCounterText.setText(state.getStageCounter());
+        }
+        if (previous == null || !previous.getNextStageTitle().equals(state.getNextStageTitle())) {
+            String next = state.getNextStageTitle();
+            binding.nextStageText.setVisibility(next.isEmpty() ? View.GONE : View.VISIBLE);
+            binding.nextStageText.setText(next);
+        }
+        if (previous == null || !previous.getSessionSummary().equals(state.getSessionSummary())) {
+            String summary = state.getSessionSummary();
+            binding.sessionSummary.setVisibility(summary.isEmpty() ? View.GONE : View.VISIBLE);
+            binding.sessionSummary.setText(summary);
+        }
+        if (previous == null || !previous.getSessionTotal().equals(state.getSessionTotal())) {
+            String total = state.getSessionTotal();
+            binding.sessionTotal.setVisibility(total.isEmpty() ? View.GONE : View.VISIBLE);
+            if (!total.isEmpty()) {
+                binding.sessionTotal.setText(getString(R.string.timer_total_elapsed, total));
             }
-            boolean running = state == MeditationTimerViewModel.TimerState.RUNNING;
-            boolean paused = state == MeditationTimerViewModel.TimerState.PAUSED;
+        }
+        if (previous == null || !previous.getTimingDiagnostics().equals(state.getTimingDiagnostics())) {
+            binding.timingDiagnosticsText.setText(state.getTimingDiagnostics());
+            applyTimingDiagnosticsVisibility();
+        }
+        if (previous == null || previous.getState() != state.getState()) {
+            TimerState timerState = state.getState();
+            boolean running = timerState == TimerState.RUNNING;
+            boolean paused = timerState == TimerState.PAUSED;
             binding.pauseButton.setVisibility(running ? View.VISIBLE : View.GONE);
             binding.resumeButton.setVisibility(paused ? View.VISIBLE : View.GONE);
-            binding.stopButton.setEnabled(state != MeditationTimerViewModel.TimerState.COMPLETED && state != MeditationTimerViewModel.TimerState.STOPPED);
-        });
-        timerViewModel.getScreenBrightnessPercent().observe(getViewLifecycleOwner(), this::applyScreenBrightness);
+            boolean active = timerState != TimerState.COMPLETED && timerState != TimerState.STOPPED;
+            binding.stopButton.setEnabled(active);
+            binding.previousStageButton.setEnabled(active);
+            binding.nextStageButton.setEnabled(active);
+            binding.timerRoot.setKeepScreenOn(running);
+            binding.sessionProgress.refresh();
+            screenDimmer.refresh();
+        }
+        if (previous != null && !previous.getStageCounter().equals(state.getStageCounter())) {
+            // A seek while paused moves the rings without a state change.
+            binding.sessionProgress.refresh();
+            screenDimmer.refresh();
+        }
+    }
+
+    /**
+     * The timing diagnostics line is hidden until the session summary is long-pressed.
+     */
+    private void applyTimingDiagnosticsVisibility() {
+        boolean available = renderedState != null && !renderedState.getTimingDiagnostics().isEmpty();
+        binding.timingDiagnosticsText.setVisibility(timingDiagnosticsRevealed && available ? View.VISIBLE : View.GONE);
     }
 
     private void setupControls() {
+        binding.sessionSummary.setOnLongClickListener(v -> {
+            timingDiagnosticsRevealed = !timingDiagnosticsRevealed;
+            applyTimingDiagnosticsVisibility();
+            return true;
+        });
         binding.pauseButton.setOnClickListener(v -> timerViewModel.pauseTimer());
         binding.resumeButton.setOnClickListener(v -> timerViewModel.resumeTimer());
+        binding.previousStageButton.setOnClickListener(v -> timerViewModel.skipToPreviousStage());
+        binding.nextStageButton.setOnClickListener(v -> timerViewModel.skipToNextStage());
         binding.stopButton.setOnClickListener(v -> {
             timerViewModel.stopTimer(true);
             NavHostFragment.findNavController(this).navigateUp();
         });
-        binding.soundToggle.setChecked(timerViewModel.isSoundEnabled());
-        binding.vibrationToggle.setChecked(timerViewModel.isVibrationEnabled());
+        syncToggles();
         binding.soundToggle.setOnCheckedChangeListener((buttonView, isChecked) -> timerViewModel.updateSoundEnabled(isChecked));
         binding.vibrationToggle.setOnCheckedChangeListener((buttonView, isChecked) -> timerViewModel.updateVibrationEnabled(isChecked));
     }
 
-    private void initialiseTimerIfNeeded() {
-        MeditationTimerViewModel.TimerState state = timerViewModel.getState().getValue();
-        if (state == MeditationTimerViewModel.TimerState.RUNNING || state == MeditationTimerViewModel.TimerState.PAUSED) {
+    private void syncToggles() {
+        if (binding == null) {
             return;
         }
-        MeditationConfig session = homeViewModel.consumeActiveSession();
-        if (session == null) {
-            if (homeViewModel.getConfigs().getValue() != null && !homeViewModel.getConfigs().getValue().isEmpty()) {
-                session = homeViewModel.getConfigs().getValue().get(0);
-            }
+        binding.soundToggle.setChecked(timerViewModel.isSoundEnabled());
+        binding.vibrationToggle.setChecked(timerViewModel.isVibrationEnabled());
+    }
+
+    /**
+     * Starts the session chosen on the home screen once the service is bound, unless the service
+     * is already running one, in which case its live state is simply shown again. Without an
+     * explicit choice, a session interrupted by process death is restored from its snapshot; only
+     * once that read has found nothing does it fall back to the first saved config.
+     */
+    private void startPendingSessionIfNeeded() {
+        MeditationConfig session = pendingSession;
+        boolean fallback = fallbackToFirstConfig;
+        pendingSession = null;
+        fallbackToFirstConfig = false;
+        if (timerViewModel.hasActiveSession()) {
+            return;
         }
         if (session != null) {
-            timerViewModel.initialise(session, true);
+            timerViewModel.initialise(pendingSessionId, session, true);
+            return;
         }
+        timerViewModel.restoreSession(restored -> {
+            if (!restored && fallback && binding != null && !timerViewModel.hasActiveSession()) {
+                startFirstSavedConfig();
+            }
+        });
     }
 
-    @Override
-    public void onDestroyView() {
-        super.onDestroyView();
-        restoreBrightness();
-        binding = null;
-    }
-
-    private void storeOriginalBrightness() {
-        Window window = requireActivity().getWindow();
-        WindowManager.LayoutParams params = window.getAttributes();
-        originalBrightness = params.screenBrightness;
+    private void startFirstSavedConfig() {
+        ConfigSummary first = firstSavedConfig();
+        if (first != null) {
+            homeViewModel.openConfig(first, config -> {
+                if (binding != null && !timerViewModel.hasActiveSession()) {
+                    timerViewModel.initialise(first.getId(), config, true);
+                }
+            });
+        }
     }
 
-    private void applyScreenBrightness(int percent) {
-        Window window = requireActivity().getWindow();
-        WindowManager.LayoutParams params = window.getAttributes();
-        float clamped = Math.max(0, Math.min(100, percent));
-        float brightness = clamped <= 0 ? 0.05f : clamped / 100f;
-        params.screenBrightness = brightness;
-        window.setAttributes(params);
+    /**
+     * @return summary of the first saved config, if the home screen has loaded any.
+     */
+    @Nullable
+    private ConfigSummary firstSavedConfig() {
+        if (homeViewModel.getConfigs().getValue() != null && !homeViewModel.getConfigs().getValue().isEmpty()) {
+            return homeViewModel.getConfigs().getValue().get(0);
+        }
+        return null;
     }
 
-    private void restoreBrightness() {
-        Window window = requireActivity().getWindow();
-        WindowManager.LayoutParams params = window.getAttributes();
-        params.screenBrightness = originalBrightness != null ? originalBrightness : WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE;
-        window.setAttributes(params);
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        screenDimmer.release();
+        screenDimmer = null;
+        binding.sessionProgress.setSource(null);
+        binding = null;
+        renderedState = null;
+        timingDiagnosticsRevealed = false;
     }
 }
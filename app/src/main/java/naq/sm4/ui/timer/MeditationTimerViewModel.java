@@ -1,189 +1,184 @@
 package naq.sm4.ui.timer;
 
 import android.app.Application;
-import android.os.Handler;
-import android.os.Looper;
-import android.os.Build;
-import android.os.PowerManager;
-import android.os.VibrationEffect;
-import android.os.Vibrator;
+
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
 
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
-import java.util.Random;
+import java.util.function.Consumer;
 
 import naq.sm4.R;
-import naq.sm4.core.storage.StorageHelper;
+import naq.sm4.core.timer.BreathingPacer;
+import naq.sm4.core.timer.BrightnessRamp;
+import naq.sm4.core.timer.DurationFormatter;
+import naq.sm4.core.timer.SessionProgress;
+import naq.sm4.core.timer.SessionTimeline;
+import naq.sm4.core.timer.TimerState;
+import naq.sm4.core.timer.TimingSummary;
 import naq.sm4.data.MeditationConfig;
 import naq.sm4.data.MeditationStage;
 import naq.sm4.data.SettingsState;
 import naq.sm4.ui.settings.SettingsManager;
 
 /**
- * ViewModel maintaining the state of a meditation session, including stage progression,
- * countdown timers, audio playback, and pause/resume handling.
+ * ViewModel presenting the state of the meditation session owned by
+ * {@link MeditationSessionService}. The service keeps time and plays cues; this class only turns
+ * its state into display text while the timer screen is attached. Everything but the countdown is
+ * published as one immutable {@link TimerUiState} per change; the countdown is sampled from the
+ * session on demand and only while it is observed, see {@link CountdownLiveData}, and the progress
+ * ring reads the session's position itself on every frame it draws. Errors are
+ * delivered as {@link OneShotEvent}s so a configuration change does not show them again.
  */
-public class MeditationTimerViewModel extends AndroidViewModel {
-
-    /**
-     * High level lifecycle states for the session timer, used to drive UI controls and behavior.
-     */
-    public enum TimerState {
-        IDLE,
-        RUNNING,
-        PAUSED,
-        COMPLETED,
-        STOPPED
-    }
-
-    private static final long TICK_INTERVAL_MS = 1000L;
-
-    private final MutableLiveData<String> countdownText = new MutableLiveData<>("00:00");
-    private final MutableLiveData<String> stageTitle = new MutableLiveData<>("");
-    private final MutableLiveData<String> stageCounter = new MutableLiveData<>("");
-    private final MutableLiveData<String> nextStageTitle = new MutableLiveData<>("");
-    private final MutableLiveData<String> sessionSummary = new MutableLiveData<>("");
-    private final MutableLiveData<String> sessionTotal = new MutableLiveData<>("");
-    private final MutableLiveData<String> errorMessage = new MutableLiveData<>(null);
-    private final MutableLiveData<TimerState> stateLiveData = new MutableLiveData<>(TimerState.IDLE);
-
-    private final Handler handler = new Handler(Looper.getMainLooper());
-    private final Runnable tickRunnable = this::handleTick;
-
-    private MeditationConfig activeConfig;
-    private List<MeditationStage> stages = Collections.emptyList();
-    private int currentStageIndex = 0;
-    private int secondsRemaining = 0;
-    private int sessionSecondsElapsed = 0;
-    private boolean soundEnabled = true;
-    private boolean vibrationEnabled = true;
-    private int vibrationStrengthPercent = 0;
-    private int screenBrightnessPercent = 100;
-
-    private final MutableLiveData<Integer> screenBrightnessLiveData = new MutableLiveData<>(100);
-
-    private final TimerSoundPlayer soundPlayer = new TimerSoundPlayer();
-    private PowerManager.WakeLock wakeLock;
-    private int repeatIntervalSeconds = -1;
-    private int repeatCountdown = -1;
-    private final Random random = new Random();
+public class MeditationTimerViewModel extends AndroidViewModel implements CountdownLiveData.Source,
+        SessionProgressView.Source {
+
+    private static final long COUNTDOWN_RESOLUTION_MS = 1000L;
+
+    private final DurationFormatter durationFormatter = new DurationFormatter(Locale.getDefault());
+    private final CountdownLiveData countdownText = new CountdownLiveData(COUNTDOWN_RESOLUTION_MS, durationFormatter);
+    private final MutableLiveData<TimerUiState> uiState = new MutableLiveData<>(TimerUiState.INITIAL);
+    private final MutableLiveData<OneShotEvent<String>> errorEvents = new MutableLiveData<>();
+    private final MutableLiveData<BrightnessRamp> brightnessRamp = new MutableLiveData<>(BrightnessRamp.constant(100));
+
+    private final Observer<TimerState> stateObserver = this::onSessionStateChanged;
+    private final Observer<Integer> stageObserver = this::onStageChanged;
+    private final Observer<OneShotEvent<String>> errorObserver = errorEvents::setValue;
+
+    private MeditationSessionService session;
+    /** Pacers of {@link #pacedStages}, compiled once per stage list rather than per frame. */
+    private BreathingPacer[] pacers = new BreathingPacer[0];
+    @Nullable
+    private List<MeditationStage> pacedStages;
+    /** Inputs {@link #brightnessRamp} was last built from. */
+    @Nullable
+    private List<MeditationStage> rampStages;
+    @Nullable
+    private SettingsState rampSettings;
 
     public MeditationTimerViewModel(@NonNull Application application) {
         super(application);
     }
 
     /**
-     * @return formatted remaining time for the current stage.
+     * @return remaining time for the current stage, as a reusable character buffer.
      */
-    public LiveData<String> getCountdownText() {
+    public LiveData<CountdownText> getCountdownText() {
         return countdownText;
     }
 
     /**
-     * @return name of the current stage prefixed via resources.
+     * @return snapshot of the stage, session state and summary, published once per change.
      */
-    public LiveData<String> getStageTitle() {
-        return stageTitle;
+    public LiveData<TimerUiState> getUiState() {
+        return uiState;
     }
 
     /**
-     * @return human-readable counter (e.g. "1/3") of the active stage.
+     * @return one-shot error messages emitted when sounds fail to load or similar issues occur.
      */
-    public LiveData<String> getStageCounter() {
-        return stageCounter;
+    public LiveData<OneShotEvent<String>> getErrors() {
+        return errorEvents;
     }
 
     /**
-     * @return label describing the next stage, or empty when none remains.
+     * @return brightness schedule to apply while the timer is visible, rebuilt when the settings
+     * or the session's stages change.
      */
-    public LiveData<String> getNextStageTitle() {
-        return nextStageTitle;
+    public LiveData<BrightnessRamp> getBrightnessRamp() {
+        return brightnessRamp;
     }
 
     /**
-     * @return summary text displayed when the session finishes or is stopped.
+     * @return {@code true} when audio cues are currently allowed.
      */
-    public LiveData<String> getSessionSummary() {
-        return sessionSummary;
+    public boolean isSoundEnabled() {
+        if (session != null) {
+            return session.isSoundEnabled();
+        }
+        return SettingsManager.getInstance().getSettings(getApplication()).isSoundEnabled();
     }
 
     /**
-     * @return formatted total elapsed time for the completed session.
+     * @return {@code true} when vibration cues are currently allowed.
      */
-    public LiveData<String> getSessionTotal() {
-        return sessionTotal;
+    public boolean isVibrationEnabled() {
+        if (session != null) {
+            return session.isVibrationEnabled();
+        }
+        return SettingsManager.getInstance().getSettings(getApplication()).getVibrationStrengthPercent() > 0;
     }
 
     /**
-     * @return transient error message emitted when sounds fail to load or similar issues occur.
+     * Connects the presenter to the bound session service and immediately renders its live state.
      */
-    public LiveData<String> getErrorMessage() {
-        return errorMessage;
+    @MainThread
+    public void attachSession(@NonNull MeditationSessionService service) {
+        if (session == service) {
+            return;
+        }
+        detachSession();
+        session = service;
+        applySettingsDefaults();
+        session.getStageIndex().observeForever(stageObserver);
+        session.getState().observeForever(stateObserver);
+        session.getErrors().observeForever(errorObserver);
+        countdownText.setSource(this);
     }
 
     /**
-     * @return observable timer state allowing the UI to toggle controls.
+     * Disconnects from the service and stops all per-second display work.
      */
-    public LiveData<TimerState> getState() {
-        return stateLiveData;
+    @MainThread
+    public void detachSession() {
+        countdownText.setSource(null);
+        if (session == null) {
+            return;
+        }
+        session.getStageIndex().removeObserver(stageObserver);
+        session.getState().removeObserver(stateObserver);
+        session.getErrors().removeObserver(errorObserver);
+        session = null;
     }
 
     /**
-     * @return brightness preference to apply while the timer is visible (0-100).
+     * @return {@code true} when the attached service is running or has paused a session.
      */
-    public LiveData<Integer> getScreenBrightnessPercent() {
-        return screenBrightnessLiveData;
+    public boolean hasActiveSession() {
+        return session != null && session.hasActiveSession();
     }
 
     /**
-     * @return {@code true} when audio cues are currently allowed.
+     * Hands the supplied {@link MeditationConfig}, stored under {@code configId}, to the session
+     * service and optionally starts it immediately.
      */
-    public boolean isSoundEnabled() {
-        return soundEnabled;
-    }
-
-    /**
-     * @return {@code true} when vibration cues are currently allowed.
-     */
-    public boolean isVibrationEnabled() {
-        return vibrationEnabled;
+    @MainThread
+    public void initialise(int configId, @NonNull MeditationConfig config, boolean startImmediately) {
+        if (session == null) {
+            return;
+        }
+        session.startSession(configId, config, startImmediately);
     }
 
     /**
-     * Prepares the timer with the supplied {@link MeditationConfig} and optionally starts it
-     * immediately.
+     * Resumes the session recorded before the app process was last killed, if there is one,
+     * without blocking the main thread. {@code onResult} receives {@code true} on the main thread
+     * when a session was restored.
      */
     @MainThread
-    public void initialise(@NonNull MeditationConfig config, boolean startImmediately) {
-        activeConfig = config;
-        stages = new ArrayList<>(config.getStages());
-        currentStageIndex = 0;
-        sessionSecondsElapsed = 0;
-        sessionSummary.setValue("");
-        sessionTotal.setValue("");
-        applySettingsDefaults();
-        if (stages.isEmpty()) {
-            countdownText.setValue("00:00");
-            stageTitle.setValue(getApplication().getString(R.string.label_stage_placeholder));
-            stageCounter.setValue("0/0");
-            nextStageTitle.setValue("");
-            stateLiveData.setValue(TimerState.COMPLETED);
+    public void restoreSession(@NonNull Consumer<Boolean> onResult) {
+        if (session == null) {
+            onResult.accept(false);
             return;
         }
-        loadStage(currentStageIndex);
-        if (startImmediately) {
-            startTimer();
-        } else {
-            stateLiveData.setValue(TimerState.IDLE);
-        }
+        session.restoreSnapshot(onResult);
     }
 
     /**
@@ -191,14 +186,9 @@ public class MeditationTimerViewModel extends AndroidViewModel {
      */
     @MainThread
     public void startTimer() {
-        if (stateLiveData.getValue() == TimerState.RUNNING || stages.isEmpty()) {
-            return;
+        if (session != null) {
+            session.start();
         }
-        stateLiveData.setValue(TimerState.RUNNING);
-        acquireWakeLock();
-        handler.removeCallbacks(tickRunnable);
-        handler.postDelayed(tickRunnable, TICK_INTERVAL_MS);
-        playStageCue();
     }
 
     /**
@@ -206,12 +196,9 @@ public class MeditationTimerViewModel extends AndroidViewModel {
      */
     @MainThread
     public void pauseTimer() {
-        if (stateLiveData.getValue() != TimerState.RUNNING) {
-            return;
+        if (session != null) {
+            session.pause();
         }
-        stateLiveData.setValue(TimerState.PAUSED);
-        handler.removeCallbacks(tickRunnable);
-        releaseWakeLock();
     }
 
     /**
@@ -219,12 +206,9 @@ public class MeditationTimerViewModel extends AndroidViewModel {
      */
     @MainThread
     public void resumeTimer() {
-        if (stateLiveData.getValue() != TimerState.PAUSED) {
-            return;
+        if (session != null) {
+            session.resume();
         }
-        stateLiveData.setValue(TimerState.RUNNING);
-        acquireWakeLock();
-        handler.postDelayed(tickRunnable, TICK_INTERVAL_MS);
     }
 
     /**
@@ -233,218 +217,218 @@ public class MeditationTimerViewModel extends AndroidViewModel {
      */
     @MainThread
     public void stopTimer(boolean userInitiated) {
-        handler.removeCallbacks(tickRunnable);
-        releaseWakeLock();
-        stateLiveData.setValue(TimerState.STOPPED);
-        int completedStages = Math.min(currentStageIndex, stages.size());
-        String summary = getApplication().getString(R.string.timer_session_stopped, completedStages, stages.size());
-        sessionSummary.setValue(summary);
-        sessionTotal.setValue(formatDuration(sessionSecondsElapsed));
-        playSilently();
+        if (session != null) {
+            session.stop();
+        }
     }
 
     /**
-     * Enables or disables sound playback for subsequent cues.
+     * Jumps to the start of the next stage, ending the session when called on the last stage.
+     * Cues between the current position and the target are not replayed.
      */
     @MainThread
-    public void updateSoundEnabled(boolean enabled) {
-        soundEnabled = enabled;
-        if (!enabled) {
-            playSilently();
+    public void skipToNextStage() {
+        if (session != null) {
+            session.skipToNextStage();
         }
     }
 
     /**
-     * Enables or disables vibration feedback for subsequent cues.
+     * Jumps back to the start of the previous stage, or restarts the first stage.
      */
     @MainThread
-    public void updateVibrationEnabled(boolean enabled) {
-        vibrationEnabled = enabled && vibrationStrengthPercent > 0;
+    public void skipToPreviousStage() {
+        if (session != null) {
+            session.skipToPreviousStage();
+        }
     }
 
     /**
-     * Loads a stage by index, resetting timers and exposing metadata to observers.
+     * Moves the session to an absolute offset from its start without replaying skipped cues.
      */
-    private void loadStage(int index) {
-        MeditationStage stage = stages.get(index);
-        secondsRemaining = stage.getMinutes() * 60;
-        stageTitle.setValue(stage.getName());
-        stageCounter.setValue(getApplication().getString(R.string.timer_stage_counter, index + 1, stages.size()));
-        countdownText.setValue(formatDuration(secondsRemaining));
-
-        repeatIntervalSeconds = stage.getRepeatMinutes() > 0 ? stage.getRepeatMinutes() * 60 : -1;
-        repeatCountdown = repeatIntervalSeconds;
-
-        if (index + 1 < stages.size()) {
-            nextStageTitle.setValue(getApplication().getString(R.string.timer_next_stage, stages.get(index + 1).getName()));
-        } else {
-            nextStageTitle.setValue("");
+    @MainThread
+    public void seekTo(long offsetMs) {
+        if (session != null) {
+            session.seekTo(offsetMs);
         }
     }
 
     /**
-     * Called every second to drive countdown progression and stage transitions.
+     * Enables or disables sound playback for subsequent cues.
      */
-    private void handleTick() {
-        if (stateLiveData.getValue() != TimerState.RUNNING) {
-            return;
-        }
-        secondsRemaining--;
-        sessionSecondsElapsed++;
-        countdownText.setValue(formatDuration(Math.max(0, secondsRemaining)));
-        if (repeatIntervalSeconds > 0) {
-            repeatCountdown--;
-            if (repeatCountdown <= 0 && secondsRemaining > 0) {
-                playStageCue();
-                repeatCountdown = repeatIntervalSeconds;
-            }
-        }
-        if (secondsRemaining <= 0) {
-            advanceStage();
-        } else {
-            handler.postDelayed(tickRunnable, TICK_INTERVAL_MS);
+    @MainThread
+    public void updateSoundEnabled(boolean enabled) {
+        if (session != null) {
+            session.setSoundEnabled(enabled);
         }
     }
 
     /**
-     * Moves to the next stage or completes the session when none remain.
+     * Enables or disables vibration feedback for subsequent cues.
      */
-    private void advanceStage() {
-        currentStageIndex++;
-        if (currentStageIndex >= stages.size()) {
-            completeSession();
-            return;
+    @MainThread
+    public void updateVibrationEnabled(boolean enabled) {
+        if (session != null) {
+            session.setVibrationEnabled(enabled);
         }
-        loadStage(currentStageIndex);
-        playStageCue();
-        handler.postDelayed(tickRunnable, TICK_INTERVAL_MS);
     }
 
     /**
-     * Finalises the session, emits summary text, and cleans up resources.
+     * Exposes the metadata of the stage the service is currently running.
      */
-    private void completeSession() {
-        handler.removeCallbacks(tickRunnable);
-        stateLiveData.setValue(TimerState.COMPLETED);
-        releaseWakeLock();
-        sessionSummary.setValue(getApplication().getString(R.string.timer_completed_summary, stages.size(), stages.size()));
-        sessionTotal.setValue(formatDuration(sessionSecondsElapsed));
-        playSilently();
+    private void onStageChanged(@Nullable Integer index) {
+        if (session == null) {
+            return;
+        }
+        List<MeditationStage> stages = session.getStages();
+        compilePacers(stages);
+        updateBrightnessRamp(stages, SettingsManager.getInstance().getSettings(getApplication()));
+        TimerUiState current = currentUiState();
+        if (stages.isEmpty()) {
+            publish(current.withStage(getApplication().getString(R.string.label_stage_placeholder), "0/0", ""));
+            countdownText.refresh();
+            return;
+        }
+        int position = Math.max(0, Math.min(index == null ? 0 : index, stages.size() - 1));
+        String next = position + 1 < stages.size()
+                ? getApplication().getString(R.string.timer_next_stage, stages.get(position + 1).getName())
+                : "";
+        publish(current.withStage(stages.get(position).getName(),
+                getApplication().getString(R.string.timer_stage_counter, position + 1, stages.size()), next));
+        countdownText.refresh();
     }
 
     /**
-     * Triggers the cue for the current stage, combining vibration feedback and audio playback.
+     * Mirrors the service state and produces the summary once the session ends.
      */
-    private void playStageCue() {
-        vibrateCue();
-        if (!soundEnabled || stages.isEmpty()) {
+    private void onSessionStateChanged(@Nullable TimerState state) {
+        if (session == null || state == null) {
             return;
         }
-        MeditationStage stage = stages.get(currentStageIndex);
-        List<String> sounds = stage.getSounds();
-        if (sounds.isEmpty()) {
-            return;
-        }
-        String sound = selectRandomSound(sounds);
-        try {
-            List<String> available = StorageHelper.listAudioFileNamesSorted();
-            if (!available.contains(sound)) {
-                errorMessage.setValue(getApplication().getString(R.string.timer_missing_sound, sound));
-                return;
-            }
-            soundPlayer.play(getApplication(), sound);
-        } catch (IOException e) {
-            errorMessage.setValue(getApplication().getString(R.string.timer_missing_sound, sound));
+        int stageCount = session.getStages().size();
+        String summary = "";
+        String total = "";
+        String diagnostics = "";
+        if (state == TimerState.COMPLETED && stageCount > 0) {
+            summary = getApplication().getString(R.string.timer_completed_summary, stageCount, stageCount);
+            total = formatDuration(sessionElapsedSeconds());
+            diagnostics = formatTimingDiagnostics(session.getTimingSummary());
+        } else if (state == TimerState.STOPPED) {
+            summary = getApplication().getString(R.string.timer_session_stopped, session.getCompletedStageCount(), stageCount);
+            total = formatDuration(sessionElapsedSeconds());
+            diagnostics = formatTimingDiagnostics(session.getTimingSummary());
         }
+        publish(currentUiState().withState(state, summary, total, diagnostics));
+        countdownText.refresh();
     }
 
-    /**
-     * Stops any active sound playback.
-     */
-    private void playSilently() {
-        soundPlayer.stop();
+    @Override
+    public long getStageRemainingMs() {
+        return session == null ? 0L : session.getStageRemainingMs();
     }
 
-    /**
-     * Triggers a vibration feedback using the configured strength when enabled.
-     */
-    private void vibrateCue() {
-        if (!vibrationEnabled || vibrationStrengthPercent <= 0) {
-            return;
+    @NonNull
+    @Override
+    public SessionProgress getProgress() {
+        MeditationSessionService current = session;
+        return current == null ? SessionProgress.NONE : current.getProgress();
+    }
+
+    @Nullable
+    @Override
+    public BreathingPacer getBreathingPacer(int stageIndex) {
+        return stageIndex >= 0 && stageIndex < pacers.length ? pacers[stageIndex] : null;
+    }
+
+    @Override
+    public boolean isCountingDown() {
+        return session != null && currentUiState().getState() == TimerState.RUNNING;
+    }
+
+    @NonNull
+    private String formatTimingDiagnostics(@NonNull TimingSummary summary) {
+        TimingSummary.Distribution cues = summary.getCueLateness();
+        TimingSummary.Distribution audio = summary.getAudioStartLatency();
+        String diagnostics = getApplication().getString(R.string.timer_timing_diagnostics,
+                cues.getCount(), cues.getP50Micros() / 1000f, cues.getP99Micros() / 1000f, cues.getMaxMicros() / 1000f,
+                audio.getCount(), audio.getP50Micros() / 1000f, audio.getP99Micros() / 1000f, audio.getMaxMicros() / 1000f);
+        if (summary.getFirstCueMs() == TimingSummary.NOT_MEASURED) {
+            return diagnostics;
         }
-        Vibrator vibrator = (Vibrator) getApplication().getSystemService(Application.VIBRATOR_SERVICE);
-        if (vibrator == null || !vibrator.hasVibrator()) {
+        return diagnostics + "\n" + getApplication().getString(R.string.timer_first_cue_diagnostics,
+                summary.getFirstCueMs(), summary.getFirstCueSinceProcessStartMs());
+    }
+
+    private void compilePacers(@NonNull List<MeditationStage> stages) {
+        if (stages == pacedStages) {
             return;
         }
-        int durationMs = Math.max(40, 80 + vibrationStrengthPercent);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            int amplitude = Math.max(1, Math.round((vibrationStrengthPercent / 100f) * 255f));
-            vibrator.vibrate(VibrationEffect.createOneShot(durationMs, amplitude));
-        } else {
-            vibrator.vibrate(durationMs);
+        pacedStages = stages;
+        pacers = new BreathingPacer[stages.size()];
+        for (int i = 0; i < pacers.length; i++) {
+            if (stages.get(i).isBreathingPacer()) {
+                pacers[i] = new BreathingPacer(stages.get(i).getBreathing());
+            }
         }
     }
 
-    /**
-     * Ensures the screen stays awake/dimmed appropriately during active sessions.
-     */
-    private void acquireWakeLock() {
-        if (wakeLock == null) {
-            PowerManager powerManager = (PowerManager) getApplication().getSystemService(Application.POWER_SERVICE);
-            if (powerManager != null) {
-                wakeLock = powerManager.newWakeLock(PowerManager.SCREEN_DIM_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP, "SM4:Timer");
-            }
+    private void updateBrightnessRamp(@NonNull List<MeditationStage> stages, @NonNull SettingsState settings) {
+        if (stages == rampStages && settings == rampSettings) {
+            return;
         }
-        if (wakeLock != null && !wakeLock.isHeld()) {
-            wakeLock.acquire();
+        rampStages = stages;
+        rampSettings = settings;
+        int base = settings.getScreenBrightnessPercent();
+        if (!settings.isScreenDimmingEnabled() || stages.isEmpty()) {
+            brightnessRamp.setValue(BrightnessRamp.constant(base));
+            return;
         }
+        SessionTimeline timeline = SessionTimeline.compile(stages);
+        brightnessRamp.setValue(BrightnessRamp.forSession(base, timeline.getTotalMs(),
+                timeline.getStageStartMs(timeline.getStageCount() - 1)));
+    }
+
+    @NonNull
+    private TimerUiState currentUiState() {
+        TimerUiState current = uiState.getValue();
+        return current == null ? TimerUiState.INITIAL : current;
     }
 
     /**
-     * Releases the wake lock once the session pauses or stops.
+     * Publishes {@code next} unless it is equal to what observers already have.
      */
-    private void releaseWakeLock() {
-        if (wakeLock != null && wakeLock.isHeld()) {
-            wakeLock.release();
+    private void publish(@NonNull TimerUiState next) {
+        if (!next.equals(uiState.getValue())) {
+            uiState.setValue(next);
         }
     }
 
     /**
-     * Formats seconds into a mm:ss string for display.
+     * @return elapsed session time in whole seconds.
      */
-    private String formatDuration(int seconds) {
-        int minutes = seconds / 60;
-        int remainder = seconds % 60;
-        return String.format(Locale.getDefault(), "%02d:%02d", minutes, remainder);
+    private int sessionElapsedSeconds() {
+        return session == null ? 0 : (int) (session.getSessionElapsedMs() / 1000L);
     }
 
     /**
-     * Reloads persisted settings so the timer honours the latest user preferences.
+     * Formats seconds as mm:ss, or h:mm:ss from one hour upwards.
      */
-    private void applySettingsDefaults() {
-        SettingsState state = SettingsManager.getInstance().getSettings(getApplication());
-        soundEnabled = state.isSoundEnabled();
-        vibrationStrengthPercent = state.getVibrationStrengthPercent();
-        vibrationEnabled = vibrationStrengthPercent > 0;
-        screenBrightnessPercent = state.getScreenBrightnessPercent();
-        screenBrightnessLiveData.setValue(screenBrightnessPercent);
+    @NonNull
+    private String formatDuration(int seconds) {
+        return durationFormatter.format(seconds);
     }
 
     /**
-     * Picks a random sound from the provided list to add variation between repeats.
+     * Reloads persisted settings so the timer screen honours the latest user preferences.
      */
-    private String selectRandomSound(@NonNull List<String> sounds) {
-        if (sounds.size() == 1) {
-            return sounds.get(0);
-        }
-        return sounds.get(random.nextInt(sounds.size()));
+    private void applySettingsDefaults() {
+        SettingsState state = SettingsManager.getInstance().getSettings(getApplication());
+        updateBrightnessRamp(session == null ? Collections.emptyList() : session.getStages(), state);
     }
 
     @Override
     protected void onCleared() {
         super.onCleared();
-        handler.removeCallbacks(tickRunnable);
-        releaseWakeLock();
-        soundPlayer.stop();
+        detachSession();
     }
 }
@@ -0,0 +1,31 @@
+package naq.sm4.ui.timer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Wraps a value that must be handled at most once, such as an error message. LiveData hands its
+ * latest value to every new observer, so a re-created screen or a rebound session would otherwise
+ * show the same message again.
+ */
+public final class OneShotEvent<T> {
+
+    private final T content;
+    private boolean handled;
+
+    public OneShotEvent(@NonNull T content) {
+        this.content = content;
+    }
+
+    /**
+     * @return the content the first time this is called, {@code null} afterwards.
+     */
+    @Nullable
+    public T consume() {
+        if (handled) {
+            return null;
+        }
+        handled = true;
+        return content;
+    }
+}
@@ -0,0 +1,234 @@
+package naq.sm4.ui.timer;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioDeviceCallback;
+import android.media.AudioDeviceInfo;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTimestamp;
+import android.media.AudioTrack;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Estimates how long audio written by the app takes to reach the speaker on the current output
+ * route. A short silent {@link AudioTrack} with the cue attributes is played and its
+ * {@link AudioTrack#getTimestamp(AudioTimestamp) presentation timestamps} are compared with the
+ * number of frames written, the same estimate Oboe uses.
+ *
+ * <p>This is an approximation of the cue path, not a measurement of it. Cues play through
+ * {@link android.media.SoundPool} and {@link android.media.MediaPlayer}, which report no
+ * presentation time, so their output cannot be timed directly. Both end in a mixer track on the
+ * same route, so the probe covers the mixer, HAL and device buffering they share. It does not
+ * cover what they add before their first frame reaches the mixer; that part is what
+ * {@link CueSoundEngine} reports as audio start latency for every cue.
+ *
+ * <p>Results are cached per set of connected output devices, which is what decides the route.
+ * When a device is added or removed and the new set has been measured before, the cached value
+ * is used as is, and the track is only opened for a set not seen yet.
+ */
+class OutputLatencyProbe {
+
+    private static final String TAG = "OutputLatencyProbe";
+    private static final int FALLBACK_SAMPLE_RATE = 48_000;
+    private static final long MEASURE_WINDOW_MS = 600L;
+    private static final int SAMPLES = 9;
+
+    private final AudioManager audioManager;
+    private final AudioAttributes attributes;
+    private final Handler handler;
+    private final Map<String, Long> latencyByRoute = new ConcurrentHashMap<>();
+    private final AudioDeviceCallback routeCallback = new AudioDeviceCallback() {
+        @Override
+        public void onAudioDevicesAdded(AudioDeviceInfo[] addedDevices) {
+            onRouteChanged();
+        }
+
+        @Override
+        public void onAudioDevicesRemoved(AudioDeviceInfo[] removedDevices) {
+            onRouteChanged();
+        }
+    };
+
+    @Nullable
+    private ExecutorService executor;
+    private volatile long latencyMs;
+
+    /**
+     * @param handler thread the route callbacks are delivered on
+     */
+    OutputLatencyProbe(@NonNull Context context, @NonNull AudioAttributes attributes, @NonNull Handler handler) {
+        this.audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        this.attributes = attributes;
+        this.handler = handler;
+    }
+
+    /**
+     * Measures the current route and starts following route changes. Registering the device
+     * callback reports every present device once, which triggers the first measurement.
+     */
+    void start() {
+        if (executor != null || audioManager == null) {
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor();
+        audioManager.registerAudioDeviceCallback(routeCallback, handler);
+    }
+
+    void stop() {
+        if (executor == null) {
+            return;
+        }
+        audioManager.unregisterAudioDeviceCallback(routeCallback);
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    /**
+     * @return output latency of the route measured last, or {@code 0} before the first result.
+     */
+    long getLatencyMs() {
+        return latencyMs;
+    }
+
+    /**
+     * Switches to the cached latency of the new route, measuring it only when it is unknown.
+     */
+    private void onRouteChanged() {
+        if (executor == null) {
+            return;
+        }
+        String route = routeKey();
+        Long known = latencyByRoute.get(route);
+        if (known != null) {
+            latencyMs = known;
+            return;
+        }
+        try {
+            executor.execute(() -> measureInBackground(route));
+        } catch (RejectedExecutionException ignored) {
+            // Stopped in the meantime.
+        }
+    }
+
+    @WorkerThread
+    private void measureInBackground(@NonNull String route) {
+        Long known = latencyByRoute.get(route);
+        if (known != null) {
+            // Measured by a callback queued before this one.
+            latencyMs = known;
+            return;
+        }
+        int sampleRate = nativeSampleRate();
+        int bufferBytes = AudioTrack.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_OUT_MONO,
+                AudioFormat.ENCODING_PCM_16BIT);
+        if (bufferBytes <= 0) {
+            return;
+        }
+        AudioTrack track;
+        try {
+            track = new AudioTrack.Builder()
+                    .setAudioAttributes(attributes)
+                    .setAudioFormat(new AudioFormat.Builder()
+                            .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                            .setSampleRate(sampleRate)
+                            .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                            .build())
+                    .setBufferSizeInBytes(bufferBytes)
+                    .setTransferMode(AudioTrack.MODE_STREAM)
+                    .build();
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            Log.w(TAG, "Unable to open probe track", e);
+            return;
+        }
+        try {
+            track.play();
+            long measured = sampleLatencyMs(track, sampleRate, bufferBytes / 2);
+            if (measured >= 0L) {
+                latencyByRoute.put(route, measured);
+                latencyMs = measured;
+            }
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Probe track failed", e);
+        } finally {
+            track.release();
+        }
+    }
+
+    /**
+     * Feeds silence and reads the presentation position after every write.
+     *
+     * @return median latency in milliseconds, or {@code -1} when the track never reported a
+     * timestamp
+     */
+    @WorkerThread
+    private static long sampleLatencyMs(@NonNull AudioTrack track, int sampleRate, int chunkFrames) {
+        short[] silence = new short[Math.max(1, chunkFrames / 2)];
+        AudioTimestamp timestamp = new AudioTimestamp();
+        long[] samples = new long[SAMPLES];
+        int count = 0;
+        long framesWritten = 0L;
+        long deadline = SystemClock.elapsedRealtime() + MEASURE_WINDOW_MS;
+        while (count < SAMPLES && SystemClock.elapsedRealtime() < deadline
+                && !Thread.currentThread().isInterrupted()) {
+            int written = track.write(silence, 0, silence.length);
+            if (written < 0) {
+                return -1L;
+            }
+            framesWritten += written;
+            if (!track.getTimestamp(timestamp) || timestamp.framePosition <= 0L) {
+                continue;
+            }
+            long sinceTimestampNs = System.nanoTime() - timestamp.nanoTime;
+            long presentedFrames = timestamp.framePosition + sinceTimestampNs * sampleRate / 1_000_000_000L;
+            long pendingFrames = framesWritten - presentedFrames;
+            if (pendingFrames > 0L) {
+                samples[count++] = pendingFrames * 1000L / sampleRate;
+            }
+        }
+        if (count == 0) {
+            return -1L;
+        }
+        Arrays.sort(samples, 0, count);
+        return samples[count / 2];
+    }
+
+    private int nativeSampleRate() {
+        String rate = audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE);
+        try {
+            return rate == null ? FALLBACK_SAMPLE_RATE : Integer.parseInt(rate);
+        } catch (NumberFormatException e) {
+            return FALLBACK_SAMPLE_RATE;
+        }
+    }
+
+    /**
+     * @return key of the connected output devices, by type and product name so that a headset
+     * reconnected under a new device id still matches
+     */
+    @NonNull
+    private String routeKey() {
+        List<String> devices = new ArrayList<>();
+        for (AudioDeviceInfo device : audioManager.getDevices(AudioManager.GET_DEVICES_OUTPUTS)) {
+            devices.add(device.getType() + ":" + device.getProductName());
+        }
+        Collections.sort(devices);
+        return String.join(",", devices);
+    }
+}
@@ -0,0 +1,36 @@
+package naq.sm4.ui.timer;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import naq.sm4.MainActivity;
+import naq.sm4.core.storage.StorageHelper;
+import naq.sm4.core.timer.QuickStartPlanStore;
+
+/**
+ * Invisible trampoline behind the launcher shortcut and the Quick Settings tile. It hands the
+ * cached quick-start plan to {@link MeditationSessionService} and finishes before drawing
+ * anything; without a cached plan it opens the app instead.
+ */
+public class QuickStartActivity extends Activity {
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        long requestedAtMs = SystemClock.elapsedRealtime();
+        if (new QuickStartPlanStore(StorageHelper.getQuickStartPlanFile(this)).exists()) {
+            Intent intent = new Intent(this, MeditationSessionService.class)
+                    .setAction(MeditationSessionService.ACTION_QUICK_START)
+                    .putExtra(MeditationSessionService.EXTRA_REQUESTED_AT, requestedAtMs);
+            ContextCompat.startForegroundService(this, intent);
+        } else {
+            startActivity(new Intent(this, MainActivity.class));
+        }
+        finish();
+    }
+}
@@ -0,0 +1,98 @@
+package naq.sm4.ui.timer;
+
+import android.app.PendingIntent;
+import android.content.Intent;
+import android.os.Build;
+import android.service.quicksettings.Tile;
+import android.service.quicksettings.TileService;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import naq.sm4.core.storage.StorageHelper;
+import naq.sm4.core.timer.QuickStartPlanStore;
+import naq.sm4.core.timer.SessionPlan;
+import naq.sm4.data.MeditationStage;
+
+/**
+ * Quick Settings tile that starts the cached quick-start plan through {@link QuickStartActivity}.
+ * Opening the panel already binds the tile, so by the time it is tapped the process is running;
+ * the plan and the first stage's sound files are read once in the background meanwhile, so the
+ * quick start finds them in the page cache.
+ */
+public class QuickStartTileService extends TileService {
+
+    private static final String TAG = "QuickStartTile";
+
+    private final ExecutorService warmer = Executors.newSingleThreadExecutor();
+
+    @Override
+    public void onStartListening() {
+        Tile tile = getQsTile();
+        if (tile != null) {
+            tile.setState(Tile.STATE_INACTIVE);
+            tile.updateTile();
+        }
+        warmer.execute(this::warmPlan);
+    }
+
+    @Override
+    public void onClick() {
+        if (isLocked()) {
+            unlockAndRun(this::launch);
+        } else {
+            launch();
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        warmer.shutdownNow();
+        super.onDestroy();
+    }
+
+    @SuppressWarnings("deprecation")
+    private void launch() {
+        Intent intent = new Intent(this, QuickStartActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+            startActivityAndCollapse(PendingIntent.getActivity(this, 0, intent, PendingIntent.FLAG_IMMUTABLE));
+        } else {
+            startActivityAndCollapse(intent);
+        }
+    }
+
+    private void warmPlan() {
+        try {
+            SessionPlan plan = new QuickStartPlanStore(StorageHelper.getQuickStartPlanFile(this)).read();
+            if (plan == null || plan.getStages().isEmpty()) {
+                return;
+            }
+            File directory = StorageHelper.ensureWorkingDirectory();
+            MeditationStage first = plan.getStages().get(0);
+            for (String sound : first.getSounds()) {
+                readThrough(new File(directory, sound));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to warm quick-start plan", e);
+        }
+    }
+
+    private static void readThrough(@NonNull File file) throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (FileInputStream in = new FileInputStream(file)) {
+            while (in.read(buffer) >= 0) {
+                // Only the page cache is of interest.
+            }
+        }
+    }
+}
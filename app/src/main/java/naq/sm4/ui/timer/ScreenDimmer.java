@@ -0,0 +1,100 @@
+package naq.sm4.ui.timer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Window;
+import android.view.WindowManager;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import naq.sm4.core.timer.BrightnessRamp;
+import naq.sm4.core.timer.SessionProgress;
+
+/**
+ * Applies a {@link BrightnessRamp} to the timer window while a session runs, and the ramp's base
+ * level otherwise. {@link Window#setAttributes} is only called when the quantized level differs
+ * from the one applied last; the next update is posted for the offset at which the ramp says the
+ * level changes, and never sooner than {@link #MIN_UPDATE_INTERVAL_MS} after the previous write.
+ */
+@MainThread
+final class ScreenDimmer {
+
+    static final long MIN_UPDATE_INTERVAL_MS = 500L;
+
+    private final Window window;
+    private final SessionProgressView.Source source;
+    private final float originalBrightness;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable update = this::update;
+
+    @Nullable
+    private BrightnessRamp ramp;
+    private float appliedBrightness = Float.NaN;
+    private long appliedAtMs;
+
+    ScreenDimmer(@NonNull Window window, @NonNull SessionProgressView.Source source) {
+        this.window = window;
+        this.source = source;
+        this.originalBrightness = window.getAttributes().screenBrightness;
+    }
+
+    void setRamp(@Nullable BrightnessRamp ramp) {
+        this.ramp = ramp;
+        refresh();
+    }
+
+    /**
+     * Re-evaluates the level now, e.g. after the session was started, paused or moved.
+     */
+    void refresh() {
+        handler.removeCallbacks(update);
+        update();
+    }
+
+    /**
+     * Stops following the session and gives the window its own brightness back.
+     */
+    void release() {
+        handler.removeCallbacks(update);
+        ramp = null;
+        write(originalBrightness);
+        appliedBrightness = Float.NaN;
+    }
+
+    private void update() {
+        BrightnessRamp current = ramp;
+        if (current == null) {
+            return;
+        }
+        SessionProgress progress = source.getProgress();
+        long now = SystemClock.elapsedRealtime();
+        long offset = progress.getOffsetMs(now);
+        boolean following = progress.isRunning();
+        float brightness = following ? current.getBrightness(offset) : current.getBaseBrightness();
+        if (brightness != appliedBrightness) {
+            write(brightness);
+            appliedBrightness = brightness;
+            appliedAtMs = now;
+        }
+        if (!following) {
+            return;
+        }
+        long next = current.getNextChangeMs(offset);
+        if (next >= 0L) {
+            long delay = Math.max(next - offset, appliedAtMs + MIN_UPDATE_INTERVAL_MS - now);
+            handler.postDelayed(update, delay);
+        }
+    }
+
+    private void write(float brightness) {
+        WindowManager.LayoutParams params = window.getAttributes();
+        if (params.screenBrightness == brightness) {
+            return;
+        }
+        params.screenBrightness = brightness;
+        window.setAttributes(params);
+    }
+}
@@ -0,0 +1,372 @@
+package naq.sm4.ui.timer;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.hardware.display.DisplayManager;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.View;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+import naq.sm4.R;
+import naq.sm4.core.timer.BreathingPacer;
+import naq.sm4.core.timer.DurationFormatter;
+import naq.sm4.core.timer.SessionProgress;
+
+/**
+ * Stage and session progress rings around the stage countdown. While a session runs and the view
+ * is visible on a display that is fully on, the arcs advance on every {@link Choreographer} frame,
+ * derived from the vsync time and the {@link SessionProgress} anchor rather than from elapsed
+ * frames. In low-power mode a running session redraws once a second instead, and a paused or
+ * finished session, or a view with no source, is not redrawn by itself at all. Every drawing object
+ * is allocated up front and digit widths are measured only when the text size changes, so
+ * {@link #onDraw(Canvas)} does not allocate.
+ *
+ * <p>During a breathing pacer stage a disc inside the rings swells and shrinks with the breath and
+ * the current phase is named under the countdown. Both are computed from the same stage offset as
+ * the arcs, so the guide cannot drift against the countdown.
+ */
+public class SessionProgressView extends View {
+
+    /**
+     * Supplies the position to draw. Called on the main thread once per frame.
+     */
+    public interface Source {
+        @NonNull
+        SessionProgress getProgress();
+
+        /**
+         * @return breathing pacer of {@code stageIndex}, or {@code null} for a plain stage
+         */
+        @Nullable
+        BreathingPacer getBreathingPacer(int stageIndex);
+    }
+
+    private static final long IDLE_REDRAW_MS = 1_000L;
+    private static final float START_ANGLE = -90f;
+    private static final float FULL_SWEEP = 360f;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    /** Radius of an empty breath, as a share of the fully drawn-in breath. */
+    private static final float BREATH_MIN_SCALE = 0.35f;
+
+    private final Paint trackPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint sessionPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint stagePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint breathPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint phasePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final String[] phaseLabels;
+    private final Path trackPath = new Path();
+    private final RectF sessionBounds = new RectF();
+    private final RectF stageBounds = new RectF();
+    private final char[] countdown = new char[DurationFormatter.MAX_LENGTH];
+    private final float ringGap;
+
+    private final Choreographer.FrameCallback frameCallback = this::onFrame;
+    private final Runnable idleRedraw = this::onIdleRedraw;
+    private final DisplayManager.DisplayListener displayListener = new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            Display display = getDisplay();
+            if (display != null && display.getDisplayId() == displayId) {
+                updateLowPower();
+            }
+        }
+    };
+
+    @Nullable
+    private Source source;
+    private int countdownLength;
+    private float digitWidth;
+    private float separatorWidth;
+    private float textBaselineOffset;
+    private long drawTimeMs;
+    private boolean visibleToUser;
+    private boolean lowPower;
+    private boolean animating;
+    private boolean frameScheduled;
+    private boolean idleScheduled;
+
+    public SessionProgressView(Context context) {
+        this(context, null);
+    }
+
+    public SessionProgressView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        Resources resources = context.getResources();
+        float stroke = resources.getDimension(R.dimen.timer_ring_stroke);
+        ringGap = resources.getDimension(R.dimen.timer_ring_gap);
+        trackPaint.setStyle(Paint.Style.STROKE);
+        trackPaint.setStrokeWidth(stroke);
+        trackPaint.setColor(ContextCompat.getColor(context, R.color.surface_secondary));
+        sessionPaint.setStyle(Paint.Style.STROKE);
+        sessionPaint.setStrokeWidth(stroke);
+        sessionPaint.setStrokeCap(Paint.Cap.ROUND);
+        sessionPaint.setColor(ContextCompat.getColor(context, R.color.accent_secondary));
+        stagePaint.set(sessionPaint);
+        stagePaint.setColor(ContextCompat.getColor(context, R.color.accent_primary));
+        textPaint.setColor(ContextCompat.getColor(context, R.color.text_primary));
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        breathPaint.setStyle(Paint.Style.FILL);
+        breathPaint.setColor(ContextCompat.getColor(context, R.color.accent_primary));
+        breathPaint.setAlpha(0x40);
+        phasePaint.set(textPaint);
+        phasePaint.setColor(ContextCompat.getColor(context, R.color.text_secondary));
+        phasePaint.setTextSize(resources.getDimension(R.dimen.timer_ring_phase_text_size));
+        phaseLabels = new String[]{resources.getString(R.string.timer_breath_inhale),
+                resources.getString(R.string.timer_breath_hold), resources.getString(R.string.timer_breath_exhale)};
+        setTextSize(resources.getDimension(R.dimen.timer_ring_text_size));
+        setImportantForAccessibility(IMPORTANT_FOR_ACCESSIBILITY_YES);
+    }
+
+    /**
+     * Sets the position to follow, or {@code null} to draw empty rings.
+     */
+    public void setSource(@Nullable Source source) {
+        this.source = source;
+        invalidate();
+        scheduleNextRedraw();
+    }
+
+    /**
+     * Redraws now and re-evaluates the redraw cadence, e.g. after the session was paused or resumed.
+     */
+    public void refresh() {
+        invalidate();
+        scheduleNextRedraw();
+    }
+
+    /**
+     * Copies the countdown shown in the middle of the rings.
+     */
+    public void setCountdown(@NonNull CountdownText text) {
+        countdownLength = Math.min(text.getLength(), countdown.length);
+        System.arraycopy(text.getChars(), 0, countdown, 0, countdownLength);
+        invalidate();
+    }
+
+    /**
+     * Changes the countdown text size and measures the glyph widths once for it. Every digit is
+     * laid out at the widest digit's advance, so the countdown neither jitters nor needs measuring
+     * while it ticks.
+     */
+    public void setTextSize(float sizePx) {
+        textPaint.setTextSize(sizePx);
+        // The countdown uses the digits of the default locale, as the formatter does.
+        char zero = DecimalFormatSymbols.getInstance(Locale.getDefault()).getZeroDigit();
+        float widest = 0f;
+        for (int i = 0; i < 10; i++) {
+            widest = Math.max(widest, textPaint.measureText(String.valueOf((char) (zero + i))));
+        }
+        digitWidth = widest;
+        separatorWidth = textPaint.measureText(":");
+        Paint.FontMetrics metrics = textPaint.getFontMetrics();
+        textBaselineOffset = -(metrics.ascent + metrics.descent) / 2f;
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        float inset = trackPaint.getStrokeWidth() / 2f;
+        float size = Math.min(w - getPaddingLeft() - getPaddingRight(), h - getPaddingTop() - getPaddingBottom());
+        float left = getPaddingLeft() + (w - getPaddingLeft() - getPaddingRight() - size) / 2f;
+        float top = getPaddingTop() + (h - getPaddingTop() - getPaddingBottom() - size) / 2f;
+        sessionBounds.set(left + inset, top + inset, left + size - inset, top + size - inset);
+        stageBounds.set(sessionBounds);
+        float stageInset = trackPaint.getStrokeWidth() + ringGap;
+        stageBounds.inset(stageInset, stageInset);
+        trackPath.rewind();
+        trackPath.addOval(sessionBounds, Path.Direction.CW);
+        trackPath.addOval(stageBounds, Path.Direction.CW);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        canvas.drawPath(trackPath, trackPaint);
+        Source current = source;
+        if (current != null) {
+            SessionProgress progress = current.getProgress();
+            long now = animating ? drawTimeMs : SystemClock.elapsedRealtime();
+            float sessionSweep = progress.getSessionFraction(now) * FULL_SWEEP;
+            float stageSweep = progress.getStageFraction(now) * FULL_SWEEP;
+            if (sessionSweep > 0f) {
+                canvas.drawArc(sessionBounds, START_ANGLE, sessionSweep, false, sessionPaint);
+            }
+            if (stageSweep > 0f) {
+                canvas.drawArc(stageBounds, START_ANGLE, stageSweep, false, stagePaint);
+            }
+            BreathingPacer pacer = current.getBreathingPacer(progress.getStageIndex());
+            if (pacer != null) {
+                drawBreath(canvas, pacer, progress.getOffsetMs(now) - progress.getStageStartMs());
+            }
+        }
+        drawCountdown(canvas);
+    }
+
+    private void drawBreath(@NonNull Canvas canvas, @NonNull BreathingPacer pacer, long stageElapsedMs) {
+        if (stageElapsedMs < 0L) {
+            return;
+        }
+        float maxRadius = stageBounds.width() / 2f - trackPaint.getStrokeWidth();
+        float scale = BREATH_MIN_SCALE + (1f - BREATH_MIN_SCALE) * pacer.getExpansion(stageElapsedMs);
+        canvas.drawCircle(stageBounds.centerX(), stageBounds.centerY(), maxRadius * scale, breathPaint);
+        float phaseBaseline = stageBounds.centerY() + textPaint.getTextSize();
+        canvas.drawText(phaseLabels[pacer.getPhase(stageElapsedMs)], stageBounds.centerX(), phaseBaseline, phasePaint);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        DisplayManager displays = ContextCompat.getSystemService(getContext(), DisplayManager.class);
+        if (displays != null) {
+            displays.registerDisplayListener(displayListener, getHandler());
+        }
+        updateLowPower();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        DisplayManager displays = ContextCompat.getSystemService(getContext(), DisplayManager.class);
+        if (displays != null) {
+            displays.unregisterDisplayListener(displayListener);
+        }
+        cancelRedraws();
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Follows the fragment being hidden or its window going to the background.
+     */
+    @Override
+    public void onVisibilityAggregated(boolean isVisible) {
+        super.onVisibilityAggregated(isVisible);
+        visibleToUser = isVisible;
+        if (isVisible) {
+            // Nothing was redrawn while hidden.
+            invalidate();
+        }
+        scheduleNextRedraw();
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setText(new String(countdown, 0, countdownLength));
+    }
+
+    private void drawCountdown(@NonNull Canvas canvas) {
+        if (countdownLength == 0) {
+            return;
+        }
+        float width = 0f;
+        for (int i = 0; i < countdownLength; i++) {
+            width += cellWidth(countdown[i]);
+        }
+        float x = sessionBounds.centerX() - width / 2f;
+        float baseline = sessionBounds.centerY() + textBaselineOffset;
+        for (int i = 0; i < countdownLength; i++) {
+            // Each glyph is centred in its cell, so narrow digits do not shift their neighbours.
+            float cell = cellWidth(countdown[i]);
+            canvas.drawText(countdown, i, 1, x + cell / 2f, baseline, textPaint);
+            x += cell;
+        }
+    }
+
+    private float cellWidth(char c) {
+        return Character.isDigit(c) ? digitWidth : separatorWidth;
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        // Vsync times use System.nanoTime(); the session anchor uses elapsedRealtime().
+        long sinceVsyncMs = (System.nanoTime() - frameTimeNanos) / NANOS_PER_MILLI;
+        drawTimeMs = SystemClock.elapsedRealtime() - sinceVsyncMs;
+        invalidate();
+        scheduleNextRedraw();
+    }
+
+    private void onIdleRedraw() {
+        idleScheduled = false;
+        invalidate();
+        scheduleNextRedraw();
+    }
+
+    /**
+     * Picks the redraw cadence while the session runs and the view is shown: every frame, or once
+     * a second in low-power mode. Otherwise nothing moves, so nothing is scheduled; pausing,
+     * resuming and seeking redraw through {@link #refresh()}.
+     */
+    private void scheduleNextRedraw() {
+        if (!isAttachedToWindow()) {
+            return;
+        }
+        Source current = source;
+        boolean running = visibleToUser && current != null && current.getProgress().isRunning();
+        if (running && !lowPower) {
+            removeCallbacks(idleRedraw);
+            idleScheduled = false;
+            if (!animating) {
+                animating = true;
+                drawTimeMs = SystemClock.elapsedRealtime();
+            }
+            if (!frameScheduled) {
+                frameScheduled = true;
+                Choreographer.getInstance().postFrameCallback(frameCallback);
+            }
+        } else {
+            animating = false;
+            if (frameScheduled) {
+                Choreographer.getInstance().removeFrameCallback(frameCallback);
+                frameScheduled = false;
+            }
+            if (!running) {
+                removeCallbacks(idleRedraw);
+                idleScheduled = false;
+            } else if (!idleScheduled) {
+                idleScheduled = true;
+                postDelayed(idleRedraw, IDLE_REDRAW_MS);
+            }
+        }
+    }
+
+    private void cancelRedraws() {
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+        removeCallbacks(idleRedraw);
+        animating = false;
+        frameScheduled = false;
+        idleScheduled = false;
+    }
+
+    private void updateLowPower() {
+        Display display = getDisplay();
+        int state = display == null ? Display.STATE_UNKNOWN : display.getState();
+        PowerManager power = ContextCompat.getSystemService(getContext(), PowerManager.class);
+        lowPower = state == Display.STATE_DOZE || state == Display.STATE_DOZE_SUSPEND
+                || state == Display.STATE_OFF || (power != null && power.isPowerSaveMode());
+        scheduleNextRedraw();
+    }
+}
@@ -0,0 +1,136 @@
+package naq.sm4.ui.timer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+import naq.sm4.core.timer.TimerState;
+
+/**
+ * Immutable snapshot of everything the timer screen shows apart from the ticking countdown, which
+ * is published separately by {@link CountdownLiveData} so that per-second updates allocate
+ * nothing. A new snapshot is published once per stage or state change.
+ */
+public final class TimerUiState {
+
+    static final TimerUiState INITIAL = new TimerUiState(TimerState.IDLE, "", "", "", "", "", "");
+
+    private final TimerState state;
+    private final String stageTitle;
+    private final String stageCounter;
+    private final String nextStageTitle;
+    private final String sessionSummary;
+    private final String sessionTotal;
+    private final String timingDiagnostics;
+
+    private TimerUiState(@NonNull TimerState state, @NonNull String stageTitle, @NonNull String stageCounter,
+                         @NonNull String nextStageTitle, @NonNull String sessionSummary, @NonNull String sessionTotal,
+                         @NonNull String timingDiagnostics) {
+        this.state = state;
+        this.stageTitle = stageTitle;
+        this.stageCounter = stageCounter;
+        this.nextStageTitle = nextStageTitle;
+        this.sessionSummary = sessionSummary;
+        this.sessionTotal = sessionTotal;
+        this.timingDiagnostics = timingDiagnostics;
+    }
+
+    /**
+     * @return lifecycle state of the session, driving the visible controls.
+     */
+    @NonNull
+    public TimerState getState() {
+        return state;
+    }
+
+    /**
+     * @return name of the current stage.
+     */
+    @NonNull
+    public String getStageTitle() {
+        return stageTitle;
+    }
+
+    /**
+     * @return human-readable counter (e.g. "1/3") of the active stage.
+     */
+    @NonNull
+    public String getStageCounter() {
+        return stageCounter;
+    }
+
+    /**
+     * @return label describing the next stage, or empty when none remains.
+     */
+    @NonNull
+    public String getNextStageTitle() {
+        return nextStageTitle;
+    }
+
+    /**
+     * @return summary text displayed when the session finishes or is stopped, otherwise empty.
+     */
+    @NonNull
+    public String getSessionSummary() {
+        return sessionSummary;
+    }
+
+    /**
+     * @return formatted total elapsed time once the session has ended, otherwise empty.
+     */
+    @NonNull
+    public String getSessionTotal() {
+        return sessionTotal;
+    }
+
+    /**
+     * @return cue timing percentiles of the ended session for the hidden diagnostics line,
+     * otherwise empty.
+     */
+    @NonNull
+    public String getTimingDiagnostics() {
+        return timingDiagnostics;
+    }
+
+    /**
+     * @return a copy describing another stage.
+     */
+    @NonNull
+    TimerUiState withStage(@NonNull String title, @NonNull String counter, @NonNull String next) {
+        return new TimerUiState(state, title, counter, next, sessionSummary, sessionTotal, timingDiagnostics);
+    }
+
+    /**
+     * @return a copy with another session state and its summary.
+     */
+    @NonNull
+    TimerUiState withState(@NonNull TimerState newState, @NonNull String summary, @NonNull String total,
+                           @NonNull String diagnostics) {
+        return new TimerUiState(newState, stageTitle, stageCounter, nextStageTitle, summary, total, diagnostics);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TimerUiState)) {
+            return false;
+        }
+        TimerUiState that = (TimerUiState) o;
+        return state == that.state
+                && stageTitle.equals(that.stageTitle)
+                && stageCounter.equals(that.stageCounter)
+                && nextStageTitle.equals(that.nextStageTitle)
+                && sessionSummary.equals(that.sessionSummary)
+                && sessionTotal.equals(that.sessionTotal)
+                && timingDiagnostics.equals(that.timingDiagnostics);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(state, stageTitle, stageCounter, nextStageTitle, sessionSummary, sessionTotal,
+                timingDiagnostics);
+    }
+}
@@ -0,0 +1,51 @@
+package naq.sm4.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import naq.sm4.data.BreathingPattern;
+import naq.sm4.data.CueVibration;
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+
+/**
+ * Configs and scratch files shared by the storage and timer tests. Between them the configs use
+ * every stage feature the stores persist: repeat cues, several sounds, a breathing pacer and each
+ * kind of cue vibration.
+ */
+public final class TestConfigs {
+
+    public static final MeditationConfig MORNING = new MeditationConfig("Thiền sáng", 15, Arrays.asList(
+            new MeditationStage("Khởi động", 5, 2, Arrays.asList("bell.mp3", "gong.mp3")),
+            new MeditationStage("Tĩnh lặng", 10, 0, Collections.emptyList(), new BreathingPattern(4, 2, 6),
+                    CueVibration.RAMP)));
+    public static final MeditationConfig EVENING = new MeditationConfig("Thiền tối", 20, Collections.singletonList(
+            new MeditationStage("Thư giãn", 20, 5, Arrays.asList("bell.mp3", "rain.wav"), null,
+                    CueVibration.DOUBLE_TAP)));
+    public static final MeditationConfig NIGHT = new MeditationConfig("Thiền đêm", 10, Collections.singletonList(
+            new MeditationStage("Ngủ", 10, 0, Collections.emptyList())));
+
+    private TestConfigs() {
+    }
+
+    /**
+     * @return an empty directory, removed when the JVM exits.
+     */
+    public static File newDirectory() throws IOException {
+        File directory = Files.createTempDirectory("sm4").toFile();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    /**
+     * @return a file named {@code name} in a fresh directory; the file does not exist yet.
+     */
+    public static File newFile(String name) throws IOException {
+        File file = new File(newDirectory(), name);
+        file.deleteOnExit();
+        return file;
+    }
+}
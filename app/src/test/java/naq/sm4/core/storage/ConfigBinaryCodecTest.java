@@ -0,0 +1,156 @@
+package naq.sm4.core.storage;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import naq.sm4.core.TestConfigs;
+import naq.sm4.data.BreathingPattern;
+import naq.sm4.data.ConfigSummary;
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConfigBinaryCodecTest {
+
+    private static final List<MeditationConfig> CONFIGS = Arrays.asList(TestConfigs.MORNING, TestConfigs.EVENING);
+
+    @Test
+    public void configs_roundTripWithTheirChecksum() throws IOException {
+        byte[] data = ConfigBinaryCodec.encode(CONFIGS);
+        List<MeditationConfig> read = new ArrayList<>();
+        long checksum = ConfigBinaryCodec.decode(ByteBuffer.wrap(data), read::add);
+        assertEquals(CONFIGS, read);
+        assertEquals(ConfigBinaryCodec.checksum(data), checksum);
+    }
+
+    @Test
+    public void repeatedSoundNames_areStoredOnce() {
+        List<MeditationConfig> configs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            configs.add(new MeditationConfig("Cấu hình " + i, 30, Arrays.asList(
+                    new MeditationStage("Một", 10, 2, Arrays.asList("tibetan_bowl_long.mp3", "bell.mp3")),
+                    new MeditationStage("Hai", 20, 5, Collections.singletonList("tibetan_bowl_long.mp3")))));
+        }
+        byte[] data = ConfigBinaryCodec.encode(configs);
+        assertEquals(1, occurrences(data, "tibetan_bowl_long.mp3".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(data.length * 5 < new Gson().toJson(configs).length());
+    }
+
+    @Test
+    public void outOfRangeValues_areClampedWhileDecoding() throws IOException {
+        byte[] data = ConfigBinaryCodec.encode(Collections.singletonList(new MeditationConfig(null, 999,
+                Collections.singletonList(new MeditationStage(null, 0, 500, null, new BreathingPattern(0, 90, 3))))));
+        List<MeditationConfig> read = new ArrayList<>();
+        ConfigBinaryCodec.decode(ByteBuffer.wrap(data), read::add);
+        MeditationConfig config = read.get(0);
+        assertEquals("", config.getName());
+        assertEquals(ConfigJsonReader.MAX_TOTAL_MINUTES, config.getTotalMinutes());
+        MeditationStage stage = config.getStages().get(0);
+        assertEquals(1, stage.getMinutes());
+        assertEquals(ConfigJsonReader.MAX_REPEAT_MINUTES, stage.getRepeatMinutes());
+        assertEquals(new BreathingPattern(1, 30, 3), stage.getBreathing());
+    }
+
+    @Test
+    public void damagedOrTruncatedFiles_areRefusedBeforeAnyConfigIsDelivered() {
+        byte[] data = ConfigBinaryCodec.encode(CONFIGS);
+        byte[] flipped = data.clone();
+        flipped[ConfigBinaryCodec.HEADER_SIZE + 5] ^= 0x10;
+        byte[] newer = data.clone();
+        newer[5] = 9;
+        for (byte[] bad : Arrays.asList(flipped, newer, Arrays.copyOf(data, data.length - 3), new byte[4])) {
+            List<MeditationConfig> read = new ArrayList<>();
+            try {
+                ConfigBinaryCodec.decode(ByteBuffer.wrap(bad), read::add);
+                fail("Damaged snapshot must be refused");
+            } catch (IOException expected) {
+                assertTrue(read.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void largeFiles_areReadThroughAMemoryMap() throws IOException {
+        List<MeditationConfig> configs = new ArrayList<>();
+        for (int i = 0; configs.size() < 20_000; i++) {
+            configs.add(new MeditationConfig("Cấu hình " + i, 15, CONFIGS.get(i % 2).getStages()));
+        }
+        byte[] data = ConfigBinaryCodec.encode(configs);
+        assertTrue(data.length >= ConfigBinaryCodec.MAP_THRESHOLD_BYTES);
+        File file = TestConfigs.newFile("configs.cfg");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        List<MeditationConfig> read = new ArrayList<>();
+        assertEquals(ConfigBinaryCodec.checksum(data), ConfigBinaryCodec.read(file, read::add));
+        assertEquals(configs, read);
+    }
+
+    @Test
+    public void index_roundTripsTheSummaries() throws IOException {
+        List<ConfigSummary> summaries = Arrays.asList(ConfigSummary.of(7, CONFIGS.get(0)),
+                ConfigSummary.of(3, CONFIGS.get(1)));
+        assertEquals(Arrays.asList("bell.mp3", "gong.mp3"), summaries.get(0).getSounds());
+        File file = write(ConfigBinaryCodec.encodeIndex(summaries, 9));
+        ConfigBinaryCodec.Index index = ConfigBinaryCodec.readIndex(file);
+        assertEquals(summaries, index.summaries);
+        assertEquals(9, index.nextId);
+    }
+
+    @Test
+    public void damagedIndexOrConfigFile_isNotReadAsTheOther() throws IOException {
+        byte[] index = ConfigBinaryCodec.encodeIndex(Collections.singletonList(ConfigSummary.of(1, CONFIGS.get(0))), 2);
+        byte[] flipped = index.clone();
+        flipped[index.length - 2] ^= 0x01;
+        for (byte[] bad : Arrays.asList(flipped, ConfigBinaryCodec.encode(CONFIGS))) {
+            try {
+                ConfigBinaryCodec.readIndex(write(bad));
+                fail("Damaged index must be refused");
+            } catch (IOException expected) {
+                // The repository rebuilds the index from the config files.
+            }
+        }
+        try {
+            ConfigBinaryCodec.read(write(index), config -> fail("An index is not a config file"));
+            fail("An index must not be read as configs");
+        } catch (IOException expected) {
+            // Refused by its magic number.
+        }
+    }
+
+    private static File write(byte[] data) throws IOException {
+        File file = TestConfigs.newFile("configs.index");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+
+    private static int occurrences(byte[] data, byte[] needle) {
+        int count = 0;
+        outer:
+        for (int i = 0; i + needle.length <= data.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (data[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,91 @@
+package naq.sm4.core.storage;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import naq.sm4.core.TestConfigs;
+import naq.sm4.data.BreathingPattern;
+import naq.sm4.data.CueVibration;
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConfigJsonReaderTest {
+
+    @Test
+    public void gsonOutput_readsBackUnchanged() throws IOException {
+        List<MeditationConfig> configs = Arrays.asList(TestConfigs.MORNING, TestConfigs.EVENING);
+        List<MeditationConfig> read = readAll(new Gson().toJson(configs));
+        assertEquals(configs, read);
+    }
+
+    @Test
+    public void values_areClampedAndNullsDroppedWhileReading() throws IOException {
+        List<MeditationConfig> read = readAll("[null, {\"name\": null, \"totalMinutes\": 999, \"stages\": ["
+                + "null, {\"minutes\": -3, \"repeatMinutes\": 99, \"sounds\": [\"a.mp3\", null, 7],"
+                + " \"breathing\": {\"inhaleSeconds\": 0, \"holdSeconds\": 50, \"exhaleSeconds\": 6},"
+                + " \"cueVibration\": \"UNKNOWN\", \"extra\": {\"nested\": [1, 2]}}]}]");
+        assertEquals(1, read.size());
+        MeditationConfig config = read.get(0);
+        assertEquals("", config.getName());
+        assertEquals(ConfigJsonReader.MAX_TOTAL_MINUTES, config.getTotalMinutes());
+        assertEquals(1, config.getStageCount());
+        MeditationStage stage = config.getStages().get(0);
+        assertEquals(1, stage.getMinutes());
+        assertEquals(ConfigJsonReader.MAX_REPEAT_MINUTES, stage.getRepeatMinutes());
+        assertEquals(Arrays.asList("a.mp3", "7"), stage.getSounds());
+        assertEquals(new BreathingPattern(1, 30, 6), stage.getBreathing());
+        assertEquals(CueVibration.PULSE, stage.getCueVibration());
+    }
+
+    @Test
+    public void wronglyTypedFields_fallBackToDefaults() throws IOException {
+        List<MeditationConfig> read = readAll("[{\"name\": [\"x\"], \"totalMinutes\": \"ten\","
+                + " \"stages\": {\"minutes\": 5}}]");
+        assertEquals(1, read.size());
+        assertEquals("", read.get(0).getName());
+        assertEquals(1, read.get(0).getTotalMinutes());
+        assertTrue(read.get(0).getStages().isEmpty());
+    }
+
+    @Test
+    public void truncatedFile_deliversEveryConfigBeforeTheDamage() {
+        String json = new Gson().toJson(Arrays.asList(
+                new MeditationConfig("a", 5, Collections.emptyList()),
+                new MeditationConfig("b", 5, Collections.emptyList()),
+                new MeditationConfig("c", 5, Collections.emptyList())));
+        List<MeditationConfig> delivered = new ArrayList<>();
+        try {
+            ConfigJsonReader.readList(new StringReader(json.substring(0, json.length() - 12)), delivered::add);
+            fail("Truncated input must be reported");
+        } catch (IOException expected) {
+            assertEquals(2, delivered.size());
+            assertEquals("b", delivered.get(1).getName());
+        }
+    }
+
+    @Test
+    public void nonArrayRoot_readsAsEmpty() throws IOException {
+        assertTrue(readAll("null").isEmpty());
+        assertTrue(readAll("{\"name\": \"a\"}").isEmpty());
+        assertNull(ConfigJsonReader.readConfig(new com.google.gson.stream.JsonReader(new StringReader("null"))));
+    }
+
+    private static List<MeditationConfig> readAll(String json) throws IOException {
+        List<MeditationConfig> configs = new ArrayList<>();
+        ConfigJsonReader.readList(new StringReader(json), configs::add);
+        return configs;
+    }
+}
@@ -0,0 +1,134 @@
+package naq.sm4.core.storage;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import naq.sm4.core.StorageConstants;
+import naq.sm4.data.ConfigSummary;
+import naq.sm4.data.MeditationConfig;
+
+import static naq.sm4.core.TestConfigs.EVENING;
+import static naq.sm4.core.TestConfigs.MORNING;
+import static naq.sm4.core.TestConfigs.NIGHT;
+import static naq.sm4.core.TestConfigs.newDirectory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigShardStoreTest {
+
+    @Test
+    public void savedConfigs_readBackInDisplayOrder() throws IOException {
+        File directory = newDirectory();
+        ConfigShardStore store = new ConfigShardStore(directory);
+        assertTrue(store.load().isEmpty());
+        List<ConfigSummary> summaries = new ArrayList<>(Arrays.asList(store.write(MORNING), store.write(EVENING)));
+        Collections.reverse(summaries);
+        store.writeIndex(summaries);
+
+        ConfigShardStore reopened = new ConfigShardStore(directory);
+        assertEquals(summaries, reopened.load());
+        assertEquals(EVENING, reopened.read(summaries.get(0).getId()));
+        assertEquals(MORNING, reopened.read(summaries.get(1).getId()));
+    }
+
+    @Test
+    public void damagedIndex_isRebuiltFromTheShardsInIdOrder() throws IOException {
+        File directory = newDirectory();
+        ConfigShardStore store = new ConfigShardStore(directory);
+        store.load();
+        ConfigSummary morning = store.write(MORNING);
+        ConfigSummary evening = store.write(EVENING);
+        store.writeIndex(Arrays.asList(evening, morning));
+        File index = new File(directory, StorageConstants.CONFIG_INDEX_FILE);
+        try (RandomAccessFile raw = new RandomAccessFile(index, "rw")) {
+            raw.seek(raw.length() - 2);
+            raw.write(0x7F);
+        }
+
+        ConfigShardStore reopened = new ConfigShardStore(directory);
+        assertEquals(Arrays.asList(morning, evening), reopened.load());
+        assertEquals(Arrays.asList(morning, evening), new ConfigShardStore(directory).load());
+    }
+
+    @Test
+    public void interruptedSave_leavesNoOrphanShard() throws IOException {
+        File directory = newDirectory();
+        ConfigShardStore store = new ConfigShardStore(directory);
+        store.load();
+        ConfigSummary morning = store.write(MORNING);
+        store.writeIndex(Collections.singletonList(morning));
+        // The process dies after the shard is written, before the index names it.
+        ConfigSummary orphan = store.write(EVENING);
+        File orphanFile = new File(directory, orphan.getId() + StorageConstants.CONFIG_FILE_EXTENSION);
+        assertTrue(orphanFile.exists());
+
+        assertEquals(Collections.singletonList(morning), new ConfigShardStore(directory).load());
+        assertFalse(orphanFile.exists());
+    }
+
+    @Test
+    public void deletingTheHighestId_doesNotHandItOutAgain() throws IOException {
+        File directory = newDirectory();
+        ConfigShardStore store = new ConfigShardStore(directory);
+        store.load();
+        ConfigSummary morning = store.write(MORNING);
+        ConfigSummary evening = store.write(EVENING);
+        store.writeIndex(Arrays.asList(morning, evening));
+        store.writeIndex(Collections.singletonList(morning));
+        store.delete(evening);
+
+        ConfigShardStore reopened = new ConfigShardStore(directory);
+        reopened.load();
+        assertTrue(reopened.write(NIGHT).getId() > evening.getId());
+    }
+
+    @Test
+    public void legacyJsonStore_isMigrated() throws IOException {
+        File directory = newDirectory();
+        write(new File(directory, StorageConstants.DEFAULT_CONFIG_FILE), "[" + json(MORNING) + "," + json(EVENING) + "]");
+
+        assertMigrated(directory, Arrays.asList(MORNING, EVENING));
+    }
+
+    @Test
+    public void damagedLegacyJsonStore_keepsTheConfigsBeforeTheDamage() throws IOException {
+        File directory = newDirectory();
+        File legacy = new File(directory, StorageConstants.DEFAULT_CONFIG_FILE);
+        write(legacy, "[" + json(MORNING) + "," + json(EVENING).substring(0, 20));
+
+        assertMigrated(directory, Collections.singletonList(MORNING));
+        assertTrue(new File(legacy.getPath() + ".corrupt").exists());
+    }
+
+    private static void assertMigrated(File directory, List<MeditationConfig> expected) throws IOException {
+        ConfigShardStore store = new ConfigShardStore(directory);
+        List<ConfigSummary> summaries = store.load();
+        List<MeditationConfig> migrated = new ArrayList<>();
+        for (ConfigSummary summary : summaries) {
+            migrated.add(store.read(summary.getId()));
+        }
+        assertEquals(expected, migrated);
+        assertFalse(new File(directory, StorageConstants.DEFAULT_CONFIG_FILE).exists());
+        assertEquals(summaries, new ConfigShardStore(directory).load());
+    }
+
+    private static String json(MeditationConfig config) {
+        return ModelTypeAdapters.CONFIG.toJson(config);
+    }
+
+    private static void write(File file, String text) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
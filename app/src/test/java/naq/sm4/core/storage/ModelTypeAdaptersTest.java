@@ -0,0 +1,159 @@
+package naq.sm4.core.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import naq.sm4.data.BreathingPattern;
+import naq.sm4.data.CueVibration;
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+import naq.sm4.data.SettingsState;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ModelTypeAdaptersTest {
+
+    private static final Type CONFIG_LIST_TYPE = new TypeToken<List<MeditationConfig>>() {
+    }.getType();
+
+    @Test
+    public void configs_roundTripThroughTheAdapters() throws IOException {
+        List<MeditationConfig> configs = randomConfigs(new Random(7L), 50);
+        assertEquals(configs, readConfigs(writeConfigs(configs)));
+    }
+
+    @Test
+    public void reflectiveOutput_readsAsVersionZero() throws IOException {
+        List<MeditationConfig> configs = randomConfigs(new Random(3L), 20);
+        assertEquals(configs, readConfigs(new Gson().toJson(configs, CONFIG_LIST_TYPE)));
+    }
+
+    @Test
+    public void newerVersion_keepsTheFieldsThisBuildKnows() throws IOException {
+        MeditationConfig config = ModelTypeAdapters.CONFIG.fromJson("{\"version\": 9, \"name\": \"Thiền\","
+                + " \"totalMinutes\": 10, \"color\": \"#FFAA00\", \"stages\": [{\"name\": \"Một\", \"minutes\": 10,"
+                + " \"repeatMinutes\": 0, \"sounds\": [], \"fade\": {\"inMs\": 300}, \"cueVibration\": \"RAMP\"}]}");
+        assertEquals(new MeditationConfig("Thiền", 10, Collections.singletonList(
+                new MeditationStage("Một", 10, 0, Collections.emptyList(), null, CueVibration.RAMP))), config);
+    }
+
+    @Test
+    public void registeredGson_usesTheAdapters() {
+        Gson gson = ModelTypeAdapters.register(new GsonBuilder()).create();
+        MeditationConfig config = new MeditationConfig("a", 5, Collections.emptyList());
+        assertTrue(gson.toJson(config).contains("\"version\":" + ModelTypeAdapters.FORMAT_VERSION));
+        assertEquals(config, gson.fromJson(gson.toJson(config), MeditationConfig.class));
+    }
+
+    @Test
+    public void settings_roundTripAndFillMissingFieldsWithDefaults() throws IOException {
+        SettingsState settings = new SettingsState(80, false, 12, false);
+        SettingsState read = ModelTypeAdapters.SETTINGS.fromJson(ModelTypeAdapters.SETTINGS.toJson(settings));
+        assertEquals(80, read.getVibrationStrengthPercent());
+        assertFalse(read.isSoundEnabled());
+        assertEquals(12, read.getScreenBrightnessPercent());
+        assertFalse(read.isScreenDimmingEnabled());
+
+        SettingsState partial = ModelTypeAdapters.SETTINGS.fromJson("{\"vibrationStrengthPercent\": 150,"
+                + " \"soundEnabled\": \"no\"}");
+        assertEquals(100, partial.getVibrationStrengthPercent());
+        assertEquals(SettingsState.defaults().isSoundEnabled(), partial.isSoundEnabled());
+        assertEquals(SettingsState.defaults().getScreenBrightnessPercent(), partial.getScreenBrightnessPercent());
+    }
+
+    @Test
+    public void benchmark_reflectiveVersusAdapters() throws IOException {
+        List<MeditationConfig> configs = randomConfigs(new Random(1L), 1_000);
+        Gson reflective = new GsonBuilder().setPrettyPrinting().create();
+        String json = writeConfigs(Collections.emptyList());
+        readConfigs(json);
+
+        // First use: what a cold start pays, including the reflective adapter being built.
+        long startedNs = System.nanoTime();
+        json = reflective.toJson(configs, CONFIG_LIST_TYPE);
+        reflective.fromJson(json, CONFIG_LIST_TYPE);
+        long reflectiveColdNs = System.nanoTime() - startedNs;
+        startedNs = System.nanoTime();
+        readConfigs(writeConfigs(configs));
+        long adapterColdNs = System.nanoTime() - startedNs;
+
+        // Steady state, alternating the two paths so neither benefits from running last.
+        int rounds = 20;
+        long reflectiveNs = 0L;
+        long adapterNs = 0L;
+        for (int i = 0; i < rounds; i++) {
+            startedNs = System.nanoTime();
+            List<MeditationConfig> read = reflective.fromJson(reflective.toJson(configs, CONFIG_LIST_TYPE),
+                    CONFIG_LIST_TYPE);
+            reflectiveNs += System.nanoTime() - startedNs;
+            assertEquals(configs.size(), read.size());
+
+            startedNs = System.nanoTime();
+            read = readConfigs(writeConfigs(configs));
+            adapterNs += System.nanoTime() - startedNs;
+            assertEquals(configs.size(), read.size());
+        }
+
+        System.out.printf("Config store, %d configs (%d KB) write+read: first use reflective %.1f ms,"
+                        + " adapters %.1f ms; steady reflective %.2f ms, adapters %.2f ms%n",
+                configs.size(), json.length() / 1024, reflectiveColdNs / 1e6, adapterColdNs / 1e6,
+                reflectiveNs / 1e6 / rounds, adapterNs / 1e6 / rounds);
+        assertEquals(configs, readConfigs(json));
+    }
+
+    private static String writeConfigs(List<MeditationConfig> configs) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.setIndent("  ");
+            ModelTypeAdapters.writeConfigs(writer, configs);
+        }
+        return out.toString();
+    }
+
+    private static List<MeditationConfig> readConfigs(String json) throws IOException {
+        List<MeditationConfig> configs = new ArrayList<>();
+        ConfigJsonReader.readList(new StringReader(json), configs::add);
+        return configs;
+    }
+
+    private static List<MeditationConfig> randomConfigs(Random random, int count) {
+        List<MeditationConfig> configs = new ArrayList<>(count);
+        CueVibration[] vibrations = CueVibration.values();
+        for (int c = 0; c < count; c++) {
+            int stageCount = 1 + random.nextInt(6);
+            List<MeditationStage> stages = new ArrayList<>(stageCount);
+            int total = 0;
+            for (int i = 0; i < stageCount; i++) {
+                int minutes = 1 + random.nextInt(30);
+                total += minutes;
+                List<String> sounds = new ArrayList<>();
+                int soundCount = random.nextInt(4);
+                for (int s = 0; s < soundCount; s++) {
+                    sounds.add("sound_" + random.nextInt(12) + ".wav");
+                }
+                BreathingPattern breathing = random.nextInt(4) == 0
+                        ? new BreathingPattern(1 + random.nextInt(8), random.nextInt(8), 1 + random.nextInt(8))
+                        : null;
+                stages.add(new MeditationStage("Giai đoạn " + (i + 1), minutes, random.nextInt(minutes), sounds,
+                        breathing, vibrations[random.nextInt(vibrations.length)]));
+            }
+            configs.add(new MeditationConfig("Cấu hình " + c, Math.min(total, 180), stages));
+        }
+        return configs;
+    }
+}
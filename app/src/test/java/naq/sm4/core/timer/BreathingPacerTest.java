@@ -0,0 +1,70 @@
+package naq.sm4.core.timer;
+
+import org.junit.Test;
+
+import naq.sm4.data.BreathingPattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for the breath cycle arithmetic and its vibration waveform.
+ */
+public class BreathingPacerTest {
+
+    private final BreathingPacer pacer = new BreathingPacer(new BreathingPattern(4, 2, 6));
+
+    @Test
+    public void phases_followTheCycle() {
+        assertEquals(12_000L, pacer.getCycleMs());
+        assertEquals(BreathingPacer.PHASE_INHALE, pacer.getPhase(0L));
+        assertEquals(BreathingPacer.PHASE_HOLD, pacer.getPhase(4_000L));
+        assertEquals(BreathingPacer.PHASE_EXHALE, pacer.getPhase(6_000L));
+        assertEquals(BreathingPacer.PHASE_INHALE, pacer.getPhase(12_000L));
+        assertEquals(2L, pacer.getBreathIndex(35_999L));
+        assertEquals(36_000L, pacer.getBreathStartMs(3L));
+        assertEquals(-1L, pacer.getBreathIndex(-1L));
+    }
+
+    @Test
+    public void expansion_isContinuousAcrossPhases() {
+        assertEquals(0f, pacer.getExpansion(0L), 0f);
+        assertEquals(0.5f, pacer.getExpansion(2_000L), 1e-6f);
+        assertEquals(1f, pacer.getExpansion(4_000L), 0f);
+        assertEquals(1f, pacer.getExpansion(5_999L), 0f);
+        assertEquals(0.5f, pacer.getExpansion(9_000L), 1e-6f);
+        float previous = pacer.getExpansion(0L);
+        for (long t = 1L; t <= 24_000L; t++) {
+            float current = pacer.getExpansion(t);
+            assertTrue("jump at " + t, Math.abs(current - previous) < 0.002f);
+            previous = current;
+        }
+    }
+
+    @Test
+    public void waveform_coversExactlyOneBreath() {
+        BreathingPacer odd = new BreathingPacer(new BreathingPattern(3, 0, 7));
+        for (BreathingPacer candidate : new BreathingPacer[]{pacer, odd}) {
+            HapticWaveform waveform = candidate.compileWaveform(200);
+            long total = 0L;
+            int peak = 0;
+            for (int i = 0; i < waveform.getTimings().length; i++) {
+                total += waveform.getTimings()[i];
+                peak = Math.max(peak, waveform.getAmplitudes()[i]);
+                assertTrue(waveform.getAmplitudes()[i] >= 0 && waveform.getAmplitudes()[i] <= 255);
+            }
+            assertEquals(candidate.getCycleMs(), total);
+            assertEquals(200, peak);
+        }
+        HapticWaveform waveform = pacer.compileWaveform(200);
+        int inhaleSteps = (int) (4_000L / BreathingPacer.WAVEFORM_STEP_MS);
+        assertEquals(0, waveform.getAmplitudes()[inhaleSteps]);
+        assertEquals(2_000L, waveform.getTimings()[inhaleSteps]);
+    }
+
+    @Test
+    public void pattern_isClampedToTheSupportedRange() {
+        BreathingPacer clamped = new BreathingPacer(new BreathingPattern(0, -3, 90));
+        assertEquals((1 + BreathingPattern.MAX_PHASE_SECONDS) * 1000L, clamped.getCycleMs());
+    }
+}
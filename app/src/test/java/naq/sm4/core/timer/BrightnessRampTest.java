@@ -0,0 +1,63 @@
+package naq.sm4.core.timer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for the brightness schedule and its change points.
+ */
+public class BrightnessRampTest {
+
+    private static final long MINUTE_MS = 60_000L;
+
+    private final BrightnessRamp ramp = BrightnessRamp.forSession(60, 20 * MINUTE_MS, 15 * MINUTE_MS);
+
+    @Test
+    public void schedule_dimsFirstAndBrightensForTheLastStage() {
+        assertEquals(0.6f, ramp.getBrightness(0L), 0f);
+        assertTrue(ramp.getBrightness(MINUTE_MS) < 0.6f);
+        assertEquals(BrightnessRamp.MIN_BRIGHTNESS, ramp.getBrightness(BrightnessRamp.DIM_MS), 0f);
+        assertEquals(BrightnessRamp.MIN_BRIGHTNESS, ramp.getBrightness(15 * MINUTE_MS - 1L), 0f);
+        assertTrue(ramp.getBrightness(15 * MINUTE_MS + BrightnessRamp.BRIGHTEN_MS / 2) > BrightnessRamp.MIN_BRIGHTNESS);
+        assertEquals(0.6f, ramp.getBrightness(15 * MINUTE_MS + BrightnessRamp.BRIGHTEN_MS), 0f);
+        assertEquals(0.6f, ramp.getBaseBrightness(), 0f);
+    }
+
+    @Test
+    public void nextChange_landsExactlyOnEveryLevelChange() {
+        long total = 20 * MINUTE_MS;
+        long offset = 0L;
+        int changes = 0;
+        long next;
+        while ((next = ramp.getNextChangeMs(offset)) >= 0L) {
+            assertTrue(next > offset);
+            float level = ramp.getBrightness(offset);
+            assertEquals("flat before " + next, level, ramp.getBrightness(next - 1L), 0f);
+            assertTrue("change at " + next, ramp.getBrightness(next) != level);
+            offset = next;
+            changes++;
+        }
+        assertTrue(offset <= total);
+        // Only perceptible steps are reported: a handful per ramp, not one per tick.
+        assertTrue("changes " + changes, changes > 4 && changes < 2 * BrightnessRamp.PERCEPTUAL_LEVELS);
+    }
+
+    @Test
+    public void singleStage_brightensOverTheFinalStretch() {
+        BrightnessRamp single = BrightnessRamp.forSession(40, 10 * MINUTE_MS, 0L);
+        assertEquals(BrightnessRamp.MIN_BRIGHTNESS, single.getBrightness(10 * MINUTE_MS - BrightnessRamp.BRIGHTEN_MS), 0f);
+        assertEquals(0.4f, single.getBrightness(10 * MINUTE_MS), 0f);
+    }
+
+    @Test
+    public void dimSetting_orConstantSchedule_neverChanges() {
+        BrightnessRamp dark = BrightnessRamp.forSession(0, 10 * MINUTE_MS, 5 * MINUTE_MS);
+        BrightnessRamp constant = BrightnessRamp.constant(70);
+        assertEquals(BrightnessRamp.MIN_BRIGHTNESS, dark.getBrightness(MINUTE_MS), 0f);
+        assertEquals(-1L, dark.getNextChangeMs(0L));
+        assertEquals(0.7f, constant.getBrightness(MINUTE_MS), 0f);
+        assertEquals(-1L, constant.getNextChangeMs(0L));
+    }
+}
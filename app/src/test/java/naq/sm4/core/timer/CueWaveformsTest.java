@@ -0,0 +1,66 @@
+package naq.sm4.core.timer;
+
+import org.junit.Test;
+
+import naq.sm4.data.CueVibration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for the cue vibration patterns.
+ */
+public class CueWaveformsTest {
+
+    @Test
+    public void pulse_lengthFollowsTheStrength() {
+        HapticWaveform soft = CueWaveforms.compile(CueVibration.PULSE, 10, 0L);
+        HapticWaveform strong = CueWaveforms.compile(CueVibration.PULSE, 100, 0L);
+        assertEquals(1, soft.getTimings().length);
+        assertEquals(90L, soft.getDurationMs());
+        assertEquals(180L, strong.getDurationMs());
+        assertEquals(255, strong.getAmplitudes()[0]);
+        assertEquals(0L, strong.getLeadInMs());
+    }
+
+    @Test
+    public void doubleTap_pausesBetweenTwoTaps() {
+        HapticWaveform waveform = CueWaveforms.compile(CueVibration.DOUBLE_TAP, 50, 0L);
+        int amplitude = CueWaveforms.amplitudeFor(50);
+        assertEquals(2 * CueWaveforms.TAP_MS + CueWaveforms.TAP_GAP_MS, waveform.getDurationMs());
+        assertEquals(amplitude, waveform.getAmplitudes()[0]);
+        assertEquals(0, waveform.getAmplitudes()[1]);
+        assertEquals(amplitude, waveform.getAmplitudes()[2]);
+    }
+
+    @Test
+    public void ramp_swellsUpToTheStrength() {
+        HapticWaveform waveform = CueWaveforms.compile(CueVibration.RAMP, 80, 0L);
+        int[] amplitudes = waveform.getAmplitudes();
+        assertEquals(CueWaveforms.RAMP_STEPS, amplitudes.length);
+        for (int i = 1; i < amplitudes.length; i++) {
+            assertTrue("step " + i, amplitudes[i] > amplitudes[i - 1]);
+        }
+        assertTrue(amplitudes[0] > 0);
+        assertEquals(CueWaveforms.amplitudeFor(80), amplitudes[amplitudes.length - 1]);
+    }
+
+    @Test
+    public void leadIn_isPrependedAsSilence() {
+        for (CueVibration pattern : CueVibration.values()) {
+            HapticWaveform plain = CueWaveforms.compile(pattern, 50, 0L);
+            HapticWaveform delayed = CueWaveforms.compile(pattern, 50, 120L);
+            assertEquals(pattern.name(), plain.getTimings().length + 1, delayed.getTimings().length);
+            assertEquals(pattern.name(), 120L, delayed.getLeadInMs());
+            assertEquals(pattern.name(), plain.getDurationMs() + 120L, delayed.getDurationMs());
+        }
+    }
+
+    @Test
+    public void amplitude_staysWithinTheVibratorRange() {
+        assertEquals(1, CueWaveforms.amplitudeFor(0));
+        assertEquals(128, CueWaveforms.amplitudeFor(50));
+        assertEquals(255, CueWaveforms.amplitudeFor(100));
+        assertEquals(255, CueWaveforms.amplitudeFor(150));
+    }
+}
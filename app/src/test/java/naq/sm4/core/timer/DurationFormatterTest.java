@@ -0,0 +1,69 @@
+package naq.sm4.core.timer;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class DurationFormatterTest {
+
+    private static final int TICKS = 200_000;
+
+    private final DurationFormatter formatter = new DurationFormatter('0');
+
+    @Test
+    public void format_usesMinutesAndSecondsBelowOneHour() {
+        assertEquals("00:00", formatter.format(0L));
+        assertEquals("00:09", formatter.format(9L));
+        assertEquals("59:59", formatter.format(3599L));
+    }
+
+    @Test
+    public void format_addsHoursFromOneHourUpwards() {
+        assertEquals("1:00:00", formatter.format(3600L));
+        assertEquals("1:40:05", formatter.format(100 * 60L + 5L));
+        assertEquals("12:34:56", formatter.format(12 * 3600L + 34 * 60L + 56L));
+    }
+
+    @Test
+    public void format_clampsNegativeToZero() {
+        assertEquals("00:00", formatter.format(-5L));
+    }
+
+    @Test
+    public void format_usesLocaleZeroDigit() {
+        DurationFormatter arabic = new DurationFormatter('٠');
+        assertEquals("٠١:٠٥", arabic.format(65L));
+    }
+
+    @Test
+    public void format_intoBufferDoesNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        char[] buffer = new char[DurationFormatter.MAX_LENGTH];
+        long checksum = runTicks(buffer);
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        checksum += runTicks(buffer);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum > 0L);
+        assertTrue("allocated " + allocated + " bytes over " + TICKS + " ticks", allocated < TICKS);
+    }
+
+    private long runTicks(char[] buffer) {
+        long checksum = 0L;
+        for (int i = 0; i < TICKS; i++) {
+            checksum += formatter.format(i, buffer);
+        }
+        return checksum;
+    }
+}
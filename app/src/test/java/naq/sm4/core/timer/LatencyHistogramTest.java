@@ -0,0 +1,87 @@
+package naq.sm4.core.timer;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * JVM tests for the fixed-memory latency recorder.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValues_areExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100, histogram.getTotalCount());
+        assertEquals(50, histogram.getValueAtPercentile(50d));
+        assertEquals(99, histogram.getValueAtPercentile(99d));
+        assertEquals(100, histogram.getValueAtPercentile(100d));
+        assertEquals(100, histogram.getMaxValue());
+    }
+
+    @Test
+    public void largeValues_stayWithinRelativeError() {
+        long[] samples = {129L, 1_000L, 65_537L, 3_000_000L, 900_000_000L, LatencyHistogram.MAX_VALUE};
+        for (long value : samples) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(0L);
+            histogram.record(value);
+            long reported = histogram.getValueAtPercentile(100d);
+            assertEquals(value, reported);
+            long bucketTop = LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(value));
+            long bucketBottom = LatencyHistogram.lowestEquivalentValue(LatencyHistogram.indexOf(value));
+            assertTrue(value >= bucketBottom && value <= bucketTop);
+            assertTrue("bucket too wide for " + value,
+                    (bucketTop - bucketBottom) <= value / LatencyHistogram.HALF_SUB_BUCKETS);
+        }
+    }
+
+    @Test
+    public void bucketIndices_areContiguous() {
+        int previous = LatencyHistogram.indexOf(0L);
+        for (long value = 1L; value < 1L << 20; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(index == previous || index == previous + 1);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void outOfRangeValues_areClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5L);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0L, histogram.getValueAtPercentile(50d));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMaxValue());
+        histogram.reset();
+        assertEquals(0L, histogram.getTotalCount());
+        assertEquals(0L, histogram.getValueAtPercentile(99d));
+    }
+
+    @Test
+    public void record_doesNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 20_000; i++) {
+            histogram.record(i * 37L);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record(i * 7919L);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024L);
+    }
+}
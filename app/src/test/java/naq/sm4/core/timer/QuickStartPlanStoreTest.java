@@ -0,0 +1,167 @@
+package naq.sm4.core.timer;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import naq.sm4.data.MeditationConfig;
+import naq.sm4.data.MeditationStage;
+
+import static naq.sm4.core.TestConfigs.EVENING;
+import static naq.sm4.core.TestConfigs.MORNING;
+import static naq.sm4.core.TestConfigs.newFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class QuickStartPlanStoreTest {
+
+    @Test
+    public void startedConfig_readsBackAsACompiledPlan() throws IOException {
+        QuickStartPlanStore store = new QuickStartPlanStore(newFile("quick_start.plan"));
+        store.recordStarted(1, MORNING);
+
+        SessionPlan plan = store.read();
+        assertNotNull(plan);
+        assertEquals(MORNING, plan.getConfig());
+        assertEquals(2, plan.getTimeline().getStageCount());
+        assertEquals(15 * 60_000L, plan.getTimeline().getTotalMs());
+        SessionTimeline compiled = SessionTimeline.compile(MORNING.getStages());
+        assertEquals(compiled.getCueCount(), plan.getTimeline().getCueCount());
+        for (int i = 0; i < compiled.getCueCount(); i++) {
+            assertEquals(compiled.getCueOffsetMs(i), plan.getTimeline().getCueOffsetMs(i));
+            assertEquals(compiled.getCueType(i), plan.getTimeline().getCueType(i));
+        }
+    }
+
+    @Test
+    public void pinnedConfig_isNotReplacedByOtherSessions() throws IOException {
+        QuickStartPlanStore store = new QuickStartPlanStore(newFile("quick_start.plan"));
+        store.pin(2, EVENING);
+        store.recordStarted(1, MORNING);
+        assertEquals(EVENING, store.read().getConfig());
+        assertEquals(2, store.getPinnedId());
+
+        store.unpin();
+        assertEquals(QuickStartPlanStore.NO_CONFIG_ID, store.getPinnedId());
+        store.recordStarted(1, MORNING);
+        assertEquals(MORNING, store.read().getConfig());
+    }
+
+    @Test
+    public void unchangedConfig_isKeyedByContentAndNotRewritten() throws IOException {
+        File file = newFile("quick_start.plan");
+        QuickStartPlanStore store = new QuickStartPlanStore(file);
+        store.recordStarted(1, MORNING);
+        long fingerprint = store.read().getFingerprint();
+        file.setLastModified(1_000L);
+
+        store.recordStarted(1, new MeditationConfig(MORNING.getName(), MORNING.getTotalMinutes(), MORNING.getStages()));
+        assertEquals(1_000L, file.lastModified());
+        assertEquals(fingerprint, store.read().getFingerprint());
+    }
+
+    @Test
+    public void edits_followTheConfigIdAndDeletionsDropThePlan() throws IOException {
+        File file = newFile("quick_start.plan");
+        QuickStartPlanStore store = new QuickStartPlanStore(file);
+        store.pin(1, MORNING);
+        MeditationConfig edited = new MeditationConfig("Buổi sáng", 5, Collections.singletonList(
+                new MeditationStage("Khởi động", 5, 0, Collections.singletonList("bell.mp3"))));
+
+        store.replace(2, 3, EVENING);
+        assertEquals(MORNING, store.read().getConfig());
+
+        store.replace(1, 4, edited);
+        assertEquals(edited, store.read().getConfig());
+        assertEquals(4, store.getPinnedId());
+
+        store.remove(1);
+        assertNotNull(store.read());
+        store.remove(4);
+        assertFalse(file.exists());
+        assertNull(store.read());
+    }
+
+    @Test
+    public void configsSharingAName_doNotReplaceThePinnedPlan() throws IOException {
+        QuickStartPlanStore store = new QuickStartPlanStore(newFile("quick_start.plan"));
+        MeditationConfig twin = new MeditationConfig(MORNING.getName(), 20, EVENING.getStages());
+        store.pin(1, MORNING);
+
+        store.recordStarted(2, twin);
+        store.replace(2, 5, twin);
+        assertEquals(MORNING, store.read().getConfig());
+        assertEquals(1, store.getPinnedId());
+    }
+
+    @Test
+    public void refresh_followsTheSameContentUnderItsNewId() throws IOException {
+        File file = newFile("quick_start.plan");
+        QuickStartPlanStore store = new QuickStartPlanStore(file);
+        store.pin(1, MORNING);
+
+        store.refresh(Arrays.asList(7, 8), Arrays.asList(EVENING, MORNING));
+        assertEquals(MORNING, store.read().getConfig());
+        assertEquals(8, store.getPinnedId());
+
+        store.refresh(Collections.singletonList(9), Collections.singletonList(EVENING));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void damagedFile_readsAsEmpty() throws IOException {
+        File file = newFile("quick_start.plan");
+        QuickStartPlanStore store = new QuickStartPlanStore(file);
+        store.recordStarted(1, MORNING);
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(QuickStartPlanStore.HEADER_SIZE + 3);
+            raw.write(0x7F);
+        }
+        assertNull(store.read());
+    }
+
+    @Test
+    public void benchmark_configStoreVersusCachedPlan() throws IOException {
+        List<MeditationConfig> configs = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            List<MeditationStage> stages = new ArrayList<>();
+            for (int s = 0; s < 6; s++) {
+                stages.add(new MeditationStage("Giai đoạn " + s, 10 + s, s % 3, Arrays.asList("bell.mp3", "gong.mp3")));
+            }
+            configs.add(new MeditationConfig("Buổi " + i, 75, stages));
+        }
+        Type listType = new TypeToken<List<MeditationConfig>>() {
+        }.getType();
+        String json = new Gson().toJson(configs, listType);
+        MeditationConfig target = configs.get(0);
+        QuickStartPlanStore store = new QuickStartPlanStore(newFile("quick_start.plan"));
+        store.recordStarted(1, target);
+
+        // First use in a fresh JVM, as on a cold process start: the old launch path parsed the
+        // whole config store with reflective Gson and compiled the timeline of the chosen config.
+        long startedNs = System.nanoTime();
+        List<MeditationConfig> parsed = new Gson().fromJson(json, listType);
+        SessionTimeline timeline = SessionTimeline.compile(parsed.get(0).getStages());
+        long storeNs = System.nanoTime() - startedNs;
+        startedNs = System.nanoTime();
+        SessionPlan plan = store.read();
+        long planNs = System.nanoTime() - startedNs;
+
+        System.out.printf("Quick start, %d configs (%d KB): config store + compile %.2f ms, cached plan %.2f ms%n",
+                configs.size(), json.length() / 1024, storeNs / 1e6, planNs / 1e6);
+        assertEquals(target, plan.getConfig());
+        assertEquals(timeline.getCueCount(), plan.getTimeline().getCueCount());
+    }
+}
@@ -0,0 +1,556 @@
+package naq.sm4.core.timer;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import naq.sm4.data.BreathingPattern;
+import naq.sm4.data.CueVibration;
+import naq.sm4.data.MeditationStage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs thousands of randomized sessions through {@link SessionEngine} on a virtual clock. Every
+ * wakeup the engine asks for is honoured by jumping the clock straight to it, so hours of
+ * meditation finish in microseconds, and the cues that reach the ports are checked against an
+ * oracle computed independently from the stage list.
+ */
+public class SessionEngineSimulationTest {
+
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    private static final long PREFETCH_LEAD_MS = 15_000L;
+    private static final int VIBRATION_STRENGTH = 50;
+    private static final long MAX_LATE_BREATH_MS = SessionEngine.MAX_BREATH_LATENESS_MS;
+
+    private VirtualClock clock;
+    private FakeAudio audio;
+    private FakeAlarm alarm;
+    private RecordingPorts ports;
+    private SessionEngine engine;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        audio = new FakeAudio(clock);
+        alarm = new FakeAlarm();
+        ports = new RecordingPorts(clock);
+        engine = new SessionEngine(clock, audio, ports, ports, alarm, new Random(7), PREFETCH_LEAD_MS);
+        engine.setListener(ports);
+        ports.engine = engine;
+    }
+
+    @Test
+    public void randomizedSessions_dispatchEveryCueAtItsExactOffset() {
+        Random random = new Random(20240501L);
+        for (int run = 0; run < 2_000; run++) {
+            List<MeditationStage> stages = randomStages(random);
+            List<Long> expected = expectedCueOffsets(stages);
+            ports.reset();
+            audio.reset();
+
+            engine.load(stages, true, VIBRATION_STRENGTH);
+            engine.start();
+            while (engine.getState() == TimerState.RUNNING) {
+                if (random.nextInt(8) == 0) {
+                    // Pausing between wakeups must not move any cue.
+                    engine.pause();
+                    clock.now += random.nextInt(600_000);
+                    engine.resume();
+                }
+                advanceToNextWakeup(0L);
+            }
+
+            String label = "run " + run + " " + describe(stages);
+            assertEquals(label, TimerState.COMPLETED, engine.getState());
+            assertEquals(label, expected, ports.cueOffsets);
+            assertEquals(label, expected.size(), ports.wakeLocks);
+            assertEquals(label, expectedSoundCount(stages), audio.played.size());
+            assertEquals(label, stages.size(), engine.getCompletedStageCount());
+            assertEquals(label, -1L, alarm.at);
+            assertTrue(label, audio.misses.isEmpty());
+            TimingSummary.Distribution lateness = engine.getTimingSummary().getCueLateness();
+            assertEquals(label, expected.size(), lateness.getCount());
+            assertEquals(label, 0L, lateness.getMaxMicros());
+        }
+    }
+
+    @Test
+    public void lateWakeups_catchUpWithoutDroppingOrDuplicatingCues() {
+        Random random = new Random(99L);
+        for (int run = 0; run < 1_000; run++) {
+            List<MeditationStage> stages = randomStages(random);
+            List<Long> expected = expectedCueOffsets(stages);
+            ports.reset();
+            audio.reset();
+
+            engine.load(stages, true, VIBRATION_STRENGTH);
+            long startedAt = clock.now;
+            engine.start();
+            while (engine.getState() == TimerState.RUNNING) {
+                advanceToNextWakeup(random.nextInt(251));
+            }
+
+            String label = "run " + run + " " + describe(stages);
+            assertEquals(label, expected.size(), ports.cueTimes.size());
+            for (int i = 0; i < expected.size(); i++) {
+                long lateness = ports.cueTimes.get(i) - startedAt - expected.get(i);
+                assertTrue(label + " cue " + i + " late by " + lateness, lateness >= 0L && lateness <= 250L);
+            }
+            TimingSummary.Distribution recorded = engine.getTimingSummary().getCueLateness();
+            assertEquals(label, expected.size(), recorded.getCount());
+            assertTrue(label, recorded.getP50Micros() <= recorded.getP99Micros());
+            assertTrue(label, recorded.getMaxMicros() <= 250_000L);
+        }
+    }
+
+    @Test
+    public void missingSound_isReportedAndSessionContinues() {
+        List<MeditationStage> stages = new ArrayList<>();
+        stages.add(new MeditationStage("a", 2, 1, Collections.singletonList("missing.wav")));
+        stages.add(new MeditationStage("b", 1, 0, Collections.singletonList("bell.wav")));
+
+        engine.load(stages, true, VIBRATION_STRENGTH);
+        engine.start();
+        while (engine.getState() == TimerState.RUNNING) {
+            advanceToNextWakeup(0L);
+        }
+
+        assertEquals(2, ports.unavailable.size());
+        assertEquals(Collections.singletonList("bell.wav"), audio.played);
+        assertEquals(3, ports.cueOffsets.size());
+    }
+
+    @Test
+    public void soundAndVibrationToggles_silenceTheirPorts() {
+        List<MeditationStage> stages = Collections.singletonList(
+                new MeditationStage("a", 3, 1, Collections.singletonList("bell.wav")));
+
+        engine.load(stages, false, 0);
+        engine.start();
+        while (engine.getState() == TimerState.RUNNING) {
+            advanceToNextWakeup(0L);
+        }
+
+        assertTrue(audio.played.isEmpty());
+        assertTrue(ports.cueOffsets.isEmpty());
+        assertFalse(engine.isVibrationEnabled());
+        assertEquals(3, ports.wakeLocks);
+    }
+
+    @Test
+    public void outputLatency_movesDispatchEarlyAndDelaysHaptics() {
+        Random random = new Random(42L);
+        for (int run = 0; run < 500; run++) {
+            List<MeditationStage> stages = randomStages(random);
+            List<Long> expected = expectedCueOffsets(stages);
+            long latencyMs = 1 + random.nextInt(300);
+            ports.reset();
+            audio.reset();
+            audio.outputLatencyMs = latencyMs;
+
+            engine.load(stages, true, VIBRATION_STRENGTH);
+            engine.start();
+            while (engine.getState() == TimerState.RUNNING) {
+                advanceToNextWakeup(0L);
+            }
+
+            String label = "run " + run + " latency " + latencyMs + " " + describe(stages);
+            assertEquals(label, TimerState.COMPLETED, engine.getState());
+            assertEquals(label, expected.size(), ports.cueOffsets.size());
+            for (int i = 0; i < expected.size(); i++) {
+                // Only the very first cue cannot be issued ahead of the session start.
+                long audibleAt = ports.cueOffsets.get(i) + ports.hapticDelays.get(i);
+                assertEquals(label + " cue " + i, Math.max(expected.get(i), latencyMs), audibleAt);
+                assertEquals(label + " cue " + i, latencyMs, (long) ports.hapticDelays.get(i));
+            }
+            assertEquals(label, 0L, engine.getTimingSummary().getCueLateness().getMaxMicros());
+        }
+        audio.outputLatencyMs = 0L;
+    }
+
+    @Test
+    public void outputLatency_isIgnoredWhenSilentAndClamped() {
+        List<MeditationStage> stages = Collections.singletonList(
+                new MeditationStage("a", 3, 1, Collections.singletonList("bell.wav")));
+        audio.outputLatencyMs = 10_000L;
+
+        engine.load(stages, true, VIBRATION_STRENGTH);
+        engine.start();
+        advanceToNextWakeup(0L);
+        assertEquals(MILLIS_PER_MINUTE - SessionEngine.MAX_OUTPUT_LATENCY_MS, (long) ports.cueOffsets.get(1));
+
+        engine.setSoundEnabled(false);
+        advanceToNextWakeup(0L);
+        assertEquals(2 * MILLIS_PER_MINUTE, (long) ports.cueOffsets.get(2));
+        assertEquals(0L, (long) ports.hapticDelays.get(2));
+    }
+
+    @Test
+    public void cueVibration_isCompiledPerStageAndOnlyRecompiledWhenTheLeadChanges() {
+        List<MeditationStage> stages = Arrays.asList(
+                new MeditationStage("a", 2, 1, Collections.singletonList("bell.wav"), null, CueVibration.DOUBLE_TAP),
+                new MeditationStage("b", 2, 1, Collections.singletonList("bell.wav"), null, CueVibration.RAMP));
+        audio.outputLatencyMs = 80L;
+
+        engine.load(stages, true, VIBRATION_STRENGTH);
+        engine.start();
+        int compiled = ports.cueCompilations;
+        assertEquals(2, ports.cueWaveforms.length);
+        assertTrue(Arrays.equals(new long[]{80L, CueWaveforms.TAP_MS, CueWaveforms.TAP_GAP_MS, CueWaveforms.TAP_MS},
+                ports.cueWaveforms[0].getTimings()));
+        assertEquals(80L, ports.cueWaveforms[1].getLeadInMs());
+        assertEquals(1 + CueWaveforms.RAMP_STEPS, ports.cueWaveforms[1].getTimings().length);
+
+        while (ports.cueOffsets.size() < 3) {
+            advanceToNextWakeup(0L);
+        }
+        assertEquals(compiled, ports.cueCompilations);
+
+        audio.outputLatencyMs = 200L;
+        while (ports.cueOffsets.size() < 4) {
+            advanceToNextWakeup(0L);
+        }
+        assertEquals(compiled + 1, ports.cueCompilations);
+        assertEquals(200L, (long) ports.hapticDelays.get(3));
+        audio.outputLatencyMs = 0L;
+    }
+
+    @Test
+    public void breathingStage_guidesEveryBreathFromTheStageStart() {
+        List<MeditationStage> stages = new ArrayList<>();
+        stages.add(new MeditationStage("a", 1, 0, Collections.singletonList("bell.wav")));
+        stages.add(new MeditationStage("b", 2, 1, Collections.singletonList("bell.wav"),
+                new BreathingPattern(4, 2, 6)));
+        audio.outputLatencyMs = 120L;
+
+        engine.load(stages, true, VIBRATION_STRENGTH);
+        engine.start();
+        while (engine.getState() == TimerState.RUNNING) {
+            advanceToNextWakeup(0L);
+        }
+        audio.outputLatencyMs = 0L;
+
+        List<Long> expected = new ArrayList<>();
+        for (long at = MILLIS_PER_MINUTE; at < 3 * MILLIS_PER_MINUTE; at += 12_000L) {
+            expected.add(at);
+        }
+        assertEquals(expected, ports.breathOffsets);
+        assertEquals(2, ports.waveforms.length);
+        assertEquals(null, ports.waveforms[0]);
+        long breathMs = 0L;
+        for (long segment : ports.waveforms[1].getTimings()) {
+            breathMs += segment;
+        }
+        assertEquals(12_000L, breathMs);
+        // Stage and repeat cues keep their own timing next to the breaths.
+        assertEquals(Arrays.asList(0L, MILLIS_PER_MINUTE - 120L, 2 * MILLIS_PER_MINUTE - 120L), ports.cueOffsets);
+    }
+
+    @Test
+    public void breathingStage_pauseCancelsAndLateOrSilentBreathsAreSkipped() {
+        List<MeditationStage> stages = Collections.singletonList(
+                new MeditationStage("a", 1, 0, Collections.emptyList(), new BreathingPattern(5, 0, 5)));
+
+        engine.load(stages, true, VIBRATION_STRENGTH);
+        engine.start();
+        assertEquals(Collections.singletonList(0L), ports.breathOffsets);
+        clock.now += 3_000L;
+        engine.pause();
+        assertEquals(1, ports.cancels);
+        clock.now += 30_000L;
+        engine.resume();
+        // The interrupted breath is not replayed; the next one starts on schedule.
+        assertEquals(clock.now + 7_000L, alarm.at);
+        advanceToNextWakeup(MAX_LATE_BREATH_MS + 1);
+        assertEquals(Collections.singletonList(0L), ports.breathOffsets);
+        advanceToNextWakeup(0L);
+        assertEquals(Arrays.asList(0L, 20_000L), ports.breathOffsets);
+
+        engine.setVibrationEnabled(false);
+        advanceToNextWakeup(0L);
+        assertEquals(2, ports.breathOffsets.size());
+        assertEquals(30_000L, engine.getOffsetMs());
+    }
+
+    @Test
+    public void throughput_reportsSessionsPerSecond() {
+        Random random = new Random(1L);
+        List<List<MeditationStage>> configs = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            configs.add(randomStages(random));
+        }
+        long cues = 0L;
+        long startedNs = System.nanoTime();
+        for (List<MeditationStage> stages : configs) {
+            ports.reset();
+            audio.reset();
+            engine.load(stages, true, VIBRATION_STRENGTH);
+            engine.start();
+            while (engine.getState() == TimerState.RUNNING) {
+                advanceToNextWakeup(0L);
+            }
+            cues += ports.cueOffsets.size();
+        }
+        long elapsedNs = System.nanoTime() - startedNs;
+        double sessionsPerSecond = configs.size() * 1e9 / Math.max(1L, elapsedNs);
+        System.out.printf("SessionEngine: %d sessions, %d cues in %.1f ms (%.0f sessions/s)%n",
+                configs.size(), cues, elapsedNs / 1e6, sessionsPerSecond);
+        assertTrue(cues > 0L);
+    }
+
+    private void advanceToNextWakeup(long lateByMs) {
+        assertTrue("running session without a pending wakeup", alarm.at >= 0L);
+        clock.now = Math.max(clock.now, alarm.at + lateByMs);
+        engine.onDeadline();
+    }
+
+    @NonNull
+    private static List<MeditationStage> randomStages(@NonNull Random random) {
+        int count = 1 + random.nextInt(8);
+        List<MeditationStage> stages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int minutes = 1 + random.nextInt(60);
+            int repeat = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(minutes + 2);
+            List<String> sounds = new ArrayList<>();
+            int soundCount = random.nextInt(4);
+            for (int s = 0; s < soundCount; s++) {
+                sounds.add("sound_" + random.nextInt(12) + ".wav");
+            }
+            stages.add(new MeditationStage("stage " + i, minutes, repeat, sounds));
+        }
+        return stages;
+    }
+
+    /**
+     * Oracle: every stage cues at its start and then every {@code repeatMinutes} while it is still
+     * running.
+     */
+    @NonNull
+    private static List<Long> expectedCueOffsets(@NonNull List<MeditationStage> stages) {
+        List<Long> offsets = new ArrayList<>();
+        long start = 0L;
+        for (MeditationStage stage : stages) {
+            long length = stage.getMinutes() * MILLIS_PER_MINUTE;
+            offsets.add(start);
+            long interval = stage.getRepeatMinutes() * MILLIS_PER_MINUTE;
+            if (interval > 0L) {
+                for (long at = interval; at < length; at += interval) {
+                    offsets.add(start + at);
+                }
+            }
+            start += length;
+        }
+        return offsets;
+    }
+
+    private static int expectedSoundCount(@NonNull List<MeditationStage> stages) {
+        int count = 0;
+        for (MeditationStage stage : stages) {
+            if (stage.getSounds().isEmpty()) {
+                continue;
+            }
+            count++;
+            long length = stage.getMinutes() * MILLIS_PER_MINUTE;
+            long interval = stage.getRepeatMinutes() * MILLIS_PER_MINUTE;
+            if (interval > 0L && length > interval) {
+                count += (int) ((length - 1) / interval);
+            }
+        }
+        return count;
+    }
+
+    @NonNull
+    private static String describe(@NonNull List<MeditationStage> stages) {
+        StringBuilder builder = new StringBuilder("[");
+        for (MeditationStage stage : stages) {
+            builder.append(stage.getMinutes()).append('/').append(stage.getRepeatMinutes()).append(' ');
+        }
+        return builder.append(']').toString();
+    }
+
+    private static final class VirtualClock implements SessionClock {
+        long now = 5_000_000L;
+
+        @Override
+        public long elapsedRealtime() {
+            return now;
+        }
+    }
+
+    private static final class FakeAlarm implements SessionEngine.Alarm {
+        long at = -1L;
+
+        @Override
+        public void schedule(long elapsedRealtimeMs) {
+            at = elapsedRealtimeMs;
+        }
+
+        @Override
+        public void cancel() {
+            at = -1L;
+        }
+    }
+
+    /**
+     * Plays only sounds of retained stages, so a cue whose stage was not warmed in time fails.
+     */
+    private static final class FakeAudio implements SessionEngine.Audio {
+        final VirtualClock clock;
+        final List<String> played = new ArrayList<>();
+        final List<String> misses = new ArrayList<>();
+        List<MeditationStage> stages = Collections.emptyList();
+        long outputLatencyMs;
+        int current = -1;
+        int upcoming = -1;
+
+        FakeAudio(VirtualClock clock) {
+            this.clock = clock;
+        }
+
+        void reset() {
+            played.clear();
+            misses.clear();
+        }
+
+        @Override
+        public void setStages(@NonNull List<MeditationStage> stages) {
+            this.stages = stages;
+            current = -1;
+            upcoming = -1;
+        }
+
+        @Override
+        public boolean isRetained(int stageIndex) {
+            return stageIndex == current || stageIndex == upcoming;
+        }
+
+        @Override
+        public void retain(int currentStage, int upcomingStage) {
+            current = currentStage;
+            upcoming = upcomingStage;
+        }
+
+        @Override
+        public boolean play(@NonNull String sound) {
+            if (sound.startsWith("missing")) {
+                return false;
+            }
+            Set<String> resident = new HashSet<>();
+            for (int stage : new int[]{current, upcoming}) {
+                if (stage >= 0 && stage < stages.size()) {
+                    resident.addAll(stages.get(stage).getSounds());
+                }
+            }
+            if (!resident.contains(sound)) {
+                misses.add(sound + "@" + clock.now);
+            }
+            played.add(sound);
+            return true;
+        }
+
+        @Override
+        public long getOutputLatencyMs() {
+            return outputLatencyMs;
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void release() {
+            current = -1;
+            upcoming = -1;
+        }
+    }
+
+    private static final class RecordingPorts implements SessionEngine.Haptics, SessionEngine.WakeLock,
+            SessionEngine.Listener {
+        final List<Long> cueOffsets = new ArrayList<>();
+        final List<Long> cueTimes = new ArrayList<>();
+        final List<Long> hapticDelays = new ArrayList<>();
+        final List<Long> breathOffsets = new ArrayList<>();
+        final List<String> unavailable = new ArrayList<>();
+        final VirtualClock clock;
+        SessionEngine engine;
+        HapticWaveform[] cueWaveforms = new HapticWaveform[0];
+        HapticWaveform[] waveforms = new HapticWaveform[0];
+        int cueCompilations;
+        int wakeLocks;
+        int cancels;
+
+        void reset() {
+            cueOffsets.clear();
+            cueTimes.clear();
+            hapticDelays.clear();
+            breathOffsets.clear();
+            unavailable.clear();
+            wakeLocks = 0;
+            cancels = 0;
+            cueCompilations = 0;
+        }
+
+        RecordingPorts(VirtualClock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public void setCueWaveforms(@NonNull HapticWaveform[] waveforms) {
+            cueWaveforms = waveforms;
+            cueCompilations++;
+        }
+
+        @Override
+        public void cue(int stageIndex) {
+            cueOffsets.add(engine.getOffsetMs());
+            cueTimes.add(clock.now);
+            hapticDelays.add(cueWaveforms[stageIndex].getLeadInMs());
+        }
+
+        @Override
+        public void setBreathWaveforms(@NonNull HapticWaveform[] waveforms) {
+            this.waveforms = waveforms;
+        }
+
+        @Override
+        public void breathe(int stageIndex) {
+            assertTrue(waveforms[stageIndex] != null);
+            breathOffsets.add(engine.getOffsetMs());
+        }
+
+        @Override
+        public void cancel() {
+            cancels++;
+        }
+
+        @Override
+        public void acquire(long timeoutMs) {
+            wakeLocks++;
+        }
+
+        @Override
+        public void onStateChanged(@NonNull TimerState state) {
+        }
+
+        @Override
+        public void onStageChanged(int stageIndex) {
+        }
+
+        @Override
+        public void onSoundUnavailable(@NonNull String sound) {
+            unavailable.add(sound);
+        }
+    }
+}
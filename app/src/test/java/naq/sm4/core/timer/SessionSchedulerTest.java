@@ -0,0 +1,276 @@
+package naq.sm4.core.timer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import naq.sm4.data.MeditationStage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests proving the scheduler derives time from the clock rather than from tick counts.
+ */
+public class SessionSchedulerTest {
+
+    private FakeClock clock;
+    private SessionScheduler scheduler;
+    private RecordingListener listener;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        scheduler = new SessionScheduler(clock);
+        listener = new RecordingListener(clock);
+    }
+
+    @Test
+    public void jitteryTicks_finishExactlyOnTime() {
+        scheduler.load(SessionTimeline.compile(Collections.singletonList(stage(60, 0))));
+        scheduler.start();
+        long startedAt = clock.now;
+        while (!scheduler.isCompleted()) {
+            // Every wakeup arrives between 0 and 250 ms late, as a busy main thread would deliver it.
+            clock.now = scheduler.getNextDeadline() + (clock.now * 7919L) % 251L;
+            scheduler.dispatchDue(listener);
+        }
+        assertEquals(60 * 60_000L, listener.completedAt - startedAt, 250L);
+        assertEquals(60 * 60_000L, scheduler.getOffsetMs());
+    }
+
+    @Test
+    public void pauseAndResume_keepMillisecondPrecision() {
+        scheduler.load(SessionTimeline.compile(Collections.singletonList(stage(1, 0))));
+        scheduler.start();
+        clock.now += 12_345L;
+        scheduler.pause();
+        clock.now += 500_000L;
+        assertEquals(12_345L, scheduler.getOffsetMs());
+        scheduler.resume();
+        clock.now += 1L;
+        assertEquals(12_346L, scheduler.getOffsetMs());
+        assertEquals(60_000L - 12_346L, scheduler.getStageRemainingMs());
+    }
+
+    @Test
+    public void lateWakeup_catchesUpOnEveryMissedEvent() {
+        scheduler.load(SessionTimeline.compile(Arrays.asList(stage(5, 2), stage(5, 0))));
+        scheduler.start();
+        clock.now += 7 * 60_000L;
+        scheduler.dispatchDue(listener);
+        assertEquals(Arrays.asList("cue:0", "stage:0", "repeat:0", "repeat:0", "cue:1", "stage:1"), listener.events);
+        assertEquals(1, scheduler.getStageIndex());
+        assertEquals(3 * 60_000L, scheduler.getStageRemainingMs());
+    }
+
+    @Test
+    public void repeatCues_fireOnAbsoluteDeadlines() {
+        scheduler.load(SessionTimeline.compile(Collections.singletonList(stage(10, 3))));
+        scheduler.start();
+        scheduler.dispatchDue(listener);
+        long startedAt = clock.now;
+        List<Long> deadlines = new ArrayList<>();
+        while (!scheduler.isCompleted()) {
+            long deadline = scheduler.getNextDeadline();
+            deadlines.add(deadline - startedAt);
+            clock.now = deadline;
+            scheduler.dispatchDue(listener);
+        }
+        assertEquals(Arrays.asList(180_000L, 360_000L, 540_000L, 600_000L), deadlines);
+        assertEquals(Arrays.asList("cue:0", "stage:0", "repeat:0", "repeat:0", "repeat:0", "complete"), listener.events);
+    }
+
+    @Test
+    public void skipToNextStage_doesNotReplaySkippedCues() {
+        scheduler.load(SessionTimeline.compile(Arrays.asList(stage(10, 2), stage(5, 0))));
+        scheduler.start();
+        scheduler.dispatchDue(listener);
+        clock.now += 30_000L;
+        scheduler.skipToNextStage();
+        scheduler.dispatchDue(listener);
+        assertEquals(Arrays.asList("cue:0", "stage:0", "cue:1", "stage:1"), listener.events);
+        assertEquals(10 * 60_000L, scheduler.getOffsetMs());
+        assertEquals(5 * 60_000L, scheduler.getStageRemainingMs());
+    }
+
+    @Test
+    public void skipToPreviousStage_replaysOnlyTheLandingStageCue() {
+        scheduler.load(SessionTimeline.compile(Arrays.asList(stage(2, 0), stage(5, 1))));
+        scheduler.start();
+        clock.now += 4 * 60_000L + 500L;
+        scheduler.dispatchDue(listener);
+        scheduler.skipToPreviousStage();
+        assertEquals(0, scheduler.getStageIndex());
+        scheduler.dispatchDue(listener);
+        assertEquals(Arrays.asList("cue:0", "stage:0", "cue:1", "stage:1", "repeat:1", "repeat:1",
+                "cue:0", "stage:0"), listener.events);
+    }
+
+    @Test
+    public void seekTo_landsMidStageWithoutDispatching() {
+        scheduler.load(SessionTimeline.compile(Arrays.asList(stage(5, 1), stage(5, 1))));
+        scheduler.start();
+        scheduler.dispatchDue(listener);
+        scheduler.seekTo(7 * 60_000L + 250L);
+        scheduler.dispatchDue(listener);
+        assertEquals(Arrays.asList("cue:0", "stage:0"), listener.events);
+        assertEquals(1, scheduler.getStageIndex());
+        assertEquals(clock.now + 60_000L - 250L, scheduler.getNextDeadline());
+    }
+
+    @Test
+    public void nextCueStage_pointsAtTheStageToPrefetch() {
+        scheduler.load(SessionTimeline.compile(Arrays.asList(stage(4, 2), stage(3, 0))));
+        scheduler.start();
+        assertEquals(0, scheduler.getNextCueStage());
+        scheduler.dispatchDue(listener);
+        assertEquals(0, scheduler.getNextCueStage());
+        clock.now += 2 * 60_000L;
+        scheduler.dispatchDue(listener);
+        assertEquals(1, scheduler.getNextCueStage());
+        assertEquals(clock.now + 2 * 60_000L, scheduler.getNextDeadline());
+        clock.now += 2 * 60_000L;
+        scheduler.dispatchDue(listener);
+        assertEquals(-1, scheduler.getNextCueStage());
+    }
+
+    @Test
+    public void dispatchLead_movesSoundingCuesButNotTheSessionEnd() {
+        scheduler.load(SessionTimeline.compile(Arrays.asList(stage(2, 1), stage(1, 0))));
+        scheduler.setDispatchLeadMs(150L);
+        long startedAt = clock.now;
+        scheduler.start();
+        scheduler.dispatchDue(listener);
+        assertEquals(0L, scheduler.getDispatchLatenessMs());
+        assertEquals(startedAt + 60_000L - 150L, scheduler.getNextDeadline());
+
+        clock.now = startedAt + 60_000L - 150L;
+        scheduler.dispatchDue(listener);
+        assertEquals(0L, scheduler.getDispatchLatenessMs());
+        clock.now = startedAt + 120_000L - 100L;
+        scheduler.dispatchDue(listener);
+        assertEquals(50L, scheduler.getDispatchLatenessMs());
+        assertEquals(0, scheduler.getStageIndex());
+        assertEquals(startedAt + 120_000L, scheduler.getNextDeadline());
+
+        clock.now = startedAt + 120_000L;
+        scheduler.dispatchDue(listener);
+        assertEquals(1, scheduler.getStageIndex());
+        assertEquals(startedAt + 180_000L, scheduler.getNextDeadline());
+
+        clock.now = startedAt + 180_000L - 1L;
+        scheduler.dispatchDue(listener);
+        assertFalse(scheduler.isCompleted());
+        clock.now += 1L;
+        scheduler.dispatchDue(listener);
+        assertEquals(Arrays.asList("cue:0", "stage:0", "repeat:0", "cue:1", "stage:1", "complete"), listener.events);
+    }
+
+    @Test
+    public void dispatchLead_neverRunsTheStageCountdownAhead() {
+        scheduler.load(SessionTimeline.compile(Arrays.asList(stage(1, 0), stage(1, 0))));
+        scheduler.setDispatchLeadMs(300L);
+        long startedAt = clock.now;
+        scheduler.start();
+        while (!scheduler.isCompleted()) {
+            scheduler.dispatchDue(listener);
+            long offset = clock.now - startedAt;
+            if (offset == 60_000L - 300L) {
+                assertEquals("cue:1", listener.events.get(listener.events.size() - 1));
+            }
+            assertEquals(offset < 60_000L ? 0 : 1, scheduler.getStageIndex());
+            assertTrue(scheduler.getStageRemainingMs() <= 60_000L);
+            assertTrue(scheduler.captureProgress().getStageRemainingMs(clock.now) <= 60_000L);
+            clock.now += 50L;
+        }
+        assertEquals(Arrays.asList("cue:0", "stage:0", "cue:1", "stage:1", "complete"), listener.events);
+    }
+
+    @Test
+    public void dispatchLead_doesNotCountSeekTargetsAsLate() {
+        scheduler.load(SessionTimeline.compile(Arrays.asList(stage(1, 0), stage(1, 0))));
+        scheduler.setDispatchLeadMs(200L);
+        scheduler.start();
+        scheduler.dispatchDue(listener);
+        scheduler.skipToNextStage();
+        scheduler.dispatchDue(listener);
+        assertEquals(Arrays.asList("cue:0", "stage:0", "cue:1", "stage:1"), listener.events);
+        assertEquals(0L, scheduler.getDispatchLatenessMs());
+    }
+
+    @Test
+    public void capturedProgress_tracksTheClockWithoutTheScheduler() {
+        scheduler.load(SessionTimeline.compile(Arrays.asList(stage(1, 0), stage(1, 0))));
+        scheduler.start();
+        scheduler.dispatchDue(listener);
+        clock.now += 10_000L;
+        SessionProgress running = scheduler.captureProgress();
+        assertTrue(running.isRunning());
+        assertEquals(0, running.getStageIndex());
+        assertEquals(50_000L, running.getStageRemainingMs(clock.now));
+        assertEquals(15_000L, running.getOffsetMs(clock.now + 5_000L));
+        assertEquals(0.25f, running.getStageFraction(clock.now + 5_000L), 1e-6f);
+        assertEquals(0.125f, running.getSessionFraction(clock.now + 5_000L), 1e-6f);
+        assertEquals(1f, running.getStageFraction(clock.now + 70_000L), 0f);
+        // Until the owner dispatches the boundary the captured stage simply runs out.
+        assertEquals(0L, running.getStageRemainingMs(clock.now + 70_000L));
+        assertEquals(120_000L, running.getOffsetMs(clock.now + 500_000L));
+
+        scheduler.pause();
+        SessionProgress paused = scheduler.captureProgress();
+        assertFalse(paused.isRunning());
+        assertEquals(10_000L, paused.getOffsetMs(clock.now + 30_000L));
+        assertEquals(0f, SessionProgress.NONE.getSessionFraction(clock.now), 0f);
+        assertEquals(SessionProgress.NONE, new SessionScheduler(clock).captureProgress());
+    }
+
+    private static MeditationStage stage(int minutes, int repeatMinutes) {
+        return new MeditationStage("stage", minutes, repeatMinutes, Collections.emptyList());
+    }
+
+    private static final class FakeClock implements SessionClock {
+        long now = 1_000_000L;
+
+        @Override
+        public long elapsedRealtime() {
+            return now;
+        }
+    }
+
+    private static final class RecordingListener implements SessionScheduler.Listener {
+        final List<String> events = new ArrayList<>();
+        final FakeClock clock;
+        long completedAt = -1L;
+
+        RecordingListener(FakeClock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public void onStageCue(int stageIndex) {
+            events.add("cue:" + stageIndex);
+        }
+
+        @Override
+        public void onRepeatCue(int stageIndex) {
+            events.add("repeat:" + stageIndex);
+        }
+
+        @Override
+        public void onStageStarted(int stageIndex) {
+            events.add("stage:" + stageIndex);
+        }
+
+        @Override
+        public void onSessionCompleted() {
+            events.add("complete");
+            completedAt = clock.now;
+        }
+    }
+}
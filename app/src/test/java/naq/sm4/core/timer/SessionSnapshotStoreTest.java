@@ -0,0 +1,94 @@
+package naq.sm4.core.timer;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static naq.sm4.core.TestConfigs.MORNING;
+import static naq.sm4.core.TestConfigs.newFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionSnapshotStoreTest {
+
+    @Test
+    public void positionAndPlan_roundTrip() throws IOException {
+        File file = newFile("session.snapshot");
+        try (SessionSnapshotStore store = new SessionSnapshotStore(file)) {
+            assertTrue(store.writePlan(MORNING));
+            store.writePosition(false, 1, 361_250L, 5_000L, 1_700_000_000_000L, true, false);
+        }
+        assertEquals(SessionSnapshotStore.FILE_SIZE, file.length());
+
+        try (SessionSnapshotStore store = new SessionSnapshotStore(file)) {
+            SessionSnapshot snapshot = store.read();
+            assertNotNull(snapshot);
+            assertEquals(MORNING, snapshot.getConfig());
+            assertFalse(snapshot.isRunning());
+            assertEquals(1, snapshot.getStageIndex());
+            assertEquals(361_250L, snapshot.getOffsetMs());
+            assertEquals(5_000L, snapshot.getElapsedRealtimeMs());
+            assertEquals(1_700_000_000_000L, snapshot.getWallClockMs());
+            assertTrue(snapshot.isSoundEnabled());
+            assertFalse(snapshot.isVibrationEnabled());
+        }
+    }
+
+    @Test
+    public void clearedSnapshot_readsAsEmpty() throws IOException {
+        File file = newFile("session.snapshot");
+        try (SessionSnapshotStore store = new SessionSnapshotStore(file)) {
+            store.writePlan(MORNING);
+            store.writePosition(true, 0, 1_000L, 2_000L, 3_000L, true, true);
+            store.clear();
+            assertNull(store.read());
+        }
+    }
+
+    @Test
+    public void damagedPlan_isRejected() throws IOException {
+        File file = newFile("session.snapshot");
+        try (SessionSnapshotStore store = new SessionSnapshotStore(file)) {
+            store.writePlan(MORNING);
+            store.writePosition(true, 0, 1_000L, 2_000L, 3_000L, true, true);
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(SessionSnapshotStore.HEADER_SIZE + 4);
+            raw.write(0x7F);
+        }
+        try (SessionSnapshotStore store = new SessionSnapshotStore(file)) {
+            assertNull(store.read());
+        }
+    }
+
+    @Test
+    public void restoredStore_keepsWritingAgainstTheSamePlan() throws IOException {
+        File file = newFile("session.snapshot");
+        try (SessionSnapshotStore store = new SessionSnapshotStore(file)) {
+            store.writePlan(MORNING);
+            store.writePosition(true, 0, 1_000L, 2_000L, 3_000L, true, true);
+        }
+        try (SessionSnapshotStore store = new SessionSnapshotStore(file)) {
+            assertNotNull(store.read());
+            store.writePosition(false, 1, 400_000L, 9_000L, 10_000L, true, true);
+            SessionSnapshot snapshot = store.read();
+            assertNotNull(snapshot);
+            assertEquals(400_000L, snapshot.getOffsetMs());
+        }
+    }
+
+    @Test
+    public void resolveOffset_followsMonotonicClockAndFallsBackToWallClockAfterReboot() {
+        SessionSnapshot running = new SessionSnapshot(MORNING, 0L, true, 0, 60_000L, 100_000L, 5_000_000L, true, true);
+        assertEquals(90_000L, running.resolveOffsetMs(130_000L, 9_999_999L));
+        assertEquals(80_000L, running.resolveOffsetMs(4_000L, 5_020_000L));
+
+        SessionSnapshot paused = new SessionSnapshot(MORNING, 0L, false, 0, 60_000L, 100_000L, 5_000_000L, true, true);
+        assertEquals(60_000L, paused.resolveOffsetMs(500_000L, 9_000_000L));
+    }
+}
@@ -0,0 +1,83 @@
+package naq.sm4.core.timer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import naq.sm4.data.MeditationStage;
+
+import static org.junit.Assert.assertEquals;
+
+public class SessionTimelineTest {
+
+    @Test
+    public void compile_flattensStageStartsRepeatsAndEnd() {
+        SessionTimeline timeline = SessionTimeline.compile(Arrays.asList(stage(5, 2), stage(4, 0), stage(3, 1)));
+        long[] expectedOffsets = {0L, 120_000L, 240_000L, 300_000L, 540_000L, 600_000L, 660_000L, 720_000L};
+        byte[] expectedTypes = {
+                SessionTimeline.CUE_STAGE_START, SessionTimeline.CUE_REPEAT, SessionTimeline.CUE_REPEAT,
+                SessionTimeline.CUE_STAGE_START, SessionTimeline.CUE_STAGE_START, SessionTimeline.CUE_REPEAT,
+                SessionTimeline.CUE_REPEAT, SessionTimeline.CUE_SESSION_END
+        };
+        assertEquals(expectedOffsets.length, timeline.getCueCount());
+        for (int i = 0; i < expectedOffsets.length; i++) {
+            assertEquals(expectedOffsets[i], timeline.getCueOffsetMs(i));
+            assertEquals(expectedTypes[i], timeline.getCueType(i));
+        }
+        assertEquals(720_000L, timeline.getTotalMs());
+    }
+
+    @Test
+    public void repeatLandingOnStageEnd_isNotScheduled() {
+        SessionTimeline timeline = SessionTimeline.compile(Collections.singletonList(stage(6, 3)));
+        assertEquals(3, timeline.getCueCount());
+        assertEquals(180_000L, timeline.getCueOffsetMs(1));
+    }
+
+    @Test
+    public void lookups_useStageBoundaries() {
+        SessionTimeline timeline = SessionTimeline.compile(Arrays.asList(stage(5, 2), stage(4, 0), stage(3, 1)));
+        assertEquals(0, timeline.findStageAt(0L));
+        assertEquals(0, timeline.findStageAt(299_999L));
+        assertEquals(1, timeline.findStageAt(300_000L));
+        assertEquals(2, timeline.findStageAt(720_000L));
+        assertEquals(3, timeline.findFirstCueAtOrAfter(240_001L));
+        assertEquals(3, timeline.findFirstCueAtOrAfter(300_000L));
+        assertEquals(7, timeline.findFirstCueAtOrAfter(720_000L));
+    }
+
+    @Test
+    public void writtenTimeline_readsBackUnchanged() {
+        SessionTimeline timeline = SessionTimeline.compile(Arrays.asList(stage(5, 2), stage(4, 0), stage(3, 1)));
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        timeline.writeTo(buffer);
+        buffer.flip();
+
+        SessionTimeline read = SessionTimeline.readFrom(buffer);
+        assertEquals(timeline.getCueCount(), read.getCueCount());
+        for (int i = 0; i < timeline.getCueCount(); i++) {
+            assertEquals(timeline.getCueOffsetMs(i), read.getCueOffsetMs(i));
+            assertEquals(timeline.getCueStage(i), read.getCueStage(i));
+            assertEquals(timeline.getCueType(i), read.getCueType(i));
+        }
+        assertEquals(timeline.getStageCount(), read.getStageCount());
+        assertEquals(timeline.getStageStartMs(2), read.getStageStartMs(2));
+        assertEquals(timeline.getTotalMs(), read.getTotalMs());
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void timelineWithAStageOutOfRange_isRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        SessionTimeline.compile(Collections.singletonList(stage(6, 3))).writeTo(buffer);
+        buffer.putInt(8 + 8, 5);
+        buffer.flip();
+        SessionTimeline.readFrom(buffer);
+    }
+
+    private static MeditationStage stage(int minutes, int repeatMinutes) {
+        return new MeditationStage("stage", minutes, repeatMinutes, Collections.emptyList());
+    }
+}